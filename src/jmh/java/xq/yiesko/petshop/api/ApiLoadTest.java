@@ -0,0 +1,207 @@
+package xq.yiesko.petshop.api;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import xq.yiesko.petshop.metricas.InstrumentedAnimalService;
+import xq.yiesko.petshop.metricas.InstrumentedConsultaService;
+import xq.yiesko.petshop.metricas.InstrumentedProprietarioService;
+import xq.yiesko.petshop.metricas.InstrumentedRepository;
+import xq.yiesko.petshop.metricas.InstrumentedVeterinarioService;
+import xq.yiesko.petshop.metricas.Metricas;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.service.AnimalService;
+import xq.yiesko.petshop.service.ConsultaService;
+import xq.yiesko.petshop.service.ProprietarioService;
+import xq.yiesko.petshop.service.VeterinarioService;
+
+/**
+ * Teste de carga da API HTTP: sobe o servidor com uma base pré-carregada e dispara
+ * clientes simultâneos, cada um em uma virtual thread, fazendo requisições em laço
+ * fechado.
+ * <p>
+ * A mistura de requisições é 70% busca de animal por id, 20% agenda do dia e 10%
+ * cadastro de proprietário. Após um aquecimento, são reportadas a vazão em
+ * requisições por segundo e a latência nos percentis 50, 99 e 99,9. Os serviços e
+ * repositórios são instrumentados como na aplicação, então a vazão já inclui o
+ * custo das métricas.
+ * <p>
+ * Argumentos: quantidade de clientes (padrão 1000) e duração da medição em segundos
+ * (padrão 30). Execução: {@code ./gradlew apiLoadTest -Pclientes=2000 -Psegundos=60}.
+ */
+public class ApiLoadTest {
+
+    private static final int PROPRIETARIOS = 1_000;
+    private static final int VETERINARIOS = 100;
+    private static final int ANIMAIS = 10_000;
+    private static final int DIAS = 30;
+    private static final LocalDate INICIO = LocalDate.of(2025, 1, 1);
+    private static final Duration AQUECIMENTO = Duration.ofSeconds(5);
+
+    public static void main(
+            String[] args
+    ) throws Exception {
+        var clientes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        var duracao = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 30);
+
+        var metricas = new Metricas();
+        var consultaService = new InstrumentedConsultaService(new InstrumentedRepository<>("consultas", new InMemoryRepository<>(), metricas), metricas);
+        var animalService = new InstrumentedAnimalService(new InstrumentedRepository<>("animais", new InMemoryRepository<>(), metricas), consultaService, metricas);
+        var proprietarioService = new InstrumentedProprietarioService(new InstrumentedRepository<>("proprietarios", new InMemoryRepository<>(), metricas), animalService, metricas);
+        var veterinarioService = new InstrumentedVeterinarioService(new InstrumentedRepository<>("veterinarios", new InMemoryRepository<>(), metricas), consultaService, metricas);
+        popular(proprietarioService, veterinarioService, animalService, consultaService);
+
+        try (var api = ApiServer.iniciar(new InetSocketAddress("127.0.0.1", 0),
+                proprietarioService, veterinarioService, animalService, consultaService, metricas);
+             var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var base = "http://127.0.0.1:" + api.endereco().getPort();
+            var http = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(10)).build();
+
+            System.out.printf("Aquecendo por %d s com %d clientes...%n", AQUECIMENTO.toSeconds(), clientes);
+            executar(http, base, clientes, AQUECIMENTO);
+
+            System.out.printf("Medindo por %d s...%n", duracao.toSeconds());
+            var inicio = System.nanoTime();
+            var resultado = executar(http, base, clientes, duracao);
+            var segundos = (System.nanoTime() - inicio) / 1e9;
+
+            var latencias = resultado.latencias();
+            Arrays.sort(latencias);
+            System.out.printf("Requisições: %d (%d erros)%n", latencias.length, resultado.erros());
+            System.out.printf("Vazão: %.0f req/s%n", latencias.length / segundos);
+            System.out.printf("Latência p50: %.2f ms | p99: %.2f ms | p99,9: %.2f ms | máx: %.2f ms%n",
+                percentil(latencias, 0.50), percentil(latencias, 0.99),
+                percentil(latencias, 0.999), percentil(latencias, 1.0));
+        }
+    }
+
+    private static void popular(
+            ProprietarioService proprietarioService,
+            VeterinarioService veterinarioService,
+            AnimalService animalService,
+            ConsultaService consultaService
+    ) {
+        for (var i = 0; i < PROPRIETARIOS; i++) proprietarioService.cadastrar("Proprietário " + i, "11 9999-0000");
+        for (var i = 0; i < VETERINARIOS; i++) veterinarioService.cadastrar("Veterinário " + i, "11 9999-0000", "Clínico Geral");
+
+        for (var i = 0; i < ANIMAIS; i++) {
+            var proprietario = proprietarioService.buscarPorId(i % PROPRIETARIOS + 1).orElseThrow();
+            var animal = animalService.cadastrarCachorro("Rex " + i, i % 15, "Vira-lata", proprietario);
+            var veterinario = veterinarioService.buscarPorId(i % VETERINARIOS + 1).orElseThrow();
+            var posicao = i / VETERINARIOS;
+            consultaService.agendar(INICIO.plusDays(posicao / 20 % DIAS), LocalTime.of(8, 0).plusMinutes(30L * (posicao % 20)),
+                animal, veterinario, "Retorno");
+        }
+    }
+
+    private static Resultado executar(
+            HttpClient http,
+            String base,
+            int clientes,
+            Duration duracao
+    ) throws InterruptedException {
+        var fim = System.nanoTime() + duracao.toNanos();
+        var erros = new LongAdder();
+        var amostras = new ArrayList<long[]>(clientes);
+        var threads = new ArrayList<Thread>(clientes);
+
+        for (var c = 0; c < clientes; c++) {
+            var cliente = new Amostras();
+            threads.add(Thread.ofVirtual().start(() -> {
+                while (System.nanoTime() < fim) {
+                    var requisicao = sortear(base);
+                    var inicio = System.nanoTime();
+                    try {
+                        var resposta = http.send(requisicao, HttpResponse.BodyHandlers.discarding());
+                        if (resposta.statusCode() >= 400) erros.increment();
+                    } catch (Exception e) {
+                        erros.increment();
+                    }
+                    cliente.registrar(System.nanoTime() - inicio);
+                }
+                synchronized (amostras) {
+                    amostras.add(cliente.valores());
+                }
+            }));
+        }
+        for (var thread : threads) thread.join();
+
+        return new Resultado(concatenar(amostras), erros.sum());
+    }
+
+    private static HttpRequest sortear(
+            String base
+    ) {
+        var aleatorio = ThreadLocalRandom.current();
+        var sorteio = aleatorio.nextInt(100);
+
+        if (sorteio < 70)
+            return HttpRequest.newBuilder(URI.create(base + "/animais/" + aleatorio.nextInt(1, ANIMAIS + 1))).GET().build();
+        if (sorteio < 90)
+            return HttpRequest.newBuilder(URI.create(base + "/consultas?data=" + INICIO.plusDays(aleatorio.nextInt(DIAS)))).GET().build();
+        return HttpRequest.newBuilder(URI.create(base + "/proprietarios"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"nome\":\"Maria da Silva\",\"telefone\":\"11 98888-7777\"}"))
+            .build();
+    }
+
+    private static long[] concatenar(
+            List<long[]> partes
+    ) {
+        var total = 0;
+        for (var parte : partes) total += parte.length;
+
+        var todas = new long[total];
+        var posicao = 0;
+        for (var parte : partes) {
+            System.arraycopy(parte, 0, todas, posicao, parte.length);
+            posicao += parte.length;
+        }
+        return todas;
+    }
+
+    private static double percentil(
+            long[] ordenadas,
+            double fracao
+    ) {
+        if (ordenadas.length == 0) return 0;
+        var indice = (int) Math.ceil(fracao * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, Math.min(indice, ordenadas.length - 1))] / 1e6;
+    }
+
+    private record Resultado(
+            long[] latencias,
+            long erros
+    ) {}
+
+    /**
+     * Latências de um único cliente, sem boxing e sem sincronização.
+     */
+    private static final class Amostras {
+
+        private long[] valores = new long[1024];
+        private int tamanho;
+
+        void registrar(
+                long nanos
+        ) {
+            if (tamanho == valores.length) valores = Arrays.copyOf(valores, tamanho * 2);
+            valores[tamanho++] = nanos;
+        }
+
+        long[] valores() {
+            return Arrays.copyOf(valores, tamanho);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package xq.yiesko.petshop.importacao;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.service.AnimalService;
+import xq.yiesko.petshop.service.ConsultaService;
+import xq.yiesko.petshop.service.ProprietarioService;
+import xq.yiesko.petshop.service.VeterinarioService;
+
+/**
+ * Importação de proprietários e animais em CSV para serviços vazios, em memória.
+ * <p>
+ * Cada execução importa os dois arquivos do início; a vazão em linhas por segundo
+ * é {@code 2 * tamanho} dividido pelo tempo medido.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CsvImporterBenchmark {
+
+    @Param({"100000"})
+    private int tamanho;
+
+    private Path diretorio;
+    private Path proprietarios;
+    private Path animais;
+    private CsvImporter importador;
+
+    @Setup(Level.Trial)
+    public void gerarArquivos() throws IOException {
+        diretorio = Files.createTempDirectory("importacao");
+        proprietarios = diretorio.resolve("proprietarios.csv");
+        animais = diretorio.resolve("animais.csv");
+
+        try (var saida = Files.newBufferedWriter(proprietarios)) {
+            saida.write("nome,telefone\n");
+            for (var i = 0; i < tamanho; i++) saida.write("Proprietário " + i + ",(11) 9" + String.format("%08d", i) + "\n");
+        }
+        try (var saida = Files.newBufferedWriter(animais)) {
+            saida.write("tipo,nome,idade,especie,telefoneProprietario\n");
+            for (var i = 0; i < tamanho; i++)
+                saida.write((i % 2 == 0 ? "cachorro" : "gato") + ",Pet " + i + "," + i % 15 + ",Vira-lata,119" + String.format("%08d", i) + "\n");
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void prepararServicos() {
+        var consultaService = new ConsultaService(new InMemoryRepository<>());
+        var animalService = new AnimalService(new InMemoryRepository<>(), consultaService);
+        importador = new CsvImporter(
+            new ProprietarioService(new InMemoryRepository<>(), animalService),
+            new VeterinarioService(new InMemoryRepository<>(), consultaService),
+            animalService,
+            consultaService);
+    }
+
+    @TearDown(Level.Trial)
+    public void apagarArquivos() throws IOException {
+        Files.deleteIfExists(proprietarios);
+        Files.deleteIfExists(animais);
+        Files.deleteIfExists(diretorio);
+    }
+
+    @Benchmark
+    public long importar() throws IOException {
+        return importador.importarProprietarios(proprietarios).importadas()
+            + importador.importarAnimais(animais).importadas();
+    }
+}
@@ -0,0 +1,159 @@
+package xq.yiesko.petshop.json;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Cachorro;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Gato;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.model.Veterinario;
+
+/**
+ * Exportação de consultas para JSON pelo {@link JsonCodecs} comparada a
+ * {@code toString} e à montagem do JSON por concatenação de strings.
+ * <p>
+ * Todas as variantes terminam com os bytes UTF-8 do documento, que é o que vai
+ * para um arquivo ou para a rede.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JsonCodecBenchmark {
+
+    private static final int ANIMAIS = 10_000;
+    private static final int VETERINARIOS = 100;
+
+    @Param({"1000000"})
+    private int tamanho;
+
+    private List<Consulta> consultas;
+    private Animal[] animais;
+    private Veterinario[] veterinarios;
+    private JsonCodec<Consulta> codec;
+    private JsonWriter escritor;
+    private JsonWriter escritorEmFluxo;
+    private byte[] documento;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        var proprietario = new Proprietario("Maria da Silva", "11 98888-7777");
+        proprietario.setId(1);
+
+        animais = new Animal[ANIMAIS];
+        for (var i = 0; i < ANIMAIS; i++) {
+            animais[i] = i % 2 == 0
+                ? new Cachorro("Rex " + i, i % 15, "Vira-lata", proprietario)
+                : new Gato("Mingau " + i, i % 15, "Siamês", proprietario);
+            animais[i].setId(i + 1);
+        }
+
+        veterinarios = new Veterinario[VETERINARIOS];
+        for (var i = 0; i < VETERINARIOS; i++) {
+            veterinarios[i] = new Veterinario("Dra. Ana " + i, "11 97777-6666", "Clínico Geral");
+            veterinarios[i].setId(i + 1);
+        }
+
+        consultas = new ArrayList<>(tamanho);
+        for (var i = 0; i < tamanho; i++) {
+            var consulta = new Consulta(LocalDate.of(2025, 1, 1).plusDays(i % 365), LocalTime.of(8 + i % 10, i % 2 * 30),
+                animais[i % ANIMAIS], veterinarios[i % VETERINARIOS], i % 3 == 0 ? "Vacina anual, trazer carteirinha" : null);
+            consulta.setId(i + 1);
+            consultas.add(consulta);
+        }
+
+        codec = JsonCodecs.consulta(id -> animais[id - 1], id -> veterinarios[id - 1]);
+        escritor = new JsonWriter();
+        escritorEmFluxo = new JsonWriter(OutputStream.nullOutputStream(), 64 * 1024);
+
+        codec.escreverLista(consultas, escritor);
+        documento = escritor.toBytes();
+    }
+
+    /**
+     * Codec em um buffer reaproveitado entre execuções.
+     */
+    @Benchmark
+    public int codec() {
+        escritor.limpar();
+        codec.escreverLista(consultas, escritor);
+        return escritor.tamanho();
+    }
+
+    /**
+     * Codec descarregando em um fluxo a cada 64 KB, com memória constante.
+     */
+    @Benchmark
+    public int codecEmFluxo() throws Exception {
+        escritorEmFluxo.limpar();
+        codec.escreverLista(consultas, escritorEmFluxo);
+        escritorEmFluxo.descarregar();
+        return escritorEmFluxo.tamanho();
+    }
+
+    /**
+     * Leitura do documento completo de volta para entidades.
+     */
+    @Benchmark
+    public int leitura() {
+        var json = new JsonReader(documento);
+        var lidas = 0;
+        json.inicioLista();
+        while (json.proximoItem()) {
+            codec.ler(json);
+            lidas++;
+        }
+        return lidas;
+    }
+
+    /**
+     * Uma linha de {@code toString} por consulta.
+     */
+    @Benchmark
+    public int toStringPorLinha() {
+        var texto = new StringBuilder();
+        for (var consulta : consultas) texto.append(consulta).append('\n');
+        return texto.toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * JSON montado por concatenação de strings, sem escape de caracteres.
+     */
+    @Benchmark
+    public int concatenacao() {
+        var json = "[";
+        var texto = new StringBuilder();
+        for (var consulta : consultas) {
+            texto.append(json);
+            json = ",";
+            texto.append("{\"id\":" + consulta.getId()
+                + ",\"data\":\"" + consulta.getData() + "\""
+                + ",\"horario\":\"" + consulta.getHorario() + "\""
+                + ",\"animalId\":" + consulta.getAnimal().getId()
+                + ",\"veterinarioId\":" + consulta.getVeterinario().getId()
+                + ",\"observacoes\":" + (consulta.getObservacoes() != null ? "\"" + consulta.getObservacoes() + "\"" : "null")
+                + "}");
+        }
+        return texto.append(']').toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+}
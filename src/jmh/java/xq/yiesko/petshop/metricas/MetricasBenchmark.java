@@ -0,0 +1,66 @@
+package xq.yiesko.petshop.metricas;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.repository.Repository;
+
+/**
+ * Custo da instrumentação: o registro de um valor no histograma, com várias threads
+ * disputando a mesma operação, e uma busca por identificador com e sem o
+ * repositório instrumentado.
+ * <p>
+ * Com {@code -prof gc}, {@code registrar} deve mostrar zero bytes alocados por
+ * operação e as duas buscas a mesma alocação, a do {@code Optional}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class MetricasBenchmark {
+
+    private static final int TAMANHO = 100_000;
+
+    private Operacao operacao;
+    private Repository<Proprietario> direto;
+    private Repository<Proprietario> instrumentado;
+
+    @Setup
+    public void preparar() {
+        var metricas = new Metricas();
+        operacao = metricas.operacao("benchmark");
+        direto = new InMemoryRepository<>();
+        for (var i = 0; i < TAMANHO; i++) direto.adicionar(new Proprietario("Proprietário " + i, "11 9999-0000"));
+        instrumentado = new InstrumentedRepository<>("proprietarios", direto, metricas);
+    }
+
+    @Benchmark
+    public void registrar() {
+        operacao.registrar(System.nanoTime() - ThreadLocalRandom.current().nextInt(1_000, 100_000));
+    }
+
+    @Benchmark
+    public Object buscarDireto() {
+        return direto.buscarPorId(ThreadLocalRandom.current().nextInt(1, TAMANHO + 1));
+    }
+
+    @Benchmark
+    public Object buscarInstrumentado() {
+        return instrumentado.buscarPorId(ThreadLocalRandom.current().nextInt(1, TAMANHO + 1));
+    }
+}
@@ -0,0 +1,46 @@
+package xq.yiesko.petshop.model.texto;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Custo de codificar e decodificar os campos guardados pelo {@link Dicionario}, que
+ * os getters dos modelos pagam a cada leitura.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextoBenchmark {
+
+    private final Dicionario dicionario = new Dicionario();
+    private String especie;
+    private int codigo;
+
+    @Setup
+    public void preparar() {
+        especie = new String("Vira-lata".toCharArray());
+        codigo = dicionario.codificar("Vira-lata");
+    }
+
+    @Benchmark
+    public int codificarEspecie() {
+        return dicionario.codificar(especie);
+    }
+
+    @Benchmark
+    public String decodificarEspecie() {
+        return dicionario.decodificar(codigo);
+    }
+}
@@ -0,0 +1,118 @@
+package xq.yiesko.petshop.repository;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xq.yiesko.petshop.model.Proprietario;
+
+/**
+ * Cargas mistas e concorrentes sobre um mesmo {@link InMemoryRepository}.
+ * <p>
+ * O grupo {@code recepcao} simula vários terminais cadastrando e consultando ao
+ * mesmo tempo; o grupo {@code relatorio} mede listagens completas disputando com
+ * escritas, e o grupo {@code retrato} o mesmo percurso sobre um {@link Retrato},
+ * sem copiar a lista; o grupo {@code edicao} mede atualizações otimistas, cada uma lendo,
+ * copiando e gravando por compare-and-set, disputando os mesmos
+ * {@value #DISPUTADOS} registros.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentRepositoryBenchmark {
+
+    private static final int DISPUTADOS = 16;
+
+    @Param({"100000"})
+    private int tamanho;
+
+    private InMemoryRepository<Proprietario> repository;
+
+    @Setup
+    public void preparar() {
+        repository = new InMemoryRepository<>();
+        for (var i = 0; i < tamanho; i++) repository.adicionar(new Proprietario("Proprietário " + i, "11 9999-0000"));
+    }
+
+    @Benchmark
+    @Group("recepcao")
+    @GroupThreads(2)
+    public Proprietario recepcaoAdicionar() {
+        return repository.adicionar(new Proprietario("Novo", "11 9999-0000"));
+    }
+
+    @Benchmark
+    @Group("recepcao")
+    @GroupThreads(2)
+    public boolean recepcaoAtualizar() {
+        var proprietario = new Proprietario("Atualizado", "11 9999-0000");
+        proprietario.setId(idAleatorio());
+        return repository.atualizar(proprietario);
+    }
+
+    @Benchmark
+    @Group("recepcao")
+    @GroupThreads(4)
+    public Object recepcaoBuscar() {
+        return repository.buscarPorId(idAleatorio());
+    }
+
+    @Benchmark
+    @Group("relatorio")
+    @GroupThreads(1)
+    public Object relatorioListar() {
+        return repository.listar();
+    }
+
+    @Benchmark
+    @Group("relatorio")
+    @GroupThreads(3)
+    public Proprietario relatorioAdicionar() {
+        return repository.adicionar(new Proprietario("Novo", "11 9999-0000"));
+    }
+
+    @Benchmark
+    @Group("retrato")
+    @GroupThreads(1)
+    public long retratoPercorrer() {
+        return repository.retrato().stream().filter(proprietario -> proprietario.getVersao() > 1).count();
+    }
+
+    @Benchmark
+    @Group("retrato")
+    @GroupThreads(3)
+    public Proprietario retratoAdicionar() {
+        return repository.adicionar(new Proprietario("Novo", "11 9999-0000"));
+    }
+
+    /**
+     * Devolve se a versão lida ainda era a atual; as rejeitadas medem a disputa.
+     */
+    @Benchmark
+    @Group("edicao")
+    @GroupThreads(8)
+    public boolean edicaoAtualizarVersao() {
+        var atual = repository.buscarPorId(ThreadLocalRandom.current().nextInt(1, DISPUTADOS + 1)).orElseThrow();
+        var copia = atual.copiar();
+        copia.setNome("Editado");
+        return repository.atualizar(copia, atual.getVersao());
+    }
+
+    private int idAleatorio() {
+        return ThreadLocalRandom.current().nextInt(1, tamanho + 1);
+    }
+}
@@ -0,0 +1,123 @@
+package xq.yiesko.petshop.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compara a {@link IdTrie} com os mapas usados antes como índice primário do repositório.
+ * <p>
+ * {@code inserirIdTrieUmaAUma} publica uma versão nova da trie a cada inserção, como
+ * {@link InMemoryRepository#adicionar}; {@code inserirIdTrie} monta tudo em uma
+ * única edição, como os lotes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdTrieBenchmark {
+
+    private static final int CONSULTAS = 1024;
+
+    @Param({"1000", "100000"})
+    private int tamanho;
+
+    private final Object valor = new Object();
+    private final int[] ids = new int[CONSULTAS];
+    private Map<Integer, Object> linkedHashMap;
+    private Map<Integer, Object> skipList;
+    private IdTrie<Object> idTrie;
+    private int cursor;
+
+    @Setup
+    public void preparar() {
+        linkedHashMap = new LinkedHashMap<>();
+        skipList = new ConcurrentSkipListMap<>();
+        var edicao = IdTrie.vazia().editar();
+
+        for (var id = 1; id <= tamanho; id++) {
+            linkedHashMap.put(id, valor);
+            skipList.put(id, valor);
+            edicao.colocar(id, valor);
+        }
+        idTrie = edicao.concluir();
+
+        var random = ThreadLocalRandom.current();
+        for (var i = 0; i < CONSULTAS; i++) ids[i] = random.nextInt(1, tamanho + 1);
+    }
+
+    @Benchmark
+    public Object buscarLinkedHashMap() {
+        return linkedHashMap.get(proximoId());
+    }
+
+    @Benchmark
+    public Object buscarSkipList() {
+        return skipList.get(proximoId());
+    }
+
+    @Benchmark
+    public Object buscarIdTrie() {
+        return idTrie.obter(proximoId());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object inserirLinkedHashMap() {
+        var mapa = new LinkedHashMap<Integer, Object>();
+        for (var id = 1; id <= tamanho; id++) mapa.put(id, valor);
+        return mapa;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object inserirIdTrie() {
+        var edicao = IdTrie.vazia().editar();
+        for (var id = 1; id <= tamanho; id++) edicao.colocar(id, valor);
+        return edicao.concluir();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object inserirIdTrieUmaAUma() {
+        var trie = IdTrie.vazia();
+        for (var id = 1; id <= tamanho; id++) trie = trie.com(id, valor);
+        return trie;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void percorrerLinkedHashMap(
+            Blackhole blackhole
+    ) {
+        for (var entidade : linkedHashMap.values()) blackhole.consume(entidade);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void percorrerIdTrie(
+            Blackhole blackhole
+    ) {
+        idTrie.paraCada(blackhole::consume);
+    }
+
+    private int proximoId() {
+        return ids[cursor++ & (CONSULTAS - 1)];
+    }
+}
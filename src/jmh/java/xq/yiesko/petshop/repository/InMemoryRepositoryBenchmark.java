@@ -0,0 +1,96 @@
+package xq.yiesko.petshop.repository;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xq.yiesko.petshop.model.Proprietario;
+
+/**
+ * Operações do {@link InMemoryRepository} em repositórios de tamanhos diferentes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class InMemoryRepositoryBenchmark {
+
+    private static final int LOTE = 100;
+
+    @Param({"1000", "100000", "10000000"})
+    private int tamanho;
+
+    private InMemoryRepository<Proprietario> repository;
+
+    @Setup(Level.Iteration)
+    public void preparar() {
+        repository = new InMemoryRepository<>();
+        for (var i = 0; i < tamanho; i++) repository.adicionar(new Proprietario("Proprietário " + i, "11 9999-0000"));
+    }
+
+    @Benchmark
+    public Proprietario adicionar() {
+        return repository.adicionar(new Proprietario("Novo", "11 9999-0000"));
+    }
+
+    @Benchmark
+    public Object buscarPorId() {
+        return repository.buscarPorId(idAleatorio());
+    }
+
+    @Benchmark
+    public boolean atualizar() {
+        var proprietario = new Proprietario("Atualizado", "11 9999-0000");
+        proprietario.setId(idAleatorio());
+        return repository.atualizar(proprietario);
+    }
+
+    /**
+     * Substitui {@value #LOTE} entidades de uma vez; comparar com {@code LOTE * atualizar}.
+     */
+    @Benchmark
+    public boolean atualizarTodos() {
+        var lote = new ArrayList<Proprietario>(LOTE);
+        for (var i = 0; i < LOTE; i++) {
+            var proprietario = new Proprietario("Atualizado", "11 9999-0000");
+            proprietario.setId(idAleatorio());
+            lote.add(proprietario);
+        }
+        return repository.atualizarTodos(lote);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object listar() {
+        return repository.listar();
+    }
+
+    /**
+     * Remove e devolve a mesma entidade, mantendo o tamanho do repositório estável.
+     */
+    @Benchmark
+    public boolean removerERestaurar() {
+        var id = idAleatorio();
+        var entidade = repository.buscarPorId(id);
+        var removido = repository.remover(id);
+        entidade.ifPresent(repository::restaurar);
+        return removido;
+    }
+
+    private int idAleatorio() {
+        return ThreadLocalRandom.current().nextInt(1, tamanho + 1);
+    }
+}
@@ -0,0 +1,79 @@
+package xq.yiesko.petshop.repository;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xq.yiesko.petshop.model.Proprietario;
+
+/**
+ * Cargas concorrentes sobre um {@link ShardedRepository} comparadas com um único
+ * {@link InMemoryRepository} ({@code particoes = 1}).
+ * <p>
+ * O grupo {@code cadastro} mede inclusões e atualizações de oito threads, que com
+ * partições deixam de disputar a mesma raiz; o grupo {@code filtro} mede a listagem
+ * filtrada, percorrida em paralelo por fatias, disputando com inclusões.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedRepositoryBenchmark {
+
+    @Param({"1", "8", "32"})
+    private int particoes;
+
+    @Param({"100000"})
+    private int tamanho;
+
+    private Repository<Proprietario> repository;
+
+    @Setup
+    public void preparar() {
+        repository = particoes > 1 ? new ShardedRepository<>(particoes) : new InMemoryRepository<>();
+        for (var i = 0; i < tamanho; i++) repository.adicionar(new Proprietario("Proprietário " + i, "11 9999-0000"));
+    }
+
+    @Benchmark
+    @Group("cadastro")
+    @GroupThreads(4)
+    public Proprietario cadastroAdicionar() {
+        return repository.adicionar(new Proprietario("Novo", "11 9999-0000"));
+    }
+
+    @Benchmark
+    @Group("cadastro")
+    @GroupThreads(4)
+    public boolean cadastroAtualizar() {
+        var proprietario = new Proprietario("Atualizado", "11 9999-0000");
+        proprietario.setId(ThreadLocalRandom.current().nextInt(1, tamanho + 1));
+        return repository.atualizar(proprietario);
+    }
+
+    @Benchmark
+    @Group("filtro")
+    @GroupThreads(1)
+    public Object filtroListar() {
+        return repository.listar(proprietario -> proprietario.getVersao() > 1);
+    }
+
+    @Benchmark
+    @Group("filtro")
+    @GroupThreads(3)
+    public Proprietario filtroAdicionar() {
+        return repository.adicionar(new Proprietario("Novo", "11 9999-0000"));
+    }
+}
@@ -0,0 +1,73 @@
+package xq.yiesko.petshop.repository.replication;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.repository.persistence.Codecs;
+
+/**
+ * Inclusões em um repositório replicado para um seguidor no mesmo host.
+ * <p>
+ * {@code adicionar} mede o custo da escrita no líder com a replicação ligada, que
+ * não espera pelo seguidor; {@code adicionarConfirmado} espera a confirmação do
+ * seguidor a cada inclusão e mede a latência de ida e volta de um lote de uma
+ * alteração.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplicationBenchmark {
+
+    private InMemoryRepository<Proprietario> repository;
+    private ReplicationLeader lider;
+    private ReplicationFollower seguidor;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException, InterruptedException {
+        repository = new InMemoryRepository<>();
+        lider = new ReplicationLeader()
+            .replicar("proprietarios", repository, Codecs.proprietario())
+            .iniciar(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        seguidor = new ReplicationFollower(lider.endereco());
+        seguidor.replicar("proprietarios", new InMemoryRepository<>(), Codecs.proprietario());
+        seguidor.iniciar();
+        if (!seguidor.aguardar("proprietarios", 0, Duration.ofSeconds(10)))
+            throw new IllegalStateException("Seguidor não conectou ao líder");
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() throws IOException {
+        seguidor.close();
+        lider.close();
+    }
+
+    @Benchmark
+    public Proprietario adicionar() {
+        return repository.adicionar(new Proprietario("Proprietário", "11 9999-0000"));
+    }
+
+    @Benchmark
+    public boolean adicionarConfirmado() throws InterruptedException {
+        repository.adicionar(new Proprietario("Proprietário", "11 9999-0000"));
+        return lider.aguardarConfirmacao("proprietarios", repository.alteracoes().ultimaSequencia(), Duration.ofSeconds(10));
+    }
+}
@@ -0,0 +1,110 @@
+package xq.yiesko.petshop.search;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Cachorro;
+import xq.yiesko.petshop.model.Proprietario;
+
+/**
+ * Buscas de autocompletar sobre um milhão de animais, comparadas à varredura
+ * linear que filtra os nomes um a um.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchIndexBenchmark {
+
+    private static final String[] NOMES = {"Rex", "Thor", "Mingau", "Bolinha", "Luna", "Mel", "Nina", "Simba"};
+    private static final String[] ESPECIES = {"Vira-lata", "Siamês", "Persa", "Poodle", "Labrador"};
+    private static final int LIMITE = 10;
+
+    @Param({"1000000"})
+    private int tamanho;
+
+    private Animal[] animais;
+    private SearchIndex<Animal> indice;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        var proprietario = new Proprietario("Maria da Silva", "11 98888-7777");
+        proprietario.setId(1);
+
+        var aleatorio = new Random(42);
+        animais = new Animal[tamanho];
+        indice = new SearchIndex<>(animal -> List.of(animal.getNome(), animal.getEspecie()));
+        for (var i = 0; i < tamanho; i++) {
+            animais[i] = new Cachorro(NOMES[aleatorio.nextInt(NOMES.length)] + " " + aleatorio.nextInt(100_000), 3,
+                ESPECIES[aleatorio.nextInt(ESPECIES.length)], proprietario);
+            animais[i].setId(i + 1);
+            indice.indexar(animais[i]);
+        }
+    }
+
+    /**
+     * Prefixo curto e comum, o caso típico das primeiras teclas digitadas.
+     */
+    @Benchmark
+    public int prefixoCurto() {
+        return indice.buscar("mi", LIMITE).length;
+    }
+
+    /**
+     * Dois termos, sem acento na consulta e com acento no cadastro.
+     */
+    @Benchmark
+    public int doisTermos() {
+        return indice.buscar("thor siames", LIMITE).length;
+    }
+
+    /**
+     * Prefixo sem nenhum resultado.
+     */
+    @Benchmark
+    public int semResultado() {
+        return indice.buscar("xyz", LIMITE).length;
+    }
+
+    /**
+     * Reindexação de um animal renomeado.
+     */
+    @Benchmark
+    public int reindexar() {
+        var animal = animais[ThreadLocalRandom.current().nextInt(tamanho)];
+        animal.setNome(NOMES[ThreadLocalRandom.current().nextInt(NOMES.length)] + " " + animal.getId());
+        indice.indexar(animal);
+        return animal.getId();
+    }
+
+    /**
+     * Varredura linear equivalente a {@link #semResultado()}, que percorre todos os nomes.
+     */
+    @Benchmark
+    public int varreduraLinear() {
+        var encontrados = 0;
+        for (var i = 0; i < animais.length && encontrados < LIMITE; i++)
+            for (var termo : Tokenizer.termos(animais[i].getNome()))
+                if (termo.startsWith("xyz")) {
+                    encontrados++;
+                    break;
+                }
+        return encontrados;
+    }
+}
@@ -0,0 +1,114 @@
+package xq.yiesko.petshop.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.repository.archive.ConsultaArchive;
+
+/**
+ * Três anos de consultas, {@value #POR_DIA} por dia, com tudo antes dos últimos
+ * dois meses arquivado.
+ * <p>
+ * {@code listarSemana} lê só os índices das consultas ativas e não deve sentir o
+ * tamanho do histórico; {@code historicoDoAno} e {@code listarMesArquivado} leem
+ * apenas os segmentos dos meses pedidos. {@code contarPorEspecieNoAno} mostra que
+ * os relatórios sobre meses arquivados continuam vindo das contagens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ArquivoConsultaBenchmark {
+
+    private static final LocalDate FIM = LocalDate.now();
+    private static final LocalDate INICIO = YearMonth.from(FIM).minusYears(3).atDay(1);
+    private static final LocalDate ANO_ARQUIVADO = INICIO.plusYears(1);
+    private static final YearMonth MES_ARQUIVADO = YearMonth.from(ANO_ARQUIVADO).plusMonths(5);
+    private static final int VETERINARIOS = AgendaVeterinarios.HORARIOS_POR_DIA;
+    private static final int POR_DIA = 100;
+    private static final String[] ESPECIES = {"Vira-lata", "Siamês", "Persa", "Labrador", "Poodle"};
+
+    private Path diretorio;
+    private ConsultaService consultaService;
+
+    @Setup
+    public void preparar() throws IOException {
+        diretorio = Files.createTempDirectory("arquivo");
+        var animalRepository = new InMemoryRepository<Animal>();
+        var veterinarioRepository = new InMemoryRepository<Veterinario>();
+        var arquivo = ConsultaArchive.abrir(diretorio, id -> animalRepository.buscarPorId(id).orElse(null),
+            id -> veterinarioRepository.buscarPorId(id).orElse(null));
+
+        consultaService = new ConsultaService(new InMemoryRepository<>(), arquivo);
+        var animalService = new AnimalService(animalRepository, consultaService);
+        var proprietario = new ProprietarioService(new InMemoryRepository<>(), animalService).cadastrar("Proprietário", "11 9999-0000");
+        var veterinarioService = new VeterinarioService(veterinarioRepository, consultaService);
+
+        var veterinarios = new ArrayList<Veterinario>();
+        for (var i = 0; i < VETERINARIOS; i++) veterinarios.add(veterinarioService.cadastrar("Veterinário " + i, "11 9999-0000", "Clínico Geral"));
+        var animais = new ArrayList<Animal>();
+        for (var i = 0; i < ESPECIES.length; i++) animais.add(animalService.cadastrarCachorro("Pet " + i, 3, ESPECIES[i], proprietario));
+
+        for (var dia = INICIO; !dia.isAfter(FIM); dia = dia.plusDays(1)) {
+            var lote = new ArrayList<Consulta>(POR_DIA);
+            for (var i = 0; i < POR_DIA; i++) {
+                var horario = AgendaVeterinarios.ABERTURA.plusMinutes((long) (i / VETERINARIOS) * AgendaVeterinarios.DURACAO_MINUTOS);
+                lote.add(new Consulta(dia, horario, animais.get(i % animais.size()), veterinarios.get(i % VETERINARIOS), i % 4 == 0 ? "Vacina" : ""));
+            }
+            consultaService.agendarTodos(lote);
+        }
+        consultaService.arquivar(YearMonth.from(FIM).minusMonths(2));
+    }
+
+    @TearDown(Level.Trial)
+    public void apagarArquivos() throws IOException {
+        try (var arquivos = Files.walk(diretorio)) {
+            for (var arquivo : arquivos.sorted(Comparator.reverseOrder()).toList()) Files.delete(arquivo);
+        }
+    }
+
+    @Benchmark
+    public List<Consulta> listarSemana() {
+        return consultaService.listarPorPeriodo(FIM.minusDays(6), FIM);
+    }
+
+    @Benchmark
+    public List<Consulta> listarMesArquivado() {
+        return consultaService.listarPorPeriodo(MES_ARQUIVADO.atDay(1), MES_ARQUIVADO.atEndOfMonth());
+    }
+
+    @Benchmark
+    public long historicoDoAno() {
+        return consultaService.historico(ANO_ARQUIVADO, ANO_ARQUIVADO.plusYears(1).minusDays(1)).count();
+    }
+
+    @Benchmark
+    public Map<String, Integer> contarPorEspecieNoAno() {
+        return consultaService.contarPorEspecie(ANO_ARQUIVADO, ANO_ARQUIVADO.plusYears(1).minusDays(1));
+    }
+}
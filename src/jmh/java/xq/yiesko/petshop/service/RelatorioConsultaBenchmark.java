@@ -0,0 +1,113 @@
+package xq.yiesko.petshop.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+
+/**
+ * Relatórios sobre dez anos de consultas, {@value #POR_DIA} por dia.
+ * <p>
+ * {@code listarEAgrupar} é o caminho anterior, que copia todas as consultas e as
+ * agrupa em uma única thread; as contagens incrementais e o agrupamento paralelo
+ * sobre o retrato devem ficar bem abaixo dele. {@code contarFiltradoPorVeterinario}
+ * e {@code agruparFiltradoPorVeterinario} fazem a mesma contagem filtrada por ano e
+ * espécie, sobre as colunas e sobre o retrato.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RelatorioConsultaBenchmark {
+
+    private static final LocalDate INICIO = LocalDate.of(2016, 1, 1);
+    private static final LocalDate FIM = INICIO.plusYears(10).minusDays(1);
+    private static final LocalDate ULTIMO_ANO = FIM.minusYears(1).plusDays(1);
+    private static final int VETERINARIOS = AgendaVeterinarios.HORARIOS_POR_DIA;
+    private static final int POR_DIA = 100;
+    private static final String[] ESPECIALIDADES = {"Clínico Geral", "Dermatologia", "Cardiologia", "Ortopedia"};
+    private static final String[] ESPECIES = {"Vira-lata", "Siamês", "Persa", "Labrador", "Poodle"};
+
+    private ConsultaService consultaService;
+
+    @Setup
+    public void preparar() {
+        consultaService = new ConsultaService(new InMemoryRepository<>());
+        var animalService = new AnimalService(new InMemoryRepository<>(), consultaService);
+        var proprietario = new ProprietarioService(new InMemoryRepository<>(), animalService).cadastrar("Proprietário", "11 9999-0000");
+        var veterinarioService = new VeterinarioService(new InMemoryRepository<>(), consultaService);
+
+        var veterinarios = new ArrayList<Veterinario>();
+        for (var i = 0; i < VETERINARIOS; i++)
+            veterinarios.add(veterinarioService.cadastrar("Veterinário " + i, "11 9999-0000", ESPECIALIDADES[i % ESPECIALIDADES.length]));
+        var animais = new ArrayList<Animal>();
+        for (var i = 0; i < ESPECIES.length; i++) animais.add(animalService.cadastrarCachorro("Pet " + i, 3, ESPECIES[i], proprietario));
+
+        for (var dia = INICIO; !dia.isAfter(FIM); dia = dia.plusDays(1)) {
+            var lote = new ArrayList<Consulta>(POR_DIA);
+            for (var i = 0; i < POR_DIA; i++) {
+                var horario = AgendaVeterinarios.ABERTURA.plusMinutes((long) (i / VETERINARIOS) * AgendaVeterinarios.DURACAO_MINUTOS);
+                lote.add(new Consulta(dia, horario, animais.get(i % animais.size()), veterinarios.get(i % VETERINARIOS), ""));
+            }
+            consultaService.agendarTodos(lote);
+        }
+    }
+
+    @Benchmark
+    public Object contarPorDia() {
+        return consultaService.contarPorDia(INICIO, FIM);
+    }
+
+    @Benchmark
+    public Map<String, Integer> contarPorEspecialidade() {
+        return consultaService.contarPorEspecialidade(INICIO, FIM);
+    }
+
+    @Benchmark
+    public Object ocupacaoDeUmVeterinario() {
+        return consultaService.ocupacao(consultaService.buscarPorId(1).orElseThrow().getVeterinario(), INICIO, FIM);
+    }
+
+    @Benchmark
+    public Map<String, Long> agruparPorEspecieParalelo() {
+        return consultaService.agrupar(INICIO, FIM, consulta -> consulta.getAnimal().getEspecie());
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> contarFiltradoPorVeterinario() {
+        return consultaService.contarPorVeterinario(FiltroConsultas.periodo(ULTIMO_ANO, FIM).daEspecie(ESPECIES[0]));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> agruparFiltradoPorVeterinario() {
+        return consultaService.retrato().stream()
+            .parallel()
+            .filter(consulta -> !consulta.getData().isBefore(ULTIMO_ANO) && !consulta.getData().isAfter(FIM))
+            .filter(consulta -> ESPECIES[0].equals(consulta.getAnimal().getEspecie()))
+            .collect(Collectors.groupingBy(consulta -> consulta.getVeterinario().getId(), Collectors.counting()));
+    }
+
+    @Benchmark
+    public Map<String, Long> listarEAgrupar() {
+        return consultaService.listar().stream()
+            .filter(consulta -> !consulta.getData().isBefore(INICIO) && !consulta.getData().isAfter(FIM))
+            .collect(Collectors.groupingBy(consulta -> consulta.getAnimal().getEspecie(), Collectors.counting()));
+    }
+}
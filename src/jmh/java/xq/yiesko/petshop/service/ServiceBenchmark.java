@@ -0,0 +1,130 @@
+package xq.yiesko.petshop.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+
+/**
+ * Caminhos de cadastro e atualização dos serviços, incluindo as validações.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceBenchmark {
+
+    private static final int BASE = 10_000;
+    private static final LocalDateTime INICIO_AGENDA = LocalDateTime.of(2026, 1, 1, 8, 0);
+    private static final LocalTime HORARIO = LocalTime.of(9, 0);
+
+    private ProprietarioService proprietarioService;
+    private VeterinarioService veterinarioService;
+    private AnimalService animalService;
+    private ConsultaService consultaService;
+    private Proprietario proprietario;
+    private Veterinario veterinario;
+    private Animal animal;
+    private int agendamentos;
+
+    @Setup(Level.Iteration)
+    public void preparar() {
+        consultaService = new ConsultaService(new InMemoryRepository<>());
+        animalService = new AnimalService(new InMemoryRepository<>(), consultaService);
+        proprietarioService = new ProprietarioService(new InMemoryRepository<>(), animalService);
+        veterinarioService = new VeterinarioService(new InMemoryRepository<>(), consultaService);
+        agendamentos = 0;
+
+        for (var i = 0; i < BASE; i++) {
+            proprietario = proprietarioService.cadastrar("Proprietário " + i, "11 9999-0000");
+            veterinario = veterinarioService.cadastrar("Veterinário " + i, "11 9999-0000", "Clínico Geral");
+            animal = animalService.cadastrarCachorro("Rex " + i, i % 15, "Vira-lata", proprietario);
+            consultaService.agendar(LocalDate.of(2025, 1, 1).plusDays(i % 365), HORARIO, animal, veterinario, "Retorno");
+        }
+    }
+
+    @Benchmark
+    public Proprietario cadastrarProprietario() {
+        return proprietarioService.cadastrar("  Maria da Silva  ", "11 98888-7777");
+    }
+
+    @Benchmark
+    public boolean atualizarProprietario() {
+        return proprietarioService.atualizar(idAleatorio(), "Maria da Silva", "11 98888-7777");
+    }
+
+    @Benchmark
+    public Veterinario cadastrarVeterinario() {
+        return veterinarioService.cadastrar("Dra. Ana", "11 97777-6666", "Dermatologia");
+    }
+
+    @Benchmark
+    public boolean atualizarVeterinario() {
+        return veterinarioService.atualizar(idAleatorio(), "Dra. Ana", "11 97777-6666", "Dermatologia");
+    }
+
+    @Benchmark
+    public Animal cadastrarAnimal() {
+        return animalService.cadastrarGato("Mingau", 3, "Siamês", proprietario);
+    }
+
+    @Benchmark
+    public boolean atualizarAnimal() {
+        return animalService.atualizarAnimal(idAleatorio(), "Mingau", 4, "Siamês", proprietario);
+    }
+
+    @Benchmark
+    public List<Animal> listarAnimaisDoProprietario() {
+        return animalService.listarPorProprietario(proprietario);
+    }
+
+    @Benchmark
+    public Consulta agendarConsulta() {
+        var horario = proximoHorario();
+        return consultaService.agendar(horario.toLocalDate(), horario.toLocalTime(), animal, veterinario, "Vacina");
+    }
+
+    @Benchmark
+    public boolean atualizarConsulta() {
+        var horario = proximoHorario();
+        return consultaService.atualizar(idAleatorio(), horario.toLocalDate(), horario.toLocalTime(), animal, veterinario, "Vacina");
+    }
+
+    @Benchmark
+    public List<LocalDateTime> proximosHorariosLivres() {
+        return consultaService.proximosHorariosLivres(veterinario, INICIO_AGENDA, 5);
+    }
+
+    /**
+     * Avança pelos horários da grade a cada chamada, para que agendamentos e
+     * remarcações não esbarrem em horários já ocupados.
+     */
+    private LocalDateTime proximoHorario() {
+        var n = agendamentos++;
+        return INICIO_AGENDA.plusDays(n / 20).plusMinutes(30L * (n % 20));
+    }
+
+    private int idAleatorio() {
+        return ThreadLocalRandom.current().nextInt(1, BASE + 1);
+    }
+}
@@ -1,44 +1,183 @@
 package xq.yiesko.petshop;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import xq.yiesko.petshop.api.ApiServer;
 import xq.yiesko.petshop.cli.MenuAnimal;
 import xq.yiesko.petshop.cli.MenuConsulta;
+import xq.yiesko.petshop.cli.MenuImportacao;
 import xq.yiesko.petshop.cli.MenuProprietario;
 import xq.yiesko.petshop.cli.MenuVeterinario;
+import xq.yiesko.petshop.importacao.CsvImporter;
+import xq.yiesko.petshop.metricas.InstrumentedAnimalService;
+import xq.yiesko.petshop.metricas.InstrumentedConsultaService;
+import xq.yiesko.petshop.metricas.InstrumentedProprietarioService;
+import xq.yiesko.petshop.metricas.InstrumentedRepository;
+import xq.yiesko.petshop.metricas.InstrumentedVeterinarioService;
+import xq.yiesko.petshop.metricas.Metricas;
 import xq.yiesko.petshop.model.Animal;
-import xq.yiesko.petshop.model.Consulta;
 import xq.yiesko.petshop.model.Proprietario;
 import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.model.impl.Identificavel;
 import xq.yiesko.petshop.repository.InMemoryRepository;
-import xq.yiesko.petshop.service.AnimalService;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.RestorableRepository;
+import xq.yiesko.petshop.repository.ShardedRepository;
+import xq.yiesko.petshop.repository.archive.ConsultaArchive;
+import xq.yiesko.petshop.repository.mapped.MappedRepository;
+import xq.yiesko.petshop.repository.persistence.Codecs;
+import xq.yiesko.petshop.repository.persistence.EntityCodec;
+import xq.yiesko.petshop.repository.persistence.RepositoryJournal;
+import xq.yiesko.petshop.repository.replication.ReplicationFollower;
+import xq.yiesko.petshop.repository.replication.ReplicationLeader;
+import xq.yiesko.petshop.repository.tiered.TieredRepository;
 import xq.yiesko.petshop.service.ConsultaService;
-import xq.yiesko.petshop.service.ProprietarioService;
-import xq.yiesko.petshop.service.VeterinarioService;
 
 /**
  * Ponto de entrada do sistema de clínica veterinária "Paws PetShop".
  */
 public final class PawsPetShop {
 
+    private static final Logger LOG = Logger.getLogger(PawsPetShop.class.getName());
+
     /**
      * Inicia o nosso amigável "Paws PetShop" no console!
+     * <p>
+     * Os dados ficam no diretório indicado pela propriedade {@code petshop.dados}
+     * ({@code dados} por padrão) e são recuperados a cada inicialização. Com
+     * {@code -Dpetshop.armazenamento=mapeado}, animais e consultas são guardados em
+     * arquivos mapeados em memória, e o heap guarda só os índices das consultas e as
+     * instâncias lidas enquanto estão em uso; com
+     * {@code -Dpetshop.armazenamento=camadas}, só as entidades usadas recentemente
+     * ficam no heap, até {@code -Dpetshop.memoria=<MB>} por repositório (64 por
+     * padrão), e as demais são lidas do disco quando buscadas; os índices das
+     * consultas ficam no heap fora desse limite. Com
+     * {@code -Dpetshop.particoes=<n>}, cada repositório em memória é dividido em
+     * {@code n} partições, para que escritas concorrentes não disputem a mesma raiz. Com
+     * {@code -Dpetshop.api=<porta>}, o console dá lugar à API HTTP, que atende até
+     * o processo ser encerrado.
+     * <p>
+     * Com {@code -Dpetshop.replicacao=<porta>}, os repositórios em memória são
+     * replicados aos seguidores que se conectarem a essa porta. Um processo iniciado
+     * com {@code -Dpetshop.lider=<host>:<porta>} é um seguidor: não grava dados
+     * próprios, mantém cópias dos repositórios do líder e atende pela API as
+     * listagens, as buscas e os relatórios, com os índices dos serviços atualizados a
+     * cada alteração replicada; as escritas respondem 409.
+     * <p>
+     * Com {@code -Dpetshop.arquivo=<meses>}, as consultas com mais de {@code meses}
+     * meses encerrados são arquivadas em segmentos compactos, um por mês, no
+     * subdiretório {@code arquivo}: na inicialização e depois uma vez por dia. Os
+     * relatórios e as listagens por período continuam incluindo as consultas
+     * arquivadas.
+     * <p>
+     * Cada chamada aos serviços e repositórios é medida; as métricas ficam visíveis
+     * via JMX, sob o domínio {@code xq.yiesko.petshop}, e na API em {@code /metricas}.
+     *
+     * @throws IOException se os dados persistidos não puderem ser lidos
      */
-    static void main() {
+    static void main() throws IOException {
+        var dados = Path.of(System.getProperty("petshop.dados", "dados"));
+        var mapeado = "mapeado".equals(System.getProperty("petshop.armazenamento"));
+        var camadas = "camadas".equals(System.getProperty("petshop.armazenamento"));
+        var orcamento = Long.getLong("petshop.memoria", 64) * 1024 * 1024;
+        var portaApi = System.getProperty("petshop.api");
+        var particoes = Integer.getInteger("petshop.particoes", 1);
+        var portaReplicacao = System.getProperty("petshop.replicacao");
+        var lider = System.getProperty("petshop.lider");
+        var mesesAtivos = Integer.getInteger("petshop.arquivo");
+        if (lider != null && portaApi == null) throw new IllegalArgumentException("Um seguidor deve ser iniciado com -Dpetshop.api");
+        if (lider != null && mesesAtivos != null) throw new IllegalArgumentException("Um seguidor não arquiva consultas; o arquivo é do líder");
+        if (mesesAtivos != null && mesesAtivos < 0) throw new IllegalArgumentException("Meses ativos não podem ser negativos: " + mesesAtivos);
+        var recursos = new ArrayDeque<Closeable>();
+
         try (var scanner = new Scanner(System.in)) {
-            InMemoryRepository<Proprietario> proprietarioRepository = new InMemoryRepository<>();
-            InMemoryRepository<Veterinario> veterinarioRepository = new InMemoryRepository<>();
-            InMemoryRepository<Animal> animalRepository = new InMemoryRepository<>();
-            InMemoryRepository<Consulta> consultaRepository = new InMemoryRepository<>();
+            var seguidor = lider != null ? registrar(new ReplicationFollower(endereco(lider)), recursos) : null;
+            var proprietarioRepository = seguidor != null
+                ? seguidor.replicar("proprietarios", new InMemoryRepository<>(), Codecs.proprietario())
+                : emMemoria(dados, "proprietarios", particoes, Codecs.proprietario(), recursos);
+            var veterinarioRepository = seguidor != null
+                ? seguidor.replicar("veterinarios", new InMemoryRepository<>(), Codecs.veterinario())
+                : emMemoria(dados, "veterinarios", particoes, Codecs.veterinario(), recursos);
+
+            IntFunction<Proprietario> proprietarios = id -> proprietarioRepository.buscarPorId(id).orElse(null);
+            var animalRepository = seguidor != null
+                ? seguidor.replicar("animais", new InMemoryRepository<>(), Codecs.animal(proprietarios))
+                : mapeado
+                ? registrar(MappedRepository.animais(dados, proprietarios), recursos)
+                : camadas
+                ? emCamadas(dados, "animais", orcamento, Codecs.animal(proprietarios), recursos)
+                : emMemoria(dados, "animais", particoes, Codecs.animal(proprietarios), recursos);
+
+            IntFunction<Animal> animais = id -> animalRepository.buscarPorId(id).orElse(null);
+            IntFunction<Veterinario> veterinarios = id -> veterinarioRepository.buscarPorId(id).orElse(null);
+            var consultaRepository = seguidor != null
+                ? seguidor.replicar("consultas", new InMemoryRepository<>(), Codecs.consulta(animais, veterinarios))
+                : mapeado
+                ? registrar(MappedRepository.consultas(dados, animais, veterinarios), recursos)
+                : camadas
+                ? emCamadas(dados, "consultas", orcamento, Codecs.consulta(animais, veterinarios), recursos)
+                : emMemoria(dados, "consultas", particoes, Codecs.consulta(animais, veterinarios), recursos);
+
+            if (portaReplicacao != null) {
+                var replicacao = registrar(new ReplicationLeader()
+                    .replicar("proprietarios", replicavel(proprietarioRepository), Codecs.proprietario())
+                    .replicar("veterinarios", replicavel(veterinarioRepository), Codecs.veterinario())
+                    .replicar("animais", replicavel(animalRepository), Codecs.animal(proprietarios))
+                    .replicar("consultas", replicavel(consultaRepository), Codecs.consulta(animais, veterinarios))
+                    .iniciar(new InetSocketAddress(Integer.parseInt(portaReplicacao))), recursos);
+                System.out.printf("Replicação disponível na porta %d%n", replicacao.endereco().getPort());
+            }
+
+            var metricas = registrar(new Metricas(), recursos);
+            metricas.publicarJmx();
+            if (seguidor != null) medirReplicacao(metricas, seguidor);
+            if (animalRepository instanceof TieredRepository<?> animaisEmCamadas) medirCamadas(metricas, "animais", animaisEmCamadas);
+            if (consultaRepository instanceof TieredRepository<?> consultasEmCamadas) medirCamadas(metricas, "consultas", consultasEmCamadas);
+            var arquivo = mesesAtivos != null ? ConsultaArchive.abrir(dados.resolve("arquivo"), animais, veterinarios) : null;
+            var consultaService = new InstrumentedConsultaService(
+                new InstrumentedRepository<>("consultas", consultaRepository, metricas), arquivo, metricas);
+            if (arquivo != null) arquivarDiariamente(consultaService, arquivo, mesesAtivos, metricas, recursos);
+            var animalService = new InstrumentedAnimalService(
+                new InstrumentedRepository<>("animais", animalRepository, metricas), consultaService, metricas);
+            var proprietarioService = new InstrumentedProprietarioService(
+                new InstrumentedRepository<>("proprietarios", proprietarioRepository, metricas), animalService, metricas);
+            var veterinarioService = new InstrumentedVeterinarioService(
+                new InstrumentedRepository<>("veterinarios", veterinarioRepository, metricas), consultaService, metricas);
+            if (seguidor != null) {
+                seguidor.observar("proprietarios", proprietarioService::sincronizar);
+                seguidor.observar("veterinarios", veterinarioService::sincronizar);
+                seguidor.observar("animais", animalService::sincronizar);
+                seguidor.observar("consultas", consultaService::sincronizar);
+                seguidor.iniciar();
+            }
 
-            var proprietarioService = new ProprietarioService(proprietarioRepository);
-            var veterinarioService = new VeterinarioService(veterinarioRepository);
-            var animalService = new AnimalService(animalRepository);
-            var consultaService = new ConsultaService(consultaRepository);
+            if (portaApi != null) {
+                var api = registrar(ApiServer.iniciar(new InetSocketAddress(Integer.parseInt(portaApi)),
+                    proprietarioService, veterinarioService, animalService, consultaService, metricas), recursos);
+                System.out.printf("API disponível em http://localhost:%d/%n", api.endereco().getPort());
+                aguardarEncerramento();
+                return;
+            }
 
             var menuProprietario = new MenuProprietario(scanner, proprietarioService);
             var menuVeterinario = new MenuVeterinario(scanner, veterinarioService);
             var menuAnimal = new MenuAnimal(scanner, animalService, proprietarioService);
             var menuConsulta = new MenuConsulta(scanner, consultaService, animalService, veterinarioService);
+            var menuImportacao = new MenuImportacao(scanner,
+                new CsvImporter(proprietarioService, veterinarioService, animalService, consultaService));
 
             var executando = true;
 
@@ -48,6 +187,7 @@ public final class PawsPetShop {
                 System.out.println("2. Gerenciar Proprietários");
                 System.out.println("3. Gerenciar Veterinários");
                 System.out.println("4. Gerenciar Consultas");
+                System.out.println("5. Importar CSV");
                 System.out.println("0. Sair");
 
                 var opcao = lerInteiro(scanner);
@@ -57,6 +197,7 @@ public final class PawsPetShop {
                     case 2 -> menuProprietario.exibir();
                     case 3 -> menuVeterinario.exibir();
                     case 4 -> menuConsulta.exibir();
+                    case 5 -> menuImportacao.exibir();
                     case 0 -> {
                         executando = false;
                         System.out.println("Encerrando o sistema de clínica, até logo!");
@@ -64,7 +205,152 @@ public final class PawsPetShop {
                     default -> System.out.println("Opção inválida.");
                 }
             }
+        } finally {
+            fechar(recursos);
+        }
+    }
+
+    /**
+     * Bloqueia até o processo receber um sinal de encerramento. O gancho de
+     * encerramento espera esta thread terminar, para que os recursos sejam
+     * fechados normalmente antes de a JVM sair.
+     */
+    private static void aguardarEncerramento() {
+        var encerrar = new CountDownLatch(1);
+        var principal = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            encerrar.countDown();
+            try {
+                principal.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        while (true) {
+            try {
+                encerrar.await();
+                return;
+            } catch (InterruptedException e) {
+                // continua aguardando o sinal de encerramento
+            }
+        }
+    }
+
+    private static <T extends Identificavel> Repository<T> emMemoria(
+            Path dados,
+            String nome,
+            int particoes,
+            EntityCodec<T> codec,
+            Deque<Closeable> recursos
+    ) throws IOException {
+        RestorableRepository<T> repository = particoes > 1 ? new ShardedRepository<>(particoes) : new InMemoryRepository<>();
+        recursos.push(RepositoryJournal.abrir(dados, nome, repository, codec));
+        return repository;
+    }
+
+    private static <T extends Identificavel> Repository<T> emCamadas(
+            Path dados,
+            String nome,
+            long orcamento,
+            EntityCodec<T> codec,
+            Deque<Closeable> recursos
+    ) throws IOException {
+        var repository = registrar(new TieredRepository<>(dados.resolve("frio"), nome, codec, orcamento), recursos);
+        recursos.push(RepositoryJournal.abrir(dados, nome, repository, codec));
+        return repository;
+    }
+
+    /**
+     * Só os repositórios em memória sem partições publicam um feed único de
+     * alterações, que é o que o líder envia aos seguidores.
+     */
+    private static <T extends Identificavel> InMemoryRepository<T> replicavel(
+            Repository<T> repository
+    ) {
+        if (repository instanceof InMemoryRepository<T> emMemoria) return emMemoria;
+        throw new IllegalArgumentException("A replicação exige repositórios em memória, sem partições nem armazenamento em disco");
+    }
+
+    private static InetSocketAddress endereco(
+            String hostPorta
+    ) {
+        var separador = hostPorta.lastIndexOf(':');
+        if (separador < 0) throw new IllegalArgumentException("Endereço do líder deve ser <host>:<porta>: " + hostPorta);
+        return new InetSocketAddress(hostPorta.substring(0, separador), Integer.parseInt(hostPorta.substring(separador + 1)));
+    }
+
+    private static void medirCamadas(
+            Metricas metricas,
+            String nome,
+            TieredRepository<?> repository
+    ) {
+        metricas.medidor("camadas_bytes_memoria", nome, repository::bytesEmMemoria);
+        metricas.medidor("camadas_bytes_disco", nome, repository::bytesEmDisco);
+        metricas.medidor("camadas_faltas", nome, repository::faltas);
+    }
+
+    /**
+     * Arquiva agora e depois a cada 24 horas as consultas anteriores aos últimos
+     * {@code mesesAtivos} meses encerrados. Uma falha na inicialização interrompe o
+     * processo; nas execuções diárias, é registrada e a próxima tenta de novo.
+     */
+    private static void arquivarDiariamente(
+            ConsultaService consultaService,
+            ConsultaArchive arquivo,
+            int mesesAtivos,
+            Metricas metricas,
+            Deque<Closeable> recursos
+    ) {
+        consultaService.arquivar(YearMonth.now().minusMonths(mesesAtivos));
+
+        var agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "arquivamento-consultas");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleAtFixedRate(() -> {
+            try {
+                consultaService.arquivar(YearMonth.now().minusMonths(mesesAtivos));
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Falha ao arquivar consultas", e);
+            }
+        }, 1, 1, TimeUnit.DAYS);
+        recursos.push(agendador::shutdownNow);
+
+        metricas.medidor("arquivo_bytes", "consultas", arquivo::bytes);
+        metricas.medidor("arquivo_meses", "consultas", arquivo::meses);
+    }
+
+    private static void medirReplicacao(
+            Metricas metricas,
+            ReplicationFollower seguidor
+    ) {
+        for (var nome : List.of("proprietarios", "veterinarios", "animais", "consultas"))
+            metricas.medidor("replicacao_sequencia_aplicada", nome, () -> seguidor.aplicada(nome));
+    }
+
+    private static <R extends Closeable> R registrar(
+            R recurso,
+            Deque<Closeable> recursos
+    ) {
+        recursos.push(recurso);
+        return recurso;
+    }
+
+    private static void fechar(
+            Deque<Closeable> recursos
+    ) throws IOException {
+        IOException falha = null;
+        while (!recursos.isEmpty()) {
+            try {
+                recursos.pop().close();
+            } catch (IOException e) {
+                if (falha == null) falha = e;
+                else falha.addSuppressed(e);
+            }
         }
+        if (falha != null) throw falha;
     }
 
     private static int lerInteiro(
@@ -0,0 +1,102 @@
+package xq.yiesko.petshop.api;
+
+import java.util.List;
+import java.util.Optional;
+import xq.yiesko.petshop.json.JsonCodecs;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.service.AnimalService;
+import xq.yiesko.petshop.service.ProprietarioService;
+
+/**
+ * Endpoints de {@code /animais}.
+ * <p>
+ * Corpo de cadastro: {@code {"tipo": "cachorro"|"gato", "nome": "...", "idade": 3,
+ * "especie": "...", "proprietarioId": 1}}. Na atualização o tipo é ignorado, pois
+ * um animal não muda de espécie. {@code GET /animais?busca=<texto>} busca por
+ * prefixos do nome ou da espécie.
+ */
+final class AnimalRecurso extends Recurso<Animal> {
+
+    private final AnimalService service;
+    private final ProprietarioService proprietarioService;
+
+    AnimalRecurso(
+            AnimalService service,
+            ProprietarioService proprietarioService
+    ) {
+        super("/animais", JsonCodecs.animal(id -> proprietarioService.buscarPorId(id).orElse(null)));
+        this.service = service;
+        this.proprietarioService = proprietarioService;
+    }
+
+    @Override
+    Resposta listar(
+            Requisicao requisicao
+    ) {
+        var termo = requisicao.parametro("busca");
+        if (termo == null) return super.listar(requisicao);
+
+        var limite = Math.min(requisicao.parametroInteiro("limite", LIMITE_PADRAO), LIMITE_MAXIMO);
+        return Resposta.ok(lista(service.buscarAnimais(termo, limite)).fimObjeto());
+    }
+
+    @Override
+    List<Animal> pagina(
+            int aposId,
+            int limite
+    ) {
+        return service.listarAnimaisApos(aposId, limite);
+    }
+
+    @Override
+    Optional<Animal> localizar(
+            int id
+    ) {
+        return service.buscarPorId(id);
+    }
+
+    @Override
+    Animal criar(
+            Requisicao requisicao
+    ) {
+        var tipo = requisicao.texto("tipo");
+        var nome = requisicao.texto("nome");
+        var idade = requisicao.inteiro("idade");
+        var especie = requisicao.texto("especie");
+        var proprietario = proprietario(requisicao);
+
+        if ("cachorro".equals(tipo)) return service.cadastrarCachorro(nome, idade, especie, proprietario);
+        if ("gato".equals(tipo)) return service.cadastrarGato(nome, idade, especie, proprietario);
+        throw new IllegalArgumentException("Tipo deve ser cachorro ou gato");
+    }
+
+    @Override
+    boolean atualizar(
+            int id,
+            Requisicao requisicao
+    ) {
+        var nome = requisicao.texto("nome");
+        var idade = requisicao.inteiro("idade");
+        var especie = requisicao.texto("especie");
+        var proprietario = proprietario(requisicao);
+        return requisicao.possui(VERSAO)
+            ? service.atualizarAnimal(id, nome, idade, especie, proprietario, requisicao.inteiro(VERSAO))
+            : service.atualizarAnimal(id, nome, idade, especie, proprietario);
+    }
+
+    @Override
+    boolean remover(
+            int id,
+            boolean cascata
+    ) {
+        return cascata ? service.removerAnimalEmCascata(id) : service.removerAnimal(id);
+    }
+
+    private Proprietario proprietario(
+            Requisicao requisicao
+    ) {
+        return proprietarioService.buscarPorId(requisicao.inteiro("proprietarioId"))
+            .orElseThrow(() -> new IllegalArgumentException("Proprietário não encontrado"));
+    }
+}
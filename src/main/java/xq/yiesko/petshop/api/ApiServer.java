@@ -0,0 +1,105 @@
+package xq.yiesko.petshop.api;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import xq.yiesko.petshop.metricas.Metricas;
+import xq.yiesko.petshop.service.AnimalService;
+import xq.yiesko.petshop.service.ConsultaService;
+import xq.yiesko.petshop.service.ProprietarioService;
+import xq.yiesko.petshop.service.VeterinarioService;
+
+/**
+ * Servidor HTTP embutido que expõe os serviços como endpoints JSON.
+ * <p>
+ * Cada requisição é atendida em uma virtual thread própria: o tratamento é
+ * bloqueante e simples de ler, e milhares de clientes simultâneos custam apenas
+ * algumas centenas de bytes de pilha cada, em vez de uma thread de plataforma.
+ * Os serviços e repositórios já são seguros para acesso concorrente.
+ * <p>
+ * Coleções expostas: {@code /proprietarios}, {@code /veterinarios}, {@code /animais}
+ * e {@code /consultas}. As métricas dos serviços ficam em {@code /metricas}.
+ */
+public final class ApiServer implements Closeable {
+
+    private static final int FILA_CONEXOES = 4096;
+    private static final int PRAZO_ENCERRAMENTO_SEGUNDOS = 2;
+
+    /**
+     * Sem {@code TCP_NODELAY}, o corpo enviado logo após os cabeçalhos espera o ACK
+     * atrasado do cliente e cada resposta leva cerca de 40 ms. A propriedade é lida
+     * uma única vez pelo servidor do JDK, por isso é definida antes da criação.
+     */
+    private static final String SEM_ATRASO = "sun.net.httpserver.nodelay";
+
+    private final HttpServer servidor;
+    private final ExecutorService executor;
+
+    private ApiServer(
+            HttpServer servidor,
+            ExecutorService executor
+    ) {
+        this.servidor = servidor;
+        this.executor = executor;
+    }
+
+    /**
+     * Cria e inicia o servidor.
+     *
+     * @param endereco            endereço de escuta; a porta 0 escolhe uma porta livre
+     * @param proprietarioService serviço de proprietários
+     * @param veterinarioService  serviço de veterinários
+     * @param animalService       serviço de animais
+     * @param consultaService     serviço de consultas
+     * @param metricas            métricas expostas em {@code /metricas}
+     * @return servidor em execução
+     * @throws IOException se a porta não puder ser aberta
+     */
+    public static ApiServer iniciar(
+            InetSocketAddress endereco,
+            ProprietarioService proprietarioService,
+            VeterinarioService veterinarioService,
+            AnimalService animalService,
+            ConsultaService consultaService,
+            Metricas metricas
+    ) throws IOException {
+        if (System.getProperty(SEM_ATRASO) == null) System.setProperty(SEM_ATRASO, "true");
+
+        var servidor = HttpServer.create(endereco, FILA_CONEXOES);
+        var recursos = new Recurso<?>[] {
+            new ProprietarioRecurso(proprietarioService),
+            new VeterinarioRecurso(veterinarioService),
+            new AnimalRecurso(animalService, proprietarioService),
+            new ConsultaRecurso(consultaService, animalService, veterinarioService)
+        };
+        for (var recurso : recursos) servidor.createContext(recurso.caminho(), recurso);
+        servidor.createContext(MetricasRecurso.CAMINHO, new MetricasRecurso(metricas));
+
+        var executor = Executors.newVirtualThreadPerTaskExecutor();
+        servidor.setExecutor(executor);
+        servidor.start();
+        return new ApiServer(servidor, executor);
+    }
+
+    /**
+     * Obtém o endereço em que o servidor está escutando.
+     *
+     * @return endereço local
+     */
+    public InetSocketAddress endereco() {
+        return servidor.getAddress();
+    }
+
+    /**
+     * Para de aceitar conexões, aguarda brevemente as requisições em andamento e
+     * encerra as threads.
+     */
+    @Override
+    public void close() {
+        servidor.stop(PRAZO_ENCERRAMENTO_SEGUNDOS);
+        executor.close();
+    }
+}
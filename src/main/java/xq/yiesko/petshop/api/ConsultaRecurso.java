@@ -0,0 +1,195 @@
+package xq.yiesko.petshop.api;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import xq.yiesko.petshop.json.JsonCodecs;
+import xq.yiesko.petshop.json.JsonWriter;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.service.AnimalService;
+import xq.yiesko.petshop.service.ConsultaService;
+import xq.yiesko.petshop.service.FiltroConsultas;
+import xq.yiesko.petshop.service.VeterinarioService;
+
+/**
+ * Endpoints de {@code /consultas}.
+ * <p>
+ * Corpo de agendamento e atualização: {@code {"data": "2025-06-01", "horario": "09:30",
+ * "animalId": 1, "veterinarioId": 2, "observacoes": "..."}}. A listagem aceita
+ * {@code ?data=} para a agenda de um dia ou {@code ?inicio=&fim=} para um período, e
+ * {@code GET /consultas/horarios-livres?veterinarioId=&aPartirDe=&quantidade=} sugere
+ * horários livres.
+ * <p>
+ * {@code GET /consultas/relatorio?inicio=&fim=&por=} conta as consultas do período
+ * por {@code dia}, {@code veterinario}, {@code especialidade}, {@code especie} ou
+ * {@code animal}; com {@code veterinarioId}, {@code animalId} ou {@code especie} a
+ * contagem se restringe às consultas que atendem a todos os filtros, agrupada por
+ * {@code veterinario}, {@code animal} ou {@code especie}, ou em um único total por
+ * {@code total}. {@code GET /consultas/ocupacao?veterinarioId=&inicio=&fim=} informa
+ * quantos horários do veterinário estão ocupados no período.
+ */
+final class ConsultaRecurso extends Recurso<Consulta> {
+
+    private static final String HORARIOS_LIVRES = "horarios-livres";
+    private static final String RELATORIO = "relatorio";
+    private static final String OCUPACAO = "ocupacao";
+    private static final int SUGESTOES_PADRAO = 5;
+    private static final JsonWriter.Nome HORARIOS = JsonWriter.nome("horarios");
+    private static final JsonWriter.Nome GRUPOS = JsonWriter.nome("grupos");
+    private static final JsonWriter.Nome CHAVE = JsonWriter.nome("chave");
+    private static final JsonWriter.Nome CONSULTAS = JsonWriter.nome("consultas");
+    private static final JsonWriter.Nome OCUPADOS = JsonWriter.nome("ocupados");
+
+    private final ConsultaService service;
+    private final AnimalService animalService;
+    private final VeterinarioService veterinarioService;
+
+    ConsultaRecurso(
+            ConsultaService service,
+            AnimalService animalService,
+            VeterinarioService veterinarioService
+    ) {
+        super("/consultas", JsonCodecs.consulta(
+            id -> animalService.buscarPorId(id).orElse(null),
+            id -> veterinarioService.buscarPorId(id).orElse(null)));
+        this.service = service;
+        this.animalService = animalService;
+        this.veterinarioService = veterinarioService;
+    }
+
+    @Override
+    Resposta responder(
+            Requisicao requisicao
+    ) {
+        var segmento = requisicao.segmento();
+        if (!HORARIOS_LIVRES.equals(segmento) && !RELATORIO.equals(segmento) && !OCUPACAO.equals(segmento))
+            return super.responder(requisicao);
+        if (!"GET".equals(requisicao.metodo())) return Resposta.metodoNaoPermitido();
+        if (RELATORIO.equals(segmento)) return relatorio(requisicao);
+        if (OCUPACAO.equals(segmento)) return ocupacao(requisicao);
+
+        var veterinario = veterinario(requisicao.parametroInteiro("veterinarioId", 0));
+        var aPartirDe = requisicao.parametroDataHora("aPartirDe", LocalDateTime.now());
+        var quantidade = Math.min(requisicao.parametroInteiro("quantidade", SUGESTOES_PADRAO), LIMITE_MAXIMO);
+
+        var json = new JsonWriter().inicioObjeto().campo(HORARIOS).inicioLista();
+        for (var horario : service.proximosHorariosLivres(veterinario, aPartirDe, quantidade)) json.valor(horario.toString());
+        return Resposta.ok(json.fimLista().fimObjeto());
+    }
+
+    private Resposta relatorio(
+            Requisicao requisicao
+    ) {
+        var inicio = requisicao.parametroData("inicio");
+        var fim = requisicao.parametroData("fim");
+        var por = requisicao.parametro("por");
+        var filtro = FiltroConsultas.periodo(inicio, fim)
+            .doVeterinario(requisicao.parametroInteiro("veterinarioId", 0))
+            .doAnimal(requisicao.parametroInteiro("animalId", 0))
+            .daEspecie(requisicao.parametro("especie"));
+        var filtrado = filtro.veterinarioId() != 0 || filtro.animalId() != 0 || filtro.especie() != null;
+        if (filtrado && ("dia".equals(por) || "especialidade".equals(por)))
+            throw new IllegalArgumentException("Relatório por " + por + " não aceita filtros");
+
+        Map<?, Integer> contagens = switch (por == null ? (filtrado ? "total" : "dia") : por) {
+            case "dia" -> service.contarPorDia(inicio, fim);
+            case "especialidade" -> service.contarPorEspecialidade(inicio, fim);
+            case "veterinario" -> filtrado ? service.contarPorVeterinario(filtro) : service.contarPorVeterinario(inicio, fim);
+            case "especie" -> filtrado ? service.contarPorEspecie(filtro) : service.contarPorEspecie(inicio, fim);
+            case "animal" -> service.contarPorAnimal(filtro);
+            case "total" -> Map.of("total", service.contar(filtro));
+            default -> throw new IllegalArgumentException("Parâmetro por inválido");
+        };
+
+        var json = new JsonWriter().inicioObjeto().campo(GRUPOS).inicioLista();
+        contagens.forEach((chave, quantidade) -> json.inicioObjeto()
+            .campo(CHAVE).valor(chave.toString())
+            .campo(CONSULTAS).valor(quantidade)
+            .fimObjeto());
+        return Resposta.ok(json.fimLista().fimObjeto());
+    }
+
+    private Resposta ocupacao(
+            Requisicao requisicao
+    ) {
+        var ocupacao = service.ocupacao(veterinario(requisicao.parametroInteiro("veterinarioId", 0)),
+            requisicao.parametroData("inicio"), requisicao.parametroData("fim"));
+        return Resposta.ok(new JsonWriter().inicioObjeto()
+            .campo(OCUPADOS).valor(ocupacao.ocupados())
+            .campo(HORARIOS).valor(ocupacao.horarios())
+            .fimObjeto());
+    }
+
+    @Override
+    Resposta listar(
+            Requisicao requisicao
+    ) {
+        if (requisicao.parametro("data") != null)
+            return Resposta.ok(lista(service.listarPorData(requisicao.parametroData("data"))).fimObjeto());
+        if (requisicao.parametro("inicio") != null || requisicao.parametro("fim") != null)
+            return Resposta.ok(lista(service.listarPorPeriodo(requisicao.parametroData("inicio"), requisicao.parametroData("fim"))).fimObjeto());
+        return super.listar(requisicao);
+    }
+
+    @Override
+    List<Consulta> pagina(
+            int aposId,
+            int limite
+    ) {
+        return service.listarApos(aposId, limite);
+    }
+
+    @Override
+    Optional<Consulta> localizar(
+            int id
+    ) {
+        return service.buscarPorId(id);
+    }
+
+    @Override
+    Consulta criar(
+            Requisicao requisicao
+    ) {
+        return service.agendar(requisicao.data("data"), requisicao.horario("horario"),
+            animal(requisicao.inteiro("animalId")), veterinario(requisicao.inteiro("veterinarioId")),
+            requisicao.texto("observacoes"));
+    }
+
+    @Override
+    boolean atualizar(
+            int id,
+            Requisicao requisicao
+    ) {
+        var data = requisicao.data("data");
+        var horario = requisicao.horario("horario");
+        var animal = animal(requisicao.inteiro("animalId"));
+        var veterinario = veterinario(requisicao.inteiro("veterinarioId"));
+        var observacoes = requisicao.texto("observacoes");
+        return requisicao.possui(VERSAO)
+            ? service.atualizar(id, data, horario, animal, veterinario, observacoes, requisicao.inteiro(VERSAO))
+            : service.atualizar(id, data, horario, animal, veterinario, observacoes);
+    }
+
+    @Override
+    boolean remover(
+            int id,
+            boolean cascata
+    ) {
+        return service.cancelar(id);
+    }
+
+    private Animal animal(
+            int id
+    ) {
+        return animalService.buscarPorId(id).orElseThrow(() -> new IllegalArgumentException("Animal não encontrado"));
+    }
+
+    private Veterinario veterinario(
+            int id
+    ) {
+        return veterinarioService.buscarPorId(id).orElseThrow(() -> new IllegalArgumentException("Veterinário não encontrado"));
+    }
+}
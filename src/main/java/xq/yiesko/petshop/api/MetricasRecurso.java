@@ -0,0 +1,47 @@
+package xq.yiesko.petshop.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import xq.yiesko.petshop.metricas.Metricas;
+
+/**
+ * Exposição das métricas em {@code GET /metricas}, no formato de texto lido pelo
+ * Prometheus e legível com um simples {@code curl}.
+ */
+final class MetricasRecurso implements HttpHandler {
+
+    static final String CAMINHO = "/metricas";
+
+    private static final String TIPO = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Metricas metricas;
+
+    MetricasRecurso(
+            Metricas metricas
+    ) {
+        this.metricas = metricas;
+    }
+
+    @Override
+    public void handle(
+            HttpExchange troca
+    ) throws IOException {
+        try {
+            if (!"GET".equals(troca.getRequestMethod()) || !CAMINHO.equals(troca.getRequestURI().getPath())) {
+                troca.sendResponseHeaders("GET".equals(troca.getRequestMethod()) ? 404 : 405, -1);
+                return;
+            }
+
+            var corpo = metricas.exportar().getBytes(StandardCharsets.UTF_8);
+            troca.getResponseHeaders().set("Content-Type", TIPO);
+            troca.sendResponseHeaders(200, corpo.length);
+            try (var saida = troca.getResponseBody()) {
+                saida.write(corpo);
+            }
+        } finally {
+            troca.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package xq.yiesko.petshop.api;
+
+import java.util.List;
+import java.util.Optional;
+import xq.yiesko.petshop.json.JsonCodecs;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.service.ProprietarioService;
+
+/**
+ * Endpoints de {@code /proprietarios}.
+ * <p>
+ * Corpo de cadastro e atualização: {@code {"nome": "...", "telefone": "..."}}.
+ * {@code GET /proprietarios?busca=<texto>} busca por prefixos do nome ou do telefone.
+ */
+final class ProprietarioRecurso extends Recurso<Proprietario> {
+
+    private final ProprietarioService service;
+
+    ProprietarioRecurso(
+            ProprietarioService service
+    ) {
+        super("/proprietarios", JsonCodecs.proprietario());
+        this.service = service;
+    }
+
+    @Override
+    Resposta listar(
+            Requisicao requisicao
+    ) {
+        var termo = requisicao.parametro("busca");
+        if (termo == null) return super.listar(requisicao);
+
+        var limite = Math.min(requisicao.parametroInteiro("limite", LIMITE_PADRAO), LIMITE_MAXIMO);
+        return Resposta.ok(lista(service.buscar(termo, limite)).fimObjeto());
+    }
+
+    @Override
+    List<Proprietario> pagina(
+            int aposId,
+            int limite
+    ) {
+        return service.listarApos(aposId, limite);
+    }
+
+    @Override
+    Optional<Proprietario> localizar(
+            int id
+    ) {
+        return service.buscarPorId(id);
+    }
+
+    @Override
+    Proprietario criar(
+            Requisicao requisicao
+    ) {
+        return service.cadastrar(requisicao.texto("nome"), requisicao.texto("telefone"));
+    }
+
+    @Override
+    boolean atualizar(
+            int id,
+            Requisicao requisicao
+    ) {
+        var nome = requisicao.texto("nome");
+        var telefone = requisicao.texto("telefone");
+        return requisicao.possui(VERSAO)
+            ? service.atualizar(id, nome, telefone, requisicao.inteiro(VERSAO))
+            : service.atualizar(id, nome, telefone);
+    }
+
+    @Override
+    boolean remover(
+            int id,
+            boolean cascata
+    ) {
+        return cascata ? service.removerEmCascata(id) : service.remover(id);
+    }
+}
@@ -0,0 +1,182 @@
+package xq.yiesko.petshop.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import xq.yiesko.petshop.json.JsonCodec;
+import xq.yiesko.petshop.json.JsonWriter;
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Coleção REST sobre um serviço: {@code GET /colecao} lista uma página,
+ * {@code GET}, {@code PUT} e {@code DELETE /colecao/{id}} operam sobre uma entidade
+ * e {@code POST /colecao} cadastra. Entidades ainda referenciadas não são removidas,
+ * a menos que o {@code DELETE} traga {@code ?cascata=true}.
+ * <p>
+ * Um {@code PUT} com o campo {@code versao}, devolvido em cada entidade, só é
+ * aplicado se a entidade ainda estiver nessa versão; caso contrário a resposta é
+ * 409. Sem o campo, a alteração é aplicada sobre o estado mais recente.
+ * <p>
+ * A listagem é paginada pelo identificador: {@code ?apos=<id>&limite=<n>} devolve
+ * os itens seguintes e o campo {@code proximo} indica de onde continuar. As
+ * entidades são escritas pelos codecs de {@link xq.yiesko.petshop.json.JsonCodecs}.
+ *
+ * @param <T> tipo da entidade exposta
+ */
+abstract class Recurso<T extends Identificavel> implements HttpHandler {
+
+    private static final Logger LOG = Logger.getLogger(Recurso.class.getName());
+
+    static final int LIMITE_PADRAO = 50;
+    static final int LIMITE_MAXIMO = 1000;
+    static final String VERSAO = "versao";
+
+    private static final JsonWriter.Nome ITENS = JsonWriter.nome("itens");
+    private static final JsonWriter.Nome PROXIMO = JsonWriter.nome("proximo");
+
+    private final String caminho;
+    private final JsonCodec<T> codec;
+
+    Recurso(
+            String caminho,
+            JsonCodec<T> codec
+    ) {
+        this.caminho = caminho;
+        this.codec = codec;
+    }
+
+    String caminho() {
+        return caminho;
+    }
+
+    @Override
+    public final void handle(
+            HttpExchange troca
+    ) throws IOException {
+        try {
+            Resposta resposta;
+            try {
+                resposta = responder(new Requisicao(troca, caminho));
+            } catch (Requisicao.CorpoExcedido e) {
+                resposta = Resposta.erro(413, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                resposta = Resposta.erro(400, e.getMessage());
+            } catch (IllegalStateException e) {
+                resposta = Resposta.erro(409, e.getMessage());
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Falha ao atender " + troca.getRequestMethod() + " " + troca.getRequestURI(), e);
+                resposta = Resposta.erro(500, "Erro interno");
+            }
+            enviar(troca, resposta);
+        } finally {
+            troca.close();
+        }
+    }
+
+    /**
+     * Despacha a requisição conforme o método e o caminho.
+     *
+     * @param requisicao requisição recebida
+     * @return resposta a enviar
+     */
+    Resposta responder(
+            Requisicao requisicao
+    ) {
+        var colecao = requisicao.segmento() == null;
+        return switch (requisicao.metodo()) {
+            case "GET" -> colecao ? listar(requisicao) : buscar(requisicao.id());
+            case "POST" -> colecao ? Resposta.criado(entidade(criar(requisicao))) : Resposta.metodoNaoPermitido();
+            case "PUT" -> colecao ? Resposta.metodoNaoPermitido() : atualizar(requisicao.id(), requisicao) ? buscar(requisicao.id()) : Resposta.naoEncontrado();
+            case "DELETE" -> colecao ? Resposta.metodoNaoPermitido() : remover(requisicao.id(), "true".equals(requisicao.parametro("cascata"))) ? Resposta.semConteudo() : Resposta.naoEncontrado();
+            default -> Resposta.metodoNaoPermitido();
+        };
+    }
+
+    Resposta listar(
+            Requisicao requisicao
+    ) {
+        var aposId = requisicao.parametroInteiro("apos", 0);
+        var limite = Math.min(requisicao.parametroInteiro("limite", LIMITE_PADRAO), LIMITE_MAXIMO);
+        if (limite <= 0) throw new IllegalArgumentException("Limite deve ser positivo");
+
+        var pagina = pagina(aposId, limite);
+        var json = lista(pagina).campo(PROXIMO);
+        if (pagina.size() < limite) json.nulo();
+        else json.valor(pagina.get(pagina.size() - 1).getId());
+        return Resposta.ok(json.fimObjeto());
+    }
+
+    /**
+     * Inicia um objeto {@code {"itens": [...]}} com as entidades informadas, ainda aberto
+     * para que campos adicionais possam ser acrescentados.
+     *
+     * @param entidades entidades listadas
+     * @return escritor posicionado após a lista
+     */
+    JsonWriter lista(
+            List<T> entidades
+    ) {
+        var json = new JsonWriter().inicioObjeto().campo(ITENS);
+        codec.escreverLista(entidades, json);
+        return json;
+    }
+
+    private Resposta buscar(
+            int id
+    ) {
+        return localizar(id)
+            .map(entidade -> Resposta.ok(entidade(entidade)))
+            .orElseGet(Resposta::naoEncontrado);
+    }
+
+    private JsonWriter entidade(
+            T entidade
+    ) {
+        var json = new JsonWriter();
+        codec.escrever(entidade, json);
+        return json;
+    }
+
+    abstract List<T> pagina(
+            int aposId,
+            int limite
+    );
+
+    abstract Optional<T> localizar(
+            int id
+    );
+
+    abstract T criar(
+            Requisicao requisicao
+    );
+
+    abstract boolean atualizar(
+            int id,
+            Requisicao requisicao
+    );
+
+    abstract boolean remover(
+            int id,
+            boolean cascata
+    );
+
+    private static void enviar(
+            HttpExchange troca,
+            Resposta resposta
+    ) throws IOException {
+        if (resposta.corpo() == null) {
+            troca.sendResponseHeaders(resposta.status(), -1);
+            return;
+        }
+
+        troca.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        troca.sendResponseHeaders(resposta.status(), resposta.corpo().tamanho());
+        try (var saida = troca.getResponseBody()) {
+            resposta.corpo().escreverEm(saida);
+        }
+    }
+}
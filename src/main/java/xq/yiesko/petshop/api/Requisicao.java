@@ -0,0 +1,218 @@
+package xq.yiesko.petshop.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.Serial;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import xq.yiesko.petshop.json.JsonReader;
+
+/**
+ * Requisição recebida por um {@link Recurso}, com os acessos tipados ao caminho,
+ * aos parâmetros de consulta e ao corpo.
+ * <p>
+ * Valores ausentes ou mal formados resultam em {@link IllegalArgumentException},
+ * a mesma exceção usada pelas validações dos serviços, e viram respostas 400. Um
+ * corpo maior que {@value #LIMITE_CORPO} bytes não é lido além do limite e resulta
+ * em {@link CorpoExcedido}, que vira resposta 413.
+ */
+final class Requisicao {
+
+    /**
+     * Tamanho máximo do corpo, em bytes.
+     */
+    static final int LIMITE_CORPO = 1024 * 1024;
+
+    private final HttpExchange troca;
+    private final String segmento;
+    private final Map<String, String> parametros;
+    private Map<String, Object> corpo;
+
+    Requisicao(
+            HttpExchange troca,
+            String base
+    ) {
+        this.troca = troca;
+
+        var caminho = troca.getRequestURI().getPath();
+        var resto = caminho.length() > base.length() ? caminho.substring(base.length()) : "";
+        if (resto.startsWith("/")) resto = resto.substring(1);
+        if (resto.endsWith("/")) resto = resto.substring(0, resto.length() - 1);
+        this.segmento = resto.isEmpty() ? null : resto;
+        this.parametros = parametros(troca.getRequestURI().getRawQuery());
+    }
+
+    String metodo() {
+        return troca.getRequestMethod();
+    }
+
+    /**
+     * Obtém o trecho do caminho após a coleção, como o identificador em {@code /animais/7}.
+     *
+     * @return segmento ou {@code null} quando a requisição é para a coleção
+     */
+    String segmento() {
+        return segmento;
+    }
+
+    int id() {
+        return inteiro(segmento, "Identificador inválido");
+    }
+
+    String parametro(
+            String nome
+    ) {
+        return parametros.get(nome);
+    }
+
+    int parametroInteiro(
+            String nome,
+            int padrao
+    ) {
+        var valor = parametros.get(nome);
+        return valor == null ? padrao : inteiro(valor, "Parâmetro " + nome + " inválido");
+    }
+
+    LocalDate parametroData(
+            String nome
+    ) {
+        var valor = parametros.get(nome);
+        if (valor == null) throw new IllegalArgumentException("Parâmetro " + nome + " é obrigatório");
+        return data(valor, "Parâmetro " + nome + " inválido");
+    }
+
+    LocalDateTime parametroDataHora(
+            String nome,
+            LocalDateTime padrao
+    ) {
+        var valor = parametros.get(nome);
+        if (valor == null) return padrao;
+        try {
+            return LocalDateTime.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Parâmetro " + nome + " inválido");
+        }
+    }
+
+    boolean possui(
+            String campo
+    ) {
+        return corpo().containsKey(campo);
+    }
+
+    String texto(
+            String campo
+    ) {
+        var valor = corpo().get(campo);
+        if (valor == null || valor instanceof String) return (String) valor;
+        throw new IllegalArgumentException("Campo " + campo + " deve ser texto");
+    }
+
+    int inteiro(
+            String campo
+    ) {
+        if (corpo().get(campo) instanceof Long valor && valor == valor.intValue()) return valor.intValue();
+        throw new IllegalArgumentException("Campo " + campo + " deve ser um número inteiro");
+    }
+
+    LocalDate data(
+            String campo
+    ) {
+        var valor = texto(campo);
+        return valor == null ? null : data(valor, "Campo " + campo + " inválido");
+    }
+
+    LocalTime horario(
+            String campo
+    ) {
+        var valor = texto(campo);
+        if (valor == null) return null;
+        try {
+            return LocalTime.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Campo " + campo + " inválido");
+        }
+    }
+
+    private Map<String, Object> corpo() {
+        if (corpo == null) {
+            try (var entrada = troca.getRequestBody()) {
+                var bytes = entrada.readNBytes(LIMITE_CORPO + 1);
+                if (bytes.length > LIMITE_CORPO) throw new CorpoExcedido();
+                corpo = lerObjeto(new JsonReader(bytes));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Corpo da requisição ilegível");
+            }
+        }
+        return corpo;
+    }
+
+    /**
+     * Lê um objeto plano, cujos campos são textos, números inteiros, booleanos ou {@code null}.
+     */
+    private static Map<String, Object> lerObjeto(
+            JsonReader json
+    ) {
+        var campos = new HashMap<String, Object>();
+        json.inicioObjeto();
+        while (json.proximoCampo()) campos.put(json.nomeDoCampo(), json.escalar());
+        if (!json.terminou()) throw new IllegalArgumentException("Conteúdo após o fim do objeto JSON");
+        return campos;
+    }
+
+    private static Map<String, String> parametros(
+            String consulta
+    ) {
+        var parametros = new HashMap<String, String>();
+        if (consulta == null || consulta.isEmpty()) return parametros;
+
+        for (var par : consulta.split("&")) {
+            var igual = par.indexOf('=');
+            var nome = igual < 0 ? par : par.substring(0, igual);
+            var valor = igual < 0 ? "" : par.substring(igual + 1);
+            parametros.put(URLDecoder.decode(nome, StandardCharsets.UTF_8), URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+        return parametros;
+    }
+
+    private static int inteiro(
+            String valor,
+            String mensagem
+    ) {
+        try {
+            return Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(mensagem);
+        }
+    }
+
+    private static LocalDate data(
+            String valor,
+            String mensagem
+    ) {
+        try {
+            return LocalDate.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(mensagem);
+        }
+    }
+
+    /**
+     * Corpo da requisição maior que {@value #LIMITE_CORPO} bytes.
+     */
+    static final class CorpoExcedido extends IllegalArgumentException {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        CorpoExcedido() {
+            super("Corpo da requisição excede " + LIMITE_CORPO + " bytes");
+        }
+    }
+}
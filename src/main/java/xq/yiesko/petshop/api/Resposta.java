@@ -0,0 +1,48 @@
+package xq.yiesko.petshop.api;
+
+import xq.yiesko.petshop.json.JsonWriter;
+
+/**
+ * Resposta produzida por um {@link Recurso}.
+ *
+ * @param status código HTTP
+ * @param corpo  documento JSON já codificado, ou {@code null} quando não há corpo
+ */
+record Resposta(
+        int status,
+        JsonWriter corpo
+) {
+
+    private static final JsonWriter.Nome ERRO = JsonWriter.nome("erro");
+
+    static Resposta ok(
+            JsonWriter json
+    ) {
+        return new Resposta(200, json);
+    }
+
+    static Resposta criado(
+            JsonWriter json
+    ) {
+        return new Resposta(201, json);
+    }
+
+    static Resposta semConteudo() {
+        return new Resposta(204, null);
+    }
+
+    static Resposta naoEncontrado() {
+        return erro(404, "Recurso não encontrado");
+    }
+
+    static Resposta metodoNaoPermitido() {
+        return erro(405, "Método não permitido");
+    }
+
+    static Resposta erro(
+            int status,
+            String mensagem
+    ) {
+        return new Resposta(status, new JsonWriter().inicioObjeto().campo(ERRO).valor(mensagem).fimObjeto());
+    }
+}
@@ -0,0 +1,80 @@
+package xq.yiesko.petshop.api;
+
+import java.util.List;
+import java.util.Optional;
+import xq.yiesko.petshop.json.JsonCodecs;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.service.VeterinarioService;
+
+/**
+ * Endpoints de {@code /veterinarios}.
+ * <p>
+ * Corpo de cadastro e atualização:
+ * {@code {"nome": "...", "telefone": "...", "especialidade": "..."}}.
+ * {@code GET /veterinarios?busca=<texto>} busca por prefixos do nome ou da especialidade.
+ */
+final class VeterinarioRecurso extends Recurso<Veterinario> {
+
+    private final VeterinarioService service;
+
+    VeterinarioRecurso(
+            VeterinarioService service
+    ) {
+        super("/veterinarios", JsonCodecs.veterinario());
+        this.service = service;
+    }
+
+    @Override
+    Resposta listar(
+            Requisicao requisicao
+    ) {
+        var termo = requisicao.parametro("busca");
+        if (termo == null) return super.listar(requisicao);
+
+        var limite = Math.min(requisicao.parametroInteiro("limite", LIMITE_PADRAO), LIMITE_MAXIMO);
+        return Resposta.ok(lista(service.buscar(termo, limite)).fimObjeto());
+    }
+
+    @Override
+    List<Veterinario> pagina(
+            int aposId,
+            int limite
+    ) {
+        return service.listarApos(aposId, limite);
+    }
+
+    @Override
+    Optional<Veterinario> localizar(
+            int id
+    ) {
+        return service.buscarPorId(id);
+    }
+
+    @Override
+    Veterinario criar(
+            Requisicao requisicao
+    ) {
+        return service.cadastrar(requisicao.texto("nome"), requisicao.texto("telefone"), requisicao.texto("especialidade"));
+    }
+
+    @Override
+    boolean atualizar(
+            int id,
+            Requisicao requisicao
+    ) {
+        var nome = requisicao.texto("nome");
+        var telefone = requisicao.texto("telefone");
+        var especialidade = requisicao.texto("especialidade");
+        return requisicao.possui(VERSAO)
+            ? service.atualizar(id, nome, telefone, especialidade, requisicao.inteiro(VERSAO))
+            : service.atualizar(id, nome, telefone, especialidade);
+    }
+
+    @Override
+    boolean remover(
+            int id,
+            boolean cascata
+    ) {
+        return cascata ? service.removerEmCascata(id) : service.remover(id);
+    }
+}
@@ -1,7 +1,7 @@
 package xq.yiesko.petshop.cli;
 
-import java.util.List;
 import java.util.Scanner;
+import xq.yiesko.petshop.model.Animal;
 import xq.yiesko.petshop.model.Proprietario;
 import xq.yiesko.petshop.service.AnimalService;
 import xq.yiesko.petshop.service.ProprietarioService;
@@ -11,6 +11,8 @@ import xq.yiesko.petshop.service.ProprietarioService;
  */
 public class MenuAnimal {
 
+    private static final int TAMANHO_PAGINA = 50;
+
     private final Scanner scanner;
     private final AnimalService animalService;
     private final ProprietarioService proprietarioService;
@@ -44,6 +46,8 @@ public class MenuAnimal {
             System.out.println("2. Listar");
             System.out.println("3. Atualizar");
             System.out.println("4. Remover");
+            System.out.println("5. Buscar");
+            System.out.println("6. Listar por proprietário");
             System.out.println("0. Voltar");
 
             var opcao = lerInteiro("Escolha uma opção: ");
@@ -52,6 +56,8 @@ public class MenuAnimal {
                 case 2 -> listar();
                 case 3 -> atualizar();
                 case 4 -> remover();
+                case 5 -> buscar();
+                case 6 -> listarPorProprietario();
                 case 0 -> continuar = false;
                 default -> System.out.println("Opção inválida.");
             }
@@ -60,9 +66,8 @@ public class MenuAnimal {
 
     private void cadastrar() {
         System.out.println("\nCadastro de Animal");
-        var proprietarios = proprietarioService.listar();
 
-        if (proprietarios.isEmpty()) {
+        if (proprietarioService.quantidade() == 0) {
             System.out.println("Cadastre um proprietário antes de registrar animais.");
             return;
         }
@@ -71,7 +76,7 @@ public class MenuAnimal {
         var nome = lerTextoObrigatorio("Nome: ");
         var idade = lerInteiro("Idade (anos): ");
         var especie = lerTextoObrigatorio("Espécie/Raça: ");
-        var proprietario = selecionarProprietario(proprietarios);
+        var proprietario = selecionarProprietario();
 
         if (proprietario == null) return;
 
@@ -92,9 +97,8 @@ public class MenuAnimal {
 
     private void listar() {
         System.out.println("\nLista de Animais");
-        var animais = animalService.listarAnimais();
 
-        if (animais.isEmpty()) {
+        if (animalService.quantidadeAnimais() == 0) {
             System.out.println("Nenhum animal cadastrado.");
             return;
         }
@@ -102,6 +106,36 @@ public class MenuAnimal {
         System.out.printf("%-4s %-12s %-15s %-6s %-18s %-20s%n",
             "ID", "Tipo", "Nome", "Idade", "Espécie", "Proprietário");
 
+        var ultimoId = 0;
+        while (true) {
+            var animais = animalService.listarAnimaisApos(ultimoId, TAMANHO_PAGINA);
+            for (var animal : animais) {
+                System.out.printf("%-4d %-12s %-15s %-6d %-18s %-20s%n",
+                    animal.getId(),
+                    animal.getClass().getSimpleName(),
+                    animal.getNome(),
+                    animal.getIdade(),
+                    animal.getEspecie(),
+                    nomeProprietario(animal));
+            }
+
+            if (animais.size() < TAMANHO_PAGINA || !continuarListagem()) return;
+            ultimoId = animais.get(animais.size() - 1).getId();
+        }
+    }
+
+    private void buscar() {
+        System.out.println("\nBusca de Animais");
+        var termo = lerTextoObrigatorio("Nome ou espécie: ");
+
+        var animais = animalService.buscarAnimais(termo, TAMANHO_PAGINA);
+        if (animais.isEmpty()) {
+            System.out.println("Nenhum animal encontrado.");
+            return;
+        }
+
+        System.out.printf("%-4s %-12s %-15s %-6s %-18s %-20s%n",
+            "ID", "Tipo", "Nome", "Idade", "Espécie", "Proprietário");
         for (var animal : animais) {
             System.out.printf("%-4d %-12s %-15s %-6d %-18s %-20s%n",
                 animal.getId(),
@@ -109,7 +143,43 @@ public class MenuAnimal {
                 animal.getNome(),
                 animal.getIdade(),
                 animal.getEspecie(),
-                animal.getProprietario() != null ? animal.getProprietario().getNome() : "-");
+                nomeProprietario(animal));
+        }
+    }
+
+    /**
+     * Obtém o nome atual do proprietário: a referência guardada no animal é a versão
+     * do proprietário no momento do cadastro, e um nome alterado depois só está na
+     * versão publicada mais recente.
+     */
+    private String nomeProprietario(
+            Animal animal
+    ) {
+        if (animal.getProprietario() == null) return "-";
+        return proprietarioService.buscarPorId(animal.getProprietario().getId())
+            .map(Proprietario::getNome)
+            .orElse("-");
+    }
+
+    private void listarPorProprietario() {
+        System.out.println("\nAnimais por Proprietário");
+        var proprietario = selecionarProprietario();
+        if (proprietario == null) return;
+
+        var animais = animalService.listarPorProprietario(proprietario);
+        if (animais.isEmpty()) {
+            System.out.println("Nenhum animal cadastrado para " + proprietario.getNome() + ".");
+            return;
+        }
+
+        System.out.printf("%-4s %-12s %-15s %-6s %-18s%n", "ID", "Tipo", "Nome", "Idade", "Espécie");
+        for (var animal : animais) {
+            System.out.printf("%-4d %-12s %-15s %-6d %-18s%n",
+                animal.getId(),
+                animal.getClass().getSimpleName(),
+                animal.getNome(),
+                animal.getIdade(),
+                animal.getEspecie());
         }
     }
 
@@ -127,22 +197,21 @@ public class MenuAnimal {
         var nome = lerTextoObrigatorio("Novo nome (atual: " + animal.getNome() + "): ");
         var idade = lerInteiro("Nova idade (atual: " + animal.getIdade() + "): ");
         var especie = lerTextoObrigatorio("Nova espécie/raça (atual: " + animal.getEspecie() + "): ");
-        var proprietarios = proprietarioService.listar();
 
-        if (proprietarios.isEmpty()) {
+        if (proprietarioService.quantidade() == 0) {
             System.out.println("Cadastre um proprietário antes de atualizar.");
             return;
         }
 
-        var proprietario = selecionarProprietario(proprietarios);
+        var proprietario = selecionarProprietario();
         if (proprietario == null) return;
 
         try {
-            var atualizado = animalService.atualizarAnimal(id, nome, idade, especie, proprietario);
+            var atualizado = animalService.atualizarAnimal(id, nome, idade, especie, proprietario, animal.getVersao());
             System.out.println(atualizado
                     ? "Animal atualizado com sucesso."
                     : "Animal não encontrado.");
-        } catch (IllegalArgumentException e) {
+        } catch (IllegalArgumentException | IllegalStateException e) {
             System.out.println("Erro: " + e.getMessage());
         }
     }
@@ -150,7 +219,15 @@ public class MenuAnimal {
     private void remover() {
         System.out.println("\nRemoção de Animal");
         var id = lerInteiro("ID do animal: ");
-        var removido = animalService.removerAnimal(id);
+
+        boolean removido;
+        try {
+            removido = animalService.removerAnimal(id);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+            if (!confirmar("Cancelar as consultas e remover mesmo assim? (s/n): ")) return;
+            removido = animalService.removerAnimalEmCascata(id);
+        }
 
         System.out.println(removido
                 ? "Animal removido com sucesso."
@@ -166,15 +243,13 @@ public class MenuAnimal {
         }
     }
 
-    private Proprietario selecionarProprietario(
-            List<Proprietario> proprietarios
-    ) {
+    private Proprietario selecionarProprietario() {
         System.out.println("Proprietários cadastrados:");
-        for (var proprietario : proprietarios)
+        proprietarioService.stream().forEach(proprietario ->
             System.out.printf("%d - %s (%s)%n",
                 proprietario.getId(),
                 proprietario.getNome(),
-                proprietario.getTelefone());
+                proprietario.getTelefone()));
 
         var idSelecionado = lerInteiro("Informe o ID do proprietário: ");
         var proprietarioOpt = proprietarioService.buscarPorId(idSelecionado);
@@ -187,6 +262,20 @@ public class MenuAnimal {
         return proprietarioOpt.get();
     }
 
+    private boolean continuarListagem() {
+        System.out.print("Enter para a próxima página, 0 para encerrar: ");
+        var linha = scanner.nextLine();
+        return linha == null || !linha.trim().equals("0");
+    }
+
+    private boolean confirmar(
+            String mensagem
+    ) {
+        System.out.print(mensagem);
+        var resposta = scanner.nextLine();
+        return resposta != null && resposta.trim().equalsIgnoreCase("s");
+    }
+
     private int lerInteiro(
             String mensagem
     ) {
@@ -1,11 +1,13 @@
 package xq.yiesko.petshop.cli;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Scanner;
 import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Consulta;
 import xq.yiesko.petshop.model.Veterinario;
 import xq.yiesko.petshop.service.AnimalService;
 import xq.yiesko.petshop.service.ConsultaService;
@@ -17,6 +19,9 @@ import xq.yiesko.petshop.service.VeterinarioService;
 public class MenuConsulta {
 
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final int HORARIOS_SUGERIDOS = 5;
+    private static final int TAMANHO_PAGINA = 50;
 
     private final Scanner scanner;
     private final ConsultaService consultaService;
@@ -55,6 +60,9 @@ public class MenuConsulta {
             System.out.println("2. Listar");
             System.out.println("3. Atualizar");
             System.out.println("4. Cancelar");
+            System.out.println("5. Agenda do dia");
+            System.out.println("6. Horários livres");
+            System.out.println("7. Relatório do período");
             System.out.println("0. Voltar");
 
             var opcao = lerInteiro("Escolha uma opção: ");
@@ -63,6 +71,9 @@ public class MenuConsulta {
                 case 2 -> listar();
                 case 3 -> atualizar();
                 case 4 -> cancelar();
+                case 5 -> agendaDoDia();
+                case 6 -> horariosLivres();
+                case 7 -> relatorio();
                 case 0 -> continuar = false;
                 default -> System.out.println("Opção inválida.");
             }
@@ -71,31 +82,30 @@ public class MenuConsulta {
 
     private void agendar() {
         System.out.println("\nAgendamento de Consulta");
-        var animais = animalService.listarAnimais();
-
-        if (animais.isEmpty()) {
+        if (animalService.quantidadeAnimais() == 0) {
             System.out.println("Cadastre um animal antes de agendar consultas.");
             return;
         }
 
-        var veterinarios = veterinarioService.listar();
-        if (veterinarios.isEmpty()) {
+        if (veterinarioService.quantidade() == 0) {
             System.out.println("Cadastre um veterinário antes de agendar consultas.");
             return;
         }
 
-        var animal = selecionarAnimal(animais);
+        var animal = selecionarAnimal();
         if (animal == null) return;
 
-        var veterinario = selecionarVeterinario(veterinarios);
+        var veterinario = selecionarVeterinario();
         if (veterinario == null) return;
 
         var data = lerData("Data (dd/MM/yyyy): ");
+        sugerirHorarios(veterinario, data);
+        var horario = lerHorario("Horário (HH:mm): ");
         System.out.print("Observações (opcional): ");
         var observacoes = scanner.nextLine();
 
         try {
-            var consulta = consultaService.agendar(data, animal, veterinario, observacoes);
+            var consulta = consultaService.agendar(data, horario, animal, veterinario, observacoes);
             System.out.printf("Consulta agendada com ID %d.%n", consulta.getId());
         } catch (IllegalArgumentException e) {
             System.out.println("Erro: " + e.getMessage());
@@ -104,24 +114,111 @@ public class MenuConsulta {
 
     private void listar() {
         System.out.println("\nLista de Consultas");
-        var consultas = consultaService.listar();
 
-        if (consultas.isEmpty()) {
+        if (consultaService.quantidade() == 0) {
             System.out.println("Nenhuma consulta agendada.");
             return;
         }
 
-        System.out.printf("%-4s %-12s %-20s %-20s %-30s%n",
-            "ID", "Data", "Animal", "Veterinário", "Observações");
+        imprimirCabecalho();
+
+        var ultimoId = 0;
+        while (true) {
+            var consultas = consultaService.listarApos(ultimoId, TAMANHO_PAGINA);
+            consultas.forEach(this::imprimirLinha);
+
+            if (consultas.size() < TAMANHO_PAGINA || !continuarListagem()) return;
+            ultimoId = consultas.get(consultas.size() - 1).getId();
+        }
+    }
+
+    private void agendaDoDia() {
+        System.out.println("\nAgenda do Dia");
+        var data = lerData("Data (dd/MM/yyyy): ");
+        imprimir(consultaService.listarPorData(data));
+    }
+
+    private void horariosLivres() {
+        System.out.println("\nHorários Livres");
+        if (veterinarioService.quantidade() == 0) {
+            System.out.println("Nenhum veterinário cadastrado.");
+            return;
+        }
+
+        var veterinario = selecionarVeterinario();
+        if (veterinario == null) return;
+
+        sugerirHorarios(veterinario, lerData("A partir de (dd/MM/yyyy): "));
+    }
+
+    private void relatorio() {
+        System.out.println("\nRelatório do Período");
+        var inicio = lerData("Data inicial (dd/MM/yyyy): ");
+        var fim = lerData("Data final (dd/MM/yyyy): ");
+
+        try {
+            var porDia = consultaService.contarPorDia(inicio, fim);
+            var total = porDia.values().stream().mapToInt(Integer::intValue).sum();
+            System.out.printf("%d consultas em %d dias com atendimento.%n", total, porDia.size());
+            if (total == 0) return;
+
+            System.out.println("\nPor veterinário:");
+            consultaService.contarPorVeterinario(inicio, fim).forEach((id, quantidade) -> {
+                var veterinario = veterinarioService.buscarPorId(id);
+                var nome = veterinario.map(Veterinario::getNome).orElse("Veterinário " + id);
+                var ocupacao = veterinario.map(v -> String.format(" (%.1f%% da agenda)", consultaService.ocupacao(v, inicio, fim).percentual())).orElse("");
+                System.out.printf("  %-20s %6d%s%n", nome, quantidade, ocupacao);
+            });
+
+            System.out.println("\nPor especialidade:");
+            consultaService.contarPorEspecialidade(inicio, fim).forEach((especialidade, quantidade) ->
+                System.out.printf("  %-20s %6d%n", especialidade, quantidade));
+
+            System.out.println("\nPor espécie:");
+            consultaService.contarPorEspecie(inicio, fim).forEach((especie, quantidade) ->
+                System.out.printf("  %-20s %6d%n", especie, quantidade));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+        }
+    }
+
+    private void sugerirHorarios(
+            Veterinario veterinario,
+            LocalDate data
+    ) {
+        var livres = consultaService.proximosHorariosLivres(veterinario, data.atStartOfDay(), HORARIOS_SUGERIDOS);
+        System.out.println("Próximos horários livres:");
+        for (var horario : livres)
+            System.out.printf("  %s %s%n", horario.format(DATE_FORMAT), horario.format(TIME_FORMAT));
+    }
 
-        for (var consulta : consultas) {
-            System.out.printf("%-4d %-12s %-20s %-20s %-30s%n",
-                consulta.getId(),
-                    consulta.getData() != null ? consulta.getData().format(DATE_FORMAT) : "-",
-                consulta.getAnimal() != null ? consulta.getAnimal().getNome() : "-",
-                consulta.getVeterinario() != null ? consulta.getVeterinario().getNome() : "-",
-                consulta.getObservacoes() != null ? consulta.getObservacoes() : "");
+    private void imprimir(
+            List<Consulta> consultas
+    ) {
+        if (consultas.isEmpty()) {
+            System.out.println("Nenhuma consulta agendada.");
+            return;
         }
+
+        imprimirCabecalho();
+        consultas.forEach(this::imprimirLinha);
+    }
+
+    private void imprimirCabecalho() {
+        System.out.printf("%-4s %-12s %-8s %-20s %-20s %-30s%n",
+            "ID", "Data", "Horário", "Animal", "Veterinário", "Observações");
+    }
+
+    private void imprimirLinha(
+            Consulta consulta
+    ) {
+        System.out.printf("%-4d %-12s %-8s %-20s %-20s %-30s%n",
+            consulta.getId(),
+                consulta.getData() != null ? consulta.getData().format(DATE_FORMAT) : "-",
+            consulta.getHorario() != null ? consulta.getHorario().format(TIME_FORMAT) : "-",
+            nomeAnimal(consulta),
+            nomeVeterinario(consulta),
+            consulta.getObservacoes() != null ? consulta.getObservacoes() : "");
     }
 
     private void atualizar() {
@@ -135,32 +232,39 @@ public class MenuConsulta {
         }
 
         var consulta = consultaOpt.get();
-        var animais = animalService.listarAnimais();
 
-        if (animais.isEmpty()) {
+        if (animalService.quantidadeAnimais() == 0) {
             System.out.println("Cadastre um animal antes de atualizar a consulta.");
             return;
         }
 
-        var veterinarios = veterinarioService.listar();
-        if (veterinarios.isEmpty()) {
+        if (veterinarioService.quantidade() == 0) {
             System.out.println("Cadastre um veterinário antes de atualizar a consulta.");
             return;
         }
 
-        var animal = selecionarAnimal(animais);
+        var animal = selecionarAnimal();
         if (animal == null) return;
 
-        var veterinario = selecionarVeterinario(veterinarios);
+        var veterinario = selecionarVeterinario();
         if (veterinario == null) return;
 
         var dataAtual = consulta.getData() != null ? consulta.getData().format(DATE_FORMAT) : "-";
         var data = lerData("Nova data (dd/MM/yyyy) - atual " + dataAtual + ": ");
 
+        var horarioAtual = consulta.getHorario() != null ? consulta.getHorario().format(TIME_FORMAT) : "-";
+        sugerirHorarios(veterinario, data);
+        var horario = lerHorario("Novo horário (HH:mm) - atual " + horarioAtual + ": ");
+
         System.out.print("Novas observações (opcional): ");
         var observacoes = scanner.nextLine();
-        var atualizado = consultaService.atualizar(id, data, animal, veterinario, observacoes);
-        System.out.println(atualizado ? "Consulta atualizada com sucesso." : "Consulta não encontrada.");
+
+        try {
+            var atualizado = consultaService.atualizar(id, data, horario, animal, veterinario, observacoes, consulta.getVersao());
+            System.out.println(atualizado ? "Consulta atualizada com sucesso." : "Consulta não encontrada.");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.out.println("Erro: " + e.getMessage());
+        }
     }
 
     private void cancelar() {
@@ -170,13 +274,31 @@ public class MenuConsulta {
         System.out.println(cancelado ? "Consulta cancelada com sucesso." : "Consulta não encontrada.");
     }
 
-    private Animal selecionarAnimal(List<Animal> animais) {
+    /**
+     * As referências guardadas na consulta são as versões do animal e do veterinário
+     * no momento do agendamento; os nomes exibidos vêm das versões mais recentes.
+     */
+    private String nomeAnimal(
+            Consulta consulta
+    ) {
+        if (consulta.getAnimal() == null) return "-";
+        return animalService.buscarPorId(consulta.getAnimal().getId()).map(Animal::getNome).orElse("-");
+    }
+
+    private String nomeVeterinario(
+            Consulta consulta
+    ) {
+        if (consulta.getVeterinario() == null) return "-";
+        return veterinarioService.buscarPorId(consulta.getVeterinario().getId()).map(Veterinario::getNome).orElse("-");
+    }
+
+    private Animal selecionarAnimal() {
         System.out.println("Animais cadastrados:");
-        for (var animal : animais)
+        animalService.streamAnimais().forEach(animal ->
             System.out.printf("%d - %s (%s)%n",
                 animal.getId(),
                 animal.getNome(),
-                animal.getProprietario() != null ? animal.getProprietario().getNome() : "sem proprietário");
+                animal.getProprietario() != null ? animal.getProprietario().getNome() : "sem proprietário"));
 
         var idSelecionado = lerInteiro("ID do animal: ");
         var animalOpt = animalService.buscarPorId(idSelecionado);
@@ -188,13 +310,13 @@ public class MenuConsulta {
         return animalOpt.get();
     }
 
-    private Veterinario selecionarVeterinario(List<Veterinario> veterinarios) {
+    private Veterinario selecionarVeterinario() {
         System.out.println("Veterinários cadastrados:");
-        for (var veterinario : veterinarios)
+        veterinarioService.stream().forEach(veterinario ->
             System.out.printf("%d - %s (%s)%n",
                 veterinario.getId(),
                 veterinario.getNome(),
-                veterinario.getEspecialidade());
+                veterinario.getEspecialidade()));
 
         var idSelecionado = lerInteiro("ID do veterinário: ");
         var veterinarioOpt = veterinarioService.buscarPorId(idSelecionado);
@@ -221,6 +343,27 @@ public class MenuConsulta {
         }
     }
 
+    private LocalTime lerHorario(
+            String mensagem
+    ) {
+        while (true) {
+            System.out.print(mensagem);
+
+            var linha = scanner.nextLine();
+            try {
+                return LocalTime.parse(linha.trim(), TIME_FORMAT);
+            } catch (DateTimeParseException e) {
+                System.out.println("Horário inválido. Utilize o formato HH:mm.");
+            }
+        }
+    }
+
+    private boolean continuarListagem() {
+        System.out.print("Enter para a próxima página, 0 para encerrar: ");
+        var linha = scanner.nextLine();
+        return linha == null || !linha.trim().equals("0");
+    }
+
     private int lerInteiro(
             String mensagem
     ) {
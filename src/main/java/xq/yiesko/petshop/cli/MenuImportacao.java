@@ -0,0 +1,120 @@
+package xq.yiesko.petshop.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+
+import xq.yiesko.petshop.importacao.CsvImporter;
+import xq.yiesko.petshop.importacao.RelatorioImportacao;
+
+/**
+ * Menu de importação de dados a partir de arquivos CSV.
+ */
+public class MenuImportacao {
+
+    private static final int REJEICOES_EXIBIDAS = 20;
+
+    private final Scanner scanner;
+    private final CsvImporter importador;
+
+    /**
+     * Cria o menu com as dependências necessárias.
+     *
+     * @param scanner    leitor de entradas
+     * @param importador importador de arquivos CSV
+     */
+    public MenuImportacao(
+            Scanner scanner,
+            CsvImporter importador
+    ) {
+        this.scanner = scanner;
+        this.importador = importador;
+    }
+
+    /**
+     * Exibe o menu e processa as operações até o usuário retornar.
+     */
+    public void exibir() {
+        var continuar = true;
+
+        while (continuar) {
+            System.out.println("\n--- Importação de CSV ---");
+            System.out.println("1. Proprietários (nome,telefone)");
+            System.out.println("2. Animais (tipo,nome,idade,especie,telefoneProprietario)");
+            System.out.println("3. Consultas (data,horario,telefoneProprietario,animal,veterinario,observacoes)");
+            System.out.println("0. Voltar");
+
+            var opcao = lerInteiro("Escolha uma opção: ");
+            switch (opcao) {
+                case 1, 2, 3 -> importar(opcao);
+                case 0 -> continuar = false;
+                default -> System.out.println("Opção inválida.");
+            }
+        }
+    }
+
+    private void importar(
+            int opcao
+    ) {
+        var arquivo = Path.of(lerTextoObrigatorio("Caminho do arquivo: "));
+        if (!Files.isRegularFile(arquivo)) {
+            System.out.println("Arquivo não encontrado.");
+            return;
+        }
+
+        try {
+            var relatorio = switch (opcao) {
+                case 1 -> importador.importarProprietarios(arquivo);
+                case 2 -> importador.importarAnimais(arquivo);
+                default -> importador.importarConsultas(arquivo);
+            };
+            exibirRelatorio(relatorio);
+        } catch (IOException e) {
+            System.out.println("Erro ao ler o arquivo: " + e.getMessage());
+        }
+    }
+
+    private void exibirRelatorio(
+            RelatorioImportacao relatorio
+    ) {
+        System.out.printf("%d linhas lidas, %d importadas, %d rejeitadas em %.1f s (%.0f linhas/s).%n",
+                relatorio.linhas(),
+                relatorio.importadas(),
+                relatorio.rejeitadas(),
+                relatorio.duracao().toMillis() / 1000.0,
+                relatorio.linhasPorSegundo());
+
+        relatorio.amostra().stream()
+                .limit(REJEICOES_EXIBIDAS)
+                .forEach(rejeicao -> System.out.printf("Linha %d: %s%n", rejeicao.linha(), rejeicao.motivo()));
+        if (relatorio.rejeitadas() > REJEICOES_EXIBIDAS)
+            System.out.printf("... e mais %d linhas rejeitadas.%n", relatorio.rejeitadas() - REJEICOES_EXIBIDAS);
+    }
+
+    private int lerInteiro(
+            String mensagem
+    ) {
+        while (true) {
+            System.out.print(mensagem);
+            var linha = scanner.nextLine();
+
+            try {
+                return Integer.parseInt(linha.trim());
+            } catch (NumberFormatException e) {
+                System.out.println("Valor inválido. Tente novamente.");
+            }
+        }
+    }
+
+    private String lerTextoObrigatorio(
+            String mensagem
+    ) {
+        while (true) {
+            System.out.print(mensagem);
+            var linha = scanner.nextLine();
+            if (linha != null && !linha.isBlank()) return linha.trim();
+            System.out.println("Campo obrigatório. Tente novamente.");
+        }
+    }
+}
@@ -9,6 +9,8 @@ import xq.yiesko.petshop.service.ProprietarioService;
  */
 public class MenuProprietario {
 
+    private static final int TAMANHO_PAGINA = 50;
+
     private final Scanner scanner;
     private final ProprietarioService proprietarioService;
 
@@ -38,6 +40,7 @@ public class MenuProprietario {
             System.out.println("2. Listar");
             System.out.println("3. Atualizar");
             System.out.println("4. Remover");
+            System.out.println("5. Buscar");
             System.out.println("0. Voltar");
 
             var opcao = lerInteiro("Escolha uma opção: ");
@@ -46,6 +49,7 @@ public class MenuProprietario {
                 case 2 -> listar();
                 case 3 -> atualizar();
                 case 4 -> remover();
+                case 5 -> buscar();
                 case 0 -> continuar = false;
                 default -> System.out.println("Opção inválida.");
             }
@@ -67,13 +71,38 @@ public class MenuProprietario {
 
     private void listar() {
         System.out.println("\nLista de Proprietários");
-        var proprietarios = proprietarioService.listar();
 
-        if (proprietarios.isEmpty()) {
+        if (proprietarioService.quantidade() == 0) {
             System.out.println("Nenhum proprietário cadastrado.");
             return;
         }
 
+        System.out.printf("%-4s %-20s %-15s%n", "ID", "Nome", "Telefone");
+
+        var ultimoId = 0;
+        while (true) {
+            var proprietarios = proprietarioService.listarApos(ultimoId, TAMANHO_PAGINA);
+            for (var proprietario : proprietarios)
+                System.out.printf("%-4d %-20s %-15s%n",
+                        proprietario.getId(),
+                        proprietario.getNome(),
+                        proprietario.getTelefone());
+
+            if (proprietarios.size() < TAMANHO_PAGINA || !continuarListagem()) return;
+            ultimoId = proprietarios.get(proprietarios.size() - 1).getId();
+        }
+    }
+
+    private void buscar() {
+        System.out.println("\nBusca de Proprietários");
+        var termo = lerTextoObrigatorio("Nome ou telefone: ");
+
+        var proprietarios = proprietarioService.buscar(termo, TAMANHO_PAGINA);
+        if (proprietarios.isEmpty()) {
+            System.out.println("Nenhum proprietário encontrado.");
+            return;
+        }
+
         System.out.printf("%-4s %-20s %-15s%n", "ID", "Nome", "Telefone");
         for (var proprietario : proprietarios)
             System.out.printf("%-4d %-20s %-15s%n",
@@ -85,15 +114,23 @@ public class MenuProprietario {
     private void atualizar() {
         System.out.println("\nAtualização de Proprietário");
         var id = lerInteiro("ID do proprietário: ");
-        var nome = lerTextoObrigatorio("Novo nome: ");
-        var telefone = lerTextoObrigatorio("Novo telefone: ");
+        var proprietarioOpt = proprietarioService.buscarPorId(id);
+
+        if (proprietarioOpt.isEmpty()) {
+            System.out.println("Proprietário não encontrado.");
+            return;
+        }
+
+        var proprietario = proprietarioOpt.get();
+        var nome = lerTextoObrigatorio("Novo nome (atual: " + proprietario.getNome() + "): ");
+        var telefone = lerTextoObrigatorio("Novo telefone (atual: " + proprietario.getTelefone() + "): ");
 
         try {
-            var atualizado = proprietarioService.atualizar(id, nome, telefone);
+            var atualizado = proprietarioService.atualizar(id, nome, telefone, proprietario.getVersao());
             System.out.println(atualizado
                     ? "Proprietário atualizado com sucesso."
                     : "Proprietário não encontrado.");
-        } catch (IllegalArgumentException e) {
+        } catch (IllegalArgumentException | IllegalStateException e) {
             System.out.println("Erro: " + e.getMessage());
         }
     }
@@ -101,12 +138,34 @@ public class MenuProprietario {
     private void remover() {
         System.out.println("\nRemoção de Proprietário");
         var id = lerInteiro("ID do proprietário: ");
-        var removido = proprietarioService.remover(id);
+
+        boolean removido;
+        try {
+            removido = proprietarioService.remover(id);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+            if (!confirmar("Remover também os animais e as consultas deles? (s/n): ")) return;
+            removido = proprietarioService.removerEmCascata(id);
+        }
         System.out.println(removido
                 ? "Proprietário removido com sucesso."
                 : "Proprietário não encontrado.");
     }
 
+    private boolean continuarListagem() {
+        System.out.print("Enter para a próxima página, 0 para encerrar: ");
+        var linha = scanner.nextLine();
+        return linha == null || !linha.trim().equals("0");
+    }
+
+    private boolean confirmar(
+            String mensagem
+    ) {
+        System.out.print(mensagem);
+        var resposta = scanner.nextLine();
+        return resposta != null && resposta.trim().equalsIgnoreCase("s");
+    }
+
     private int lerInteiro(
             String mensagem
     ) {
@@ -1,8 +1,6 @@
 package xq.yiesko.petshop.cli;
 
-import java.util.List;
 import java.util.Scanner;
-import xq.yiesko.petshop.model.Veterinario;
 import xq.yiesko.petshop.service.VeterinarioService;
 
 /**
@@ -10,6 +8,8 @@ import xq.yiesko.petshop.service.VeterinarioService;
  */
 public class MenuVeterinario {
 
+    private static final int TAMANHO_PAGINA = 50;
+
     private final Scanner scanner;
     private final VeterinarioService veterinarioService;
 
@@ -39,6 +39,7 @@ public class MenuVeterinario {
             System.out.println("2. Listar");
             System.out.println("3. Atualizar");
             System.out.println("4. Remover");
+            System.out.println("5. Buscar");
             System.out.println("0. Voltar");
 
             var opcao = lerInteiro("Escolha uma opção: ");
@@ -47,6 +48,7 @@ public class MenuVeterinario {
                 case 2 -> listar();
                 case 3 -> atualizar();
                 case 4 -> remover();
+                case 5 -> buscar();
                 case 0 -> continuar = false;
                 default -> System.out.println("Opção inválida.");
             }
@@ -69,13 +71,39 @@ public class MenuVeterinario {
 
     private void listar() {
         System.out.println("\nLista de Veterinários");
-        var veterinarios = veterinarioService.listar();
 
-        if (veterinarios.isEmpty()) {
+        if (veterinarioService.quantidade() == 0) {
             System.out.println("Nenhum veterinário cadastrado.");
             return;
         }
 
+        System.out.printf("%-4s %-20s %-15s %-20s%n", "ID", "Nome", "Telefone", "Especialidade");
+
+        var ultimoId = 0;
+        while (true) {
+            var veterinarios = veterinarioService.listarApos(ultimoId, TAMANHO_PAGINA);
+            for (var veterinario : veterinarios)
+                System.out.printf("%-4d %-20s %-15s %-20s%n",
+                        veterinario.getId(),
+                        veterinario.getNome(),
+                        veterinario.getTelefone(),
+                        veterinario.getEspecialidade());
+
+            if (veterinarios.size() < TAMANHO_PAGINA || !continuarListagem()) return;
+            ultimoId = veterinarios.get(veterinarios.size() - 1).getId();
+        }
+    }
+
+    private void buscar() {
+        System.out.println("\nBusca de Veterinários");
+        var termo = lerTextoObrigatorio("Nome ou especialidade: ");
+
+        var veterinarios = veterinarioService.buscar(termo, TAMANHO_PAGINA);
+        if (veterinarios.isEmpty()) {
+            System.out.println("Nenhum veterinário encontrado.");
+            return;
+        }
+
         System.out.printf("%-4s %-20s %-15s %-20s%n", "ID", "Nome", "Telefone", "Especialidade");
         for (var veterinario : veterinarios)
             System.out.printf("%-4d %-20s %-15s %-20s%n",
@@ -88,16 +116,24 @@ public class MenuVeterinario {
     private void atualizar() {
         System.out.println("\nAtualização de Veterinário");
         var id = lerInteiro("ID do veterinário: ");
-        var nome = lerTextoObrigatorio("Novo nome: ");
-        var telefone = lerTextoObrigatorio("Novo telefone: ");
-        var especialidade = lerTextoObrigatorio("Nova especialidade: ");
+        var veterinarioOpt = veterinarioService.buscarPorId(id);
+
+        if (veterinarioOpt.isEmpty()) {
+            System.out.println("Veterinário não encontrado.");
+            return;
+        }
+
+        var veterinario = veterinarioOpt.get();
+        var nome = lerTextoObrigatorio("Novo nome (atual: " + veterinario.getNome() + "): ");
+        var telefone = lerTextoObrigatorio("Novo telefone (atual: " + veterinario.getTelefone() + "): ");
+        var especialidade = lerTextoObrigatorio("Nova especialidade (atual: " + veterinario.getEspecialidade() + "): ");
 
         try {
-            var atualizado = veterinarioService.atualizar(id, nome, telefone, especialidade);
+            var atualizado = veterinarioService.atualizar(id, nome, telefone, especialidade, veterinario.getVersao());
             System.out.println(atualizado
                     ? "Veterinário atualizado com sucesso."
                     : "Veterinário não encontrado.");
-        } catch (IllegalArgumentException e) {
+        } catch (IllegalArgumentException | IllegalStateException e) {
             System.out.println("Erro: " + e.getMessage());
         }
     }
@@ -105,10 +141,32 @@ public class MenuVeterinario {
     private void remover() {
         System.out.println("\nRemoção de Veterinário");
         var id = lerInteiro("ID do veterinário: ");
-        var removido = veterinarioService.remover(id);
+
+        boolean removido;
+        try {
+            removido = veterinarioService.remover(id);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+            if (!confirmar("Cancelar as consultas e remover mesmo assim? (s/n): ")) return;
+            removido = veterinarioService.removerEmCascata(id);
+        }
         System.out.println(removido ? "Veterinário removido com sucesso." : "Veterinário não encontrado.");
     }
 
+    private boolean continuarListagem() {
+        System.out.print("Enter para a próxima página, 0 para encerrar: ");
+        var linha = scanner.nextLine();
+        return linha == null || !linha.trim().equals("0");
+    }
+
+    private boolean confirmar(
+            String mensagem
+    ) {
+        System.out.print(mensagem);
+        var resposta = scanner.nextLine();
+        return resposta != null && resposta.trim().equalsIgnoreCase("s");
+    }
+
     private int lerInteiro(
             String mensagem
     ) {
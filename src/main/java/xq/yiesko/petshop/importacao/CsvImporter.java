@@ -0,0 +1,452 @@
+package xq.yiesko.petshop.importacao;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Cachorro;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Gato;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.search.Tokenizer;
+import xq.yiesko.petshop.service.AnimalService;
+import xq.yiesko.petshop.service.ConsultaService;
+import xq.yiesko.petshop.service.ProprietarioService;
+import xq.yiesko.petshop.service.VeterinarioService;
+import xq.yiesko.petshop.util.ValidationUtils;
+
+/**
+ * Importação em massa de proprietários, animais e consultas a partir de arquivos CSV.
+ * <p>
+ * A importação é um pipeline de três estágios: o {@link CsvReader} lê o arquivo em
+ * blocos de linhas; cada bloco é interpretado e validado em paralelo no pool comum;
+ * e a thread que chamou resolve as referências e inclui os registros válidos do
+ * bloco com uma única chamada em lote ao serviço, ou seja, uma única reserva de
+ * identificadores no repositório. Os blocos são incluídos na ordem do arquivo.
+ * <p>
+ * As referências são resolvidas por chave natural: proprietários pelos dígitos do
+ * telefone, veterinários pelo nome e animais pelo nome dentro do proprietário, sem
+ * distinção de maiúsculas ou acentos. Se as regras do serviço recusarem um lote,
+ * suas linhas são incluídas uma a uma para identificar as rejeitadas.
+ * <p>
+ * A primeira linha do arquivo é o cabeçalho. O separador é a vírgula, ou o
+ * ponto e vírgula quando o cabeçalho o usa. Formatos:
+ * <ul>
+ *   <li>proprietários: {@code nome,telefone}</li>
+ *   <li>animais: {@code tipo,nome,idade,especie,telefoneProprietario}, com tipo {@code cachorro} ou {@code gato}</li>
+ *   <li>consultas: {@code data,horario,telefoneProprietario,animal,veterinario,observacoes}, com data
+ *   {@code aaaa-mm-dd} e horário {@code hh:mm}</li>
+ * </ul>
+ */
+public final class CsvImporter {
+
+    private static final int MAXIMO_AMOSTRA = 1000;
+    private static final int BLOCOS_EM_ANDAMENTO = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final ProprietarioService proprietarioService;
+    private final VeterinarioService veterinarioService;
+    private final AnimalService animalService;
+    private final ConsultaService consultaService;
+
+    /**
+     * Cria o importador sobre os serviços do sistema.
+     *
+     * @param proprietarioService serviço de proprietários
+     * @param veterinarioService  serviço de veterinários
+     * @param animalService       serviço de animais
+     * @param consultaService     serviço de consultas
+     */
+    public CsvImporter(
+            ProprietarioService proprietarioService,
+            VeterinarioService veterinarioService,
+            AnimalService animalService,
+            ConsultaService consultaService
+    ) {
+        this.proprietarioService = proprietarioService;
+        this.veterinarioService = veterinarioService;
+        this.animalService = animalService;
+        this.consultaService = consultaService;
+    }
+
+    /**
+     * Importa proprietários. Telefones já cadastrados são rejeitados.
+     *
+     * @param arquivo arquivo CSV
+     * @return relatório da importação
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    public RelatorioImportacao importarProprietarios(
+            Path arquivo
+    ) throws IOException {
+        var proprietarios = proprietariosPorTelefone();
+
+        return importar(arquivo, 2, campos -> {
+            var nome = obrigatorio(campos.get(0), "Nome não pode ser vazio");
+            var telefone = obrigatorio(campos.get(1), "Telefone não pode ser vazio");
+            chaveTelefone(telefone);
+            return new Proprietario(nome, telefone);
+        }, (linhas, relatorio) -> {
+            var lote = new ArrayList<Linha<Proprietario>>();
+            for (var linha : linhas) {
+                var chave = chaveTelefone(linha.valor().getTelefone());
+                if (proprietarios.putIfAbsent(chave, linha.valor()) != null) relatorio.rejeitar(linha.numero(), "Telefone já cadastrado");
+                else lote.add(linha);
+            }
+
+            incluir(lote, relatorio, proprietarioService::cadastrarTodos, proprietario -> {
+                try {
+                    return proprietarioService.cadastrar(proprietario.getNome(), proprietario.getTelefone());
+                } catch (IllegalArgumentException e) {
+                    proprietarios.remove(chaveTelefone(proprietario.getTelefone()));
+                    throw e;
+                }
+            });
+        });
+    }
+
+    /**
+     * Importa animais, associando cada um ao proprietário pelo telefone.
+     *
+     * @param arquivo arquivo CSV
+     * @return relatório da importação
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    public RelatorioImportacao importarAnimais(
+            Path arquivo
+    ) throws IOException {
+        var proprietarios = proprietariosPorTelefone();
+        var animais = animaisPorChave();
+
+        return importar(arquivo, 5, campos -> {
+            var tipo = Tokenizer.normalizar(campos.get(0).trim());
+            if (!tipo.equals("cachorro") && !tipo.equals("gato")) throw new IllegalArgumentException("Tipo deve ser cachorro ou gato");
+
+            var idade = inteiro(campos.get(2), "Idade inválida");
+            ValidationUtils.requireNonNegative(idade, "Idade não pode ser negativa");
+            return new AnimalCsv(
+                tipo.equals("gato"),
+                obrigatorio(campos.get(1), "Nome não pode ser vazio"),
+                idade,
+                obrigatorio(campos.get(3), "Espécie não pode ser vazia"),
+                chaveTelefone(campos.get(4)));
+        }, (linhas, relatorio) -> {
+            var lote = new ArrayList<Linha<Animal>>();
+            for (var linha : linhas) {
+                var dados = linha.valor();
+                var proprietario = proprietarios.get(dados.telefoneProprietario());
+                if (proprietario == null) {
+                    relatorio.rejeitar(linha.numero(), "Proprietário não encontrado");
+                    continue;
+                }
+
+                var animal = dados.gato()
+                    ? new Gato(dados.nome(), dados.idade(), dados.especie(), proprietario)
+                    : new Cachorro(dados.nome(), dados.idade(), dados.especie(), proprietario);
+                if (animais.putIfAbsent(chaveAnimal(dados.telefoneProprietario(), dados.nome()), animal) != null)
+                    relatorio.rejeitar(linha.numero(), "Animal já cadastrado para o proprietário");
+                else lote.add(new Linha<>(linha.numero(), animal));
+            }
+
+            incluir(lote, relatorio, animalService::cadastrarTodos, animal -> {
+                try {
+                    return animal instanceof Gato
+                        ? animalService.cadastrarGato(animal.getNome(), animal.getIdade(), animal.getEspecie(), animal.getProprietario())
+                        : animalService.cadastrarCachorro(animal.getNome(), animal.getIdade(), animal.getEspecie(), animal.getProprietario());
+                } catch (IllegalArgumentException e) {
+                    animais.remove(chaveAnimal(chaveTelefone(animal.getProprietario().getTelefone()), animal.getNome()));
+                    throw e;
+                }
+            });
+        });
+    }
+
+    /**
+     * Importa consultas, associando animal e veterinário pelas chaves naturais.
+     *
+     * @param arquivo arquivo CSV
+     * @return relatório da importação
+     * @throws IOException se o arquivo não puder ser lido
+     */
+    public RelatorioImportacao importarConsultas(
+            Path arquivo
+    ) throws IOException {
+        var animais = animaisPorChave();
+        var veterinarios = veterinariosPorNome();
+
+        return importar(arquivo, 5, campos -> new ConsultaCsv(
+            data(campos.get(0)),
+            horario(campos.get(1)),
+            chaveAnimal(chaveTelefone(campos.get(2)), obrigatorio(campos.get(3), "Animal é obrigatório")),
+            Tokenizer.normalizar(obrigatorio(campos.get(4), "Veterinário é obrigatório")),
+            campos.size() > 5 && !campos.get(5).isBlank() ? campos.get(5).trim() : null
+        ), (linhas, relatorio) -> {
+            var lote = new ArrayList<Linha<Consulta>>();
+            for (var linha : linhas) {
+                var dados = linha.valor();
+                var animal = animais.get(dados.animal());
+                var veterinario = veterinarios.get(dados.veterinario());
+                if (animal == null) relatorio.rejeitar(linha.numero(), "Animal não encontrado");
+                else if (veterinario == null) relatorio.rejeitar(linha.numero(), "Veterinário não encontrado");
+                else lote.add(new Linha<>(linha.numero(), new Consulta(dados.data(), dados.horario(), animal, veterinario, dados.observacoes())));
+            }
+
+            incluir(lote, relatorio, consultaService::agendarTodos, consulta -> consultaService.agendar(
+                consulta.getData(), consulta.getHorario(), consulta.getAnimal(), consulta.getVeterinario(), consulta.getObservacoes()));
+        });
+    }
+
+    private <R> RelatorioImportacao importar(
+            Path arquivo,
+            int colunas,
+            Function<List<String>, R> interpretar,
+            Insercao<R> inserir
+    ) throws IOException {
+        var inicio = System.nanoTime();
+        var relatorio = new Contagem();
+
+        try (var leitor = new CsvReader(arquivo)) {
+            var primeiro = leitor.proximo();
+            if (primeiro == null) return relatorio.concluir(inicio);
+
+            var cabecalho = primeiro.linhas().getFirst();
+            var separador = cabecalho.indexOf(';') >= 0 && cabecalho.indexOf(',') < 0 ? ';' : ',';
+            var restante = new CsvReader.Bloco(primeiro.primeiraLinha() + 1, primeiro.linhas().subList(1, primeiro.linhas().size()));
+
+            var emAndamento = new ArrayDeque<CompletableFuture<Interpretado<R>>>();
+            for (var bloco = restante; bloco != null; bloco = leitor.proximo()) {
+                var atual = bloco;
+                emAndamento.add(CompletableFuture.supplyAsync(() -> interpretar(atual, colunas, separador, interpretar)));
+                if (emAndamento.size() >= BLOCOS_EM_ANDAMENTO) inserir(emAndamento.poll(), inserir, relatorio);
+            }
+            while (!emAndamento.isEmpty()) inserir(emAndamento.poll(), inserir, relatorio);
+        }
+        return relatorio.concluir(inicio);
+    }
+
+    private static <R> Interpretado<R> interpretar(
+            CsvReader.Bloco bloco,
+            int colunas,
+            char separador,
+            Function<List<String>, R> interpretar
+    ) {
+        var validas = new ArrayList<Linha<R>>(bloco.linhas().size());
+        var rejeitadas = new ArrayList<RelatorioImportacao.Rejeicao>();
+        var numero = bloco.primeiraLinha();
+
+        for (var texto : bloco.linhas()) {
+            var linha = numero++;
+            if (texto.isBlank()) continue;
+
+            try {
+                var campos = CsvReader.campos(texto, separador);
+                if (campos.size() < colunas) throw new IllegalArgumentException("Esperadas " + colunas + " colunas, encontradas " + campos.size());
+                validas.add(new Linha<>(linha, interpretar.apply(campos)));
+            } catch (IllegalArgumentException e) {
+                rejeitadas.add(new RelatorioImportacao.Rejeicao(linha, e.getMessage()));
+            }
+        }
+        return new Interpretado<>(validas, rejeitadas);
+    }
+
+    private static <R> void inserir(
+            CompletableFuture<Interpretado<R>> futuro,
+            Insercao<R> inserir,
+            Contagem relatorio
+    ) {
+        Interpretado<R> interpretado;
+        try {
+            interpretado = futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) throw causa;
+            throw e;
+        }
+
+        relatorio.linhas += interpretado.validas().size() + interpretado.rejeitadas().size();
+        for (var rejeicao : interpretado.rejeitadas()) relatorio.rejeitar(rejeicao.linha(), rejeicao.motivo());
+        inserir.inserir(interpretado.validas(), relatorio);
+    }
+
+    /**
+     * Inclui o lote de uma vez e, se o serviço o recusar, inclui as linhas uma a uma
+     * para rejeitar apenas as inválidas.
+     */
+    private static <E> void incluir(
+            List<Linha<E>> lote,
+            Contagem relatorio,
+            Function<List<E>, List<E>> emLote,
+            Function<E, E> individual
+    ) {
+        if (lote.isEmpty()) return;
+
+        var entidades = new ArrayList<E>(lote.size());
+        for (var linha : lote) entidades.add(linha.valor());
+
+        try {
+            emLote.apply(entidades);
+            relatorio.importadas += entidades.size();
+            return;
+        } catch (IllegalArgumentException e) {
+            // Alguma linha viola uma regra do serviço; segue abaixo linha a linha.
+        }
+
+        for (var linha : lote) {
+            try {
+                individual.apply(linha.valor());
+                relatorio.importadas++;
+            } catch (IllegalArgumentException e) {
+                relatorio.rejeitar(linha.numero(), e.getMessage());
+            }
+        }
+    }
+
+    private Map<String, Proprietario> proprietariosPorTelefone() {
+        var proprietarios = new HashMap<String, Proprietario>();
+        proprietarioService.stream().forEach(proprietario -> proprietarios.putIfAbsent(Tokenizer.digitos(proprietario.getTelefone()), proprietario));
+        return proprietarios;
+    }
+
+    private Map<String, Animal> animaisPorChave() {
+        var animais = new HashMap<String, Animal>();
+        animalService.streamAnimais()
+            .filter(animal -> animal.getProprietario() != null)
+            .forEach(animal -> proprietarioService.buscarPorId(animal.getProprietario().getId()).ifPresent(proprietario ->
+                animais.putIfAbsent(chaveAnimal(Tokenizer.digitos(proprietario.getTelefone()), animal.getNome()), animal)));
+        return animais;
+    }
+
+    private Map<String, Veterinario> veterinariosPorNome() {
+        var veterinarios = new HashMap<String, Veterinario>();
+        veterinarioService.stream().forEach(veterinario -> veterinarios.putIfAbsent(Tokenizer.normalizar(veterinario.getNome().trim()), veterinario));
+        return veterinarios;
+    }
+
+    private static String chaveTelefone(
+            String telefone
+    ) {
+        var digitos = Tokenizer.digitos(telefone);
+        if (digitos.isEmpty()) throw new IllegalArgumentException("Telefone sem dígitos");
+        return digitos;
+    }
+
+    private static String chaveAnimal(
+            String telefoneProprietario,
+            String nome
+    ) {
+        return telefoneProprietario + '/' + Tokenizer.normalizar(nome.trim());
+    }
+
+    private static String obrigatorio(
+            String valor,
+            String mensagem
+    ) {
+        ValidationUtils.requireNonBlank(valor, mensagem);
+        return valor.trim();
+    }
+
+    private static int inteiro(
+            String valor,
+            String mensagem
+    ) {
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(mensagem);
+        }
+    }
+
+    private static LocalDate data(
+            String valor
+    ) {
+        try {
+            return LocalDate.parse(valor.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Data inválida");
+        }
+    }
+
+    private static LocalTime horario(
+            String valor
+    ) {
+        try {
+            return LocalTime.parse(valor.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Horário inválido");
+        }
+    }
+
+    /**
+     * Estágio sequencial: resolve referências e inclui as linhas válidas de um bloco.
+     */
+    @FunctionalInterface
+    private interface Insercao<R> {
+
+        void inserir(
+                List<Linha<R>> linhas,
+                Contagem relatorio
+        );
+    }
+
+    private record Linha<R>(
+            long numero,
+            R valor
+    ) {}
+
+    private record Interpretado<R>(
+            List<Linha<R>> validas,
+            List<RelatorioImportacao.Rejeicao> rejeitadas
+    ) {}
+
+    private record AnimalCsv(
+            boolean gato,
+            String nome,
+            int idade,
+            String especie,
+            String telefoneProprietario
+    ) {}
+
+    private record ConsultaCsv(
+            LocalDate data,
+            LocalTime horario,
+            String animal,
+            String veterinario,
+            String observacoes
+    ) {}
+
+    /**
+     * Totais acumulados pelo estágio sequencial.
+     */
+    private static final class Contagem {
+
+        private final List<RelatorioImportacao.Rejeicao> amostra = new ArrayList<>();
+        private long linhas;
+        private long importadas;
+        private long rejeitadas;
+
+        void rejeitar(
+                long linha,
+                String motivo
+        ) {
+            rejeitadas++;
+            if (amostra.size() < MAXIMO_AMOSTRA) amostra.add(new RelatorioImportacao.Rejeicao(linha, motivo));
+        }
+
+        RelatorioImportacao concluir(
+                long inicio
+        ) {
+            amostra.sort((a, b) -> Long.compare(a.linha(), b.linha()));
+            return new RelatorioImportacao(linhas, importadas, rejeitadas, List.copyOf(amostra), Duration.ofNanos(System.nanoTime() - inicio));
+        }
+    }
+}
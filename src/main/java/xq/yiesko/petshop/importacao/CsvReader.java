@@ -0,0 +1,139 @@
+package xq.yiesko.petshop.importacao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leitor de arquivos CSV em blocos de linhas completas.
+ * <p>
+ * O arquivo é lido por um {@link FileChannel} em pedaços de até
+ * {@value #TAMANHO_PEDACO} bytes, e cada pedaço é decodificado de uma vez até a
+ * última quebra de linha; o trecho restante é completado pelo pedaço seguinte.
+ * Assim a memória usada não depende do tamanho do arquivo e cada bloco pode ser
+ * interpretado em paralelo com a leitura do próximo.
+ * <p>
+ * Campos entre aspas podem conter o separador e aspas duplicadas, mas não quebras
+ * de linha.
+ */
+final class CsvReader implements Closeable {
+
+    static final int TAMANHO_PEDACO = 1 << 20;
+
+    private static final char BOM = 0xFEFF;
+
+    private final FileChannel canal;
+    private final ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_PEDACO);
+    private long proximaLinha = 1;
+    private boolean fim;
+
+    CsvReader(
+            Path arquivo
+    ) throws IOException {
+        this.canal = FileChannel.open(arquivo, StandardOpenOption.READ);
+    }
+
+    /**
+     * Bloco de linhas consecutivas do arquivo.
+     *
+     * @param primeiraLinha número, a partir de 1, da primeira linha do bloco
+     * @param linhas        linhas sem o terminador
+     */
+    record Bloco(
+            long primeiraLinha,
+            List<String> linhas
+    ) {}
+
+    /**
+     * Lê o próximo bloco de linhas completas.
+     *
+     * @return bloco lido ou {@code null} no fim do arquivo
+     * @throws IOException se o arquivo não puder ser lido ou tiver uma linha maior que um pedaço
+     */
+    Bloco proximo() throws IOException {
+        while (true) {
+            if (!fim && canal.read(buffer) < 0) fim = true;
+
+            buffer.flip();
+            var limite = buffer.limit();
+            if (fim && limite == 0) return null;
+
+            var corte = ultimaQuebra(limite);
+            if (corte < 0) {
+                if (fim) corte = limite;
+                else if (limite == buffer.capacity()) throw new IOException("Linha " + proximaLinha + " maior que " + TAMANHO_PEDACO + " bytes");
+                else {
+                    buffer.position(limite).limit(buffer.capacity());
+                    continue;
+                }
+            }
+
+            var texto = new String(buffer.array(), 0, corte, StandardCharsets.UTF_8);
+            buffer.position(corte);
+            buffer.compact();
+
+            var linhas = texto.lines().toList();
+            if (linhas.isEmpty()) continue;
+            if (proximaLinha == 1 && !linhas.getFirst().isEmpty() && linhas.getFirst().charAt(0) == BOM) {
+                linhas = new ArrayList<>(linhas);
+                linhas.set(0, linhas.getFirst().substring(1));
+            }
+
+            var bloco = new Bloco(proximaLinha, linhas);
+            proximaLinha += linhas.size();
+            return bloco;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    /**
+     * Separa os campos de uma linha.
+     *
+     * @param linha     linha sem o terminador
+     * @param separador separador de campos
+     * @return campos, sem as aspas externas
+     */
+    static List<String> campos(
+            String linha,
+            char separador
+    ) {
+        var campos = new ArrayList<String>();
+        var campo = new StringBuilder();
+        var entreAspas = false;
+
+        for (var i = 0; i < linha.length(); i++) {
+            var c = linha.charAt(i);
+            if (entreAspas) {
+                if (c != '"') campo.append(c);
+                else if (i + 1 < linha.length() && linha.charAt(i + 1) == '"') campo.append(linha.charAt(++i));
+                else entreAspas = false;
+            } else if (c == '"') entreAspas = true;
+            else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else campo.append(c);
+        }
+
+        if (entreAspas) throw new IllegalArgumentException("Aspas não fechadas");
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    private int ultimaQuebra(
+            int limite
+    ) {
+        var bytes = buffer.array();
+        for (var i = limite - 1; i >= 0; i--) if (bytes[i] == '\n') return i + 1;
+        return -1;
+    }
+}
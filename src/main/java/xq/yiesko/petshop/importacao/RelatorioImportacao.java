@@ -0,0 +1,43 @@
+package xq.yiesko.petshop.importacao;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Resultado de uma importação.
+ *
+ * @param linhas      linhas de dados lidas, sem o cabeçalho e as linhas em branco
+ * @param importadas  registros incluídos
+ * @param rejeitadas  linhas rejeitadas
+ * @param amostra     primeiras linhas rejeitadas, com o motivo
+ * @param duracao     tempo total da importação
+ */
+public record RelatorioImportacao(
+        long linhas,
+        long importadas,
+        long rejeitadas,
+        List<Rejeicao> amostra,
+        Duration duracao
+) {
+
+    /**
+     * Linha rejeitada.
+     *
+     * @param linha  número da linha no arquivo, a partir de 1
+     * @param motivo motivo da rejeição
+     */
+    public record Rejeicao(
+            long linha,
+            String motivo
+    ) {}
+
+    /**
+     * Calcula a vazão da importação.
+     *
+     * @return linhas processadas por segundo
+     */
+    public double linhasPorSegundo() {
+        var segundos = duracao.toNanos() / 1e9;
+        return segundos > 0 ? linhas / segundos : linhas;
+    }
+}
@@ -0,0 +1,52 @@
+package xq.yiesko.petshop.json;
+
+/**
+ * Converte uma entidade de e para JSON sem reflexão.
+ * <p>
+ * Referências a outras entidades são representadas apenas pelo identificador e
+ * resolvidas na leitura, como nos codecs binários de persistência.
+ *
+ * @param <T> tipo da entidade
+ */
+public interface JsonCodec<T> {
+
+    /**
+     * Escreve a entidade como um objeto JSON.
+     *
+     * @param entity entidade escrita
+     * @param json   escritor de destino
+     */
+    void escrever(
+            T entity,
+            JsonWriter json
+    );
+
+    /**
+     * Lê um objeto JSON no formato produzido por {@link #escrever(Object, JsonWriter)}.
+     * <p>
+     * Campos desconhecidos são ignorados e campos ausentes ficam com o valor
+     * padrão; o identificador só é atribuído se estiver presente.
+     *
+     * @param json leitor posicionado no início do objeto
+     * @return entidade reconstruída
+     * @throws IllegalArgumentException se o objeto for inválido
+     */
+    T ler(
+            JsonReader json
+    );
+
+    /**
+     * Escreve uma sequência de entidades como uma lista JSON.
+     *
+     * @param entidades entidades escritas
+     * @param json      escritor de destino
+     */
+    default void escreverLista(
+            Iterable<? extends T> entidades,
+            JsonWriter json
+    ) {
+        json.inicioLista();
+        for (var entity : entidades) escrever(entity, json);
+        json.fimLista();
+    }
+}
@@ -0,0 +1,297 @@
+package xq.yiesko.petshop.json;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.function.IntFunction;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Cachorro;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Gato;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Codecs JSON das entidades do domínio.
+ * <p>
+ * Formatos:
+ * <ul>
+ *   <li>proprietário: {@code {"id", "versao", "nome", "telefone"}}</li>
+ *   <li>veterinário: {@code {"id", "versao", "nome", "telefone", "especialidade"}}</li>
+ *   <li>animal: {@code {"id", "versao", "tipo": "cachorro"|"gato", "nome", "idade", "especie", "proprietarioId"}}</li>
+ *   <li>consulta: {@code {"id", "versao", "data": "aaaa-mm-dd", "horario": "hh:mm", "animalId", "veterinarioId", "observacoes"}}</li>
+ * </ul>
+ * Na leitura, {@code "versao"} é opcional.
+ */
+public final class JsonCodecs {
+
+    private static final JsonWriter.Nome ID = JsonWriter.nome("id");
+    private static final JsonWriter.Nome VERSAO = JsonWriter.nome("versao");
+    private static final JsonWriter.Nome NOME = JsonWriter.nome("nome");
+    private static final JsonWriter.Nome TELEFONE = JsonWriter.nome("telefone");
+    private static final JsonWriter.Nome ESPECIALIDADE = JsonWriter.nome("especialidade");
+    private static final JsonWriter.Nome TIPO = JsonWriter.nome("tipo");
+    private static final JsonWriter.Nome IDADE = JsonWriter.nome("idade");
+    private static final JsonWriter.Nome ESPECIE = JsonWriter.nome("especie");
+    private static final JsonWriter.Nome PROPRIETARIO_ID = JsonWriter.nome("proprietarioId");
+    private static final JsonWriter.Nome DATA = JsonWriter.nome("data");
+    private static final JsonWriter.Nome HORARIO = JsonWriter.nome("horario");
+    private static final JsonWriter.Nome ANIMAL_ID = JsonWriter.nome("animalId");
+    private static final JsonWriter.Nome VETERINARIO_ID = JsonWriter.nome("veterinarioId");
+    private static final JsonWriter.Nome OBSERVACOES = JsonWriter.nome("observacoes");
+
+    private static final String CACHORRO = "cachorro";
+    private static final String GATO = "gato";
+
+    private JsonCodecs() {}
+
+    /**
+     * Codec de proprietários.
+     *
+     * @return codec
+     */
+    public static JsonCodec<Proprietario> proprietario() {
+        return new JsonCodec<>() {
+            @Override
+            public void escrever(
+                    Proprietario proprietario,
+                    JsonWriter json
+            ) {
+                json.inicioObjeto()
+                    .campo(ID).valor(proprietario.getId())
+                    .campo(VERSAO).valor(proprietario.getVersao())
+                    .campo(NOME).valor(proprietario.getNome())
+                    .campo(TELEFONE).valor(proprietario.getTelefone())
+                    .fimObjeto();
+            }
+
+            @Override
+            public Proprietario ler(
+                    JsonReader json
+            ) {
+                var id = 0;
+                var versao = 0;
+                String nome = null;
+                String telefone = null;
+
+                json.inicioObjeto();
+                while (json.proximoCampo()) {
+                    switch (json.campo(ID, NOME, TELEFONE, VERSAO)) {
+                        case 0 -> id = inteiro(json);
+                        case 1 -> nome = json.texto();
+                        case 2 -> telefone = json.texto();
+                        case 3 -> versao = inteiro(json);
+                        default -> json.pular();
+                    }
+                }
+
+                var proprietario = new Proprietario(nome, telefone);
+                proprietario.setId(id);
+                proprietario.setVersao(versao);
+                return proprietario;
+            }
+        };
+    }
+
+    /**
+     * Codec de veterinários.
+     *
+     * @return codec
+     */
+    public static JsonCodec<Veterinario> veterinario() {
+        return new JsonCodec<>() {
+            @Override
+            public void escrever(
+                    Veterinario veterinario,
+                    JsonWriter json
+            ) {
+                json.inicioObjeto()
+                    .campo(ID).valor(veterinario.getId())
+                    .campo(VERSAO).valor(veterinario.getVersao())
+                    .campo(NOME).valor(veterinario.getNome())
+                    .campo(TELEFONE).valor(veterinario.getTelefone())
+                    .campo(ESPECIALIDADE).valor(veterinario.getEspecialidade())
+                    .fimObjeto();
+            }
+
+            @Override
+            public Veterinario ler(
+                    JsonReader json
+            ) {
+                var id = 0;
+                var versao = 0;
+                String nome = null;
+                String telefone = null;
+                String especialidade = null;
+
+                json.inicioObjeto();
+                while (json.proximoCampo()) {
+                    switch (json.campo(ID, NOME, TELEFONE, ESPECIALIDADE, VERSAO)) {
+                        case 0 -> id = inteiro(json);
+                        case 1 -> nome = json.texto();
+                        case 2 -> telefone = json.texto();
+                        case 3 -> especialidade = json.texto();
+                        case 4 -> versao = inteiro(json);
+                        default -> json.pular();
+                    }
+                }
+
+                var veterinario = new Veterinario(nome, telefone, especialidade);
+                veterinario.setId(id);
+                veterinario.setVersao(versao);
+                return veterinario;
+            }
+        };
+    }
+
+    /**
+     * Codec de animais, que representa o proprietário pelo identificador e a
+     * subclasse pelo campo {@code tipo}.
+     *
+     * @param proprietarios resolve um proprietário pelo identificador
+     * @return codec
+     */
+    public static JsonCodec<Animal> animal(
+            IntFunction<Proprietario> proprietarios
+    ) {
+        return new JsonCodec<>() {
+            @Override
+            public void escrever(
+                    Animal animal,
+                    JsonWriter json
+            ) {
+                json.inicioObjeto()
+                    .campo(ID).valor(animal.getId())
+                    .campo(VERSAO).valor(animal.getVersao())
+                    .campo(TIPO).valor(animal instanceof Gato ? GATO : CACHORRO)
+                    .campo(NOME).valor(animal.getNome())
+                    .campo(IDADE).valor(animal.getIdade())
+                    .campo(ESPECIE).valor(animal.getEspecie());
+                referencia(json.campo(PROPRIETARIO_ID), animal.getProprietario());
+                json.fimObjeto();
+            }
+
+            @Override
+            public Animal ler(
+                    JsonReader json
+            ) {
+                var id = 0;
+                var versao = 0;
+                String tipo = null;
+                String nome = null;
+                var idade = 0;
+                String especie = null;
+                var proprietarioId = 0;
+
+                json.inicioObjeto();
+                while (json.proximoCampo()) {
+                    switch (json.campo(ID, TIPO, NOME, IDADE, ESPECIE, PROPRIETARIO_ID, VERSAO)) {
+                        case 0 -> id = inteiro(json);
+                        case 1 -> tipo = json.texto();
+                        case 2 -> nome = json.texto();
+                        case 3 -> idade = inteiro(json);
+                        case 4 -> especie = json.texto();
+                        case 5 -> proprietarioId = json.nulo() ? 0 : inteiro(json);
+                        case 6 -> versao = inteiro(json);
+                        default -> json.pular();
+                    }
+                }
+
+                var proprietario = resolver(proprietarios, proprietarioId);
+                Animal animal;
+                if (CACHORRO.equals(tipo)) animal = new Cachorro(nome, idade, especie, proprietario);
+                else if (GATO.equals(tipo)) animal = new Gato(nome, idade, especie, proprietario);
+                else throw new IllegalArgumentException("Tipo de animal desconhecido: " + tipo);
+
+                animal.setId(id);
+                animal.setVersao(versao);
+                return animal;
+            }
+        };
+    }
+
+    /**
+     * Codec de consultas, que representa animal e veterinário pelo identificador.
+     *
+     * @param animais      resolve um animal pelo identificador
+     * @param veterinarios resolve um veterinário pelo identificador
+     * @return codec
+     */
+    public static JsonCodec<Consulta> consulta(
+            IntFunction<Animal> animais,
+            IntFunction<Veterinario> veterinarios
+    ) {
+        return new JsonCodec<>() {
+            @Override
+            public void escrever(
+                    Consulta consulta,
+                    JsonWriter json
+            ) {
+                json.inicioObjeto()
+                    .campo(ID).valor(consulta.getId())
+                    .campo(VERSAO).valor(consulta.getVersao())
+                    .campo(DATA).valor(consulta.getData())
+                    .campo(HORARIO).valor(consulta.getHorario());
+                referencia(json.campo(ANIMAL_ID), consulta.getAnimal());
+                referencia(json.campo(VETERINARIO_ID), consulta.getVeterinario());
+                json.campo(OBSERVACOES).valor(consulta.getObservacoes())
+                    .fimObjeto();
+            }
+
+            @Override
+            public Consulta ler(
+                    JsonReader json
+            ) {
+                var id = 0;
+                var versao = 0;
+                LocalDate data = null;
+                LocalTime horario = null;
+                var animalId = 0;
+                var veterinarioId = 0;
+                String observacoes = null;
+
+                json.inicioObjeto();
+                while (json.proximoCampo()) {
+                    switch (json.campo(ID, DATA, HORARIO, ANIMAL_ID, VETERINARIO_ID, OBSERVACOES, VERSAO)) {
+                        case 0 -> id = inteiro(json);
+                        case 1 -> data = json.data();
+                        case 2 -> horario = json.horario();
+                        case 3 -> animalId = json.nulo() ? 0 : inteiro(json);
+                        case 4 -> veterinarioId = json.nulo() ? 0 : inteiro(json);
+                        case 5 -> observacoes = json.texto();
+                        case 6 -> versao = inteiro(json);
+                        default -> json.pular();
+                    }
+                }
+
+                var consulta = new Consulta(data, horario, resolver(animais, animalId), resolver(veterinarios, veterinarioId), observacoes);
+                consulta.setId(id);
+                consulta.setVersao(versao);
+                return consulta;
+            }
+        };
+    }
+
+    private static void referencia(
+            JsonWriter json,
+            Identificavel entity
+    ) {
+        if (entity != null) json.valor(entity.getId());
+        else json.nulo();
+    }
+
+    private static int inteiro(
+            JsonReader json
+    ) {
+        var valor = json.inteiro();
+        if (valor != (int) valor) throw new IllegalArgumentException("Número fora do intervalo: " + valor);
+        return (int) valor;
+    }
+
+    private static <R> R resolver(
+            IntFunction<R> resolvedor,
+            int id
+    ) {
+        return id != 0 ? resolvedor.apply(id) : null;
+    }
+}
@@ -0,0 +1,464 @@
+package xq.yiesko.petshop.json;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Leitor de JSON por demanda sobre bytes UTF-8, sem árvore intermediária.
+ * <p>
+ * Quem lê conduz o percurso: abre objetos e listas, pergunta se há mais campos
+ * ou itens e lê cada valor com o tipo esperado. Os nomes de campo são comparados
+ * diretamente com os bytes pré-codificados de {@link JsonWriter.Nome}, sem criar
+ * {@link String}, e campos desconhecidos podem ser ignorados com {@link #pular()}.
+ * Textos sem escape são decodificados com uma única cópia.
+ * <p>
+ * Documentos mal formados resultam em {@link IllegalArgumentException} com a
+ * posição do problema.
+ */
+public final class JsonReader {
+
+    private final byte[] dados;
+    private final int fim;
+    private int posicao;
+    private boolean esperaVirgula;
+
+    /**
+     * Cria um leitor sobre um documento completo.
+     *
+     * @param dados documento em UTF-8
+     */
+    public JsonReader(
+            byte[] dados
+    ) {
+        this(dados, 0, dados.length);
+    }
+
+    /**
+     * Cria um leitor sobre um trecho de um array.
+     *
+     * @param dados  bytes em UTF-8
+     * @param inicio primeiro byte do documento
+     * @param fim    posição após o último byte
+     */
+    public JsonReader(
+            byte[] dados,
+            int inicio,
+            int fim
+    ) {
+        this.dados = dados;
+        this.posicao = inicio;
+        this.fim = fim;
+    }
+
+    /**
+     * Consome a abertura de um objeto.
+     */
+    public void inicioObjeto() {
+        esperar('{');
+        esperaVirgula = false;
+    }
+
+    /**
+     * Avança para o próximo campo do objeto aberto.
+     *
+     * @return true se há um campo a ler; false se o objeto foi fechado
+     */
+    public boolean proximoCampo() {
+        return proximo('}');
+    }
+
+    /**
+     * Lê o nome do campo atual e o compara com os nomes conhecidos.
+     *
+     * @param nomes nomes aceitos
+     * @return índice do nome em {@code nomes}, ou -1 se o campo for desconhecido
+     */
+    public int campo(
+            JsonWriter.Nome... nomes
+    ) {
+        pularEspacos();
+        for (var i = 0; i < nomes.length; i++) {
+            var esperado = nomes[i].bytes();
+            var tamanho = esperado.length - 1;
+            if (posicao + tamanho <= fim && regiaoIgual(esperado, tamanho)) {
+                posicao += tamanho;
+                esperar(':');
+                esperaVirgula = false;
+                return i;
+            }
+        }
+
+        texto();
+        esperar(':');
+        esperaVirgula = false;
+        return -1;
+    }
+
+    /**
+     * Lê o nome do campo atual como texto, para objetos cujos campos não são
+     * conhecidos de antemão.
+     *
+     * @return nome do campo
+     */
+    public String nomeDoCampo() {
+        var nome = texto();
+        if (nome == null) throw invalido("nome de campo esperado");
+        esperar(':');
+        esperaVirgula = false;
+        return nome;
+    }
+
+    /**
+     * Consome a abertura de uma lista.
+     */
+    public void inicioLista() {
+        esperar('[');
+        esperaVirgula = false;
+    }
+
+    /**
+     * Avança para o próximo item da lista aberta.
+     *
+     * @return true se há um item a ler; false se a lista foi fechada
+     */
+    public boolean proximoItem() {
+        return proximo(']');
+    }
+
+    /**
+     * Lê um texto.
+     *
+     * @return texto lido, ou {@code null} se o valor for {@code null}
+     */
+    public String texto() {
+        if (nulo()) return null;
+        esperar('"');
+
+        var inicio = posicao;
+        while (posicao < fim) {
+            var b = dados[posicao];
+            if (b == '"') {
+                var texto = new String(dados, inicio, posicao - inicio, StandardCharsets.UTF_8);
+                posicao++;
+                esperaVirgula = true;
+                return texto;
+            }
+            if (b == '\\') return textoComEscapes(inicio);
+            if (b >= 0 && b < 0x20) throw invalido("caractere de controle em texto");
+            posicao++;
+        }
+        throw invalido("texto não terminado");
+    }
+
+    /**
+     * Lê uma data ISO {@code aaaa-mm-dd}, decodificada direto dos bytes.
+     *
+     * @return data lida, ou {@code null} se o valor for {@code null}
+     */
+    public LocalDate data() {
+        if (nulo()) return null;
+        pularEspacos();
+
+        var p = posicao;
+        if (p + 12 <= fim && dados[p] == '"' && dados[p + 5] == '-' && dados[p + 8] == '-' && dados[p + 11] == '"') {
+            var ano = digitos(p + 1, 4);
+            var mes = digitos(p + 6, 2);
+            var dia = digitos(p + 9, 2);
+            if (ano >= 0 && mes >= 0 && dia >= 0) {
+                try {
+                    var data = LocalDate.of(ano, mes, dia);
+                    posicao = p + 12;
+                    esperaVirgula = true;
+                    return data;
+                } catch (DateTimeException e) {
+                    throw invalido("data inexistente");
+                }
+            }
+        }
+
+        var texto = texto();
+        try {
+            return LocalDate.parse(texto);
+        } catch (DateTimeParseException e) {
+            throw invalido("data inválida");
+        }
+    }
+
+    /**
+     * Lê um horário ISO, com o caminho rápido para {@code hh:mm}.
+     *
+     * @return horário lido, ou {@code null} se o valor for {@code null}
+     */
+    public LocalTime horario() {
+        if (nulo()) return null;
+        pularEspacos();
+
+        var p = posicao;
+        if (p + 7 <= fim && dados[p] == '"' && dados[p + 3] == ':' && dados[p + 6] == '"') {
+            var hora = digitos(p + 1, 2);
+            var minuto = digitos(p + 4, 2);
+            if (hora >= 0 && minuto >= 0) {
+                try {
+                    var horario = LocalTime.of(hora, minuto);
+                    posicao = p + 7;
+                    esperaVirgula = true;
+                    return horario;
+                } catch (DateTimeException e) {
+                    throw invalido("horário inexistente");
+                }
+            }
+        }
+
+        var texto = texto();
+        try {
+            return LocalTime.parse(texto);
+        } catch (DateTimeParseException e) {
+            throw invalido("horário inválido");
+        }
+    }
+
+    /**
+     * Lê um número inteiro.
+     *
+     * @return número lido
+     */
+    public long inteiro() {
+        pularEspacos();
+        var negativo = posicao < fim && dados[posicao] == '-';
+        if (negativo) posicao++;
+
+        var inicio = posicao;
+        var valor = 0L;
+        while (posicao < fim && dados[posicao] >= '0' && dados[posicao] <= '9') {
+            var digito = dados[posicao] - '0';
+            if (valor > (Long.MAX_VALUE - digito) / 10) throw invalido("número fora do intervalo");
+            valor = valor * 10 + digito;
+            posicao++;
+        }
+
+        if (posicao == inicio) throw invalido("número inteiro esperado");
+        if (posicao < fim && (dados[posicao] == '.' || dados[posicao] == 'e' || dados[posicao] == 'E'))
+            throw invalido("número inteiro esperado");
+        esperaVirgula = true;
+        return negativo ? -valor : valor;
+    }
+
+    /**
+     * Lê um booleano.
+     *
+     * @return valor lido
+     */
+    public boolean booleano() {
+        pularEspacos();
+        if (literal("true")) return true;
+        if (literal("false")) return false;
+        throw invalido("booleano esperado");
+    }
+
+    /**
+     * Consome um {@code null}, se for o próximo valor.
+     *
+     * @return true se o valor era {@code null}
+     */
+    public boolean nulo() {
+        pularEspacos();
+        return literal("null");
+    }
+
+    /**
+     * Lê um valor simples sem conhecer o tipo de antemão.
+     *
+     * @return {@link String}, {@link Long}, {@link Boolean} ou {@code null}
+     * @throws IllegalArgumentException se o valor for um objeto, uma lista ou um número fracionário
+     */
+    public Object escalar() {
+        pularEspacos();
+        if (posicao >= fim) throw invalido("valor esperado");
+
+        return switch (dados[posicao]) {
+            case '"' -> texto();
+            case 't', 'f' -> booleano();
+            case 'n' -> {
+                if (!nulo()) throw invalido("valor esperado");
+                yield null;
+            }
+            case '{', '[' -> throw invalido("valor simples esperado");
+            default -> inteiro();
+        };
+    }
+
+    /**
+     * Ignora o próximo valor, qualquer que seja o tipo.
+     */
+    public void pular() {
+        pularEspacos();
+        if (posicao >= fim) throw invalido("valor esperado");
+
+        switch (dados[posicao]) {
+            case '"' -> texto();
+            case '{' -> {
+                inicioObjeto();
+                while (proximoCampo()) {
+                    campo();
+                    pular();
+                }
+            }
+            case '[' -> {
+                inicioLista();
+                while (proximoItem()) pular();
+            }
+            case 't', 'f' -> booleano();
+            case 'n' -> {
+                if (!nulo()) throw invalido("valor esperado");
+            }
+            default -> pularNumero();
+        }
+    }
+
+    /**
+     * Verifica se restam apenas espaços após o documento.
+     *
+     * @return true se o documento foi lido por completo
+     */
+    public boolean terminou() {
+        pularEspacos();
+        return posicao == fim;
+    }
+
+    private boolean proximo(
+            char fechamento
+    ) {
+        pularEspacos();
+        if (posicao < fim && dados[posicao] == fechamento) {
+            posicao++;
+            esperaVirgula = true;
+            return false;
+        }
+        if (esperaVirgula) esperar(',');
+        esperaVirgula = false;
+        return true;
+    }
+
+    private String textoComEscapes(
+            int inicio
+    ) {
+        var texto = new StringBuilder(posicao - inicio + 16);
+        texto.append(new String(dados, inicio, posicao - inicio, StandardCharsets.UTF_8));
+
+        while (posicao < fim) {
+            var b = dados[posicao];
+            if (b == '"') {
+                posicao++;
+                esperaVirgula = true;
+                return texto.toString();
+            }
+
+            if (b != '\\') {
+                var trecho = posicao;
+                while (posicao < fim && dados[posicao] != '"' && dados[posicao] != '\\') {
+                    if (dados[posicao] >= 0 && dados[posicao] < 0x20) throw invalido("caractere de controle em texto");
+                    posicao++;
+                }
+                texto.append(new String(dados, trecho, posicao - trecho, StandardCharsets.UTF_8));
+                continue;
+            }
+
+            if (++posicao >= fim) break;
+            switch (dados[posicao++]) {
+                case '"' -> texto.append('"');
+                case '\\' -> texto.append('\\');
+                case '/' -> texto.append('/');
+                case 'b' -> texto.append('\b');
+                case 'f' -> texto.append('\f');
+                case 'n' -> texto.append('\n');
+                case 'r' -> texto.append('\r');
+                case 't' -> texto.append('\t');
+                case 'u' -> texto.append(unicode());
+                default -> throw invalido("escape inválido");
+            }
+        }
+        throw invalido("texto não terminado");
+    }
+
+    private char unicode() {
+        if (posicao + 4 > fim) throw invalido("escape inválido");
+
+        var codigo = 0;
+        for (var i = 0; i < 4; i++) {
+            var digito = Character.digit(dados[posicao++], 16);
+            if (digito < 0) throw invalido("escape inválido");
+            codigo = codigo << 4 | digito;
+        }
+        return (char) codigo;
+    }
+
+    private void pularNumero() {
+        var inicio = posicao;
+        while (posicao < fim) {
+            var b = dados[posicao];
+            if ((b < '0' || b > '9') && b != '-' && b != '+' && b != '.' && b != 'e' && b != 'E') break;
+            posicao++;
+        }
+        if (posicao == inicio) throw invalido("valor esperado");
+        esperaVirgula = true;
+    }
+
+    private int digitos(
+            int inicio,
+            int quantidade
+    ) {
+        var valor = 0;
+        for (var i = inicio; i < inicio + quantidade; i++) {
+            var digito = dados[i] - '0';
+            if (digito < 0 || digito > 9) return -1;
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+
+    private boolean literal(
+            String palavra
+    ) {
+        if (posicao + palavra.length() > fim) return false;
+        for (var i = 0; i < palavra.length(); i++)
+            if (dados[posicao + i] != palavra.charAt(i)) return false;
+
+        posicao += palavra.length();
+        esperaVirgula = true;
+        return true;
+    }
+
+    private boolean regiaoIgual(
+            byte[] esperado,
+            int tamanho
+    ) {
+        for (var i = 0; i < tamanho; i++)
+            if (dados[posicao + i] != esperado[i]) return false;
+        return true;
+    }
+
+    private void esperar(
+            char esperado
+    ) {
+        pularEspacos();
+        if (posicao >= fim || dados[posicao] != esperado) throw invalido("'" + esperado + "' esperado");
+        posicao++;
+    }
+
+    private void pularEspacos() {
+        while (posicao < fim) {
+            var b = dados[posicao];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return;
+            posicao++;
+        }
+    }
+
+    private IllegalArgumentException invalido(
+            String motivo
+    ) {
+        return new IllegalArgumentException("JSON inválido na posição " + posicao + ": " + motivo);
+    }
+}
@@ -0,0 +1,443 @@
+package xq.yiesko.petshop.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * Escritor de JSON que codifica diretamente em UTF-8 dentro de um buffer de bytes reutilizável.
+ * <p>
+ * Não há {@link String} intermediária nem reflexão: números são formatados
+ * dígito a dígito no buffer, textos ASCII sem escape são copiados caractere a
+ * caractere e os nomes de campo podem ser pré-codificados com {@link #nome(String)}
+ * para que cada escrita seja uma cópia de bytes. As vírgulas entre elementos são
+ * inseridas automaticamente.
+ * <p>
+ * Sem destino, o buffer cresce conforme necessário e pode ser lido com
+ * {@link #escreverEm(OutputStream)} ou {@link #toBytes()}; com destino, o buffer
+ * é descarregado sempre que enche, o que permite exportar qualquer quantidade de
+ * registros com memória constante; falhas do destino durante a escrita chegam
+ * como {@link UncheckedIOException}. {@link #limpar()} reaproveita o buffer para o
+ * próximo documento. Instâncias não são seguras para uso concorrente.
+ */
+public final class JsonWriter {
+
+    private static final int TAMANHO_INICIAL = 512;
+
+    /**
+     * Maior quantidade de bytes gerada por um caractere de texto, o escape de
+     * seis posições dos caracteres de controle. Reservar esse espaço antes de um
+     * texto dispensa a verificação de capacidade a cada caractere.
+     */
+    private static final int MAXIMO_POR_CARACTERE = 6;
+    private static final byte[] NULO = {'n', 'u', 'l', 'l'};
+    private static final byte[] VERDADEIRO = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSO = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream destino;
+    private byte[] buffer;
+    private int posicao;
+    private boolean separar;
+
+    /**
+     * Cria um escritor que acumula o documento em memória.
+     */
+    public JsonWriter() {
+        this(null, TAMANHO_INICIAL);
+    }
+
+    /**
+     * Cria um escritor que descarrega no destino sempre que o buffer enche.
+     *
+     * @param destino fluxo que recebe os bytes
+     * @param tamanho tamanho do buffer
+     */
+    public JsonWriter(
+            OutputStream destino,
+            int tamanho
+    ) {
+        this.destino = destino;
+        this.buffer = new byte[Math.max(tamanho, 64)];
+    }
+
+    /**
+     * Pré-codifica um nome de campo, incluindo aspas e dois-pontos.
+     *
+     * @param nome nome do campo, sem caracteres que exijam escape
+     * @return bytes prontos para {@link #campo(Nome)}
+     */
+    public static Nome nome(
+            String nome
+    ) {
+        return new Nome(('"' + nome + "\":").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Nome de campo pré-codificado.
+     *
+     * @param bytes representação UTF-8 de {@code "nome":}
+     */
+    public record Nome(
+            byte[] bytes
+    ) {}
+
+    /**
+     * Abre um objeto.
+     *
+     * @return este escritor
+     */
+    public JsonWriter inicioObjeto() {
+        virgula();
+        garantir(1);
+        buffer[posicao++] = '{';
+        separar = false;
+        return this;
+    }
+
+    /**
+     * Fecha o objeto aberto.
+     *
+     * @return este escritor
+     */
+    public JsonWriter fimObjeto() {
+        garantir(1);
+        buffer[posicao++] = '}';
+        separar = true;
+        return this;
+    }
+
+    /**
+     * Abre uma lista.
+     *
+     * @return este escritor
+     */
+    public JsonWriter inicioLista() {
+        virgula();
+        garantir(1);
+        buffer[posicao++] = '[';
+        separar = false;
+        return this;
+    }
+
+    /**
+     * Fecha a lista aberta.
+     *
+     * @return este escritor
+     */
+    public JsonWriter fimLista() {
+        garantir(1);
+        buffer[posicao++] = ']';
+        separar = true;
+        return this;
+    }
+
+    /**
+     * Escreve o nome do próximo campo do objeto aberto.
+     *
+     * @param nome nome pré-codificado
+     * @return este escritor
+     */
+    public JsonWriter campo(
+            Nome nome
+    ) {
+        virgula();
+        copiar(nome.bytes());
+        separar = false;
+        return this;
+    }
+
+    /**
+     * Escreve um texto, ou {@code null}.
+     *
+     * @param valor texto escrito
+     * @return este escritor
+     */
+    public JsonWriter valor(
+            String valor
+    ) {
+        virgula();
+        if (valor == null) {
+            copiar(NULO);
+            return this;
+        }
+
+        var comprimento = valor.length();
+        garantir(comprimento * MAXIMO_POR_CARACTERE + 2);
+        buffer[posicao++] = '"';
+        for (var i = 0; i < comprimento; i++) {
+            var c = valor.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') buffer[posicao++] = (byte) c;
+            else i = especial(valor, i);
+        }
+        buffer[posicao++] = '"';
+        return this;
+    }
+
+    /**
+     * Escreve um número inteiro.
+     *
+     * @param valor número escrito
+     * @return este escritor
+     */
+    public JsonWriter valor(
+            long valor
+    ) {
+        virgula();
+        if (valor == Long.MIN_VALUE) {
+            copiar(MIN_LONG);
+            return this;
+        }
+
+        garantir(20);
+        if (valor < 0) {
+            buffer[posicao++] = '-';
+            valor = -valor;
+        }
+
+        var digitos = digitos(valor);
+        var fim = posicao + digitos;
+        for (var i = fim - 1; i >= posicao; i--) {
+            buffer[i] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        }
+        posicao = fim;
+        return this;
+    }
+
+    /**
+     * Escreve uma data no formato ISO {@code aaaa-mm-dd}, ou {@code null}, sem
+     * passar por {@link String}.
+     *
+     * @param data data escrita
+     * @return este escritor
+     */
+    public JsonWriter valor(
+            LocalDate data
+    ) {
+        if (data == null || data.getYear() < 0 || data.getYear() > 9999) return valor(data == null ? null : data.toString());
+
+        virgula();
+        garantir(12);
+        buffer[posicao++] = '"';
+        doisDigitos(data.getYear() / 100);
+        doisDigitos(data.getYear() % 100);
+        buffer[posicao++] = '-';
+        doisDigitos(data.getMonthValue());
+        buffer[posicao++] = '-';
+        doisDigitos(data.getDayOfMonth());
+        buffer[posicao++] = '"';
+        return this;
+    }
+
+    /**
+     * Escreve um horário no formato ISO {@code hh:mm}, ou {@code null}; horários com
+     * segundos usam a representação completa de {@link LocalTime#toString()}.
+     *
+     * @param horario horário escrito
+     * @return este escritor
+     */
+    public JsonWriter valor(
+            LocalTime horario
+    ) {
+        if (horario == null || horario.getSecond() != 0 || horario.getNano() != 0)
+            return valor(horario == null ? null : horario.toString());
+
+        virgula();
+        garantir(7);
+        buffer[posicao++] = '"';
+        doisDigitos(horario.getHour());
+        buffer[posicao++] = ':';
+        doisDigitos(horario.getMinute());
+        buffer[posicao++] = '"';
+        return this;
+    }
+
+    /**
+     * Escreve um booleano.
+     *
+     * @param valor valor escrito
+     * @return este escritor
+     */
+    public JsonWriter valor(
+            boolean valor
+    ) {
+        virgula();
+        copiar(valor ? VERDADEIRO : FALSO);
+        return this;
+    }
+
+    /**
+     * Escreve {@code null}.
+     *
+     * @return este escritor
+     */
+    public JsonWriter nulo() {
+        virgula();
+        copiar(NULO);
+        return this;
+    }
+
+    /**
+     * Obtém a quantidade de bytes ainda no buffer.
+     *
+     * @return bytes pendentes
+     */
+    public int tamanho() {
+        return posicao;
+    }
+
+    /**
+     * Copia os bytes do buffer.
+     *
+     * @return documento em UTF-8
+     */
+    public byte[] toBytes() {
+        return Arrays.copyOf(buffer, posicao);
+    }
+
+    /**
+     * Grava os bytes do buffer em um fluxo, sem copiá-los.
+     *
+     * @param saida fluxo de destino
+     * @throws IOException se a escrita falhar
+     */
+    public void escreverEm(
+            OutputStream saida
+    ) throws IOException {
+        saida.write(buffer, 0, posicao);
+    }
+
+    /**
+     * Descarrega o buffer no destino configurado.
+     *
+     * @throws IOException se a escrita falhar
+     */
+    public void descarregar() throws IOException {
+        if (destino == null) return;
+        destino.write(buffer, 0, posicao);
+        posicao = 0;
+    }
+
+    /**
+     * Descarta o conteúdo para reaproveitar o buffer em um novo documento.
+     */
+    public void limpar() {
+        posicao = 0;
+        separar = false;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, posicao, StandardCharsets.UTF_8);
+    }
+
+    private void virgula() {
+        if (separar) {
+            garantir(1);
+            buffer[posicao++] = ',';
+        }
+        separar = true;
+    }
+
+    private void copiar(
+            byte[] bytes
+    ) {
+        garantir(bytes.length);
+        System.arraycopy(bytes, 0, buffer, posicao, bytes.length);
+        posicao += bytes.length;
+    }
+
+    /**
+     * Escreve um caractere que exige escape ou mais de um byte em UTF-8.
+     *
+     * @return índice do último caractere consumido
+     */
+    private int especial(
+            String valor,
+            int i
+    ) {
+        var c = valor.charAt(i);
+        if (c == '"' || c == '\\') {
+            buffer[posicao++] = '\\';
+            buffer[posicao++] = (byte) c;
+        } else if (c < 0x20) {
+            escape(c);
+        } else if (c < 0x800) {
+            buffer[posicao++] = (byte) (0xC0 | c >> 6);
+            buffer[posicao++] = (byte) (0x80 | c & 0x3F);
+        } else if (Character.isHighSurrogate(c) && i + 1 < valor.length() && Character.isLowSurrogate(valor.charAt(i + 1))) {
+            var codigo = Character.toCodePoint(c, valor.charAt(++i));
+            buffer[posicao++] = (byte) (0xF0 | codigo >> 18);
+            buffer[posicao++] = (byte) (0x80 | codigo >> 12 & 0x3F);
+            buffer[posicao++] = (byte) (0x80 | codigo >> 6 & 0x3F);
+            buffer[posicao++] = (byte) (0x80 | codigo & 0x3F);
+        } else if (Character.isSurrogate(c)) {
+            escape(c);
+        } else {
+            buffer[posicao++] = (byte) (0xE0 | c >> 12);
+            buffer[posicao++] = (byte) (0x80 | c >> 6 & 0x3F);
+            buffer[posicao++] = (byte) (0x80 | c & 0x3F);
+        }
+        return i;
+    }
+
+    private void escape(
+            char c
+    ) {
+        buffer[posicao++] = '\\';
+        switch (c) {
+            case '\n' -> buffer[posicao++] = 'n';
+            case '\r' -> buffer[posicao++] = 'r';
+            case '\t' -> buffer[posicao++] = 't';
+            case '\b' -> buffer[posicao++] = 'b';
+            case '\f' -> buffer[posicao++] = 'f';
+            default -> {
+                buffer[posicao++] = 'u';
+                buffer[posicao++] = HEX[c >> 12 & 0xF];
+                buffer[posicao++] = HEX[c >> 8 & 0xF];
+                buffer[posicao++] = HEX[c >> 4 & 0xF];
+                buffer[posicao++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    private void garantir(
+            int bytes
+    ) {
+        if (posicao + bytes <= buffer.length) return;
+
+        if (destino != null && posicao > 0) {
+            try {
+                descarregar();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (bytes <= buffer.length) return;
+        }
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, posicao + bytes));
+    }
+
+    private void doisDigitos(
+            int valor
+    ) {
+        buffer[posicao++] = (byte) ('0' + valor / 10);
+        buffer[posicao++] = (byte) ('0' + valor % 10);
+    }
+
+    private static int digitos(
+            long valor
+    ) {
+        var digitos = 1;
+        while (valor >= 10) {
+            valor /= 10;
+            digitos++;
+        }
+        return digitos;
+    }
+}
@@ -0,0 +1,156 @@
+package xq.yiesko.petshop.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências em faixas log-lineares, no estilo do HdrHistogram.
+ * <p>
+ * Cada potência de dois é dividida em {@value #SUBFAIXAS} faixas de mesma largura,
+ * então o valor devolvido por um percentil difere do medido em no máximo 1/16
+ * (6,25%), de nanossegundos a cerca de 18 minutos, com um número fixo de contadores.
+ * Valores acima disso caem na última faixa; o máximo é guardado à parte e é exato.
+ * <p>
+ * Registrar um valor não aloca e não usa lock: calcula a faixa com alguns
+ * deslocamentos de bits e incrementa um contador atômico. Os contadores são
+ * repetidos em algumas listras, escolhidas pela thread, para que threads
+ * registrando a mesma faixa ao mesmo tempo não disputem a mesma linha de cache.
+ * A leitura soma as listras e só acontece na coleta das métricas.
+ */
+public final class Histograma {
+
+    private static final int BITS_SUBFAIXA = 4;
+    private static final int SUBFAIXAS = 1 << BITS_SUBFAIXA;
+    private static final int MAIOR_EXPOENTE = 40;
+
+    /**
+     * Faixas de 0 a {@code 2^MAIOR_EXPOENTE - 1}: os valores menores que
+     * {@value #SUBFAIXAS} têm uma faixa cada e cada potência de dois acima deles tem
+     * {@value #SUBFAIXAS}.
+     */
+    static final int FAIXAS = (MAIOR_EXPOENTE - BITS_SUBFAIXA + 1) * SUBFAIXAS;
+
+    private static final int LISTRAS = Math.min(Integer.highestOneBit(Runtime.getRuntime().availableProcessors()), 4);
+
+    private final AtomicLongArray contagens = new AtomicLongArray(LISTRAS * FAIXAS);
+    private final LongAdder soma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Registra um valor.
+     *
+     * @param valor valor medido; negativos contam como zero
+     */
+    public void registrar(
+            long valor
+    ) {
+        if (valor < 0) valor = 0;
+
+        var listra = (int) Thread.currentThread().threadId() & LISTRAS - 1;
+        contagens.getAndIncrement(listra * FAIXAS + faixa(valor));
+        soma.add(valor);
+
+        long atual;
+        while (valor > (atual = maximo.get()) && !maximo.compareAndSet(atual, valor)) {
+            // outra thread registrou um máximo no meio tempo; compara de novo
+        }
+    }
+
+    /**
+     * Obtém a faixa de um valor.
+     *
+     * @param valor valor não negativo
+     * @return índice da faixa
+     */
+    static int faixa(
+            long valor
+    ) {
+        if (valor < SUBFAIXAS) return (int) valor;
+
+        var expoente = 63 - Long.numberOfLeadingZeros(valor);
+        if (expoente >= MAIOR_EXPOENTE) return FAIXAS - 1;
+
+        var deslocamento = expoente - BITS_SUBFAIXA;
+        return (deslocamento + 1) * SUBFAIXAS + (int) (valor >>> deslocamento & SUBFAIXAS - 1);
+    }
+
+    /**
+     * Obtém o maior valor que cai em uma faixa.
+     *
+     * @param faixa índice da faixa
+     * @return limite superior, inclusive
+     */
+    static long limiteSuperior(
+            int faixa
+    ) {
+        if (faixa < SUBFAIXAS) return faixa;
+
+        var deslocamento = faixa / SUBFAIXAS - 1;
+        var inicio = (long) (SUBFAIXAS + faixa % SUBFAIXAS) << deslocamento;
+        return inicio + (1L << deslocamento) - 1;
+    }
+
+    /**
+     * Soma as listras em uma leitura consistente o bastante para relatórios: valores
+     * registrados durante a leitura podem ou não aparecer.
+     *
+     * @return leitura do histograma
+     */
+    public Leitura ler() {
+        var faixas = new long[FAIXAS];
+        var quantidade = 0L;
+        for (var i = 0; i < contagens.length(); i++) {
+            var contagem = contagens.get(i);
+            faixas[i % FAIXAS] += contagem;
+            quantidade += contagem;
+        }
+        return new Leitura(faixas, quantidade, soma.sum(), maximo.get());
+    }
+
+    /**
+     * Conteúdo de um histograma em um instante.
+     *
+     * @param faixas     contagem de cada faixa
+     * @param quantidade total de valores registrados
+     * @param soma       soma dos valores
+     * @param maximo     maior valor registrado
+     */
+    public record Leitura(
+            long[] faixas,
+            long quantidade,
+            long soma,
+            long maximo
+    ) {
+
+        /**
+         * Obtém o percentil informado, arredondado para o limite superior da faixa em
+         * que cai e nunca acima do máximo registrado.
+         *
+         * @param percentil valor entre 0 e 100
+         * @return valor do percentil, ou 0 se nada foi registrado
+         */
+        public long percentil(
+                double percentil
+        ) {
+            if (quantidade == 0) return 0;
+
+            var posicao = Math.max(1, (long) Math.ceil(quantidade * percentil / 100));
+            var acumulado = 0L;
+            for (var faixa = 0; faixa < faixas.length; faixa++) {
+                acumulado += faixas[faixa];
+                if (acumulado >= posicao) return Math.min(limiteSuperior(faixa), maximo);
+            }
+            return maximo;
+        }
+
+        /**
+         * Obtém a média dos valores registrados.
+         *
+         * @return média, ou 0 se nada foi registrado
+         */
+        public double media() {
+            return quantidade == 0 ? 0 : (double) soma / quantidade;
+        }
+    }
+}
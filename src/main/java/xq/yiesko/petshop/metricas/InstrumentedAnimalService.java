@@ -0,0 +1,415 @@
+package xq.yiesko.petshop.metricas;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.Retrato;
+import xq.yiesko.petshop.service.AnimalService;
+import xq.yiesko.petshop.service.ConsultaService;
+
+/**
+ * Serviço de animais que mede cada chamada pública, em operações chamadas
+ * {@code AnimalService.<método>}.
+ * <p>
+ * As remoções em cascata também aparecem nas operações do serviço de consultas
+ * quando ele é instrumentado, já que é ele quem cancela as consultas do animal.
+ */
+public final class InstrumentedAnimalService extends AnimalService {
+
+    private final Operacao cadastrarCachorro;
+    private final Operacao cadastrarGato;
+    private final Operacao cadastrarTodos;
+    private final Operacao atualizarTodos;
+    private final Operacao removerTodos;
+    private final Operacao atualizarAnimal;
+    private final Operacao atualizarAnimalVersao;
+    private final Operacao removerAnimal;
+    private final Operacao removerAnimalEmCascata;
+    private final Operacao removerDoProprietario;
+    private final Operacao possuiAnimais;
+    private final Operacao bloquearProprietarios;
+    private final Operacao desbloquearProprietarios;
+    private final Operacao listarPorProprietario;
+    private final Operacao listarAnimais;
+    private final Operacao listarAnimaisPagina;
+    private final Operacao listarAnimaisApos;
+    private final Operacao streamAnimais;
+    private final Operacao retratoAnimais;
+    private final Operacao quantidadeAnimais;
+    private final Operacao buscarAnimais;
+    private final Operacao buscarPorId;
+    private final Operacao sincronizar;
+
+    /**
+     * Cria o serviço instrumentado.
+     *
+     * @param repository      repositório responsável pelo armazenamento
+     * @param consultaService serviço de consultas, usado para verificar e remover as consultas de um animal
+     * @param metricas        registro das métricas
+     */
+    public InstrumentedAnimalService(
+            Repository<Animal> repository,
+            ConsultaService consultaService,
+            Metricas metricas
+    ) {
+        super(repository, consultaService);
+        cadastrarCachorro = metricas.operacao("AnimalService.cadastrarCachorro");
+        cadastrarGato = metricas.operacao("AnimalService.cadastrarGato");
+        cadastrarTodos = metricas.operacao("AnimalService.cadastrarTodos");
+        atualizarTodos = metricas.operacao("AnimalService.atualizarTodos");
+        removerTodos = metricas.operacao("AnimalService.removerTodos");
+        atualizarAnimal = metricas.operacao("AnimalService.atualizarAnimal");
+        atualizarAnimalVersao = metricas.operacao("AnimalService.atualizarAnimalVersao");
+        removerAnimal = metricas.operacao("AnimalService.removerAnimal");
+        removerAnimalEmCascata = metricas.operacao("AnimalService.removerAnimalEmCascata");
+        removerDoProprietario = metricas.operacao("AnimalService.removerDoProprietario");
+        possuiAnimais = metricas.operacao("AnimalService.possuiAnimais");
+        bloquearProprietarios = metricas.operacao("AnimalService.bloquearProprietarios");
+        desbloquearProprietarios = metricas.operacao("AnimalService.desbloquearProprietarios");
+        listarPorProprietario = metricas.operacao("AnimalService.listarPorProprietario");
+        listarAnimais = metricas.operacao("AnimalService.listarAnimais");
+        listarAnimaisPagina = metricas.operacao("AnimalService.listarAnimaisPagina");
+        listarAnimaisApos = metricas.operacao("AnimalService.listarAnimaisApos");
+        streamAnimais = metricas.operacao("AnimalService.streamAnimais");
+        retratoAnimais = metricas.operacao("AnimalService.retratoAnimais");
+        quantidadeAnimais = metricas.operacao("AnimalService.quantidadeAnimais");
+        buscarAnimais = metricas.operacao("AnimalService.buscarAnimais");
+        buscarPorId = metricas.operacao("AnimalService.buscarPorId");
+        sincronizar = metricas.operacao("AnimalService.sincronizar");
+    }
+
+    @Override
+    public Animal cadastrarCachorro(
+            String nome,
+            int idade,
+            String especie,
+            Proprietario proprietario
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.cadastrarCachorro(nome, idade, especie, proprietario);
+        } catch (RuntimeException e) {
+            throw cadastrarCachorro.falha(e);
+        } finally {
+            cadastrarCachorro.registrar(instante);
+        }
+    }
+
+    @Override
+    public Animal cadastrarGato(
+            String nome,
+            int idade,
+            String especie,
+            Proprietario proprietario
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.cadastrarGato(nome, idade, especie, proprietario);
+        } catch (RuntimeException e) {
+            throw cadastrarGato.falha(e);
+        } finally {
+            cadastrarGato.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Animal> cadastrarTodos(
+            List<Animal> animais
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.cadastrarTodos(animais);
+        } catch (RuntimeException e) {
+            throw cadastrarTodos.falha(e);
+        } finally {
+            cadastrarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizarTodos(
+            List<Animal> animais
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizarTodos(animais);
+        } catch (RuntimeException e) {
+            throw atualizarTodos.falha(e);
+        } finally {
+            atualizarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.removerTodos(ids);
+        } catch (RuntimeException e) {
+            throw removerTodos.falha(e);
+        } finally {
+            removerTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizarAnimal(
+            int id,
+            String nome,
+            int idade,
+            String especie,
+            Proprietario proprietario
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizarAnimal(id, nome, idade, especie, proprietario);
+        } catch (RuntimeException e) {
+            throw atualizarAnimal.falha(e);
+        } finally {
+            atualizarAnimal.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizarAnimal(
+            int id,
+            String nome,
+            int idade,
+            String especie,
+            Proprietario proprietario,
+            int versaoEsperada
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizarAnimal(id, nome, idade, especie, proprietario, versaoEsperada);
+        } catch (RuntimeException e) {
+            throw atualizarAnimalVersao.falha(e);
+        } finally {
+            atualizarAnimalVersao.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean removerAnimal(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.removerAnimal(id);
+        } catch (RuntimeException e) {
+            throw removerAnimal.falha(e);
+        } finally {
+            removerAnimal.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean removerAnimalEmCascata(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.removerAnimalEmCascata(id);
+        } catch (RuntimeException e) {
+            throw removerAnimalEmCascata.falha(e);
+        } finally {
+            removerAnimalEmCascata.registrar(instante);
+        }
+    }
+
+    @Override
+    public int removerDoProprietario(
+            int proprietarioId
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.removerDoProprietario(proprietarioId);
+        } catch (RuntimeException e) {
+            throw removerDoProprietario.falha(e);
+        } finally {
+            removerDoProprietario.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean possuiAnimais(
+            int proprietarioId
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.possuiAnimais(proprietarioId);
+        } catch (RuntimeException e) {
+            throw possuiAnimais.falha(e);
+        } finally {
+            possuiAnimais.registrar(instante);
+        }
+    }
+
+    @Override
+    public void bloquearProprietarios(
+            List<Integer> proprietarioIds
+    ) {
+        var instante = System.nanoTime();
+        try {
+            super.bloquearProprietarios(proprietarioIds);
+        } catch (RuntimeException e) {
+            throw bloquearProprietarios.falha(e);
+        } finally {
+            bloquearProprietarios.registrar(instante);
+        }
+    }
+
+    @Override
+    public void desbloquearProprietarios(
+            List<Integer> proprietarioIds
+    ) {
+        var instante = System.nanoTime();
+        try {
+            super.desbloquearProprietarios(proprietarioIds);
+        } catch (RuntimeException e) {
+            throw desbloquearProprietarios.falha(e);
+        } finally {
+            desbloquearProprietarios.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Animal> listarPorProprietario(
+            Proprietario proprietario
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listarPorProprietario(proprietario);
+        } catch (RuntimeException e) {
+            throw listarPorProprietario.falha(e);
+        } finally {
+            listarPorProprietario.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Animal> listarAnimais() {
+        var instante = System.nanoTime();
+        try {
+            return super.listarAnimais();
+        } catch (RuntimeException e) {
+            throw listarAnimais.falha(e);
+        } finally {
+            listarAnimais.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Animal> listarAnimais(
+            int deslocamento,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listarAnimais(deslocamento, limite);
+        } catch (RuntimeException e) {
+            throw listarAnimaisPagina.falha(e);
+        } finally {
+            listarAnimaisPagina.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Animal> listarAnimaisApos(
+            int aposId,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listarAnimaisApos(aposId, limite);
+        } catch (RuntimeException e) {
+            throw listarAnimaisApos.falha(e);
+        } finally {
+            listarAnimaisApos.registrar(instante);
+        }
+    }
+
+    @Override
+    public Stream<Animal> streamAnimais() {
+        var instante = System.nanoTime();
+        try {
+            return super.streamAnimais();
+        } catch (RuntimeException e) {
+            throw streamAnimais.falha(e);
+        } finally {
+            streamAnimais.registrar(instante);
+        }
+    }
+
+    @Override
+    public Retrato<Animal> retratoAnimais() {
+        var instante = System.nanoTime();
+        try {
+            return super.retratoAnimais();
+        } catch (RuntimeException e) {
+            throw retratoAnimais.falha(e);
+        } finally {
+            retratoAnimais.registrar(instante);
+        }
+    }
+
+    @Override
+    public int quantidadeAnimais() {
+        var instante = System.nanoTime();
+        try {
+            return super.quantidadeAnimais();
+        } catch (RuntimeException e) {
+            throw quantidadeAnimais.falha(e);
+        } finally {
+            quantidadeAnimais.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Animal> buscarAnimais(
+            String termo,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.buscarAnimais(termo, limite);
+        } catch (RuntimeException e) {
+            throw buscarAnimais.falha(e);
+        } finally {
+            buscarAnimais.registrar(instante);
+        }
+    }
+
+    @Override
+    public Optional<Animal> buscarPorId(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.buscarPorId(id);
+        } catch (RuntimeException e) {
+            throw buscarPorId.falha(e);
+        } finally {
+            buscarPorId.registrar(instante);
+        }
+    }
+
+    @Override
+    public void sincronizar(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            super.sincronizar(id);
+        } catch (RuntimeException e) {
+            throw sincronizar.falha(e);
+        } finally {
+            sincronizar.registrar(instante);
+        }
+    }
+}
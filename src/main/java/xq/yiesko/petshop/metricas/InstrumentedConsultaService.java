@@ -0,0 +1,772 @@
+package xq.yiesko.petshop.metricas;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.Retrato;
+import xq.yiesko.petshop.repository.archive.ConsultaArchive;
+import xq.yiesko.petshop.service.ConsultaService;
+import xq.yiesko.petshop.service.FiltroConsultas;
+import xq.yiesko.petshop.service.Ocupacao;
+
+/**
+ * Serviço de consultas que mede cada chamada pública.
+ * <p>
+ * Cada método tem a sua {@link Operacao}, chamada {@code ConsultaService.<método>};
+ * as sobrecargas recebem um sufixo, como {@code atualizarVersao} para a atualização
+ * com versão esperada. Chamadas internas entre métodos públicos também são medidas,
+ * então {@code cancelarDoAnimal} aparece junto com o {@code cancelarTodos} que ele usa.
+ */
+public final class InstrumentedConsultaService extends ConsultaService {
+
+    private final Operacao agendar;
+    private final Operacao agendarTodos;
+    private final Operacao proximosHorariosLivres;
+    private final Operacao atualizar;
+    private final Operacao atualizarVersao;
+    private final Operacao atualizarTodos;
+    private final Operacao cancelar;
+    private final Operacao cancelarTodos;
+    private final Operacao listar;
+    private final Operacao listarPorData;
+    private final Operacao listarPorPeriodo;
+    private final Operacao historico;
+    private final Operacao listarPorVeterinario;
+    private final Operacao listarPorVeterinarioPeriodo;
+    private final Operacao listarPorAnimal;
+    private final Operacao possuiConsultasDoAnimal;
+    private final Operacao possuiConsultasDoVeterinario;
+    private final Operacao possuiConsultasArquivadasDoAnimal;
+    private final Operacao possuiConsultasArquivadasDoVeterinario;
+    private final Operacao bloquearAnimais;
+    private final Operacao desbloquearAnimais;
+    private final Operacao bloquearVeterinarios;
+    private final Operacao desbloquearVeterinarios;
+    private final Operacao cancelarDoAnimal;
+    private final Operacao cancelarDoVeterinario;
+    private final Operacao listarPagina;
+    private final Operacao listarApos;
+    private final Operacao stream;
+    private final Operacao retrato;
+    private final Operacao contarPorDia;
+    private final Operacao contarPorVeterinario;
+    private final Operacao contarPorEspecialidade;
+    private final Operacao contarPorEspecie;
+    private final Operacao contar;
+    private final Operacao contarPorVeterinarioFiltro;
+    private final Operacao contarPorAnimal;
+    private final Operacao contarPorEspecieFiltro;
+    private final Operacao ocupacao;
+    private final Operacao agrupar;
+    private final Operacao arquivar;
+    private final Operacao quantidade;
+    private final Operacao buscarPorId;
+    private final Operacao sincronizar;
+
+    /**
+     * Cria o serviço instrumentado.
+     *
+     * @param repository repositório responsável pelo armazenamento
+     * @param metricas   registro das métricas
+     */
+    public InstrumentedConsultaService(
+            Repository<Consulta> repository,
+            Metricas metricas
+    ) {
+        this(repository, null, metricas);
+    }
+
+    /**
+     * Cria o serviço instrumentado com um arquivo para as consultas antigas.
+     *
+     * @param repository repositório responsável pelo armazenamento
+     * @param arquivo    arquivo das consultas de meses encerrados, ou {@code null}
+     * @param metricas   registro das métricas
+     */
+    public InstrumentedConsultaService(
+            Repository<Consulta> repository,
+            ConsultaArchive arquivo,
+            Metricas metricas
+    ) {
+        super(repository, arquivo);
+        agendar = metricas.operacao("ConsultaService.agendar");
+        agendarTodos = metricas.operacao("ConsultaService.agendarTodos");
+        proximosHorariosLivres = metricas.operacao("ConsultaService.proximosHorariosLivres");
+        atualizar = metricas.operacao("ConsultaService.atualizar");
+        atualizarVersao = metricas.operacao("ConsultaService.atualizarVersao");
+        atualizarTodos = metricas.operacao("ConsultaService.atualizarTodos");
+        cancelar = metricas.operacao("ConsultaService.cancelar");
+        cancelarTodos = metricas.operacao("ConsultaService.cancelarTodos");
+        listar = metricas.operacao("ConsultaService.listar");
+        listarPorData = metricas.operacao("ConsultaService.listarPorData");
+        listarPorPeriodo = metricas.operacao("ConsultaService.listarPorPeriodo");
+        historico = metricas.operacao("ConsultaService.historico");
+        listarPorVeterinario = metricas.operacao("ConsultaService.listarPorVeterinario");
+        listarPorVeterinarioPeriodo = metricas.operacao("ConsultaService.listarPorVeterinarioPeriodo");
+        listarPorAnimal = metricas.operacao("ConsultaService.listarPorAnimal");
+        possuiConsultasDoAnimal = metricas.operacao("ConsultaService.possuiConsultasDoAnimal");
+        possuiConsultasDoVeterinario = metricas.operacao("ConsultaService.possuiConsultasDoVeterinario");
+        possuiConsultasArquivadasDoAnimal = metricas.operacao("ConsultaService.possuiConsultasArquivadasDoAnimal");
+        possuiConsultasArquivadasDoVeterinario = metricas.operacao("ConsultaService.possuiConsultasArquivadasDoVeterinario");
+        bloquearAnimais = metricas.operacao("ConsultaService.bloquearAnimais");
+        desbloquearAnimais = metricas.operacao("ConsultaService.desbloquearAnimais");
+        bloquearVeterinarios = metricas.operacao("ConsultaService.bloquearVeterinarios");
+        desbloquearVeterinarios = metricas.operacao("ConsultaService.desbloquearVeterinarios");
+        cancelarDoAnimal = metricas.operacao("ConsultaService.cancelarDoAnimal");
+        cancelarDoVeterinario = metricas.operacao("ConsultaService.cancelarDoVeterinario");
+        listarPagina = metricas.operacao("ConsultaService.listarPagina");
+        listarApos = metricas.operacao("ConsultaService.listarApos");
+        stream = metricas.operacao("ConsultaService.stream");
+        retrato = metricas.operacao("ConsultaService.retrato");
+        contarPorDia = metricas.operacao("ConsultaService.contarPorDia");
+        contarPorVeterinario = metricas.operacao("ConsultaService.contarPorVeterinario");
+        contarPorEspecialidade = metricas.operacao("ConsultaService.contarPorEspecialidade");
+        contarPorEspecie = metricas.operacao("ConsultaService.contarPorEspecie");
+        contar = metricas.operacao("ConsultaService.contar");
+        contarPorVeterinarioFiltro = metricas.operacao("ConsultaService.contarPorVeterinarioFiltro");
+        contarPorAnimal = metricas.operacao("ConsultaService.contarPorAnimal");
+        contarPorEspecieFiltro = metricas.operacao("ConsultaService.contarPorEspecieFiltro");
+        ocupacao = metricas.operacao("ConsultaService.ocupacao");
+        agrupar = metricas.operacao("ConsultaService.agrupar");
+        arquivar = metricas.operacao("ConsultaService.arquivar");
+        quantidade = metricas.operacao("ConsultaService.quantidade");
+        buscarPorId = metricas.operacao("ConsultaService.buscarPorId");
+        sincronizar = metricas.operacao("ConsultaService.sincronizar");
+    }
+
+    @Override
+    public Consulta agendar(
+            LocalDate data,
+            LocalTime horario,
+            Animal animal,
+            Veterinario veterinario,
+            String observacoes
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.agendar(data, horario, animal, veterinario, observacoes);
+        } catch (RuntimeException e) {
+            throw agendar.falha(e);
+        } finally {
+            agendar.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Consulta> agendarTodos(
+            List<Consulta> consultas
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.agendarTodos(consultas);
+        } catch (RuntimeException e) {
+            throw agendarTodos.falha(e);
+        } finally {
+            agendarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<LocalDateTime> proximosHorariosLivres(
+            Veterinario veterinario,
+            LocalDateTime aPartirDe,
+            int quantidade
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.proximosHorariosLivres(veterinario, aPartirDe, quantidade);
+        } catch (RuntimeException e) {
+            throw proximosHorariosLivres.falha(e);
+        } finally {
+            proximosHorariosLivres.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizar(
+            int id,
+            LocalDate data,
+            LocalTime horario,
+            Animal animal,
+            Veterinario veterinario,
+            String observacoes
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizar(id, data, horario, animal, veterinario, observacoes);
+        } catch (RuntimeException e) {
+            throw atualizar.falha(e);
+        } finally {
+            atualizar.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizar(
+            int id,
+            LocalDate data,
+            LocalTime horario,
+            Animal animal,
+            Veterinario veterinario,
+            String observacoes,
+            int versaoEsperada
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizar(id, data, horario, animal, veterinario, observacoes, versaoEsperada);
+        } catch (RuntimeException e) {
+            throw atualizarVersao.falha(e);
+        } finally {
+            atualizarVersao.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizarTodos(
+            List<Consulta> consultas
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizarTodos(consultas);
+        } catch (RuntimeException e) {
+            throw atualizarTodos.falha(e);
+        } finally {
+            atualizarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean cancelar(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.cancelar(id);
+        } catch (RuntimeException e) {
+            throw cancelar.falha(e);
+        } finally {
+            cancelar.registrar(instante);
+        }
+    }
+
+    @Override
+    public int cancelarTodos(
+            List<Integer> ids
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.cancelarTodos(ids);
+        } catch (RuntimeException e) {
+            throw cancelarTodos.falha(e);
+        } finally {
+            cancelarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Consulta> listar() {
+        var instante = System.nanoTime();
+        try {
+            return super.listar();
+        } catch (RuntimeException e) {
+            throw listar.falha(e);
+        } finally {
+            listar.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Consulta> listarPorData(
+            LocalDate data
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listarPorData(data);
+        } catch (RuntimeException e) {
+            throw listarPorData.falha(e);
+        } finally {
+            listarPorData.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Consulta> listarPorPeriodo(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listarPorPeriodo(inicio, fim);
+        } catch (RuntimeException e) {
+            throw listarPorPeriodo.falha(e);
+        } finally {
+            listarPorPeriodo.registrar(instante);
+        }
+    }
+
+    @Override
+    public Stream<Consulta> historico(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.historico(inicio, fim);
+        } catch (RuntimeException e) {
+            throw historico.falha(e);
+        } finally {
+            historico.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Consulta> listarPorVeterinario(
+            Veterinario veterinario
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listarPorVeterinario(veterinario);
+        } catch (RuntimeException e) {
+            throw listarPorVeterinario.falha(e);
+        } finally {
+            listarPorVeterinario.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Consulta> listarPorVeterinario(
+            Veterinario veterinario,
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listarPorVeterinario(veterinario, inicio, fim);
+        } catch (RuntimeException e) {
+            throw listarPorVeterinarioPeriodo.falha(e);
+        } finally {
+            listarPorVeterinarioPeriodo.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Consulta> listarPorAnimal(
+            Animal animal
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listarPorAnimal(animal);
+        } catch (RuntimeException e) {
+            throw listarPorAnimal.falha(e);
+        } finally {
+            listarPorAnimal.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean possuiConsultasDoAnimal(
+            int animalId
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.possuiConsultasDoAnimal(animalId);
+        } catch (RuntimeException e) {
+            throw possuiConsultasDoAnimal.falha(e);
+        } finally {
+            possuiConsultasDoAnimal.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean possuiConsultasDoVeterinario(
+            int veterinarioId
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.possuiConsultasDoVeterinario(veterinarioId);
+        } catch (RuntimeException e) {
+            throw possuiConsultasDoVeterinario.falha(e);
+        } finally {
+            possuiConsultasDoVeterinario.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean possuiConsultasArquivadasDoAnimal(
+            int animalId
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.possuiConsultasArquivadasDoAnimal(animalId);
+        } catch (RuntimeException e) {
+            throw possuiConsultasArquivadasDoAnimal.falha(e);
+        } finally {
+            possuiConsultasArquivadasDoAnimal.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean possuiConsultasArquivadasDoVeterinario(
+            int veterinarioId
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.possuiConsultasArquivadasDoVeterinario(veterinarioId);
+        } catch (RuntimeException e) {
+            throw possuiConsultasArquivadasDoVeterinario.falha(e);
+        } finally {
+            possuiConsultasArquivadasDoVeterinario.registrar(instante);
+        }
+    }
+
+    @Override
+    public void bloquearAnimais(
+            List<Integer> animalIds
+    ) {
+        var instante = System.nanoTime();
+        try {
+            super.bloquearAnimais(animalIds);
+        } catch (RuntimeException e) {
+            throw bloquearAnimais.falha(e);
+        } finally {
+            bloquearAnimais.registrar(instante);
+        }
+    }
+
+    @Override
+    public void desbloquearAnimais(
+            List<Integer> animalIds
+    ) {
+        var instante = System.nanoTime();
+        try {
+            super.desbloquearAnimais(animalIds);
+        } catch (RuntimeException e) {
+            throw desbloquearAnimais.falha(e);
+        } finally {
+            desbloquearAnimais.registrar(instante);
+        }
+    }
+
+    @Override
+    public void bloquearVeterinarios(
+            List<Integer> veterinarioIds
+    ) {
+        var instante = System.nanoTime();
+        try {
+            super.bloquearVeterinarios(veterinarioIds);
+        } catch (RuntimeException e) {
+            throw bloquearVeterinarios.falha(e);
+        } finally {
+            bloquearVeterinarios.registrar(instante);
+        }
+    }
+
+    @Override
+    public void desbloquearVeterinarios(
+            List<Integer> veterinarioIds
+    ) {
+        var instante = System.nanoTime();
+        try {
+            super.desbloquearVeterinarios(veterinarioIds);
+        } catch (RuntimeException e) {
+            throw desbloquearVeterinarios.falha(e);
+        } finally {
+            desbloquearVeterinarios.registrar(instante);
+        }
+    }
+
+    @Override
+    public int cancelarDoAnimal(
+            int animalId
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.cancelarDoAnimal(animalId);
+        } catch (RuntimeException e) {
+            throw cancelarDoAnimal.falha(e);
+        } finally {
+            cancelarDoAnimal.registrar(instante);
+        }
+    }
+
+    @Override
+    public int cancelarDoVeterinario(
+            int veterinarioId
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.cancelarDoVeterinario(veterinarioId);
+        } catch (RuntimeException e) {
+            throw cancelarDoVeterinario.falha(e);
+        } finally {
+            cancelarDoVeterinario.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Consulta> listar(
+            int deslocamento,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listar(deslocamento, limite);
+        } catch (RuntimeException e) {
+            throw listarPagina.falha(e);
+        } finally {
+            listarPagina.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Consulta> listarApos(
+            int aposId,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listarApos(aposId, limite);
+        } catch (RuntimeException e) {
+            throw listarApos.falha(e);
+        } finally {
+            listarApos.registrar(instante);
+        }
+    }
+
+    @Override
+    public Stream<Consulta> stream() {
+        var instante = System.nanoTime();
+        try {
+            return super.stream();
+        } catch (RuntimeException e) {
+            throw stream.falha(e);
+        } finally {
+            stream.registrar(instante);
+        }
+    }
+
+    @Override
+    public Retrato<Consulta> retrato() {
+        var instante = System.nanoTime();
+        try {
+            return super.retrato();
+        } catch (RuntimeException e) {
+            throw retrato.falha(e);
+        } finally {
+            retrato.registrar(instante);
+        }
+    }
+
+    @Override
+    public SortedMap<LocalDate, Integer> contarPorDia(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.contarPorDia(inicio, fim);
+        } catch (RuntimeException e) {
+            throw contarPorDia.falha(e);
+        } finally {
+            contarPorDia.registrar(instante);
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> contarPorVeterinario(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.contarPorVeterinario(inicio, fim);
+        } catch (RuntimeException e) {
+            throw contarPorVeterinario.falha(e);
+        } finally {
+            contarPorVeterinario.registrar(instante);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> contarPorEspecialidade(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.contarPorEspecialidade(inicio, fim);
+        } catch (RuntimeException e) {
+            throw contarPorEspecialidade.falha(e);
+        } finally {
+            contarPorEspecialidade.registrar(instante);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> contarPorEspecie(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.contarPorEspecie(inicio, fim);
+        } catch (RuntimeException e) {
+            throw contarPorEspecie.falha(e);
+        } finally {
+            contarPorEspecie.registrar(instante);
+        }
+    }
+
+    @Override
+    public int contar(
+            FiltroConsultas filtro
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.contar(filtro);
+        } catch (RuntimeException e) {
+            throw contar.falha(e);
+        } finally {
+            contar.registrar(instante);
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> contarPorVeterinario(
+            FiltroConsultas filtro
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.contarPorVeterinario(filtro);
+        } catch (RuntimeException e) {
+            throw contarPorVeterinarioFiltro.falha(e);
+        } finally {
+            contarPorVeterinarioFiltro.registrar(instante);
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> contarPorAnimal(
+            FiltroConsultas filtro
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.contarPorAnimal(filtro);
+        } catch (RuntimeException e) {
+            throw contarPorAnimal.falha(e);
+        } finally {
+            contarPorAnimal.registrar(instante);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> contarPorEspecie(
+            FiltroConsultas filtro
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.contarPorEspecie(filtro);
+        } catch (RuntimeException e) {
+            throw contarPorEspecieFiltro.falha(e);
+        } finally {
+            contarPorEspecieFiltro.registrar(instante);
+        }
+    }
+
+    @Override
+    public Ocupacao ocupacao(
+            Veterinario veterinario,
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.ocupacao(veterinario, inicio, fim);
+        } catch (RuntimeException e) {
+            throw ocupacao.falha(e);
+        } finally {
+            ocupacao.registrar(instante);
+        }
+    }
+
+    @Override
+    public <K> Map<K, Long> agrupar(
+            LocalDate inicio,
+            LocalDate fim,
+            Function<? super Consulta, ? extends K> chave
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.agrupar(inicio, fim, chave);
+        } catch (RuntimeException e) {
+            throw agrupar.falha(e);
+        } finally {
+            agrupar.registrar(instante);
+        }
+    }
+
+    @Override
+    public int arquivar(
+            YearMonth limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.arquivar(limite);
+        } catch (RuntimeException e) {
+            throw arquivar.falha(e);
+        } finally {
+            arquivar.registrar(instante);
+        }
+    }
+
+    @Override
+    public int quantidade() {
+        var instante = System.nanoTime();
+        try {
+            return super.quantidade();
+        } catch (RuntimeException e) {
+            throw quantidade.falha(e);
+        } finally {
+            quantidade.registrar(instante);
+        }
+    }
+
+    @Override
+    public Optional<Consulta> buscarPorId(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.buscarPorId(id);
+        } catch (RuntimeException e) {
+            throw buscarPorId.falha(e);
+        } finally {
+            buscarPorId.registrar(instante);
+        }
+    }
+
+    @Override
+    public void sincronizar(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            super.sincronizar(id);
+        } catch (RuntimeException e) {
+            throw sincronizar.falha(e);
+        } finally {
+            sincronizar.registrar(instante);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package xq.yiesko.petshop.metricas;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.Retrato;
+import xq.yiesko.petshop.service.AnimalService;
+import xq.yiesko.petshop.service.ProprietarioService;
+
+/**
+ * Serviço de proprietários que mede cada chamada pública, em operações chamadas
+ * {@code ProprietarioService.<método>}.
+ */
+public final class InstrumentedProprietarioService extends ProprietarioService {
+
+    private final Operacao cadastrar;
+    private final Operacao cadastrarTodos;
+    private final Operacao atualizarTodos;
+    private final Operacao removerTodos;
+    private final Operacao atualizar;
+    private final Operacao atualizarVersao;
+    private final Operacao remover;
+    private final Operacao removerEmCascata;
+    private final Operacao listar;
+    private final Operacao listarPagina;
+    private final Operacao listarApos;
+    private final Operacao stream;
+    private final Operacao retrato;
+    private final Operacao quantidade;
+    private final Operacao buscar;
+    private final Operacao buscarPorId;
+    private final Operacao sincronizar;
+
+    /**
+     * Cria o serviço instrumentado.
+     *
+     * @param repository    repositório responsável pelo armazenamento
+     * @param animalService serviço de animais, usado para verificar e remover os animais de um proprietário
+     * @param metricas      registro das métricas
+     */
+    public InstrumentedProprietarioService(
+            Repository<Proprietario> repository,
+            AnimalService animalService,
+            Metricas metricas
+    ) {
+        super(repository, animalService);
+        cadastrar = metricas.operacao("ProprietarioService.cadastrar");
+        cadastrarTodos = metricas.operacao("ProprietarioService.cadastrarTodos");
+        atualizarTodos = metricas.operacao("ProprietarioService.atualizarTodos");
+        removerTodos = metricas.operacao("ProprietarioService.removerTodos");
+        atualizar = metricas.operacao("ProprietarioService.atualizar");
+        atualizarVersao = metricas.operacao("ProprietarioService.atualizarVersao");
+        remover = metricas.operacao("ProprietarioService.remover");
+        removerEmCascata = metricas.operacao("ProprietarioService.removerEmCascata");
+        listar = metricas.operacao("ProprietarioService.listar");
+        listarPagina = metricas.operacao("ProprietarioService.listarPagina");
+        listarApos = metricas.operacao("ProprietarioService.listarApos");
+        stream = metricas.operacao("ProprietarioService.stream");
+        retrato = metricas.operacao("ProprietarioService.retrato");
+        quantidade = metricas.operacao("ProprietarioService.quantidade");
+        buscar = metricas.operacao("ProprietarioService.buscar");
+        buscarPorId = metricas.operacao("ProprietarioService.buscarPorId");
+        sincronizar = metricas.operacao("ProprietarioService.sincronizar");
+    }
+
+    @Override
+    public Proprietario cadastrar(
+            String nome,
+            String telefone
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.cadastrar(nome, telefone);
+        } catch (RuntimeException e) {
+            throw cadastrar.falha(e);
+        } finally {
+            cadastrar.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Proprietario> cadastrarTodos(
+            List<Proprietario> proprietarios
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.cadastrarTodos(proprietarios);
+        } catch (RuntimeException e) {
+            throw cadastrarTodos.falha(e);
+        } finally {
+            cadastrarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizarTodos(
+            List<Proprietario> proprietarios
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizarTodos(proprietarios);
+        } catch (RuntimeException e) {
+            throw atualizarTodos.falha(e);
+        } finally {
+            atualizarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.removerTodos(ids);
+        } catch (RuntimeException e) {
+            throw removerTodos.falha(e);
+        } finally {
+            removerTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizar(
+            int id,
+            String nome,
+            String telefone
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizar(id, nome, telefone);
+        } catch (RuntimeException e) {
+            throw atualizar.falha(e);
+        } finally {
+            atualizar.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizar(
+            int id,
+            String nome,
+            String telefone,
+            int versaoEsperada
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizar(id, nome, telefone, versaoEsperada);
+        } catch (RuntimeException e) {
+            throw atualizarVersao.falha(e);
+        } finally {
+            atualizarVersao.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean remover(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.remover(id);
+        } catch (RuntimeException e) {
+            throw remover.falha(e);
+        } finally {
+            remover.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean removerEmCascata(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.removerEmCascata(id);
+        } catch (RuntimeException e) {
+            throw removerEmCascata.falha(e);
+        } finally {
+            removerEmCascata.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Proprietario> listar() {
+        var instante = System.nanoTime();
+        try {
+            return super.listar();
+        } catch (RuntimeException e) {
+            throw listar.falha(e);
+        } finally {
+            listar.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Proprietario> listar(
+            int deslocamento,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listar(deslocamento, limite);
+        } catch (RuntimeException e) {
+            throw listarPagina.falha(e);
+        } finally {
+            listarPagina.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Proprietario> listarApos(
+            int aposId,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listarApos(aposId, limite);
+        } catch (RuntimeException e) {
+            throw listarApos.falha(e);
+        } finally {
+            listarApos.registrar(instante);
+        }
+    }
+
+    @Override
+    public Stream<Proprietario> stream() {
+        var instante = System.nanoTime();
+        try {
+            return super.stream();
+        } catch (RuntimeException e) {
+            throw stream.falha(e);
+        } finally {
+            stream.registrar(instante);
+        }
+    }
+
+    @Override
+    public Retrato<Proprietario> retrato() {
+        var instante = System.nanoTime();
+        try {
+            return super.retrato();
+        } catch (RuntimeException e) {
+            throw retrato.falha(e);
+        } finally {
+            retrato.registrar(instante);
+        }
+    }
+
+    @Override
+    public int quantidade() {
+        var instante = System.nanoTime();
+        try {
+            return super.quantidade();
+        } catch (RuntimeException e) {
+            throw quantidade.falha(e);
+        } finally {
+            quantidade.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Proprietario> buscar(
+            String termo,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.buscar(termo, limite);
+        } catch (RuntimeException e) {
+            throw buscar.falha(e);
+        } finally {
+            buscar.registrar(instante);
+        }
+    }
+
+    @Override
+    public Optional<Proprietario> buscarPorId(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.buscarPorId(id);
+        } catch (RuntimeException e) {
+            throw buscarPorId.falha(e);
+        } finally {
+            buscarPorId.registrar(instante);
+        }
+    }
+
+    @Override
+    public void sincronizar(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            super.sincronizar(id);
+        } catch (RuntimeException e) {
+            throw sincronizar.falha(e);
+        } finally {
+            sincronizar.registrar(instante);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package xq.yiesko.petshop.metricas;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import xq.yiesko.petshop.model.impl.Identificavel;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.Retrato;
+
+/**
+ * Repositório que mede cada chamada ao repositório decorado.
+ * <p>
+ * As operações se chamam {@code repositorio.<nome>.<método>}, e a quantidade de
+ * entidades é exportada como o medidor {@code repositorio_entidades}. Em
+ * {@link #stream()} só a criação da stream é medida, já que o percurso acontece
+ * depois, no consumidor.
+ *
+ * @param <T> tipo da entidade persistida
+ */
+public final class InstrumentedRepository<T extends Identificavel> implements Repository<T> {
+
+    private final Repository<T> repository;
+    private final Operacao adicionar;
+    private final Operacao adicionarTodos;
+    private final Operacao atualizar;
+    private final Operacao atualizarVersao;
+    private final Operacao atualizarTodos;
+    private final Operacao buscarPorId;
+    private final Operacao listar;
+    private final Operacao listarFiltro;
+    private final Operacao listarPagina;
+    private final Operacao listarApos;
+    private final Operacao paraCada;
+    private final Operacao stream;
+    private final Operacao retrato;
+    private final Operacao remover;
+    private final Operacao removerTodos;
+    private final Operacao retirar;
+    private final Operacao retirarTodos;
+    private final Operacao tamanho;
+
+    /**
+     * Decora um repositório.
+     *
+     * @param nome       nome do repositório nas métricas, como {@code consultas}
+     * @param repository repositório decorado
+     * @param metricas   registro das métricas
+     */
+    public InstrumentedRepository(
+            String nome,
+            Repository<T> repository,
+            Metricas metricas
+    ) {
+        this.repository = repository;
+        var prefixo = "repositorio." + nome + ".";
+        adicionar = metricas.operacao(prefixo + "adicionar");
+        adicionarTodos = metricas.operacao(prefixo + "adicionarTodos");
+        atualizar = metricas.operacao(prefixo + "atualizar");
+        atualizarVersao = metricas.operacao(prefixo + "atualizarVersao");
+        atualizarTodos = metricas.operacao(prefixo + "atualizarTodos");
+        buscarPorId = metricas.operacao(prefixo + "buscarPorId");
+        listar = metricas.operacao(prefixo + "listar");
+        listarFiltro = metricas.operacao(prefixo + "listarFiltro");
+        listarPagina = metricas.operacao(prefixo + "listarPagina");
+        listarApos = metricas.operacao(prefixo + "listarApos");
+        paraCada = metricas.operacao(prefixo + "paraCada");
+        stream = metricas.operacao(prefixo + "stream");
+        retrato = metricas.operacao(prefixo + "retrato");
+        remover = metricas.operacao(prefixo + "remover");
+        removerTodos = metricas.operacao(prefixo + "removerTodos");
+        retirar = metricas.operacao(prefixo + "retirar");
+        retirarTodos = metricas.operacao(prefixo + "retirarTodos");
+        tamanho = metricas.operacao(prefixo + "tamanho");
+        metricas.medidor("repositorio_entidades", nome, repository::tamanho);
+    }
+
+    @Override
+    public T adicionar(
+            T entity
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.adicionar(entity);
+        } catch (RuntimeException e) {
+            throw adicionar.falha(e);
+        } finally {
+            adicionar.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<T> adicionarTodos(
+            List<T> entities
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.adicionarTodos(entities);
+        } catch (RuntimeException e) {
+            throw adicionarTodos.falha(e);
+        } finally {
+            adicionarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizar(
+            T entity
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.atualizar(entity);
+        } catch (RuntimeException e) {
+            throw atualizar.falha(e);
+        } finally {
+            atualizar.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizar(
+            T entity,
+            int versaoEsperada
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.atualizar(entity, versaoEsperada);
+        } catch (RuntimeException e) {
+            throw atualizarVersao.falha(e);
+        } finally {
+            atualizarVersao.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizarTodos(
+            List<T> entities
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.atualizarTodos(entities);
+        } catch (RuntimeException e) {
+            throw atualizarTodos.falha(e);
+        } finally {
+            atualizarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public Optional<T> buscarPorId(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.buscarPorId(id);
+        } catch (RuntimeException e) {
+            throw buscarPorId.falha(e);
+        } finally {
+            buscarPorId.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<T> listar() {
+        var instante = System.nanoTime();
+        try {
+            return repository.listar();
+        } catch (RuntimeException e) {
+            throw listar.falha(e);
+        } finally {
+            listar.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<T> listar(
+            Predicate<? super T> filtro
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.listar(filtro);
+        } catch (RuntimeException e) {
+            throw listarFiltro.falha(e);
+        } finally {
+            listarFiltro.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<T> listar(
+            int deslocamento,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.listar(deslocamento, limite);
+        } catch (RuntimeException e) {
+            throw listarPagina.falha(e);
+        } finally {
+            listarPagina.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<T> listarApos(
+            int aposId,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.listarApos(aposId, limite);
+        } catch (RuntimeException e) {
+            throw listarApos.falha(e);
+        } finally {
+            listarApos.registrar(instante);
+        }
+    }
+
+    @Override
+    public void paraCada(
+            Consumer<? super T> acao
+    ) {
+        var instante = System.nanoTime();
+        try {
+            repository.paraCada(acao);
+        } catch (RuntimeException e) {
+            throw paraCada.falha(e);
+        } finally {
+            paraCada.registrar(instante);
+        }
+    }
+
+    @Override
+    public Stream<T> stream() {
+        var instante = System.nanoTime();
+        try {
+            return repository.stream();
+        } catch (RuntimeException e) {
+            throw stream.falha(e);
+        } finally {
+            stream.registrar(instante);
+        }
+    }
+
+    @Override
+    public Retrato<T> retrato() {
+        var instante = System.nanoTime();
+        try {
+            return repository.retrato();
+        } catch (RuntimeException e) {
+            throw retrato.falha(e);
+        } finally {
+            retrato.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean remover(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.remover(id);
+        } catch (RuntimeException e) {
+            throw remover.falha(e);
+        } finally {
+            remover.registrar(instante);
+        }
+    }
+
+    @Override
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.removerTodos(ids);
+        } catch (RuntimeException e) {
+            throw removerTodos.falha(e);
+        } finally {
+            removerTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public Optional<T> retirar(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.retirar(id);
+        } catch (RuntimeException e) {
+            throw retirar.falha(e);
+        } finally {
+            retirar.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<T> retirarTodos(
+            List<Integer> ids
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return repository.retirarTodos(ids);
+        } catch (RuntimeException e) {
+            throw retirarTodos.falha(e);
+        } finally {
+            retirarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public int tamanho() {
+        var instante = System.nanoTime();
+        try {
+            return repository.tamanho();
+        } catch (RuntimeException e) {
+            throw tamanho.falha(e);
+        } finally {
+            tamanho.registrar(instante);
+        }
+    }
+}
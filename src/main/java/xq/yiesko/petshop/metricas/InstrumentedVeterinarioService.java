@@ -0,0 +1,309 @@
+package xq.yiesko.petshop.metricas;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.Retrato;
+import xq.yiesko.petshop.service.ConsultaService;
+import xq.yiesko.petshop.service.VeterinarioService;
+
+/**
+ * Serviço de veterinários que mede cada chamada pública, em operações chamadas
+ * {@code VeterinarioService.<método>}.
+ */
+public final class InstrumentedVeterinarioService extends VeterinarioService {
+
+    private final Operacao cadastrar;
+    private final Operacao cadastrarTodos;
+    private final Operacao atualizarTodos;
+    private final Operacao removerTodos;
+    private final Operacao atualizar;
+    private final Operacao atualizarVersao;
+    private final Operacao remover;
+    private final Operacao removerEmCascata;
+    private final Operacao listar;
+    private final Operacao listarPagina;
+    private final Operacao listarApos;
+    private final Operacao stream;
+    private final Operacao retrato;
+    private final Operacao quantidade;
+    private final Operacao buscar;
+    private final Operacao buscarPorId;
+    private final Operacao sincronizar;
+
+    /**
+     * Cria o serviço instrumentado.
+     *
+     * @param repository      repositório responsável pelo armazenamento
+     * @param consultaService serviço de consultas, usado para verificar e remover as consultas de um veterinário
+     * @param metricas        registro das métricas
+     */
+    public InstrumentedVeterinarioService(
+            Repository<Veterinario> repository,
+            ConsultaService consultaService,
+            Metricas metricas
+    ) {
+        super(repository, consultaService);
+        cadastrar = metricas.operacao("VeterinarioService.cadastrar");
+        cadastrarTodos = metricas.operacao("VeterinarioService.cadastrarTodos");
+        atualizarTodos = metricas.operacao("VeterinarioService.atualizarTodos");
+        removerTodos = metricas.operacao("VeterinarioService.removerTodos");
+        atualizar = metricas.operacao("VeterinarioService.atualizar");
+        atualizarVersao = metricas.operacao("VeterinarioService.atualizarVersao");
+        remover = metricas.operacao("VeterinarioService.remover");
+        removerEmCascata = metricas.operacao("VeterinarioService.removerEmCascata");
+        listar = metricas.operacao("VeterinarioService.listar");
+        listarPagina = metricas.operacao("VeterinarioService.listarPagina");
+        listarApos = metricas.operacao("VeterinarioService.listarApos");
+        stream = metricas.operacao("VeterinarioService.stream");
+        retrato = metricas.operacao("VeterinarioService.retrato");
+        quantidade = metricas.operacao("VeterinarioService.quantidade");
+        buscar = metricas.operacao("VeterinarioService.buscar");
+        buscarPorId = metricas.operacao("VeterinarioService.buscarPorId");
+        sincronizar = metricas.operacao("VeterinarioService.sincronizar");
+    }
+
+    @Override
+    public Veterinario cadastrar(
+            String nome,
+            String telefone,
+            String especialidade
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.cadastrar(nome, telefone, especialidade);
+        } catch (RuntimeException e) {
+            throw cadastrar.falha(e);
+        } finally {
+            cadastrar.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Veterinario> cadastrarTodos(
+            List<Veterinario> veterinarios
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.cadastrarTodos(veterinarios);
+        } catch (RuntimeException e) {
+            throw cadastrarTodos.falha(e);
+        } finally {
+            cadastrarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizarTodos(
+            List<Veterinario> veterinarios
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizarTodos(veterinarios);
+        } catch (RuntimeException e) {
+            throw atualizarTodos.falha(e);
+        } finally {
+            atualizarTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.removerTodos(ids);
+        } catch (RuntimeException e) {
+            throw removerTodos.falha(e);
+        } finally {
+            removerTodos.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizar(
+            int id,
+            String nome,
+            String telefone,
+            String especialidade
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizar(id, nome, telefone, especialidade);
+        } catch (RuntimeException e) {
+            throw atualizar.falha(e);
+        } finally {
+            atualizar.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean atualizar(
+            int id,
+            String nome,
+            String telefone,
+            String especialidade,
+            int versaoEsperada
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.atualizar(id, nome, telefone, especialidade, versaoEsperada);
+        } catch (RuntimeException e) {
+            throw atualizarVersao.falha(e);
+        } finally {
+            atualizarVersao.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean remover(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.remover(id);
+        } catch (RuntimeException e) {
+            throw remover.falha(e);
+        } finally {
+            remover.registrar(instante);
+        }
+    }
+
+    @Override
+    public boolean removerEmCascata(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.removerEmCascata(id);
+        } catch (RuntimeException e) {
+            throw removerEmCascata.falha(e);
+        } finally {
+            removerEmCascata.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Veterinario> listar() {
+        var instante = System.nanoTime();
+        try {
+            return super.listar();
+        } catch (RuntimeException e) {
+            throw listar.falha(e);
+        } finally {
+            listar.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Veterinario> listar(
+            int deslocamento,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listar(deslocamento, limite);
+        } catch (RuntimeException e) {
+            throw listarPagina.falha(e);
+        } finally {
+            listarPagina.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Veterinario> listarApos(
+            int aposId,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.listarApos(aposId, limite);
+        } catch (RuntimeException e) {
+            throw listarApos.falha(e);
+        } finally {
+            listarApos.registrar(instante);
+        }
+    }
+
+    @Override
+    public Stream<Veterinario> stream() {
+        var instante = System.nanoTime();
+        try {
+            return super.stream();
+        } catch (RuntimeException e) {
+            throw stream.falha(e);
+        } finally {
+            stream.registrar(instante);
+        }
+    }
+
+    @Override
+    public Retrato<Veterinario> retrato() {
+        var instante = System.nanoTime();
+        try {
+            return super.retrato();
+        } catch (RuntimeException e) {
+            throw retrato.falha(e);
+        } finally {
+            retrato.registrar(instante);
+        }
+    }
+
+    @Override
+    public int quantidade() {
+        var instante = System.nanoTime();
+        try {
+            return super.quantidade();
+        } catch (RuntimeException e) {
+            throw quantidade.falha(e);
+        } finally {
+            quantidade.registrar(instante);
+        }
+    }
+
+    @Override
+    public List<Veterinario> buscar(
+            String termo,
+            int limite
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.buscar(termo, limite);
+        } catch (RuntimeException e) {
+            throw buscar.falha(e);
+        } finally {
+            buscar.registrar(instante);
+        }
+    }
+
+    @Override
+    public Optional<Veterinario> buscarPorId(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            return super.buscarPorId(id);
+        } catch (RuntimeException e) {
+            throw buscarPorId.falha(e);
+        } finally {
+            buscarPorId.registrar(instante);
+        }
+    }
+
+    @Override
+    public void sincronizar(
+            int id
+    ) {
+        var instante = System.nanoTime();
+        try {
+            super.sincronizar(id);
+        } catch (RuntimeException e) {
+            throw sincronizar.falha(e);
+        } finally {
+            sincronizar.registrar(instante);
+        }
+    }
+}
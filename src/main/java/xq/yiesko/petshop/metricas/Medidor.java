@@ -0,0 +1,47 @@
+package xq.yiesko.petshop.metricas;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Valor instantâneo lido a cada coleta, como a quantidade de entidades de um
+ * repositório.
+ */
+public final class Medidor implements MedidorMBean {
+
+    private final String familia;
+    private final String nome;
+    private final LongSupplier valor;
+
+    Medidor(
+            String familia,
+            String nome,
+            LongSupplier valor
+    ) {
+        this.familia = familia;
+        this.nome = nome;
+        this.valor = valor;
+    }
+
+    /**
+     * Obtém a família do medidor, compartilhada por medidores da mesma grandeza.
+     *
+     * @return família, como {@code repositorio_entidades}
+     */
+    public String familia() {
+        return familia;
+    }
+
+    /**
+     * Obtém o nome do medidor dentro da família.
+     *
+     * @return nome, como {@code consultas}
+     */
+    public String nome() {
+        return nome;
+    }
+
+    @Override
+    public long getValor() {
+        return valor.getAsLong();
+    }
+}
@@ -0,0 +1,14 @@
+package xq.yiesko.petshop.metricas;
+
+/**
+ * Atributo de um {@link Medidor} publicado via JMX.
+ */
+public interface MedidorMBean {
+
+    /**
+     * Obtém o valor atual, lido no momento da consulta.
+     *
+     * @return valor do medidor
+     */
+    long getValor();
+}
@@ -0,0 +1,210 @@
+package xq.yiesko.petshop.metricas;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registro das métricas do sistema: uma {@link Operacao} por método instrumentado e
+ * {@link Medidor medidores} de valores instantâneos.
+ * <p>
+ * As métricas são criadas uma vez, ao montar os serviços, e atualizadas sem
+ * alocação nem lock a cada chamada; só a coleta percorre o registro. Elas podem ser
+ * lidas em texto no formato de exposição do Prometheus, por {@link #exportar()}, ou
+ * por JMX depois de {@link #publicarJmx()}, sob o domínio {@value #DOMINIO}.
+ */
+public final class Metricas implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(Metricas.class.getName());
+
+    static final String DOMINIO = "xq.yiesko.petshop";
+
+    private static final double NANOS_POR_SEGUNDO = 1e9;
+    private static final double[] QUANTIS = {0.5, 0.9, 0.99, 0.999};
+
+    private final ConcurrentNavigableMap<String, Operacao> operacoes = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<String, Medidor> medidores = new ConcurrentSkipListMap<>();
+    private final List<ObjectName> publicados = new ArrayList<>();
+    private MBeanServer jmx;
+
+    /**
+     * Obtém a operação com o nome informado, criando-a na primeira vez.
+     *
+     * @param nome nome da operação, como {@code ConsultaService.agendar}
+     * @return operação registrada
+     */
+    public Operacao operacao(
+            String nome
+    ) {
+        var existente = operacoes.get(nome);
+        if (existente != null) return existente;
+
+        var criada = new Operacao(nome);
+        existente = operacoes.putIfAbsent(nome, criada);
+        if (existente != null) return existente;
+
+        publicar(criada, "type=Operacao,name=" + ObjectName.quote(nome));
+        return criada;
+    }
+
+    /**
+     * Registra um medidor, substituindo outro de mesma família e nome.
+     *
+     * @param familia grandeza medida, como {@code repositorio_entidades}
+     * @param nome    nome do medidor dentro da família
+     * @param valor   função que lê o valor atual
+     */
+    public void medidor(
+            String familia,
+            String nome,
+            LongSupplier valor
+    ) {
+        var medidor = new Medidor(familia, nome, valor);
+        medidores.put(familia + '\0' + nome, medidor);
+        publicar(medidor, "type=" + familia + ",name=" + ObjectName.quote(nome));
+    }
+
+    /**
+     * Obtém as operações registradas, ordenadas pelo nome.
+     *
+     * @return operações
+     */
+    public List<Operacao> operacoes() {
+        return List.copyOf(operacoes.values());
+    }
+
+    /**
+     * Publica as métricas já registradas e as futuras no servidor de MBeans da
+     * plataforma, onde ficam visíveis para o JConsole e outros clientes JMX.
+     */
+    public synchronized void publicarJmx() {
+        if (jmx != null) return;
+
+        jmx = ManagementFactory.getPlatformMBeanServer();
+        for (var operacao : operacoes.values())
+            publicar(operacao, "type=Operacao,name=" + ObjectName.quote(operacao.nome()));
+        for (var medidor : medidores.values())
+            publicar(medidor, "type=" + medidor.familia() + ",name=" + ObjectName.quote(medidor.nome()));
+    }
+
+    private synchronized void publicar(
+            Object mbean,
+            String propriedades
+    ) {
+        if (jmx == null) return;
+
+        try {
+            var nome = new ObjectName(DOMINIO + ":" + propriedades);
+            if (jmx.isRegistered(nome)) jmx.unregisterMBean(nome);
+            else publicados.add(nome);
+            jmx.registerMBean(mbean, nome);
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "Métrica não publicada via JMX: " + propriedades, e);
+        }
+    }
+
+    /**
+     * Escreve todas as métricas no formato de texto do Prometheus.
+     * <p>
+     * As latências são exportadas em segundos, como resumos com os quantis
+     * {@code 0.5}, {@code 0.9}, {@code 0.99} e {@code 0.999}, além do máximo e da
+     * contagem de erros de cada operação.
+     *
+     * @return texto de exposição
+     */
+    public String exportar() {
+        var registradas = operacoes();
+        var leituras = new Histograma.Leitura[registradas.size()];
+        for (var i = 0; i < leituras.length; i++) leituras[i] = registradas.get(i).latencia();
+
+        var texto = new StringBuilder(512 * (leituras.length + 1));
+        cabecalho(texto, "petshop_operacao_segundos", "summary", "Latência das operações dos serviços e repositórios.");
+        for (var i = 0; i < leituras.length; i++) {
+            var operacao = registradas.get(i);
+            var leitura = leituras[i];
+            for (var quantil : QUANTIS) {
+                texto.append("petshop_operacao_segundos{operacao=\"").append(operacao.nome())
+                    .append("\",quantile=\"").append(quantil).append("\"} ");
+                numero(texto, leitura.percentil(quantil * 100) / NANOS_POR_SEGUNDO);
+            }
+            serie(texto, "petshop_operacao_segundos_sum", "operacao", operacao.nome(), leitura.soma() / NANOS_POR_SEGUNDO);
+            serie(texto, "petshop_operacao_segundos_count", "operacao", operacao.nome(), leitura.quantidade());
+        }
+
+        cabecalho(texto, "petshop_operacao_segundos_maximo", "gauge", "Maior latência registrada de cada operação.");
+        for (var i = 0; i < leituras.length; i++)
+            serie(texto, "petshop_operacao_segundos_maximo", "operacao", registradas.get(i).nome(), leituras[i].maximo() / NANOS_POR_SEGUNDO);
+
+        cabecalho(texto, "petshop_operacao_erros_total", "counter", "Chamadas encerradas por exceção.");
+        for (var operacao : registradas)
+            serie(texto, "petshop_operacao_erros_total", "operacao", operacao.nome(), operacao.getErros());
+
+        String familia = null;
+        for (var medidor : medidores.values()) {
+            var metrica = "petshop_" + medidor.familia();
+            if (!medidor.familia().equals(familia)) {
+                familia = medidor.familia();
+                cabecalho(texto, metrica, "gauge", null);
+            }
+            serie(texto, metrica, "nome", medidor.nome(), medidor.getValor());
+        }
+        return texto.toString();
+    }
+
+    private static void cabecalho(
+            StringBuilder texto,
+            String metrica,
+            String tipo,
+            String descricao
+    ) {
+        if (descricao != null) texto.append("# HELP ").append(metrica).append(' ').append(descricao).append('\n');
+        texto.append("# TYPE ").append(metrica).append(' ').append(tipo).append('\n');
+    }
+
+    private static void serie(
+            StringBuilder texto,
+            String metrica,
+            String rotulo,
+            String valorRotulo,
+            double valor
+    ) {
+        texto.append(metrica).append('{').append(rotulo).append("=\"").append(valorRotulo).append("\"} ");
+        numero(texto, valor);
+    }
+
+    private static void numero(
+            StringBuilder texto,
+            double valor
+    ) {
+        if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) texto.append((long) valor);
+        else texto.append(valor);
+        texto.append('\n');
+    }
+
+    /**
+     * Retira do servidor de MBeans as métricas publicadas por {@link #publicarJmx()}.
+     */
+    @Override
+    public synchronized void close() {
+        if (jmx == null) return;
+
+        for (var nome : publicados) {
+            try {
+                if (jmx.isRegistered(nome)) jmx.unregisterMBean(nome);
+            } catch (JMException e) {
+                LOG.log(Level.FINE, "Métrica já retirada: " + nome, e);
+            }
+        }
+        publicados.clear();
+        jmx = null;
+    }
+}
@@ -0,0 +1,111 @@
+package xq.yiesko.petshop.metricas;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chamadas, erros e latência de uma operação.
+ * <p>
+ * O uso esperado, sem nenhuma alocação por chamada, é:
+ * <pre>{@code
+ * var instante = System.nanoTime();
+ * try {
+ *     return alvo.executar();
+ * } catch (RuntimeException e) {
+ *     throw operacao.falha(e);
+ * } finally {
+ *     operacao.registrar(instante);
+ * }
+ * }</pre>
+ */
+public final class Operacao implements OperacaoMBean {
+
+    private static final double NANOS_POR_MICRO = 1_000;
+
+    private final String nome;
+    private final Histograma latencia = new Histograma();
+    private final LongAdder erros = new LongAdder();
+
+    Operacao(
+            String nome
+    ) {
+        this.nome = nome;
+    }
+
+    /**
+     * Obtém o nome da operação.
+     *
+     * @return nome, como {@code ConsultaService.agendar}
+     */
+    public String nome() {
+        return nome;
+    }
+
+    /**
+     * Registra uma chamada concluída.
+     *
+     * @param instante valor de {@link System#nanoTime()} no início da chamada
+     */
+    public void registrar(
+            long instante
+    ) {
+        latencia.registrar(System.nanoTime() - instante);
+    }
+
+    /**
+     * Conta uma chamada encerrada por exceção; a latência continua sendo registrada
+     * por {@link #registrar(long)}.
+     *
+     * @param erro exceção lançada pela chamada
+     * @return a própria exceção, para ser relançada
+     */
+    public RuntimeException falha(
+            RuntimeException erro
+    ) {
+        erros.increment();
+        return erro;
+    }
+
+    /**
+     * Lê o histograma de latências, em nanossegundos.
+     *
+     * @return leitura do histograma
+     */
+    public Histograma.Leitura latencia() {
+        return latencia.ler();
+    }
+
+    @Override
+    public long getChamadas() {
+        return latencia.ler().quantidade();
+    }
+
+    @Override
+    public long getErros() {
+        return erros.sum();
+    }
+
+    @Override
+    public double getMediaMicros() {
+        return latencia.ler().media() / NANOS_POR_MICRO;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latencia.ler().percentil(50) / NANOS_POR_MICRO;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latencia.ler().percentil(99) / NANOS_POR_MICRO;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latencia.ler().percentil(99.9) / NANOS_POR_MICRO;
+    }
+
+    @Override
+    public double getMaximoMicros() {
+        return latencia.ler().maximo() / NANOS_POR_MICRO;
+    }
+}
@@ -0,0 +1,57 @@
+package xq.yiesko.petshop.metricas;
+
+/**
+ * Atributos de uma {@link Operacao} publicados via JMX; as latências são
+ * convertidas para microssegundos.
+ */
+public interface OperacaoMBean {
+
+    /**
+     * Obtém a quantidade de chamadas concluídas, com ou sem erro.
+     *
+     * @return quantidade de chamadas
+     */
+    long getChamadas();
+
+    /**
+     * Obtém a quantidade de chamadas encerradas por exceção.
+     *
+     * @return quantidade de erros
+     */
+    long getErros();
+
+    /**
+     * Obtém a latência média.
+     *
+     * @return média em microssegundos
+     */
+    double getMediaMicros();
+
+    /**
+     * Obtém a mediana da latência.
+     *
+     * @return percentil 50 em microssegundos
+     */
+    double getP50Micros();
+
+    /**
+     * Obtém o percentil 99 da latência.
+     *
+     * @return percentil 99 em microssegundos
+     */
+    double getP99Micros();
+
+    /**
+     * Obtém o percentil 99,9 da latência.
+     *
+     * @return percentil 99,9 em microssegundos
+     */
+    double getP999Micros();
+
+    /**
+     * Obtém a maior latência registrada.
+     *
+     * @return máximo em microssegundos
+     */
+    double getMaximoMicros();
+}
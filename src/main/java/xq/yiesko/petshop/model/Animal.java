@@ -1,15 +1,20 @@
 package xq.yiesko.petshop.model;
 
 import xq.yiesko.petshop.model.impl.Identificavel;
+import xq.yiesko.petshop.model.texto.Dicionario;
 
 /**
  * Representa um animal atendido na clínica veterinária.
+ * <p>
+ * A espécie é guardada como código do {@link Dicionario#ESPECIES}, compartilhado
+ * por todos os animais da mesma espécie.
  */
 public abstract class Animal implements Identificavel {
     private int id;
+    private int versao;
     private String nome;
     private int idade;
-    private String especie;
+    private int especie;
     private Proprietario proprietario;
 
     /**
@@ -28,7 +33,7 @@ public abstract class Animal implements Identificavel {
     ) {
         this.nome = nome;
         this.idade = idade;
-        this.especie = especie;
+        this.especie = Dicionario.ESPECIES.codificar(especie);
         this.proprietario = proprietario;
     }
 
@@ -44,6 +49,18 @@ public abstract class Animal implements Identificavel {
         this.id = id;
     }
 
+    @Override
+    public int getVersao() {
+        return versao;
+    }
+
+    @Override
+    public void setVersao(
+            int versao
+    ) {
+        this.versao = versao;
+    }
+
     /**
      * Obtém o nome do animal.
      *
@@ -90,6 +107,16 @@ public abstract class Animal implements Identificavel {
      * @return espécie atual
      */
     public String getEspecie() {
+        return Dicionario.ESPECIES.decodificar(especie);
+    }
+
+    /**
+     * Obtém o código da espécie no {@link Dicionario#ESPECIES}, para agrupar animais
+     * sem comparar textos.
+     *
+     * @return código da espécie, ou 0 se ela não foi informada
+     */
+    public int getCodigoEspecie() {
         return especie;
     }
 
@@ -101,7 +128,7 @@ public abstract class Animal implements Identificavel {
     public void setEspecie(
             String especie
     ) {
-        this.especie = especie;
+        this.especie = Dicionario.ESPECIES.codificar(especie);
     }
 
     /**
@@ -124,6 +151,29 @@ public abstract class Animal implements Identificavel {
         this.proprietario = proprietario;
     }
 
+    /**
+     * Cria uma cópia do animal, com o mesmo identificador e versão, para ser
+     * alterada sem afetar a instância guardada no repositório.
+     *
+     * @return cópia do mesmo tipo
+     */
+    public abstract Animal copiar();
+
+    /**
+     * Copia o identificador e a versão para uma cópia recém-criada.
+     *
+     * @param copia cópia do animal
+     * @param <A>   tipo do animal
+     * @return a própria cópia
+     */
+    protected <A extends Animal> A copiarIdentidade(
+            A copia
+    ) {
+        copia.setId(id);
+        copia.setVersao(versao);
+        return copia;
+    }
+
     /**
      * Emite o som característico do animal.
      */
@@ -135,7 +185,7 @@ public abstract class Animal implements Identificavel {
             "id=" + id +
             ", nome='" + nome + '\'' +
             ", idade=" + idade +
-            ", especie='" + especie + '\'' +
+            ", especie='" + getEspecie() + '\'' +
             ", proprietário=" + (proprietario != null ? proprietario.getNome() : "-") +
             '}';
     }
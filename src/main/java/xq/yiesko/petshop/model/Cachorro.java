@@ -22,6 +22,11 @@ public class Cachorro extends Animal {
         super(nome, idade, especie, proprietario);
     }
 
+    @Override
+    public Cachorro copiar() {
+        return copiarIdentidade(new Cachorro(getNome(), getIdade(), getEspecie(), getProprietario()));
+    }
+
     @Override
     public void emitirSom() {
         System.out.println("Au Au!");
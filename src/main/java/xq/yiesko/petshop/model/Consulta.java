@@ -3,6 +3,7 @@ package xq.yiesko.petshop.model;
 import xq.yiesko.petshop.model.impl.Identificavel;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.Objects;
 
 /**
@@ -10,7 +11,9 @@ import java.util.Objects;
  */
 public class Consulta implements Identificavel {
     private int id;
+    private int versao;
     private LocalDate data;
+    private LocalTime horario;
     private Animal animal;
     private Veterinario veterinario;
     private String observacoes;
@@ -19,17 +22,20 @@ public class Consulta implements Identificavel {
      * Cria uma nova consulta.
      *
      * @param data         data da consulta
+     * @param horario      horário de início da consulta
      * @param animal       animal atendido
      * @param veterinario  veterinário responsável
      * @param observacoes  observações adicionais
      */
     public Consulta(
             LocalDate data,
+            LocalTime horario,
             Animal animal,
             Veterinario veterinario,
             String observacoes
     ) {
         this.data = data;
+        this.horario = horario;
         this.animal = animal;
         this.veterinario = veterinario;
         this.observacoes = observacoes;
@@ -47,6 +53,18 @@ public class Consulta implements Identificavel {
         this.id = id;
     }
 
+    @Override
+    public int getVersao() {
+        return versao;
+    }
+
+    @Override
+    public void setVersao(
+            int versao
+    ) {
+        this.versao = versao;
+    }
+
     public LocalDate getData() {
         return data;
     }
@@ -57,6 +75,16 @@ public class Consulta implements Identificavel {
         this.data = data;
     }
 
+    public LocalTime getHorario() {
+        return horario;
+    }
+
+    public void setHorario(
+            LocalTime horario
+    ) {
+        this.horario = horario;
+    }
+
     public Animal getAnimal() {
         return animal;
     }
@@ -87,6 +115,20 @@ public class Consulta implements Identificavel {
         this.observacoes = observacoes;
     }
 
+    /**
+     * Cria uma cópia da consulta, com o mesmo identificador e versão, para ser alterada
+     * sem afetar a instância guardada no repositório.
+     *
+     * @return cópia independente
+     */
+    public Consulta copiar() {
+        var copia = new Consulta(data, horario, animal, veterinario, null);
+        copia.observacoes = observacoes;
+        copia.id = id;
+        copia.versao = versao;
+        return copia;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -104,9 +146,10 @@ public class Consulta implements Identificavel {
         return "Consulta{" +
             "id=" + id +
             ", data=" + data +
+            ", horário=" + (horario != null ? horario : "-") +
             ", animal=" + (animal != null ? animal.getNome() : "-") +
             ", veterinário=" + (veterinario != null ? veterinario.getNome() : "-") +
-            ", observações='" + observacoes + '\'' +
+            ", observações='" + getObservacoes() + '\'' +
             '}';
     }
 }
\ No newline at end of file
@@ -22,6 +22,11 @@ public class Gato extends Animal {
         super(nome, idade, especie, proprietario);
     }
 
+    @Override
+    public Gato copiar() {
+        return copiarIdentidade(new Gato(getNome(), getIdade(), getEspecie(), getProprietario()));
+    }
+
     @Override
     public void emitirSom() {
         System.out.println("Miau!");
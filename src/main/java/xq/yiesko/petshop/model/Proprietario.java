@@ -9,6 +9,7 @@ import java.util.Objects;
  */
 public class Proprietario implements Identificavel {
     private int id;
+    private int versao;
     private String nome;
     private String telefone;
 
@@ -38,6 +39,18 @@ public class Proprietario implements Identificavel {
         this.id = id;
     }
 
+    @Override
+    public int getVersao() {
+        return versao;
+    }
+
+    @Override
+    public void setVersao(
+            int versao
+    ) {
+        this.versao = versao;
+    }
+
     /**
      * Obtém o nome do proprietário.
      *
@@ -78,6 +91,19 @@ public class Proprietario implements Identificavel {
         this.telefone = telefone;
     }
 
+    /**
+     * Cria uma cópia do proprietário, com o mesmo identificador e versão, para ser alterada
+     * sem afetar a instância guardada no repositório.
+     *
+     * @return cópia independente
+     */
+    public Proprietario copiar() {
+        var copia = new Proprietario(nome, telefone);
+        copia.id = id;
+        copia.versao = versao;
+        return copia;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
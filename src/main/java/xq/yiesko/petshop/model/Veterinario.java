@@ -1,17 +1,21 @@
 package xq.yiesko.petshop.model;
 
 import xq.yiesko.petshop.model.impl.Identificavel;
+import xq.yiesko.petshop.model.texto.Dicionario;
 
 import java.util.Objects;
 
 /**
  * Representa um veterinário da clínica.
+ * <p>
+ * A especialidade é guardada como código do {@link Dicionario#ESPECIALIDADES}.
  */
 public class Veterinario implements Identificavel {
     private int id;
+    private int versao;
     private String nome;
     private String telefone;
-    private String especialidade;
+    private int especialidade;
 
     /**
      * Cria um novo veterinário.
@@ -27,7 +31,7 @@ public class Veterinario implements Identificavel {
     ) {
         this.nome = nome;
         this.telefone = telefone;
-        this.especialidade = especialidade;
+        this.especialidade = Dicionario.ESPECIALIDADES.codificar(especialidade);
     }
 
     @Override
@@ -42,6 +46,18 @@ public class Veterinario implements Identificavel {
         this.id = id;
     }
 
+    @Override
+    public int getVersao() {
+        return versao;
+    }
+
+    @Override
+    public void setVersao(
+            int versao
+    ) {
+        this.versao = versao;
+    }
+
     /**
      * Obtém o nome do veterinário.
      *
@@ -88,6 +104,15 @@ public class Veterinario implements Identificavel {
      * @return especialidade atual
      */
     public String getEspecialidade() {
+        return Dicionario.ESPECIALIDADES.decodificar(especialidade);
+    }
+
+    /**
+     * Obtém o código da especialidade no {@link Dicionario#ESPECIALIDADES}.
+     *
+     * @return código da especialidade, ou 0 se ela não foi informada
+     */
+    public int getCodigoEspecialidade() {
         return especialidade;
     }
 
@@ -99,7 +124,21 @@ public class Veterinario implements Identificavel {
     public void setEspecialidade(
             String especialidade
     ) {
-        this.especialidade = especialidade;
+        this.especialidade = Dicionario.ESPECIALIDADES.codificar(especialidade);
+    }
+
+    /**
+     * Cria uma cópia do veterinário, com o mesmo identificador e versão, para ser alterada
+     * sem afetar a instância guardada no repositório.
+     *
+     * @return cópia independente
+     */
+    public Veterinario copiar() {
+        var copia = new Veterinario(nome, telefone, null);
+        copia.especialidade = especialidade;
+        copia.id = id;
+        copia.versao = versao;
+        return copia;
     }
 
     @Override
@@ -120,7 +159,7 @@ public class Veterinario implements Identificavel {
             "id=" + id +
             ", nome='" + nome + '\'' +
             ", telefone='" + telefone + '\'' +
-            ", especialidade='" + especialidade + '\'' +
+            ", especialidade='" + getEspecialidade() + '\'' +
             '}';
     }
 }
\ No newline at end of file
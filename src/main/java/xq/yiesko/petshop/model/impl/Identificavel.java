@@ -2,6 +2,10 @@ package xq.yiesko.petshop.model.impl;
 
 /**
  * Representa entidades que podem ser identificadas por um identificador numérico.
+ * <p>
+ * Cada entidade também carrega a versão do seu estado persistido, incrementada
+ * pelo repositório a cada atualização, para que escritas baseadas em uma leitura
+ * antiga possam ser rejeitadas.
  */
 public interface Identificavel {
 
@@ -18,4 +22,18 @@ public interface Identificavel {
      * @param id novo identificador
      */
     void setId(int id);
+
+    /**
+     * Obtém a versão do estado persistido da entidade.
+     *
+     * @return versão atual, ou 0 se a entidade ainda não foi persistida
+     */
+    int getVersao();
+
+    /**
+     * Define a versão do estado persistido da entidade.
+     *
+     * @param versao nova versão
+     */
+    void setVersao(int versao);
 }
\ No newline at end of file
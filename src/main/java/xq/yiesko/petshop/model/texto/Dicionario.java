@@ -0,0 +1,105 @@
+package xq.yiesko.petshop.model.texto;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dicionário de textos de baixa cardinalidade, que troca cada valor distinto por
+ * um código inteiro.
+ * <p>
+ * Campos como a espécie de um animal ou a especialidade de um veterinário se
+ * repetem em milhões de registros com poucas dezenas de valores distintos. Com o
+ * dicionário, cada registro guarda apenas o código, e todos os registros com o
+ * mesmo valor compartilham uma única instância de {@link String}. Decodificar é um
+ * acesso a array, sem lock; só o registro de um valor novo é sincronizado.
+ * <p>
+ * Os códigos são atribuídos em ordem crescente a partir de 1, o código 0 representa
+ * {@code null}, e um valor registrado nunca é esquecido: o dicionário não deve ser
+ * usado para campos de texto livre.
+ */
+public final class Dicionario {
+
+    /**
+     * Espécies e raças dos animais.
+     */
+    public static final Dicionario ESPECIES = new Dicionario();
+
+    /**
+     * Especialidades dos veterinários.
+     */
+    public static final Dicionario ESPECIALIDADES = new Dicionario();
+
+    private final ConcurrentMap<String, Integer> codigos = new ConcurrentHashMap<>();
+    private volatile String[] textos = new String[16];
+    private volatile int proximo = 1;
+
+    /**
+     * Obtém o código de um texto, registrando-o se ainda não existir.
+     *
+     * @param texto texto a codificar, possivelmente nulo
+     * @return código do texto, ou 0 se ele for nulo
+     */
+    public int codificar(
+            String texto
+    ) {
+        if (texto == null) return 0;
+
+        var codigo = codigos.get(texto);
+        return codigo != null ? codigo : registrar(texto);
+    }
+
+    /**
+     * Obtém o código de um texto sem registrá-lo, para filtros sobre valores que
+     * podem nunca ter sido usados.
+     *
+     * @param texto texto procurado, possivelmente nulo
+     * @return código do texto, 0 se ele for nulo ou -1 se nunca foi registrado
+     */
+    public int procurar(
+            String texto
+    ) {
+        if (texto == null) return 0;
+
+        var codigo = codigos.get(texto);
+        return codigo != null ? codigo : -1;
+    }
+
+    /**
+     * Obtém o texto de um código.
+     *
+     * @param codigo código devolvido por {@link #codificar(String)}
+     * @return texto, ou {@code null} para o código 0
+     */
+    public String decodificar(
+            int codigo
+    ) {
+        return codigo != 0 ? textos[codigo] : null;
+    }
+
+    /**
+     * Obtém a quantidade de textos distintos registrados.
+     *
+     * @return quantidade de códigos atribuídos
+     */
+    public int tamanho() {
+        return proximo - 1;
+    }
+
+    private synchronized int registrar(
+            String texto
+    ) {
+        var existente = codigos.get(texto);
+        if (existente != null) return existente;
+
+        var codigo = proximo;
+        var atuais = textos;
+        if (codigo == atuais.length) atuais = Arrays.copyOf(atuais, atuais.length * 2);
+        atuais[codigo] = texto;
+        textos = atuais;
+
+        codigos.put(texto, codigo);
+        proximo = codigo + 1;
+        return codigo;
+    }
+}
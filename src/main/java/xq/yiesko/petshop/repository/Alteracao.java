@@ -0,0 +1,35 @@
+package xq.yiesko.petshop.repository;
+
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Alteração publicada no {@link ChangeFeed} de um repositório.
+ * <p>
+ * As sequências começam em 1 e seguem exatamente a ordem em que as alterações
+ * foram publicadas no repositório, sem lacunas; as alterações de um lote recebem
+ * sequências consecutivas.
+ *
+ * @param sequencia número da alteração no repositório
+ * @param tipo      inclusão, atualização ou remoção
+ * @param id        identificador da entidade alterada
+ * @param antes     estado anterior, ou {@code null} em uma inclusão
+ * @param depois    novo estado, ou {@code null} em uma remoção
+ * @param <T>       tipo da entidade
+ */
+public record Alteracao<T extends Identificavel>(
+        long sequencia,
+        Tipo tipo,
+        int id,
+        T antes,
+        T depois
+) {
+
+    /**
+     * Tipo de uma alteração.
+     */
+    public enum Tipo {
+        INCLUSAO,
+        ATUALIZACAO,
+        REMOCAO
+    }
+}
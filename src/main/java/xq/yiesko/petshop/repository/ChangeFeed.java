@@ -0,0 +1,255 @@
+package xq.yiesko.petshop.repository;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Feed ordenado das alterações de um {@link InMemoryRepository}, para que outros
+ * sistemas reajam a inclusões, atualizações e remoções sem consultar o repositório
+ * periodicamente.
+ * <p>
+ * As últimas alterações ficam em um buffer circular de tamanho fixo. Quem escreve
+ * no repositório apenas grava a alteração na posição da sua sequência, sem lock e
+ * sem nunca esperar pelos assinantes. Cada assinante tem o próprio cursor e é
+ * atendido em uma virtual thread própria, no ritmo da demanda que pede por
+ * {@link Flow.Subscription#request(long)}: assinantes lentos não atrasam os rápidos
+ * nem as escritas.
+ * <p>
+ * Um assinante pode começar de qualquer sequência ainda retida no buffer e
+ * reprocessar dali em diante. Um assinante que fica mais de {@link #capacidade()}
+ * alterações para trás perde as mais antigas e recebe
+ * {@link Flow.Subscriber#onError(Throwable)} com uma {@link IllegalStateException};
+ * ele pode se recuperar lendo um {@link Retrato} e assinando de novo a partir de
+ * {@code retrato.sequencia() + 1}, sem lacunas nem repetições.
+ *
+ * @param <T> tipo da entidade
+ */
+public final class ChangeFeed<T extends Identificavel> implements Flow.Publisher<Alteracao<T>> {
+
+    private static final Logger LOG = Logger.getLogger(ChangeFeed.class.getName());
+
+    private final AtomicReferenceArray<Alteracao<T>> posicoes;
+    private final int mascara;
+    private final LongSupplier ultimaSequencia;
+    private final List<Assinatura> assinaturas = new CopyOnWriteArrayList<>();
+
+    /**
+     * Cria o feed.
+     *
+     * @param capacidade      quantidade de alterações retidas, arredondada para uma potência de dois
+     * @param ultimaSequencia lê a sequência da última alteração publicada no repositório
+     */
+    ChangeFeed(
+            int capacidade,
+            LongSupplier ultimaSequencia
+    ) {
+        if (capacidade <= 0) throw new IllegalArgumentException("Capacidade deve ser positiva");
+
+        var tamanho = Integer.highestOneBit(Math.min(capacidade, 1 << 30) * 2 - 1);
+        this.posicoes = new AtomicReferenceArray<>(tamanho);
+        this.mascara = tamanho - 1;
+        this.ultimaSequencia = ultimaSequencia;
+    }
+
+    /**
+     * Obtém a quantidade de alterações retidas para reprocessamento.
+     *
+     * @return tamanho do buffer
+     */
+    public int capacidade() {
+        return posicoes.length();
+    }
+
+    /**
+     * Obtém a sequência da última alteração publicada.
+     *
+     * @return última sequência, ou 0 se nada foi alterado
+     */
+    public long ultimaSequencia() {
+        return ultimaSequencia.getAsLong();
+    }
+
+    /**
+     * Obtém a menor sequência a partir da qual ainda é possível assinar.
+     *
+     * @return sequência mais antiga retida no buffer
+     */
+    public long primeiraDisponivel() {
+        return Math.max(1, ultimaSequencia() - capacidade() + 1);
+    }
+
+    /**
+     * Assina as alterações publicadas a partir de agora.
+     *
+     * @param assinante destinatário das alterações
+     */
+    @Override
+    public void subscribe(
+            Flow.Subscriber<? super Alteracao<T>> assinante
+    ) {
+        assinar(ultimaSequencia() + 1, assinante);
+    }
+
+    /**
+     * Assina as alterações a partir da sequência informada, reprocessando as que já
+     * foram publicadas.
+     * <p>
+     * Se a sequência já tiver saído do buffer, o assinante recebe
+     * {@link Flow.Subscriber#onError(Throwable)} logo depois de
+     * {@link Flow.Subscriber#onSubscribe(Flow.Subscription)}.
+     *
+     * @param aPartirDe primeira sequência a entregar
+     * @param assinante destinatário das alterações
+     */
+    public void assinar(
+            long aPartirDe,
+            Flow.Subscriber<? super Alteracao<T>> assinante
+    ) {
+        if (aPartirDe < 1) throw new IllegalArgumentException("Sequência deve ser positiva");
+
+        var assinatura = new Assinatura(aPartirDe, assinante);
+        assinaturas.add(assinatura);
+        Thread.ofVirtual().name("alteracoes-" + aPartirDe).start(assinatura::executar);
+    }
+
+    /**
+     * Grava uma alteração na posição da sua sequência e acorda os assinantes que a
+     * aguardam.
+     * <p>
+     * Escritas concorrentes podem gravar fora de ordem; os assinantes entregam na
+     * ordem das sequências, esperando as posições ainda vazias. Uma alteração que
+     * chega depois de outra mais nova já ter ocupado a mesma posição não é gravada,
+     * e os assinantes que dependiam dela são avisados da perda.
+     *
+     * @param alteracao alteração publicada no repositório
+     */
+    void publicar(
+            Alteracao<T> alteracao
+    ) {
+        var indice = (int) alteracao.sequencia() & mascara;
+        while (true) {
+            var anterior = posicoes.get(indice);
+            if (anterior != null && anterior.sequencia() > alteracao.sequencia()) break;
+            if (posicoes.compareAndSet(indice, anterior, alteracao)) break;
+        }
+
+        for (var assinatura : assinaturas) {
+            var aguardando = assinatura.aguardando;
+            if (aguardando != null) LockSupport.unpark(aguardando);
+        }
+    }
+
+    /**
+     * Cursor de um assinante, entregue pela sua própria virtual thread.
+     */
+    private final class Assinatura implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Alteracao<T>> assinante;
+        private final AtomicLong demanda = new AtomicLong();
+        private long proxima;
+        private volatile boolean ativa = true;
+        private volatile Thread aguardando;
+        private volatile Thread thread;
+        private volatile Throwable erro;
+
+        Assinatura(
+                long proxima,
+                Flow.Subscriber<? super Alteracao<T>> assinante
+        ) {
+            this.proxima = proxima;
+            this.assinante = assinante;
+        }
+
+        @Override
+        public void request(
+                long n
+        ) {
+            if (n <= 0) {
+                erro = new IllegalArgumentException("Demanda deve ser positiva: " + n);
+                cancel();
+                return;
+            }
+            demanda.accumulateAndGet(n, (atual, pedido) -> atual + pedido < 0 ? Long.MAX_VALUE : atual + pedido);
+            acordar();
+        }
+
+        @Override
+        public void cancel() {
+            ativa = false;
+            assinaturas.remove(this);
+            acordar();
+        }
+
+        private void acordar() {
+            var atual = thread;
+            if (atual != null && atual != Thread.currentThread()) LockSupport.unpark(atual);
+        }
+
+        private void executar() {
+            thread = Thread.currentThread();
+            try {
+                assinante.onSubscribe(this);
+                entregar();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Assinante de alterações cancelado após falha", e);
+            } finally {
+                ativa = false;
+                assinaturas.remove(this);
+            }
+        }
+
+        private void entregar() {
+            while (true) {
+                if (!ativa) {
+                    if (erro != null) assinante.onError(erro);
+                    return;
+                }
+                if (demanda.get() == 0) {
+                    aguardar();
+                    continue;
+                }
+
+                var alteracao = posicoes.get((int) proxima & mascara);
+                if (alteracao == null || alteracao.sequencia() < proxima) {
+                    aguardar();
+                    continue;
+                }
+                if (alteracao.sequencia() > proxima) {
+                    erro = new IllegalStateException("Alterações a partir da sequência " + proxima
+                        + " não estão mais disponíveis; a mais antiga retida é " + primeiraDisponivel());
+                    cancel();
+                    continue;
+                }
+
+                assinante.onNext(alteracao);
+                proxima++;
+                demanda.decrementAndGet();
+            }
+        }
+
+        /**
+         * Estaciona a thread até uma nova alteração, demanda ou cancelamento. A
+         * condição é verificada de novo depois de anunciar a espera, então um aviso
+         * dado entre a verificação e o estacionamento não se perde.
+         */
+        private void aguardar() {
+            aguardando = Thread.currentThread();
+            if (ativa && !pronta()) LockSupport.park(this);
+            aguardando = null;
+        }
+
+        private boolean pronta() {
+            if (demanda.get() == 0) return false;
+            var alteracao = posicoes.get((int) proxima & mascara);
+            return alteracao != null && alteracao.sequencia() >= proxima;
+        }
+    }
+}
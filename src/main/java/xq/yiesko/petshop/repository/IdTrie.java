@@ -0,0 +1,419 @@
+package xq.yiesko.petshop.repository;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Trie persistente indexada diretamente pelo identificador, sem boxing.
+ * <p>
+ * Cada nó tem {@value #LARGURA} filhos e o identificador é dividido em grupos de
+ * {@value #BITS} bits, do mais significativo ao menos significativo, que escolhem
+ * o caminho da raiz até a folha. Como os identificadores vêm de uma sequência
+ * crescente, percorrer as folhas da esquerda para a direita reproduz a ordem de
+ * inserção, e a profundidade cresce só quando a sequência passa da capacidade
+ * atual: até um milhão de identificadores cabem em quatro níveis.
+ * <p>
+ * A trie nunca é alterada depois de publicada. Uma escrita copia apenas os nós do
+ * caminho até a posição alterada e devolve uma nova trie que compartilha todo o
+ * resto com a anterior, que continua válida. Assim um retrato de todo o conteúdo
+ * é apenas uma referência à raiz, e quem o percorre não precisa de nenhum lock.
+ * <p>
+ * Várias escritas podem ser acumuladas em uma {@link Edicao}, que copia cada nó no
+ * máximo uma vez e altera as próprias cópias no lugar até ser concluída.
+ *
+ * @param <T> tipo dos valores
+ */
+final class IdTrie<T> {
+
+    private static final int BITS = 5;
+    private static final int LARGURA = 1 << BITS;
+    private static final int MASCARA = LARGURA - 1;
+
+    private static final IdTrie<?> VAZIA = new IdTrie<>(new No(null), 0, 0);
+
+    private final No raiz;
+    private final int nivel;
+    private final int tamanho;
+
+    private IdTrie(
+            No raiz,
+            int nivel,
+            int tamanho
+    ) {
+        this.raiz = raiz;
+        this.nivel = nivel;
+        this.tamanho = tamanho;
+    }
+
+    /**
+     * Nó da trie; nas folhas os filhos são os próprios valores.
+     * <p>
+     * Um nó só pode ser alterado no lugar pela edição que o criou, enquanto ela não
+     * for concluída.
+     */
+    private static final class No {
+
+        final Object dono;
+        final Object[] filhos;
+
+        No(
+                Object dono
+        ) {
+            this(dono, new Object[LARGURA]);
+        }
+
+        No(
+                Object dono,
+                Object[] filhos
+        ) {
+            this.dono = dono;
+            this.filhos = filhos;
+        }
+    }
+
+    /**
+     * Obtém a trie vazia.
+     *
+     * @param <T> tipo dos valores
+     * @return trie sem valores
+     */
+    @SuppressWarnings("unchecked")
+    static <T> IdTrie<T> vazia() {
+        return (IdTrie<T>) VAZIA;
+    }
+
+    /**
+     * Obtém o valor de uma posição.
+     *
+     * @param id identificador
+     * @return valor armazenado ou {@code null}
+     */
+    T obter(
+            int id
+    ) {
+        return buscar(raiz, nivel, id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T buscar(
+            No raiz,
+            int nivel,
+            int id
+    ) {
+        if (id < 0 || id >>> nivel >= LARGURA) return null;
+
+        var no = raiz;
+        for (var n = nivel; n > 0; n -= BITS) {
+            no = (No) no.filhos[id >>> n & MASCARA];
+            if (no == null) return null;
+        }
+        return (T) no.filhos[id & MASCARA];
+    }
+
+    /**
+     * Cria uma trie com o valor gravado na posição, mantendo esta inalterada.
+     *
+     * @param id    identificador
+     * @param valor novo valor
+     * @return nova trie
+     */
+    IdTrie<T> com(
+            int id,
+            T valor
+    ) {
+        var edicao = editar();
+        edicao.colocar(id, valor);
+        return edicao.concluir();
+    }
+
+    /**
+     * Cria uma trie sem o valor da posição, mantendo esta inalterada.
+     *
+     * @param id identificador
+     * @return nova trie, ou esta mesma se a posição já estiver vazia
+     */
+    IdTrie<T> sem(
+            int id
+    ) {
+        if (obter(id) == null) return this;
+
+        var edicao = editar();
+        edicao.retirar(id);
+        return edicao.concluir();
+    }
+
+    /**
+     * Inicia uma edição em lote a partir desta trie.
+     *
+     * @return edição sobre o conteúdo atual
+     */
+    Edicao editar() {
+        return new Edicao(this);
+    }
+
+    /**
+     * Obtém a quantidade de valores armazenados.
+     *
+     * @return quantidade de posições ocupadas
+     */
+    int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Percorre os valores em ordem crescente de identificador.
+     *
+     * @param acao ação aplicada a cada valor
+     */
+    void paraCada(
+            Consumer<? super T> acao
+    ) {
+        percorrerApos(-1, valor -> {
+            acao.accept(valor);
+            return true;
+        });
+    }
+
+    /**
+     * Percorre os valores com identificador maior que o informado, em ordem crescente,
+     * até que a ação peça para parar.
+     *
+     * @param aposId identificador a partir do qual a busca começa, exclusive
+     * @param acao   recebe cada valor e devolve false para encerrar o percurso
+     */
+    void percorrerApos(
+            int aposId,
+            Predicate<? super T> acao
+    ) {
+        var inicio = Math.max(aposId, -1) + 1L;
+        if (inicio >>> nivel < LARGURA) percorrer(raiz, nivel, 0, inicio, acao);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean percorrer(
+            No no,
+            int nivel,
+            long base,
+            long inicio,
+            Predicate<? super T> acao
+    ) {
+        var primeiro = inicio > base ? (int) (inicio - base >>> nivel) : 0;
+        for (var i = primeiro; i < LARGURA; i++) {
+            var filho = no.filhos[i];
+            if (filho == null) continue;
+            if (nivel == 0) {
+                if (!acao.test((T) filho)) return false;
+            } else if (!percorrer((No) filho, nivel - BITS, base + ((long) i << nivel), inicio, acao)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Cria um {@link Spliterator} sobre os valores, sem copiá-los.
+     * <p>
+     * Como a trie é imutável, o percurso reflete exatamente o conteúdo desta versão
+     * e pode ser dividido por faixas de identificadores para processamento paralelo.
+     *
+     * @return spliterator ordenado pelo identificador
+     */
+    Spliterator<T> spliterator() {
+        return new Faixa(0, ultimaPosicao() + 1);
+    }
+
+    /**
+     * Desce pelos últimos filhos preenchidos até uma folha, limitando a faixa do
+     * spliterator ao trecho realmente criado da trie.
+     */
+    private long ultimaPosicao() {
+        var no = raiz;
+        var posicao = 0L;
+        for (var n = nivel; ; n -= BITS) {
+            var i = LARGURA - 1;
+            while (i >= 0 && no.filhos[i] == null) i--;
+            if (i < 0) return posicao - 1;
+            posicao += (long) i << n;
+            if (n == 0) return posicao;
+            no = (No) no.filhos[i];
+        }
+    }
+
+    private final class Faixa implements Spliterator<T> {
+
+        private long posicao;
+        private final long fim;
+        private No folha;
+        private long baseFolha = -1;
+
+        Faixa(
+                long posicao,
+                long fim
+        ) {
+            this.posicao = posicao;
+            this.fim = fim;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(
+                Consumer<? super T> acao
+        ) {
+            while (posicao < fim) {
+                var base = posicao & ~MASCARA;
+                if (base != baseFolha) {
+                    folha = folha((int) posicao);
+                    baseFolha = base;
+                    if (folha == null) {
+                        posicao = base + LARGURA;
+                        continue;
+                    }
+                }
+
+                var valor = folha.filhos[(int) posicao++ & MASCARA];
+                if (valor != null) {
+                    acao.accept((T) valor);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            var meio = (posicao + fim) >>> 1 & ~MASCARA;
+            if (meio <= posicao) return null;
+
+            var prefixo = new Faixa(posicao, meio);
+            posicao = meio;
+            return prefixo;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fim - posicao;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    private No folha(
+            int id
+    ) {
+        var no = raiz;
+        for (var n = nivel; n > 0 && no != null; n -= BITS) no = (No) no.filhos[id >>> n & MASCARA];
+        return no;
+    }
+
+    /**
+     * Edição em lote de uma trie, para uso por uma única thread.
+     * <p>
+     * Os nós copiados pela edição pertencem a ela e são alterados no lugar pelas
+     * escritas seguintes; a trie de origem nunca é alterada. Ao ser concluída, a
+     * edição entrega os seus nós à trie resultante e passa a copiar de novo os nós
+     * que alterar depois disso.
+     */
+    final class Edicao {
+
+        private Object dono = new Object();
+        private No raiz;
+        private int nivel;
+        private int tamanho;
+
+        private Edicao(
+                IdTrie<T> origem
+        ) {
+            this.raiz = origem.raiz;
+            this.nivel = origem.nivel;
+            this.tamanho = origem.tamanho;
+        }
+
+        /**
+         * Obtém o valor de uma posição, incluindo as escritas desta edição.
+         *
+         * @param id identificador
+         * @return valor armazenado ou {@code null}
+         */
+        T obter(
+                int id
+        ) {
+            return buscar(raiz, nivel, id);
+        }
+
+        /**
+         * Grava um valor em uma posição.
+         *
+         * @param id    identificador
+         * @param valor novo valor
+         * @return valor anterior ou {@code null}
+         */
+        @SuppressWarnings("unchecked")
+        T colocar(
+                int id,
+                T valor
+        ) {
+            if (id < 0) throw new IllegalArgumentException("Identificador negativo: " + id);
+
+            while (id >>> nivel >= LARGURA) {
+                var acima = new No(dono);
+                acima.filhos[0] = raiz;
+                raiz = acima;
+                nivel += BITS;
+            }
+
+            var folha = raiz = editavel(raiz);
+            for (var n = nivel; n > 0; n -= BITS) {
+                var i = id >>> n & MASCARA;
+                var filho = (No) folha.filhos[i];
+                folha = (No) (folha.filhos[i] = filho != null ? editavel(filho) : new No(dono));
+            }
+
+            var anterior = folha.filhos[id & MASCARA];
+            folha.filhos[id & MASCARA] = valor;
+            if (anterior == null) tamanho++;
+            return (T) anterior;
+        }
+
+        /**
+         * Esvazia uma posição.
+         *
+         * @param id identificador
+         * @return valor removido ou {@code null}
+         */
+        @SuppressWarnings("unchecked")
+        T retirar(
+                int id
+        ) {
+            if (obter(id) == null) return null;
+
+            var folha = raiz = editavel(raiz);
+            for (var n = nivel; n > 0; n -= BITS) {
+                var i = id >>> n & MASCARA;
+                folha = (No) (folha.filhos[i] = editavel((No) folha.filhos[i]));
+            }
+
+            var anterior = folha.filhos[id & MASCARA];
+            folha.filhos[id & MASCARA] = null;
+            tamanho--;
+            return (T) anterior;
+        }
+
+        /**
+         * Conclui a edição.
+         *
+         * @return trie com todas as escritas da edição
+         */
+        IdTrie<T> concluir() {
+            dono = new Object();
+            return new IdTrie<>(raiz, nivel, tamanho);
+        }
+
+        private No editavel(
+                No no
+        ) {
+            return no.dono == dono ? no : new No(dono, no.filhos.clone());
+        }
+    }
+}
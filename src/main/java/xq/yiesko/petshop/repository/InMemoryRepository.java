@@ -1,22 +1,123 @@
 package xq.yiesko.petshop.repository;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import xq.yiesko.petshop.model.impl.Identificavel;
 
 /**
  * Implementação de repositório em memória com identificação incremental.
+ * <p>
+ * As entidades ficam em uma {@link IdTrie} persistente indexada pelo identificador,
+ * que por vir de uma sequência crescente coincide com a ordem de inserção. Cada
+ * escrita monta uma nova versão da trie, que compartilha com a anterior tudo o que
+ * não mudou, e a publica por {@code compare-and-set} na raiz; se outra escrita
+ * publicar antes, a operação é refeita sobre a versão mais recente. Os lotes são
+ * montados em uma única {@link IdTrie.Edicao} e publicados de uma só vez, então
+ * nunca aparecem pela metade.
+ * <p>
+ * Como nenhuma versão publicada é alterada, a leitura não usa lock: {@link #retrato()}
+ * devolve em tempo constante a versão atual inteira, e as listagens e relatórios
+ * percorrem esse retrato sem bloquear nem atrasar as escritas. A versão de cada
+ * entidade também é verificada contra a trie lida antes da publicação, de modo que
+ * escritas concorrentes sobre a mesma entidade nunca se perdem nem se misturam.
+ * <p>
+ * Os {@link RepositoryListener} registrados são notificados de cada alteração logo
+ * depois de ela ser publicada, de modo que um retrato obtido depois da notificação
+ * já a inclui. As notificações seguem a ordem da sequência: uma escrita publicada
+ * antes de outra é sempre notificada antes, ainda que a thread que a publicou chegue
+ * depois, então um journal registra as alterações na ordem em que aconteceram.
+ * <p>
+ * Cada versão publicada também carrega a sequência da sua última alteração, e a
+ * escrita que a publica grava as suas alterações, com os estados anterior e novo,
+ * no {@link ChangeFeed} do repositório. Como a sequência avança junto com a troca
+ * da raiz, a ordem do feed é exatamente a ordem das versões, mesmo com escritas
+ * concorrentes.
  *
  * @param <T> tipo da entidade persistida
  */
-public class InMemoryRepository<T extends Identificavel> {
+public class InMemoryRepository<T extends Identificavel> implements RestorableRepository<T> {
 
-    private final Map<Integer, T> storage = new LinkedHashMap<>();
+    /**
+     * Quantidade padrão de alterações retidas no feed para reprocessamento.
+     */
+    public static final int CAPACIDADE_ALTERACOES = 8192;
+
+    private final AtomicReference<Estado<T>> publicada = new AtomicReference<>(new Estado<>(IdTrie.vazia(), 0));
     private final AtomicInteger sequence = new AtomicInteger(1);
+    private final List<RepositoryListener<T>> listeners = new CopyOnWriteArrayList<>();
+    private final ChangeFeed<T> alteracoes;
+    private final AtomicLong notificada = new AtomicLong();
+    private final AtomicInteger aguardandoVez = new AtomicInteger();
+    private final ReentrantLock vez = new ReentrantLock();
+    private final Condition proximaVez = vez.newCondition();
+
+    /**
+     * Versão publicada: o conteúdo e a sequência da última alteração que ele inclui.
+     */
+    private record Estado<T>(
+            IdTrie<T> trie,
+            long sequencia
+    ) {
+
+        Estado<T> com(
+                IdTrie<T> trie,
+                int alteracoes
+        ) {
+            return new Estado<>(trie, sequencia + alteracoes);
+        }
+    }
+
+    /**
+     * Cria um repositório vazio que retém as últimas {@value #CAPACIDADE_ALTERACOES}
+     * alterações no feed.
+     */
+    public InMemoryRepository() {
+        this(CAPACIDADE_ALTERACOES);
+    }
+
+    /**
+     * Cria um repositório vazio.
+     *
+     * @param capacidadeAlteracoes quantidade de alterações retidas no feed para reprocessamento
+     */
+    public InMemoryRepository(
+            int capacidadeAlteracoes
+    ) {
+        alteracoes = new ChangeFeed<>(capacidadeAlteracoes, () -> publicada.get().sequencia());
+    }
+
+    /**
+     * Registra um observador das alterações do repositório.
+     *
+     * @param listener observador a notificar
+     */
+    @Override
+    public void adicionarListener(
+            RepositoryListener<T> listener
+    ) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Obtém o feed ordenado das alterações do repositório.
+     *
+     * @return feed de alterações
+     */
+    public ChangeFeed<T> alteracoes() {
+        return alteracoes;
+    }
 
     /**
      * Persiste uma nova entidade gerando um identificador automaticamente.
@@ -24,49 +125,365 @@ public class InMemoryRepository<T extends Identificavel> {
      * @param entity entidade a ser salva
      * @return entidade com identificador atribuído
      */
+    @Override
     public T adicionar(
             T entity
     ) {
-        var id = sequence.getAndIncrement();
-        entity.setId(id);
-        storage.put(id, entity);
+        entity.setId(sequence.getAndIncrement());
+        return inserir(entity);
+    }
+
+    /**
+     * Persiste uma nova entidade cujo identificador já foi reservado por quem chama,
+     * como as partições de um {@link ShardedRepository}.
+     *
+     * @param entity entidade com identificador atribuído e ainda não usado
+     * @return a própria entidade
+     */
+    T inserir(
+            T entity
+    ) {
+        var id = entity.getId();
+        entity.setVersao(1);
+
+        var estado = publicada.updateAndGet(atual -> atual.com(atual.trie().com(id, entity), 1));
+        alteracoes.publicar(new Alteracao<>(estado.sequencia(), Alteracao.Tipo.INCLUSAO, id, null, entity));
+        notificar(estado.sequencia(), 1, listener -> listener.aoAdicionar(entity));
         return entity;
     }
 
+    /**
+     * Persiste várias entidades novas com uma única reserva de identificadores, uma
+     * única publicação e uma única notificação aos observadores.
+     *
+     * @param entities entidades a serem salvas
+     * @return entidades com identificador atribuído
+     */
+    @Override
+    public List<T> adicionarTodos(
+            List<T> entities
+    ) {
+        if (entities.isEmpty()) return entities;
+
+        var primeiro = sequence.getAndAdd(entities.size());
+        for (var i = 0; i < entities.size(); i++) entities.get(i).setId(primeiro + i);
+        return inserirTodos(entities);
+    }
+
+    /**
+     * Persiste várias entidades novas cujos identificadores já foram reservados por
+     * quem chama, em uma única publicação.
+     *
+     * @param entities entidades com identificadores atribuídos e ainda não usados
+     * @return as próprias entidades
+     */
+    List<T> inserirTodos(
+            List<T> entities
+    ) {
+        for (var entity : entities) entity.setVersao(1);
+
+        var estado = publicada.updateAndGet(atual -> {
+            var edicao = atual.trie().editar();
+            for (var entity : entities) edicao.colocar(entity.getId(), entity);
+            return atual.com(edicao.concluir(), entities.size());
+        });
+        var sequencia = estado.sequencia() - entities.size();
+        for (var entity : entities)
+            alteracoes.publicar(new Alteracao<>(++sequencia, Alteracao.Tipo.INCLUSAO, entity.getId(), null, entity));
+        notificar(estado.sequencia(), entities.size(), listener -> listener.aoAdicionarTodos(entities));
+        return entities;
+    }
+
     /**
      * Substitui uma entidade existente.
      *
      * @param entity entidade atualizada
      * @return true se a entidade existia e foi substituída
      */
+    @Override
     public boolean atualizar(
             T entity
     ) {
-        var id = entity.getId();
-        if (!storage.containsKey(id)) return false;
-        storage.put(id, entity);
+        while (true) {
+            var estado = publicada.get();
+            var atual = estado.trie().obter(entity.getId());
+            if (atual == null) return false;
+            if (trocar(estado, atual, entity, atual.getVersao())) return true;
+        }
+    }
+
+    /**
+     * Substitui uma entidade por {@code compare-and-set}, sem bloquear outras
+     * escritas entre a leitura e a substituição.
+     *
+     * @param entity         novo estado da entidade
+     * @param versaoEsperada versão lida antes da alteração
+     * @return true se a entidade existia na versão esperada e foi substituída
+     */
+    @Override
+    public boolean atualizar(
+            T entity,
+            int versaoEsperada
+    ) {
+        while (true) {
+            var estado = publicada.get();
+            var atual = estado.trie().obter(entity.getId());
+            if (atual == null || atual.getVersao() != versaoEsperada) return false;
+            if (trocar(estado, atual, entity, versaoEsperada)) return true;
+        }
+    }
+
+    /**
+     * Publica a trie com a nova instância, na versão seguinte, e notifica os
+     * observadores; falha se outra escrita tiver publicado depois da leitura de
+     * {@code estado}.
+     * <p>
+     * Se a nova instância for a própria armazenada, alterada em memória, a versão
+     * é incrementada nela mesma e só a sequência avança, sobre a mesma trie; o feed
+     * recebe a instância como estado anterior e novo, já que o anterior não existe
+     * mais.
+     */
+    private boolean trocar(
+            Estado<T> estado,
+            T atual,
+            T entity,
+            int versao
+    ) {
+        Estado<T> publicado;
+        if (atual == entity) {
+            synchronized (atual) {
+                if (atual.getVersao() != versao) return false;
+                publicado = estado.com(estado.trie(), 1);
+                if (!publicada.compareAndSet(estado, publicado)) return false;
+                atual.setVersao(versao + 1);
+            }
+        } else {
+            entity.setVersao(versao + 1);
+            publicado = estado.com(estado.trie().com(entity.getId(), entity), 1);
+            if (!publicada.compareAndSet(estado, publicado)) return false;
+        }
+
+        alteracoes.publicar(new Alteracao<>(publicado.sequencia(), Alteracao.Tipo.ATUALIZACAO, entity.getId(), atual, entity));
+        notificar(publicado.sequencia(), 1, listener -> listener.aoAtualizar(entity));
+        return true;
+    }
+
+    /**
+     * Substitui várias entidades com uma única publicação e uma única notificação
+     * aos observadores.
+     * <p>
+     * As versões são calculadas a cada tentativa a partir da trie lida, nunca das
+     * instâncias recebidas. Instâncias novas recebem a versão antes da publicação,
+     * quando ainda não são visíveis, e voltam à versão original se a atualização
+     * não acontecer; instâncias que já são as armazenadas, alteradas em memória,
+     * só recebem a versão depois da publicação, como em {@link #atualizar(Identificavel)}.
+     *
+     * @param entities entidades atualizadas
+     * @return true se todas existiam e foram substituídas; caso contrário nada é alterado
+     */
+    @Override
+    public boolean atualizarTodos(
+            List<T> entities
+    ) {
+        if (entities.isEmpty()) return true;
+
+        var originais = new int[entities.size()];
+        for (var i = 0; i < entities.size(); i++) originais[i] = entities.get(i).getVersao();
+
+        List<T> anteriores;
+        Estado<T> publicado;
+        int[] versoes;
+        boolean[] armazenadas;
+        while (true) {
+            var estado = publicada.get();
+            var edicao = estado.trie().editar();
+            var proximas = new HashMap<Integer, Integer>();
+            anteriores = new ArrayList<>(entities.size());
+            versoes = new int[entities.size()];
+            armazenadas = new boolean[entities.size()];
+            for (var i = 0; i < entities.size(); i++) {
+                var entity = entities.get(i);
+                var armazenada = estado.trie().obter(entity.getId());
+                if (armazenada == null) {
+                    restaurarVersoes(entities, originais);
+                    return false;
+                }
+                versoes[i] = proximas.merge(entity.getId(), armazenada.getVersao() + 1, (atual, nova) -> atual + 1);
+                armazenadas[i] = armazenada == entity;
+                if (!armazenadas[i]) entity.setVersao(versoes[i]);
+                anteriores.add(edicao.colocar(entity.getId(), entity));
+            }
+            publicado = estado.com(edicao.concluir(), entities.size());
+            if (publicada.compareAndSet(estado, publicado)) break;
+        }
+        for (var i = 0; i < entities.size(); i++) if (armazenadas[i]) entities.get(i).setVersao(versoes[i]);
+
+        var sequencia = publicado.sequencia() - entities.size();
+        for (var i = 0; i < entities.size(); i++) {
+            var entity = entities.get(i);
+            alteracoes.publicar(new Alteracao<>(++sequencia, Alteracao.Tipo.ATUALIZACAO, entity.getId(), anteriores.get(i), entity));
+        }
+        notificar(publicado.sequencia(), entities.size(), listener -> listener.aoAtualizarTodos(entities));
         return true;
     }
 
+    private static <T extends Identificavel> void restaurarVersoes(
+            List<T> entities,
+            int[] originais
+    ) {
+        for (var i = 0; i < entities.size(); i++) entities.get(i).setVersao(originais[i]);
+    }
+
+    /**
+     * Reinsere uma entidade que já possui identificador, sem notificar os observadores.
+     * <p>
+     * Usado na recuperação de dados persistidos; a sequência avança para nunca
+     * reutilizar o identificador restaurado. Um estado com versão menor que a da
+     * entidade já restaurada é ignorado, para que a ordem em que escritas
+     * concorrentes foram registradas não faça uma versão antiga prevalecer.
+     *
+     * @param entity entidade com identificador atribuído
+     */
+    @Override
+    public void restaurar(
+            T entity
+    ) {
+        var id = entity.getId();
+        avancarSequencia(id + 1);
+
+        publicada.updateAndGet(estado -> {
+            var atual = estado.trie().obter(id);
+            return atual != null && atual.getVersao() > entity.getVersao() ? estado : estado.com(estado.trie().com(id, entity), 0);
+        });
+    }
+
+    /**
+     * Descarta uma entidade restaurada, sem notificar os observadores.
+     *
+     * @param id identificador da entidade
+     */
+    @Override
+    public void descartar(
+            int id
+    ) {
+        publicada.updateAndGet(estado -> estado.com(estado.trie().sem(id), 0));
+    }
+
+    /**
+     * Obtém o próximo identificador que será atribuído.
+     *
+     * @return próximo identificador
+     */
+    @Override
+    public int proximoId() {
+        return sequence.get();
+    }
+
+    /**
+     * Garante que a sequência não atribua identificadores menores que o informado.
+     *
+     * @param proximoId menor identificador ainda livre
+     */
+    @Override
+    public void avancarSequencia(
+            int proximoId
+    ) {
+        sequence.accumulateAndGet(proximoId, Math::max);
+    }
+
     /**
      * Obtém uma entidade pelo identificador.
      *
      * @param id identificador procurado
      * @return entidade, se encontrada
      */
+    @Override
     public Optional<T> buscarPorId(
             int id
     ) {
-        return Optional.ofNullable(storage.get(id));
+        return Optional.ofNullable(publicada.get().trie().obter(id));
     }
 
     /**
      * Lista todas as entidades preservando a ordem de inserção.
+     * <p>
+     * A lista devolvida é um retrato consistente: nenhuma escrita em andamento
+     * aparece pela metade.
      *
      * @return lista das entidades salvas
      */
+    @Override
     public List<T> listar() {
-        return new ArrayList<>(storage.values());
+        return retrato().listar();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Percorre apenas as entidades até o fim da página; como {@link #listar()}, a
+     * página é um retrato consistente.
+     */
+    @Override
+    public List<T> listar(
+            int deslocamento,
+            int limite
+    ) {
+        return retrato().listar(deslocamento, limite);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Começa diretamente na posição do identificador informado, com custo proporcional
+     * ao tamanho da página; a página é um retrato consistente.
+     */
+    @Override
+    public List<T> listarApos(
+            int aposId,
+            int limite
+    ) {
+        return retrato().listarApos(aposId, limite);
+    }
+
+    @Override
+    public void paraCada(
+            Consumer<? super T> acao
+    ) {
+        publicada.get().trie().paraCada(acao);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Filtra em paralelo um retrato, dividido por faixas de identificadores.
+     */
+    @Override
+    public List<T> listar(
+            Predicate<? super T> filtro
+    ) {
+        return retrato().stream().parallel().filter(filtro).toList();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Aqui a visão é um retrato: percorre exatamente as entidades existentes no
+     * momento da chamada.
+     */
+    @Override
+    public Stream<T> stream() {
+        return retrato().stream();
+    }
+
+    /**
+     * Obtém a versão publicada mais recente, sem copiá-la e sem bloquear as escritas.
+     *
+     * @return retrato das entidades
+     */
+    @Override
+    public Retrato<T> retrato() {
+        var estado = publicada.get();
+        return new Retrato<>(estado.trie(), estado.sequencia());
     }
 
     /**
@@ -75,10 +492,133 @@ public class InMemoryRepository<T extends Identificavel> {
      * @param id identificador da entidade a remover
      * @return true se uma entidade foi removida
      */
+    @Override
     public boolean remover(
             int id
     ) {
-        return storage.remove(id) != null;
+        return retirar(id).isPresent();
+    }
+
+    /**
+     * Remove a entidade com o identificador informado e devolve a instância que
+     * estava publicada na troca da raiz.
+     *
+     * @param id identificador da entidade a remover
+     * @return entidade removida, se existia
+     */
+    @Override
+    public Optional<T> retirar(
+            int id
+    ) {
+        T removida;
+        Estado<T> publicado;
+        while (true) {
+            var estado = publicada.get();
+            removida = estado.trie().obter(id);
+            if (removida == null) return Optional.empty();
+            publicado = estado.com(estado.trie().sem(id), 1);
+            if (publicada.compareAndSet(estado, publicado)) break;
+        }
+        alteracoes.publicar(new Alteracao<>(publicado.sequencia(), Alteracao.Tipo.REMOCAO, id, removida, null));
+        notificar(publicado.sequencia(), 1, listener -> listener.aoRemover(id));
+        return Optional.of(removida);
+    }
+
+    /**
+     * Remove várias entidades com uma única publicação e uma única notificação aos
+     * observadores.
+     *
+     * @param ids identificadores das entidades a remover
+     * @return quantidade de entidades removidas
+     */
+    @Override
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        return retirarTodos(ids).size();
+    }
+
+    /**
+     * Remove várias entidades com uma única publicação e uma única notificação aos
+     * observadores, devolvendo as instâncias removidas na ordem dos identificadores.
+     *
+     * @param ids identificadores das entidades a remover
+     * @return entidades removidas
+     */
+    @Override
+    public List<T> retirarTodos(
+            List<Integer> ids
+    ) {
+        while (true) {
+            var estado = publicada.get();
+            var edicao = estado.trie().editar();
+            var removidos = new ArrayList<Integer>(ids.size());
+            var removidas = new ArrayList<T>(ids.size());
+            for (var id : ids) {
+                var removida = edicao.retirar(id);
+                if (removida == null) continue;
+                removidos.add(id);
+                removidas.add(removida);
+            }
+            if (removidos.isEmpty()) return removidas;
+
+            var publicado = estado.com(edicao.concluir(), removidos.size());
+            if (publicada.compareAndSet(estado, publicado)) {
+                var sequencia = publicado.sequencia() - removidos.size();
+                for (var i = 0; i < removidos.size(); i++)
+                    alteracoes.publicar(new Alteracao<>(++sequencia, Alteracao.Tipo.REMOCAO, removidos.get(i), removidas.get(i), null));
+                notificar(publicado.sequencia(), removidos.size(), listener -> listener.aoRemoverTodos(removidos));
+                return removidas;
+            }
+        }
+    }
+
+    /**
+     * Notifica os observadores das alterações publicadas até {@code ultima}, na vez
+     * delas: espera que as escritas de sequência anterior tenham sido notificadas,
+     * passa a alteração aos observadores, libera a vez da escrita seguinte e só então
+     * aguarda as confirmações, para que a espera pelo disco não atrase a fila.
+     *
+     * @param ultima     sequência da última alteração da escrita
+     * @param quantidade quantidade de alterações da escrita
+     * @param aviso      notificação feita a cada observador
+     */
+    private void notificar(
+            long ultima,
+            int quantidade,
+            Function<RepositoryListener<T>, RepositoryListener.Confirmacao> aviso
+    ) {
+        var anterior = ultima - quantidade;
+        if (notificada.get() != anterior) aguardarVez(anterior);
+
+        var confirmacoes = new ArrayList<RepositoryListener.Confirmacao>(listeners.size());
+        try {
+            for (var listener : listeners) confirmacoes.add(aviso.apply(listener));
+        } finally {
+            notificada.set(ultima);
+            if (aguardandoVez.get() > 0) {
+                vez.lock();
+                try {
+                    proximaVez.signalAll();
+                } finally {
+                    vez.unlock();
+                }
+            }
+        }
+        for (var confirmacao : confirmacoes) confirmacao.aguardar();
+    }
+
+    private void aguardarVez(
+            long anterior
+    ) {
+        vez.lock();
+        aguardandoVez.incrementAndGet();
+        try {
+            while (notificada.get() != anterior) proximaVez.awaitUninterruptibly();
+        } finally {
+            aguardandoVez.decrementAndGet();
+            vez.unlock();
+        }
     }
 
     /**
@@ -86,7 +626,8 @@ public class InMemoryRepository<T extends Identificavel> {
      *
      * @return quantidade de entidades salvas
      */
+    @Override
     public int tamanho() {
-        return storage.size();
+        return publicada.get().trie().tamanho();
     }
-}
\ No newline at end of file
+}
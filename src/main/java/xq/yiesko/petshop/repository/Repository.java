@@ -0,0 +1,252 @@
+package xq.yiesko.petshop.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Contrato de armazenamento das entidades, com identificação incremental.
+ *
+ * @param <T> tipo da entidade persistida
+ */
+public interface Repository<T extends Identificavel> {
+
+    /**
+     * Persiste uma nova entidade gerando um identificador automaticamente.
+     *
+     * @param entity entidade a ser salva
+     * @return entidade com identificador atribuído
+     */
+    T adicionar(
+            T entity
+    );
+
+    /**
+     * Persiste várias entidades novas, atribuindo identificadores consecutivos na
+     * ordem da lista.
+     * <p>
+     * A implementação padrão adiciona uma a uma; implementações podem reservar os
+     * identificadores e gravar o lote de uma só vez.
+     *
+     * @param entities entidades a serem salvas
+     * @return entidades com identificador atribuído
+     */
+    default List<T> adicionarTodos(
+            List<T> entities
+    ) {
+        for (var entity : entities) adicionar(entity);
+        return entities;
+    }
+
+    /**
+     * Substitui uma entidade existente, qualquer que seja a sua versão.
+     * <p>
+     * A entidade recebe a versão seguinte à da substituída.
+     *
+     * @param entity entidade atualizada
+     * @return true se a entidade existia e foi substituída
+     */
+    boolean atualizar(
+            T entity
+    );
+
+    /**
+     * Substitui uma entidade somente se a versão armazenada for a esperada.
+     * <p>
+     * A verificação e a substituição são atômicas: de duas escritas baseadas na
+     * mesma leitura, apenas a primeira é aceita. Em caso de sucesso a entidade
+     * recebe a versão {@code versaoEsperada + 1}.
+     *
+     * @param entity         novo estado da entidade, normalmente uma cópia da lida
+     * @param versaoEsperada versão lida antes da alteração
+     * @return true se a entidade existia na versão esperada e foi substituída
+     */
+    boolean atualizar(
+            T entity,
+            int versaoEsperada
+    );
+
+    /**
+     * Substitui várias entidades existentes.
+     * <p>
+     * O lote é tudo ou nada: se alguma entidade não existir, nenhuma é substituída.
+     * Como em {@link #atualizar(Identificavel)}, as versões não são verificadas e
+     * cada entidade recebe a versão seguinte à da substituída.
+     * A implementação padrão verifica e substitui uma a uma, sem isolamento em
+     * relação a escritas concorrentes.
+     *
+     * @param entities entidades atualizadas
+     * @return true se todas existiam e foram substituídas
+     */
+    default boolean atualizarTodos(
+            List<T> entities
+    ) {
+        for (var entity : entities) if (buscarPorId(entity.getId()).isEmpty()) return false;
+        for (var entity : entities) atualizar(entity);
+        return true;
+    }
+
+    /**
+     * Obtém uma entidade pelo identificador.
+     *
+     * @param id identificador procurado
+     * @return entidade, se encontrada
+     */
+    Optional<T> buscarPorId(
+            int id
+    );
+
+    /**
+     * Lista todas as entidades preservando a ordem de inserção.
+     *
+     * @return lista das entidades salvas
+     */
+    List<T> listar();
+
+    /**
+     * Lista as entidades que atendem a um filtro, na ordem de inserção.
+     * <p>
+     * A implementação padrão percorre {@link #stream()}; implementações podem
+     * dividir o percurso entre várias threads, desde que preservem a ordem.
+     *
+     * @param filtro condição que as entidades devolvidas atendem
+     * @return entidades filtradas
+     */
+    default List<T> listar(
+            Predicate<? super T> filtro
+    ) {
+        return stream().filter(filtro).toList();
+    }
+
+    /**
+     * Lista uma página das entidades, na ordem de inserção.
+     * <p>
+     * O custo cresce com o deslocamento; para percorrer páginas em sequência prefira
+     * {@link #listarApos(int, int)}.
+     *
+     * @param deslocamento quantidade de entidades a pular
+     * @param limite       quantidade máxima de entidades devolvidas
+     * @return página de entidades
+     */
+    default List<T> listar(
+            int deslocamento,
+            int limite
+    ) {
+        return stream().skip(deslocamento).limit(limite).toList();
+    }
+
+    /**
+     * Lista as entidades com identificador maior que o informado (paginação por chave).
+     * <p>
+     * Para obter a próxima página, passe o identificador da última entidade da página anterior.
+     *
+     * @param aposId identificador da última entidade já lida, ou 0 para começar do início
+     * @param limite quantidade máxima de entidades devolvidas
+     * @return página de entidades
+     */
+    default List<T> listarApos(
+            int aposId,
+            int limite
+    ) {
+        return stream().filter(entity -> entity.getId() > aposId).limit(limite).toList();
+    }
+
+    /**
+     * Aplica uma ação a cada entidade, na ordem de inserção, sem copiar a coleção.
+     *
+     * @param acao ação aplicada
+     */
+    default void paraCada(
+            Consumer<? super T> acao
+    ) {
+        stream().forEach(acao);
+    }
+
+    /**
+     * Obtém uma visão em {@link Stream} das entidades, na ordem de inserção, sem copiá-las.
+     * <p>
+     * A visão é fracamente consistente: pode ou não refletir alterações feitas
+     * enquanto é percorrida.
+     *
+     * @return stream das entidades
+     */
+    Stream<T> stream();
+
+    /**
+     * Obtém um retrato imutável de todas as entidades no instante da chamada.
+     * <p>
+     * A implementação padrão copia {@link #listar()}; implementações que guardam
+     * versões imutáveis podem devolver o retrato sem cópia.
+     *
+     * @return retrato das entidades
+     */
+    default Retrato<T> retrato() {
+        return Retrato.de(listar());
+    }
+
+    /**
+     * Remove a entidade com o identificador informado.
+     *
+     * @param id identificador da entidade a remover
+     * @return true se uma entidade foi removida
+     */
+    boolean remover(
+            int id
+    );
+
+    /**
+     * Remove a entidade com o identificador informado e devolve o estado removido.
+     * <p>
+     * A leitura e a remoção são atômicas: o estado devolvido é exatamente o que foi
+     * removido, mesmo que outra escrita tenha atualizado a entidade logo antes.
+     *
+     * @param id identificador da entidade a remover
+     * @return entidade removida, se existia
+     */
+    Optional<T> retirar(
+            int id
+    );
+
+    /**
+     * Remove as entidades com os identificadores informados e devolve os estados
+     * removidos; identificadores inexistentes são ignorados.
+     * <p>
+     * A implementação padrão retira uma a uma.
+     *
+     * @param ids identificadores das entidades a remover
+     * @return entidades removidas
+     */
+    default List<T> retirarTodos(
+            List<Integer> ids
+    ) {
+        var removidas = new ArrayList<T>(ids.size());
+        for (var id : ids) retirar(id).ifPresent(removidas::add);
+        return removidas;
+    }
+
+    /**
+     * Remove as entidades com os identificadores informados; identificadores
+     * inexistentes são ignorados.
+     *
+     * @param ids identificadores das entidades a remover
+     * @return quantidade de entidades removidas
+     */
+    default int removerTodos(
+            List<Integer> ids
+    ) {
+        var removidas = 0;
+        for (var id : ids) if (remover(id)) removidas++;
+        return removidas;
+    }
+
+    /**
+     * Verifica se há registros armazenados.
+     *
+     * @return quantidade de entidades salvas
+     */
+    int tamanho();
+}
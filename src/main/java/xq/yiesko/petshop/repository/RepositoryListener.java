@@ -0,0 +1,131 @@
+package xq.yiesko.petshop.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Observa as alterações aplicadas em um {@link RestorableRepository}.
+ * <p>
+ * Os métodos são chamados depois que a alteração foi aplicada, na mesma thread da
+ * escrita e um de cada vez, na ordem em que as alterações foram publicadas: a
+ * escrita seguinte só é notificada depois que a anterior voltou daqui. Por isso
+ * eles devem apenas registrar a alteração; o que demora, como esperar o disco, fica
+ * na {@link Confirmacao} devolvida, que a escrita aguarda depois de liberar a vez
+ * das seguintes. Uma exceção lançada aqui ou na confirmação é propagada para quem
+ * chamou o repositório.
+ *
+ * @param <T> tipo da entidade observada
+ */
+public interface RepositoryListener<T extends Identificavel> {
+
+    /**
+     * Espera pendente de uma alteração já registrada pelo observador.
+     */
+    @FunctionalInterface
+    interface Confirmacao {
+
+        /**
+         * Confirmação de quem não tem nada a esperar.
+         */
+        Confirmacao IMEDIATA = () -> {
+        };
+
+        /**
+         * Bloqueia até que a alteração registrada esteja concluída.
+         */
+        void aguardar();
+
+        /**
+         * Junta várias confirmações em uma que aguarda todas, na ordem da lista.
+         *
+         * @param confirmacoes confirmações a aguardar
+         * @return confirmação conjunta
+         */
+        static Confirmacao todas(
+                List<Confirmacao> confirmacoes
+        ) {
+            return () -> {
+                for (var confirmacao : confirmacoes) confirmacao.aguardar();
+            };
+        }
+    }
+
+    /**
+     * Notifica a inclusão de uma entidade.
+     *
+     * @param entity entidade incluída, já com identificador
+     * @return espera até a alteração estar concluída
+     */
+    Confirmacao aoAdicionar(
+            T entity
+    );
+
+    /**
+     * Notifica a inclusão de um lote de entidades.
+     * <p>
+     * A implementação padrão notifica cada entidade separadamente.
+     *
+     * @param entities entidades incluídas, já com identificador
+     * @return espera até o lote estar concluído
+     */
+    default Confirmacao aoAdicionarTodos(
+            List<T> entities
+    ) {
+        var confirmacoes = new ArrayList<Confirmacao>(entities.size());
+        for (var entity : entities) confirmacoes.add(aoAdicionar(entity));
+        return Confirmacao.todas(confirmacoes);
+    }
+
+    /**
+     * Notifica a substituição de uma entidade existente.
+     *
+     * @param entity novo estado da entidade
+     * @return espera até a alteração estar concluída
+     */
+    Confirmacao aoAtualizar(
+            T entity
+    );
+
+    /**
+     * Notifica a substituição de um lote de entidades.
+     * <p>
+     * A implementação padrão notifica cada entidade separadamente.
+     *
+     * @param entities novos estados das entidades
+     * @return espera até o lote estar concluído
+     */
+    default Confirmacao aoAtualizarTodos(
+            List<T> entities
+    ) {
+        var confirmacoes = new ArrayList<Confirmacao>(entities.size());
+        for (var entity : entities) confirmacoes.add(aoAtualizar(entity));
+        return Confirmacao.todas(confirmacoes);
+    }
+
+    /**
+     * Notifica a remoção de uma entidade.
+     *
+     * @param id identificador removido
+     * @return espera até a alteração estar concluída
+     */
+    Confirmacao aoRemover(
+            int id
+    );
+
+    /**
+     * Notifica a remoção de um lote de entidades.
+     * <p>
+     * A implementação padrão notifica cada remoção separadamente.
+     *
+     * @param ids identificadores removidos
+     * @return espera até o lote estar concluído
+     */
+    default Confirmacao aoRemoverTodos(
+            List<Integer> ids
+    ) {
+        var confirmacoes = new ArrayList<Confirmacao>(ids.size());
+        for (var id : ids) confirmacoes.add(aoRemover(id));
+        return Confirmacao.todas(confirmacoes);
+    }
+}
@@ -0,0 +1,55 @@
+package xq.yiesko.petshop.repository;
+
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Repositório que pode ser reconstruído a partir de dados persistidos e que avisa
+ * cada alteração aos seus observadores, como precisa o journal em disco.
+ *
+ * @param <T> tipo da entidade persistida
+ */
+public interface RestorableRepository<T extends Identificavel> extends Repository<T> {
+
+    /**
+     * Registra um observador das alterações do repositório.
+     *
+     * @param listener observador a notificar
+     */
+    void adicionarListener(
+            RepositoryListener<T> listener
+    );
+
+    /**
+     * Reinsere uma entidade que já possui identificador, sem notificar os observadores.
+     *
+     * @param entity entidade com identificador atribuído
+     */
+    void restaurar(
+            T entity
+    );
+
+    /**
+     * Descarta uma entidade restaurada, sem notificar os observadores.
+     *
+     * @param id identificador da entidade
+     */
+    void descartar(
+            int id
+    );
+
+    /**
+     * Obtém o próximo identificador que será atribuído.
+     *
+     * @return próximo identificador
+     */
+    int proximoId();
+
+    /**
+     * Garante que a sequência não atribua identificadores menores que o informado.
+     *
+     * @param proximoId menor identificador ainda livre
+     */
+    void avancarSequencia(
+            int proximoId
+    );
+}
@@ -0,0 +1,175 @@
+package xq.yiesko.petshop.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Retrato imutável do conteúdo de um repositório em um instante.
+ * <p>
+ * O retrato não é afetado por escritas posteriores ao momento em que foi obtido:
+ * listagens e relatórios longos podem percorrê-lo quantas vezes quiserem, inclusive
+ * em paralelo, e sempre veem o mesmo conjunto de entidades, sem bloquear nem
+ * atrasar as escritas no repositório.
+ *
+ * @param <T> tipo da entidade
+ */
+public final class Retrato<T extends Identificavel> {
+
+    private final IdTrie<T> entidades;
+    private final long sequencia;
+
+    Retrato(
+            IdTrie<T> entidades,
+            long sequencia
+    ) {
+        this.entidades = entidades;
+        this.sequencia = sequencia;
+    }
+
+    /**
+     * Cria um retrato a partir de entidades já identificadas.
+     *
+     * @param entidades entidades com identificador atribuído
+     * @param <T>       tipo da entidade
+     * @return retrato com uma cópia da coleção
+     */
+    public static <T extends Identificavel> Retrato<T> de(
+            Collection<T> entidades
+    ) {
+        var edicao = IdTrie.<T>vazia().editar();
+        for (var entidade : entidades) edicao.colocar(entidade.getId(), entidade);
+        return new Retrato<>(edicao.concluir(), 0);
+    }
+
+    /**
+     * Obtém uma entidade pelo identificador.
+     *
+     * @param id identificador procurado
+     * @return entidade, se existia no instante do retrato
+     */
+    public Optional<T> buscarPorId(
+            int id
+    ) {
+        return Optional.ofNullable(entidades.obter(id));
+    }
+
+    /**
+     * Lista todas as entidades na ordem de inserção.
+     *
+     * @return cópia das entidades do retrato
+     */
+    public List<T> listar() {
+        var lista = new ArrayList<T>(entidades.tamanho());
+        entidades.paraCada(lista::add);
+        return lista;
+    }
+
+    /**
+     * Lista uma página das entidades, na ordem de inserção.
+     *
+     * @param deslocamento quantidade de entidades a pular
+     * @param limite       quantidade máxima de entidades devolvidas
+     * @return página de entidades
+     */
+    public List<T> listar(
+            int deslocamento,
+            int limite
+    ) {
+        if (limite <= 0) return List.of();
+
+        var pagina = new ArrayList<T>(Math.min(limite, 1024));
+        var pular = new int[] {deslocamento};
+        entidades.percorrerApos(0, entidade -> {
+            if (pular[0] > 0) pular[0]--;
+            else pagina.add(entidade);
+            return pagina.size() < limite;
+        });
+        return pagina;
+    }
+
+    /**
+     * Lista as entidades com identificador maior que o informado, com custo
+     * proporcional ao tamanho da página.
+     *
+     * @param aposId identificador da última entidade já lida, ou 0 para começar do início
+     * @param limite quantidade máxima de entidades devolvidas
+     * @return página de entidades
+     */
+    public List<T> listarApos(
+            int aposId,
+            int limite
+    ) {
+        if (limite <= 0) return List.of();
+
+        var pagina = new ArrayList<T>(Math.min(limite, 1024));
+        entidades.percorrerApos(aposId, entidade -> {
+            pagina.add(entidade);
+            return pagina.size() < limite;
+        });
+        return pagina;
+    }
+
+    /**
+     * Aplica uma ação a cada entidade, na ordem de inserção.
+     *
+     * @param acao ação aplicada
+     */
+    public void paraCada(
+            Consumer<? super T> acao
+    ) {
+        entidades.paraCada(acao);
+    }
+
+    /**
+     * Percorre as entidades com identificador maior que o informado, em ordem
+     * crescente, até que a ação peça para parar.
+     *
+     * @param aposId identificador a partir do qual o percurso começa, exclusive
+     * @param acao   recebe cada entidade e devolve false para encerrar o percurso
+     */
+    void percorrerApos(
+            int aposId,
+            Predicate<? super T> acao
+    ) {
+        entidades.percorrerApos(aposId, acao);
+    }
+
+    /**
+     * Obtém as entidades em {@link Stream}, na ordem de inserção.
+     * <p>
+     * A stream pode ser tornada paralela; ela se divide por faixas de identificadores.
+     *
+     * @return stream sequencial das entidades
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(entidades.spliterator(), false);
+    }
+
+    /**
+     * Obtém a sequência da última alteração incluída no retrato.
+     * <p>
+     * Assinar o {@link ChangeFeed} do repositório a partir de {@code sequencia() + 1}
+     * entrega exatamente as alterações posteriores ao retrato.
+     *
+     * @return sequência da última alteração, ou 0 para um retrato criado por {@link #de(Collection)}
+     */
+    public long sequencia() {
+        return sequencia;
+    }
+
+    /**
+     * Obtém a quantidade de entidades do retrato.
+     *
+     * @return quantidade de entidades
+     */
+    public int tamanho() {
+        return entidades.tamanho();
+    }
+}
@@ -0,0 +1,469 @@
+package xq.yiesko.petshop.repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Repositório em memória dividido em partições por identificador, para que as
+ * escritas não disputem uma única raiz.
+ * <p>
+ * Cada partição é um {@link InMemoryRepository} com a sua própria trie e o seu
+ * próprio {@code compare-and-set}; a entidade de identificador {@code id} fica na
+ * partição {@code id & (particoes - 1)}. Como os identificadores vêm de uma única
+ * sequência crescente, cadastros consecutivos caem em partições diferentes, e
+ * {@link #buscarPorId(int)}, {@link #atualizar(Identificavel)} e
+ * {@link #remover(int)} tocam só a partição do identificador.
+ * <p>
+ * {@link #listar()} e {@link #listar(Predicate)} dividem o intervalo de
+ * identificadores em fatias de {@value #FATIA} e percorrem cada fatia em uma tarefa
+ * do {@link ForkJoinPool}; cada tarefa junta as partições na ordem dos
+ * identificadores, e as fatias são concatenadas na ordem em que foram criadas, então
+ * o resultado sai na ordem de inserção. {@link #stream()} intercala as partições
+ * sob demanda, sem cópia.
+ * <p>
+ * O isolamento vale por partição: um lote fica visível de uma vez em cada partição,
+ * mas não em todas ao mesmo tempo, e {@link #retrato()} copia as partições, cada uma
+ * lida em um instante. Cada partição tem o próprio {@link ChangeFeed}, ordenado
+ * dentro dela. A exceção é {@link #atualizarTodos(List)}, que é tudo ou nada em
+ * todas as partições: remoções e lotes de atualização tomam a trava de cada partição
+ * que tocam, e o lote trava as suas partições em ordem de índice antes de verificar
+ * que todas as entidades existem, então nenhuma remoção concorrente o deixa pela
+ * metade. Leituras, cadastros e atualizações individuais não usam as travas.
+ * Como os identificadores de uma partição são espaçados, as folhas da
+ * trie de cada partição ficam parcialmente vazias; o custo em memória cresce com o
+ * número de partições.
+ *
+ * @param <T> tipo da entidade persistida
+ */
+public class ShardedRepository<T extends Identificavel> implements RestorableRepository<T> {
+
+    private static final int FATIA = 4096;
+
+    private final List<InMemoryRepository<T>> particoes;
+    private final ReentrantLock[] travas;
+    private final int mascara;
+    private final ForkJoinPool pool;
+    private final AtomicInteger sequence = new AtomicInteger(1);
+
+    /**
+     * Cria um repositório vazio que percorre as partições no pool comum.
+     *
+     * @param particoes quantidade de partições, arredondada para uma potência de dois
+     */
+    public ShardedRepository(
+            int particoes
+    ) {
+        this(particoes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Cria um repositório vazio.
+     *
+     * @param particoes quantidade de partições, arredondada para uma potência de dois
+     * @param pool      pool em que as listagens percorrem as partições
+     */
+    public ShardedRepository(
+            int particoes,
+            ForkJoinPool pool
+    ) {
+        if (particoes <= 0) throw new IllegalArgumentException("Quantidade de partições deve ser positiva");
+
+        var quantidade = Integer.highestOneBit(Math.min(particoes, 1 << 16) * 2 - 1);
+        var lista = new ArrayList<InMemoryRepository<T>>(quantidade);
+        for (var i = 0; i < quantidade; i++) lista.add(new InMemoryRepository<>());
+        this.particoes = List.copyOf(lista);
+        this.travas = new ReentrantLock[quantidade];
+        for (var i = 0; i < quantidade; i++) travas[i] = new ReentrantLock();
+        this.mascara = quantidade - 1;
+        this.pool = pool;
+    }
+
+    /**
+     * Obtém a quantidade de partições.
+     *
+     * @return quantidade de partições
+     */
+    public int particoes() {
+        return particoes.size();
+    }
+
+    /**
+     * Obtém o feed das alterações de uma partição.
+     *
+     * @param particao índice da partição, de 0 a {@code particoes() - 1}
+     * @return feed de alterações da partição
+     */
+    public ChangeFeed<T> alteracoes(
+            int particao
+    ) {
+        return particoes.get(particao).alteracoes();
+    }
+
+    private InMemoryRepository<T> particao(
+            int id
+    ) {
+        return particoes.get(id & mascara);
+    }
+
+    @Override
+    public void adicionarListener(
+            RepositoryListener<T> listener
+    ) {
+        for (var particao : particoes) particao.adicionarListener(listener);
+    }
+
+    @Override
+    public T adicionar(
+            T entity
+    ) {
+        var id = sequence.getAndIncrement();
+        entity.setId(id);
+        return particao(id).inserir(entity);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Os identificadores são reservados de uma vez, e cada partição grava a sua parte
+     * do lote em uma única publicação.
+     */
+    @Override
+    public List<T> adicionarTodos(
+            List<T> entities
+    ) {
+        if (entities.isEmpty()) return entities;
+
+        var primeiro = sequence.getAndAdd(entities.size());
+        for (var i = 0; i < entities.size(); i++) entities.get(i).setId(primeiro + i);
+
+        var grupos = agrupar(entities);
+        for (var i = 0; i < grupos.size(); i++)
+            if (!grupos.get(i).isEmpty()) particoes.get(i).inserirTodos(grupos.get(i));
+        return entities;
+    }
+
+    @Override
+    public boolean atualizar(
+            T entity
+    ) {
+        return particao(entity.getId()).atualizar(entity);
+    }
+
+    @Override
+    public boolean atualizar(
+            T entity,
+            int versaoEsperada
+    ) {
+        return particao(entity.getId()).atualizar(entity, versaoEsperada);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As partições do lote são travadas em ordem de índice, o que impede remoções
+     * nelas até o fim; com todas as entidades verificadas sob as travas, cada
+     * partição substitui a sua parte de uma vez e nenhuma pode falhar.
+     */
+    @Override
+    public boolean atualizarTodos(
+            List<T> entities
+    ) {
+        var grupos = agrupar(entities);
+        var travadas = 0;
+        try {
+            for (; travadas < grupos.size(); travadas++) if (!grupos.get(travadas).isEmpty()) travas[travadas].lock();
+            for (var entity : entities) if (buscarPorId(entity.getId()).isEmpty()) return false;
+
+            for (var i = 0; i < grupos.size(); i++)
+                if (!grupos.get(i).isEmpty() && !particoes.get(i).atualizarTodos(grupos.get(i)))
+                    throw new IllegalStateException("Partição " + i + " alterada sob a trava");
+            return true;
+        } finally {
+            for (var i = travadas - 1; i >= 0; i--) if (!grupos.get(i).isEmpty()) travas[i].unlock();
+        }
+    }
+
+    private List<List<T>> agrupar(
+            List<T> entities
+    ) {
+        var grupos = new ArrayList<List<T>>(particoes.size());
+        for (var i = 0; i < particoes.size(); i++) grupos.add(new ArrayList<>());
+        for (var entity : entities) grupos.get(entity.getId() & mascara).add(entity);
+        return grupos;
+    }
+
+    @Override
+    public void restaurar(
+            T entity
+    ) {
+        avancarSequencia(entity.getId() + 1);
+        particao(entity.getId()).restaurar(entity);
+    }
+
+    @Override
+    public void descartar(
+            int id
+    ) {
+        var trava = travas[id & mascara];
+        trava.lock();
+        try {
+            particao(id).descartar(id);
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    @Override
+    public int proximoId() {
+        return sequence.get();
+    }
+
+    @Override
+    public void avancarSequencia(
+            int proximoId
+    ) {
+        sequence.accumulateAndGet(proximoId, Math::max);
+    }
+
+    @Override
+    public Optional<T> buscarPorId(
+            int id
+    ) {
+        return particao(id).buscarPorId(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As partições são percorridas em paralelo, por fatias de identificadores.
+     */
+    @Override
+    public List<T> listar() {
+        return coletar(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * O filtro é aplicado em paralelo, por fatias de identificadores.
+     */
+    @Override
+    public List<T> listar(
+            Predicate<? super T> filtro
+    ) {
+        return coletar(filtro);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cada partição devolve até {@code limite} entidades, e a página fica com as
+     * menores.
+     */
+    @Override
+    public List<T> listarApos(
+            int aposId,
+            int limite
+    ) {
+        if (limite <= 0) return List.of();
+
+        var pagina = new ArrayList<T>();
+        for (var particao : particoes) pagina.addAll(particao.listarApos(aposId, limite));
+        pagina.sort(Comparator.comparingInt(Identificavel::getId));
+        return pagina.size() > limite ? new ArrayList<>(pagina.subList(0, limite)) : pagina;
+    }
+
+    @Override
+    public void paraCada(
+            Consumer<? super T> acao
+    ) {
+        new Intercalacao<>(retratos()).forEachRemaining(acao);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Intercala os retratos das partições, obtidos no início, sem copiá-los.
+     */
+    @Override
+    public Stream<T> stream() {
+        var ordem = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Intercalacao<>(retratos()), ordem), false);
+    }
+
+    @Override
+    public boolean remover(
+            int id
+    ) {
+        return retirar(id).isPresent();
+    }
+
+    @Override
+    public Optional<T> retirar(
+            int id
+    ) {
+        var trava = travas[id & mascara];
+        trava.lock();
+        try {
+            return particao(id).retirar(id);
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    @Override
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        return retirarTodos(ids).size();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cada partição retira o seu grupo de uma só vez; as entidades vêm agrupadas por
+     * partição.
+     */
+    @Override
+    public List<T> retirarTodos(
+            List<Integer> ids
+    ) {
+        var grupos = new ArrayList<List<Integer>>(particoes.size());
+        for (var i = 0; i < particoes.size(); i++) grupos.add(new ArrayList<>());
+        for (var id : ids) grupos.get(id & mascara).add(id);
+
+        var removidas = new ArrayList<T>(ids.size());
+        for (var i = 0; i < grupos.size(); i++) {
+            if (grupos.get(i).isEmpty()) continue;
+            travas[i].lock();
+            try {
+                removidas.addAll(particoes.get(i).retirarTodos(grupos.get(i)));
+            } finally {
+                travas[i].unlock();
+            }
+        }
+        return removidas;
+    }
+
+    @Override
+    public int tamanho() {
+        var tamanho = 0;
+        for (var particao : particoes) tamanho += particao.tamanho();
+        return tamanho;
+    }
+
+    private List<Retrato<T>> retratos() {
+        var retratos = new ArrayList<Retrato<T>>(particoes.size());
+        for (var particao : particoes) retratos.add(particao.retrato());
+        return retratos;
+    }
+
+    /**
+     * Junta as partições em fatias percorridas em paralelo. Os retratos são lidos
+     * antes da sequência, então todo identificador que eles contêm está abaixo dela.
+     */
+    private List<T> coletar(
+            Predicate<? super T> filtro
+    ) {
+        var retratos = retratos();
+        var fim = sequence.get();
+        if (fim <= FATIA) return fatia(retratos, 0, fim, filtro);
+
+        var tarefas = new ArrayList<ForkJoinTask<List<T>>>(fim / FATIA + 1);
+        for (var de = 0; de < fim; de += FATIA) {
+            var inicio = de;
+            var ate = (int) Math.min((long) de + FATIA, fim);
+            tarefas.add(pool.submit(() -> fatia(retratos, inicio, ate, filtro)));
+        }
+
+        var resultado = new ArrayList<T>();
+        for (var tarefa : tarefas) resultado.addAll(tarefa.join());
+        return resultado;
+    }
+
+    /**
+     * Percorre os identificadores de {@code de} (inclusive) a {@code ate} (exclusive)
+     * em todas as partições, colocando cada entidade na posição do seu identificador.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Identificavel> List<T> fatia(
+            List<Retrato<T>> retratos,
+            int de,
+            int ate,
+            Predicate<? super T> filtro
+    ) {
+        var posicoes = new Object[ate - de];
+        var encontradas = new int[1];
+        for (var retrato : retratos) {
+            retrato.percorrerApos(de - 1, entidade -> {
+                var id = entidade.getId();
+                if (id >= ate) return false;
+                if (filtro == null || filtro.test(entidade)) {
+                    posicoes[id - de] = entidade;
+                    encontradas[0]++;
+                }
+                return true;
+            });
+        }
+
+        var lista = new ArrayList<T>(encontradas[0]);
+        for (var entidade : posicoes) if (entidade != null) lista.add((T) entidade);
+        return lista;
+    }
+
+    /**
+     * Percorre vários retratos ao mesmo tempo, entregando sempre o menor
+     * identificador entre os próximos de cada um.
+     */
+    private static final class Intercalacao<T extends Identificavel> implements Iterator<T> {
+
+        private final List<Iterator<T>> fontes = new ArrayList<>();
+        private final List<T> proximos = new ArrayList<>();
+
+        Intercalacao(
+                List<Retrato<T>> retratos
+        ) {
+            for (var retrato : retratos) {
+                var fonte = retrato.stream().iterator();
+                fontes.add(fonte);
+                proximos.add(fonte.hasNext() ? fonte.next() : null);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            for (var proximo : proximos) if (proximo != null) return true;
+            return false;
+        }
+
+        @Override
+        public T next() {
+            var menor = -1;
+            for (var i = 0; i < proximos.size(); i++) {
+                var proximo = proximos.get(i);
+                if (proximo != null && (menor < 0 || proximo.getId() < proximos.get(menor).getId())) menor = i;
+            }
+            if (menor < 0) throw new NoSuchElementException();
+
+            var entidade = proximos.get(menor);
+            var fonte = fontes.get(menor);
+            proximos.set(menor, fonte.hasNext() ? fonte.next() : null);
+            return entidade;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package xq.yiesko.petshop.repository.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Veterinario;
+
+/**
+ * Formato dos arquivos de segmento do {@link ConsultaArchive}: as consultas de um
+ * mês, gravadas uma única vez e nunca alteradas.
+ * <p>
+ * O arquivo tem um cabeçalho com o mês e a quantidade de consultas, um dicionário
+ * com os textos distintos do mês (observações, espécies e especialidades), os
+ * registros e um CRC32 de todo o conteúdo. Os registros são ordenados por data,
+ * horário e identificador, e cada campo é um inteiro de tamanho variável (7 bits
+ * por byte): o dia é a diferença para o registro anterior, o horário também quando
+ * o dia se repete, o identificador é a diferença para o anterior em zigue-zague e
+ * os textos são posições no dicionário. Um registro típico ocupa de 10 a 15 bytes.
+ * <p>
+ * A leitura carrega o arquivo inteiro, confere o CRC e decodifica os registros um a
+ * um, sob demanda.
+ */
+final class ArchiveSegment {
+
+    private static final int MAGIC = 0x50415741;
+    private static final int VERSAO = 1;
+    private static final int CABECALHO = 3 * Integer.BYTES;
+
+    private static final Comparator<Consulta> ORDEM = Comparator
+        .comparing(Consulta::getData)
+        .thenComparingInt(consulta -> codigoHorario(consulta.getHorario()))
+        .thenComparingInt(Consulta::getId);
+
+    private ArchiveSegment() {
+    }
+
+    /**
+     * Grava as consultas de um mês em um arquivo novo, de forma atômica: o arquivo só
+     * aparece no destino depois de gravado e sincronizado por inteiro.
+     *
+     * @param arquivo   destino do segmento
+     * @param mes       mês das consultas
+     * @param consultas consultas do mês, em qualquer ordem
+     * @throws IOException se a escrita falhar
+     */
+    static void gravar(
+            Path arquivo,
+            YearMonth mes,
+            List<Consulta> consultas
+    ) throws IOException {
+        var ordenadas = new ArrayList<>(consultas);
+        ordenadas.sort(ORDEM);
+
+        var textos = new HashMap<String, Integer>();
+        var dicionario = new ByteArrayOutputStream();
+        var registros = new ByteArrayOutputStream(ordenadas.size() * 16);
+        var diaAnterior = 1;
+        var horarioAnterior = 0;
+        var idAnterior = 0;
+
+        for (var consulta : ordenadas) {
+            if (!YearMonth.from(consulta.getData()).equals(mes))
+                throw new IllegalArgumentException("Consulta " + consulta.getId() + " não pertence a " + mes);
+
+            var dia = consulta.getData().getDayOfMonth();
+            var horario = codigoHorario(consulta.getHorario());
+            escreverVarint(registros, dia - diaAnterior);
+            escreverVarint(registros, dia == diaAnterior ? horario - horarioAnterior : horario);
+            escreverVarint(registros, zigueZague(consulta.getId() - idAnterior));
+            escreverVarint(registros, consulta.getVersao());
+            escreverVarint(registros, idDe(consulta.getAnimal() != null ? consulta.getAnimal().getId() : 0));
+            escreverVarint(registros, idDe(consulta.getVeterinario() != null ? consulta.getVeterinario().getId() : 0));
+            escreverVarint(registros, texto(textos, dicionario, consulta.getObservacoes()));
+            escreverVarint(registros, texto(textos, dicionario, consulta.getAnimal() != null ? consulta.getAnimal().getEspecie() : null));
+            escreverVarint(registros, texto(textos, dicionario,
+                consulta.getVeterinario() != null ? consulta.getVeterinario().getEspecialidade() : null));
+
+            diaAnterior = dia;
+            horarioAnterior = horario;
+            idAnterior = consulta.getId();
+        }
+
+        var conteudo = new ByteArrayOutputStream(CABECALHO + 16 + dicionario.size() + registros.size() + Long.BYTES);
+        conteudo.writeBytes(ByteBuffer.allocate(CABECALHO).putInt(MAGIC).putInt(VERSAO).putInt(indice(mes)).array());
+        escreverVarint(conteudo, ordenadas.size());
+        escreverVarint(conteudo, textos.size());
+        dicionario.writeTo(conteudo);
+        registros.writeTo(conteudo);
+
+        var crc = new CRC32();
+        crc.update(conteudo.toByteArray());
+        conteudo.writeBytes(ByteBuffer.allocate(Long.BYTES).putLong(crc.getValue()).array());
+
+        var temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (var canal = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            var bytes = ByteBuffer.wrap(conteudo.toByteArray());
+            while (bytes.hasRemaining()) canal.write(bytes);
+            canal.force(true);
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Abre um segmento para leitura, conferindo o formato e o CRC.
+     *
+     * @param arquivo segmento gravado por {@link #gravar(Path, YearMonth, List)}
+     * @return leitura do segmento
+     * @throws IOException se o arquivo não puder ser lido ou estiver corrompido
+     */
+    static Leitura abrir(
+            Path arquivo
+    ) throws IOException {
+        var bytes = Files.readAllBytes(arquivo);
+        if (bytes.length < CABECALHO + Long.BYTES) throw new IOException("Segmento truncado: " + arquivo);
+
+        var buffer = ByteBuffer.wrap(bytes);
+        var crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        if (crc.getValue() != buffer.getLong(bytes.length - Long.BYTES)) throw new IOException("CRC inválido no segmento " + arquivo);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSAO) throw new IOException("Formato de segmento desconhecido: " + arquivo);
+
+        var mes = mes(buffer.getInt());
+        var quantidade = (int) lerVarint(buffer);
+        var textos = new String[(int) lerVarint(buffer) + 1];
+        for (var i = 1; i < textos.length; i++) {
+            var tamanho = (int) lerVarint(buffer);
+            textos[i] = new String(bytes, buffer.position(), tamanho, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + tamanho);
+        }
+        return new Leitura(mes, quantidade, textos, buffer.limit(bytes.length - Long.BYTES));
+    }
+
+    /**
+     * Registros de um segmento aberto, decodificados sob demanda.
+     */
+    static final class Leitura {
+
+        private final YearMonth mes;
+        private final int quantidade;
+        private final String[] textos;
+        private final ByteBuffer registros;
+
+        private Leitura(
+                YearMonth mes,
+                int quantidade,
+                String[] textos,
+                ByteBuffer registros
+        ) {
+            this.mes = mes;
+            this.quantidade = quantidade;
+            this.textos = textos;
+            this.registros = registros;
+        }
+
+        int quantidade() {
+            return quantidade;
+        }
+
+        /**
+         * Percorre os registros como {@link ConsultaArquivada}.
+         *
+         * @return registros em ordem de data e horário
+         */
+        Iterator<ConsultaArquivada> registros() {
+            var cursor = new Cursor();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return cursor.lidos < quantidade;
+                }
+
+                @Override
+                public ConsultaArquivada next() {
+                    cursor.avancar();
+                    return new ConsultaArquivada(cursor.id, cursor.versao, cursor.data(), cursor.horario(), cursor.animal,
+                        cursor.veterinario, textos[cursor.observacoes], textos[cursor.especie], textos[cursor.especialidade]);
+                }
+            };
+        }
+
+        /**
+         * Percorre os registros como {@link Consulta}, resolvendo animal e veterinário.
+         *
+         * @param animais      resolve um animal pelo identificador
+         * @param veterinarios resolve um veterinário pelo identificador
+         * @return consultas em ordem de data e horário
+         */
+        Iterator<Consulta> consultas(
+                IntFunction<Animal> animais,
+                IntFunction<Veterinario> veterinarios
+        ) {
+            var cursor = new Cursor();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return cursor.lidos < quantidade;
+                }
+
+                @Override
+                public Consulta next() {
+                    cursor.avancar();
+                    var consulta = new Consulta(cursor.data(), cursor.horario(),
+                        cursor.animal != 0 ? animais.apply(cursor.animal) : null,
+                        cursor.veterinario != 0 ? veterinarios.apply(cursor.veterinario) : null,
+                        textos[cursor.observacoes]);
+                    consulta.setId(cursor.id);
+                    consulta.setVersao(cursor.versao);
+                    return consulta;
+                }
+            };
+        }
+
+        /**
+         * Posição da decodificação: cada registro é lido sobre os valores do anterior.
+         */
+        private final class Cursor {
+
+            private final ByteBuffer entrada = registros.duplicate();
+            private int lidos;
+            private int dia = 1;
+            private int codigoHorario;
+            private int id;
+            private int versao;
+            private int animal;
+            private int veterinario;
+            private int observacoes;
+            private int especie;
+            private int especialidade;
+
+            void avancar() {
+                if (lidos == quantidade) throw new NoSuchElementException();
+
+                var deltaDia = (int) lerVarint(entrada);
+                dia += deltaDia;
+                codigoHorario = deltaDia == 0 ? codigoHorario + (int) lerVarint(entrada) : (int) lerVarint(entrada);
+                id += desfazerZigueZague(lerVarint(entrada));
+                versao = (int) lerVarint(entrada);
+                animal = (int) lerVarint(entrada);
+                veterinario = (int) lerVarint(entrada);
+                observacoes = (int) lerVarint(entrada);
+                especie = (int) lerVarint(entrada);
+                especialidade = (int) lerVarint(entrada);
+                lidos++;
+            }
+
+            LocalDate data() {
+                return mes.atDay(dia);
+            }
+
+            LocalTime horario() {
+                return codigoHorario != 0 ? LocalTime.ofSecondOfDay(codigoHorario - 1) : null;
+            }
+        }
+    }
+
+    /**
+     * Posição do mês em uma contagem contínua de meses, gravada no cabeçalho.
+     *
+     * @param mes mês
+     * @return ano multiplicado por 12 somado ao mês começando em zero
+     */
+    static int indice(
+            YearMonth mes
+    ) {
+        return mes.getYear() * 12 + mes.getMonthValue() - 1;
+    }
+
+    private static YearMonth mes(
+            int indice
+    ) {
+        return YearMonth.of(Math.floorDiv(indice, 12), Math.floorMod(indice, 12) + 1);
+    }
+
+    /**
+     * Horário como segundos do dia mais um, para que zero represente "sem horário".
+     */
+    private static int codigoHorario(
+            LocalTime horario
+    ) {
+        return horario != null ? horario.toSecondOfDay() + 1 : 0;
+    }
+
+    private static int idDe(
+            int id
+    ) {
+        if (id < 0) throw new IllegalArgumentException("Identificador negativo: " + id);
+        return id;
+    }
+
+    /**
+     * Posição de um texto no dicionário, acrescentando-o se ainda não estiver lá.
+     *
+     * @return posição a partir de 1, ou 0 para {@code null}
+     */
+    private static int texto(
+            Map<String, Integer> textos,
+            ByteArrayOutputStream dicionario,
+            String texto
+    ) {
+        if (texto == null) return 0;
+
+        var posicao = textos.get(texto);
+        if (posicao != null) return posicao;
+
+        var bytes = texto.getBytes(StandardCharsets.UTF_8);
+        escreverVarint(dicionario, bytes.length);
+        dicionario.writeBytes(bytes);
+        posicao = textos.size() + 1;
+        textos.put(texto, posicao);
+        return posicao;
+    }
+
+    private static long zigueZague(
+            long valor
+    ) {
+        return valor << 1 ^ valor >> 63;
+    }
+
+    private static int desfazerZigueZague(
+            long valor
+    ) {
+        return (int) (valor >>> 1 ^ -(valor & 1));
+    }
+
+    private static void escreverVarint(
+            ByteArrayOutputStream out,
+            long valor
+    ) {
+        if (valor < 0) throw new IllegalArgumentException("Valor negativo: " + valor);
+
+        while (valor >= 0x80) {
+            out.write((int) (valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        out.write((int) valor);
+    }
+
+    private static long lerVarint(
+            ByteBuffer in
+    ) {
+        var valor = 0L;
+        for (var deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            var b = in.get();
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if (b >= 0) return valor;
+        }
+        throw new IllegalStateException("Inteiro de tamanho variável inválido");
+    }
+}
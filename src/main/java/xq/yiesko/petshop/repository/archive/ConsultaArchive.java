@@ -0,0 +1,272 @@
+package xq.yiesko.petshop.repository.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Veterinario;
+
+/**
+ * Arquivo das consultas de meses encerrados, particionado por mês.
+ * <p>
+ * Cada mês selado vira um segmento imutável e compacto (ver {@link ArchiveSegment}),
+ * e o arquivo guarda o limite: o primeiro mês ainda não arquivado. As consultas
+ * anteriores ao limite ficam apenas nos segmentos; as consultas por período leem só
+ * os segmentos dos meses do intervalo, sem carregar os demais.
+ * <p>
+ * O limite é gravado depois dos segmentos, em um arquivo próprio substituído de
+ * forma atômica. Ao abrir, segmentos de meses a partir do limite são restos de um
+ * arquivamento interrompido e são apagados: as consultas desses meses continuam no
+ * repositório de origem e serão arquivadas de novo.
+ */
+public final class ConsultaArchive {
+
+    private static final String ARQUIVO_LIMITE = "consultas.limite";
+    private static final String PREFIXO = "consultas-";
+    private static final String EXTENSAO = ".arq";
+    private static final DateTimeFormatter FORMATO_MES = DateTimeFormatter.ofPattern("uuuu-MM");
+
+    private final Path diretorio;
+    private final IntFunction<Animal> animais;
+    private final IntFunction<Veterinario> veterinarios;
+    private final ConcurrentSkipListMap<YearMonth, Path> segmentos = new ConcurrentSkipListMap<>();
+    private volatile YearMonth limite;
+    private volatile long primeiroDiaAtivo = Long.MIN_VALUE;
+
+    private ConsultaArchive(
+            Path diretorio,
+            IntFunction<Animal> animais,
+            IntFunction<Veterinario> veterinarios
+    ) {
+        this.diretorio = diretorio;
+        this.animais = animais;
+        this.veterinarios = veterinarios;
+    }
+
+    /**
+     * Abre o arquivo de um diretório, criando-o se necessário.
+     *
+     * @param diretorio    diretório dos segmentos
+     * @param animais      resolve um animal pelo identificador ao ler consultas
+     * @param veterinarios resolve um veterinário pelo identificador ao ler consultas
+     * @return arquivo aberto
+     * @throws IOException se o diretório não puder ser lido
+     */
+    public static ConsultaArchive abrir(
+            Path diretorio,
+            IntFunction<Animal> animais,
+            IntFunction<Veterinario> veterinarios
+    ) throws IOException {
+        Files.createDirectories(diretorio);
+
+        var arquivo = new ConsultaArchive(diretorio, animais, veterinarios);
+        var caminhoLimite = diretorio.resolve(ARQUIVO_LIMITE);
+        if (Files.exists(caminhoLimite)) arquivo.definirLimite(lerMes(Files.readString(caminhoLimite).strip(), caminhoLimite));
+
+        try (var arquivos = Files.list(diretorio)) {
+            for (var caminho : (Iterable<Path>) arquivos::iterator) {
+                var nome = caminho.getFileName().toString();
+                if (nome.endsWith(".tmp")) {
+                    Files.delete(caminho);
+                } else if (nome.startsWith(PREFIXO) && nome.endsWith(EXTENSAO)) {
+                    var mes = lerMes(nome.substring(PREFIXO.length(), nome.length() - EXTENSAO.length()), caminho);
+                    if (arquivo.limite == null || !mes.isBefore(arquivo.limite)) Files.delete(caminho);
+                    else arquivo.segmentos.put(mes, caminho);
+                }
+            }
+        }
+        return arquivo;
+    }
+
+    /**
+     * Obtém o primeiro mês ainda não arquivado.
+     *
+     * @return limite do arquivo, ou vazio se nada foi arquivado
+     */
+    public Optional<YearMonth> limite() {
+        return Optional.ofNullable(limite);
+    }
+
+    /**
+     * Indica se uma data pertence a um mês já arquivado.
+     *
+     * @param data data verificada
+     * @return true se a data é anterior ao limite
+     */
+    public boolean arquivado(
+            LocalDate data
+    ) {
+        return data.toEpochDay() < primeiroDiaAtivo;
+    }
+
+    /**
+     * Grava as consultas de um mês em um segmento e move o limite para o mês seguinte.
+     * <p>
+     * Depois desta chamada as consultas podem ser removidas do repositório de origem:
+     * se o processo parar antes, elas são lidas do segmento e as do repositório devem
+     * ser descartadas.
+     *
+     * @param mes       mês selado, a partir do limite atual
+     * @param consultas todas as consultas do mês
+     * @throws IOException se a escrita falhar
+     */
+    public synchronized void selar(
+            YearMonth mes,
+            List<Consulta> consultas
+    ) throws IOException {
+        if (limite != null && mes.isBefore(limite)) throw new IllegalStateException("Mês já arquivado: " + mes);
+
+        var caminho = caminho(mes);
+        ArchiveSegment.gravar(caminho, mes, consultas);
+        segmentos.put(mes, caminho);
+        avancar(mes.plusMonths(1));
+    }
+
+    /**
+     * Move o limite para um mês posterior sem gravar segmentos, para meses sem
+     * consultas. Um limite anterior ao atual é ignorado.
+     *
+     * @param novoLimite primeiro mês que deixa de aceitar consultas
+     * @throws IOException se a escrita falhar
+     */
+    public synchronized void avancar(
+            YearMonth novoLimite
+    ) throws IOException {
+        if (limite != null && !novoLimite.isAfter(limite)) return;
+
+        var temporario = diretorio.resolve(ARQUIVO_LIMITE + ".tmp");
+        try (var canal = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var bytes = ByteBuffer.wrap(FORMATO_MES.format(novoLimite).getBytes(StandardCharsets.US_ASCII));
+            while (bytes.hasRemaining()) canal.write(bytes);
+            canal.force(true);
+        }
+        Files.move(temporario, diretorio.resolve(ARQUIVO_LIMITE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        definirLimite(novoLimite);
+    }
+
+    /**
+     * Lê os registros arquivados de um período, sem resolver animal e veterinário.
+     * Só os segmentos dos meses do período são abertos, um de cada vez.
+     *
+     * @param inicio primeira data, inclusiva
+     * @param fim    última data, inclusiva
+     * @return registros em ordem de data e horário
+     */
+    public Stream<ConsultaArquivada> registros(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        return ler(inicio, fim, ArchiveSegment.Leitura::registros)
+            .dropWhile(registro -> registro.data().isBefore(inicio))
+            .takeWhile(registro -> !registro.data().isAfter(fim));
+    }
+
+    /**
+     * Lê as consultas arquivadas de um período. Cada consulta é uma instância nova,
+     * com o animal e o veterinário resolvidos no momento da leitura.
+     *
+     * @param inicio primeira data, inclusiva
+     * @param fim    última data, inclusiva
+     * @return consultas em ordem de data e horário
+     */
+    public Stream<Consulta> consultas(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        return ler(inicio, fim, leitura -> leitura.consultas(animais, veterinarios))
+            .dropWhile(consulta -> consulta.getData().isBefore(inicio))
+            .takeWhile(consulta -> !consulta.getData().isAfter(fim));
+    }
+
+    /**
+     * Obtém a quantidade de meses com segmento.
+     *
+     * @return meses arquivados com ao menos uma consulta
+     */
+    public int meses() {
+        return segmentos.size();
+    }
+
+    /**
+     * Obtém o espaço ocupado pelos segmentos.
+     *
+     * @return soma dos tamanhos dos segmentos, em bytes
+     */
+    public long bytes() {
+        var total = 0L;
+        for (var caminho : segmentos.values()) {
+            try {
+                total += Files.size(caminho);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return total;
+    }
+
+    private <R> Stream<R> ler(
+            LocalDate inicio,
+            LocalDate fim,
+            Function<ArchiveSegment.Leitura, Iterator<R>> leitor
+    ) {
+        if (fim.isBefore(inicio)) return Stream.empty();
+
+        NavigableMap<YearMonth, Path> meses = segmentos.subMap(YearMonth.from(inicio), true, YearMonth.from(fim), true);
+        return meses.values().stream().flatMap(caminho -> {
+            try {
+                var leitura = ArchiveSegment.abrir(caminho);
+                var iterador = leitor.apply(leitura);
+                return StreamSupport.stream(Spliterators.spliterator(iterador, leitura.quantidade(),
+                    Spliterator.ORDERED | Spliterator.NONNULL), false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void definirLimite(
+            YearMonth novoLimite
+    ) {
+        limite = novoLimite;
+        primeiroDiaAtivo = novoLimite.atDay(1).toEpochDay();
+    }
+
+    private Path caminho(
+            YearMonth mes
+    ) {
+        return diretorio.resolve(PREFIXO + FORMATO_MES.format(mes) + EXTENSAO);
+    }
+
+    private static YearMonth lerMes(
+            String texto,
+            Path origem
+    ) throws IOException {
+        try {
+            return YearMonth.parse(texto, FORMATO_MES);
+        } catch (DateTimeParseException e) {
+            throw new IOException("Mês inválido em " + origem + ": " + texto, e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package xq.yiesko.petshop.repository.archive;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Consulta lida de um segmento do {@link ConsultaArchive}, com as referências
+ * ainda como identificadores.
+ * <p>
+ * A espécie do animal e a especialidade do veterinário são as do momento do
+ * arquivamento, para que as contagens do histórico não dependam de o animal e o
+ * veterinário ainda existirem.
+ *
+ * @param id            identificador da consulta
+ * @param versao        versão da consulta ao ser arquivada
+ * @param data          data da consulta
+ * @param horario       horário de início, ou {@code null}
+ * @param animalId      identificador do animal
+ * @param veterinarioId identificador do veterinário
+ * @param observacoes   observações, ou {@code null}
+ * @param especie       espécie do animal, ou {@code null}
+ * @param especialidade especialidade do veterinário, ou {@code null}
+ */
+public record ConsultaArquivada(
+        int id,
+        int versao,
+        LocalDate data,
+        LocalTime horario,
+        int animalId,
+        int veterinarioId,
+        String observacoes,
+        String especie,
+        String especialidade
+) {
+}
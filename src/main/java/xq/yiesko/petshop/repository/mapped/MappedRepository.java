@@ -0,0 +1,532 @@
+package xq.yiesko.petshop.repository.mapped;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.model.impl.Identificavel;
+import xq.yiesko.petshop.repository.Repository;
+
+/**
+ * Repositório que guarda as entidades em slots de largura fixa de um arquivo mapeado em memória.
+ * <p>
+ * O slot de cada entidade fica na posição {@code id - 1}, então a busca por
+ * identificador é um acesso direto e não há índice no heap. As entidades só são
+ * materializadas na leitura, e cada leitura devolve uma instância nova: o heap
+ * guarda as entidades apenas enquanto estão em uso, em troca de uma alocação por
+ * leitura. Abrir o repositório apenas mapeia os arquivos, independentemente da
+ * quantidade de registros.
+ * <p>
+ * As alterações vão para as páginas mapeadas e chegam ao disco pelo sistema
+ * operacional ou em {@link #sincronizar()} e {@link #close()}; não há {@code fsync}
+ * por operação como no {@code RepositoryJournal}. Um arquivo comporta até
+ * {@code (2^31 - 64) / tamanho do slot} registros.
+ * <p>
+ * Cada slot começa pelo estado e pela versão da entidade, seguidos dos campos do
+ * {@link RecordLayout}. Arquivos da versão 1 do formato, sem a versão da
+ * entidade, são convertidos na abertura.
+ *
+ * @param <T> tipo da entidade persistida
+ */
+public final class MappedRepository<T extends Identificavel> implements Repository<T>, Closeable {
+
+    private static final int MAGIC = 0x50415752;
+    private static final int VERSAO = 2;
+    private static final int CABECALHO = 64;
+    private static final int CAPACIDADE_INICIAL = 1024;
+
+    private static final int DADOS = 1 + Integer.BYTES;
+
+    private static final byte ATIVO = 1;
+    private static final byte REMOVIDO = 2;
+
+    private final RecordLayout<T> layout;
+    private final int tamanhoSlot;
+    private final FileChannel canal;
+    private final StringArena textos;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private MappedByteBuffer slots;
+    private int capacidade;
+    private int proximoId;
+    private int quantidade;
+
+    private MappedRepository(
+            Path diretorio,
+            String nome,
+            RecordLayout<T> layout
+    ) throws IOException {
+        Files.createDirectories(diretorio);
+        var arquivo = diretorio.resolve(nome + ".slots");
+        converterVersao1(arquivo, layout.tamanho());
+
+        this.layout = layout;
+        this.tamanhoSlot = tamanhoSlot(DADOS, layout.tamanho());
+        this.canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.textos = new StringArena(diretorio.resolve(nome + ".strings"));
+
+        if (canal.size() == 0) {
+            mapear(CAPACIDADE_INICIAL);
+            slots.putInt(0, MAGIC);
+            slots.putInt(4, VERSAO);
+            slots.putInt(8, tamanhoSlot);
+            proximoId = 1;
+            gravarCabecalho();
+        } else {
+            mapear((int) ((canal.size() - CABECALHO) / tamanhoSlot));
+            if (slots.getInt(0) != MAGIC || slots.getInt(4) != VERSAO || slots.getInt(8) != tamanhoSlot)
+                throw new IOException("Arquivo de slots inválido para " + nome);
+            proximoId = slots.getInt(12);
+            quantidade = slots.getInt(16);
+        }
+    }
+
+    /**
+     * Abre ou cria o armazenamento mapeado de animais.
+     *
+     * @param diretorio     diretório dos arquivos
+     * @param proprietarios resolve um proprietário pelo identificador
+     * @return repositório de animais
+     * @throws IOException se os arquivos não puderem ser mapeados
+     */
+    public static MappedRepository<Animal> animais(
+            Path diretorio,
+            IntFunction<Proprietario> proprietarios
+    ) throws IOException {
+        return new MappedRepository<>(diretorio, "animais", RecordLayouts.animal(proprietarios));
+    }
+
+    /**
+     * Abre ou cria o armazenamento mapeado de consultas.
+     *
+     * @param diretorio    diretório dos arquivos
+     * @param animais      resolve um animal pelo identificador
+     * @param veterinarios resolve um veterinário pelo identificador
+     * @return repositório de consultas
+     * @throws IOException se os arquivos não puderem ser mapeados
+     */
+    public static MappedRepository<Consulta> consultas(
+            Path diretorio,
+            IntFunction<Animal> animais,
+            IntFunction<Veterinario> veterinarios
+    ) throws IOException {
+        return new MappedRepository<>(diretorio, "consultas", RecordLayouts.consulta(animais, veterinarios));
+    }
+
+    @Override
+    public T adicionar(
+            T entity
+    ) {
+        lock.writeLock().lock();
+        try {
+            var id = proximoId;
+            if (id > capacidade) crescer(id);
+
+            gravar(id, entity, 1);
+            entity.setId(id);
+            proximoId++;
+            quantidade++;
+            gravarCabecalho();
+            return entity;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * O lote é gravado sob uma única aquisição do lock, com o arquivo ampliado uma
+     * vez para comportar todos os registros.
+     */
+    @Override
+    public List<T> adicionarTodos(
+            List<T> entities
+    ) {
+        if (entities.isEmpty()) return entities;
+
+        lock.writeLock().lock();
+        try {
+            var ultimo = proximoId + entities.size() - 1;
+            if (ultimo > capacidade) crescer(ultimo);
+
+            for (var entity : entities) {
+                gravar(proximoId, entity, 1);
+                entity.setId(proximoId++);
+                quantidade++;
+            }
+            gravarCabecalho();
+            return entities;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean atualizar(
+            T entity
+    ) {
+        lock.writeLock().lock();
+        try {
+            var id = entity.getId();
+            if (!ativo(id)) return false;
+
+            gravar(id, entity, versao(id) + 1);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean atualizar(
+            T entity,
+            int versaoEsperada
+    ) {
+        lock.writeLock().lock();
+        try {
+            var id = entity.getId();
+            if (!ativo(id) || versao(id) != versaoEsperada) return false;
+
+            gravar(id, entity, versaoEsperada + 1);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean atualizarTodos(
+            List<T> entities
+    ) {
+        lock.writeLock().lock();
+        try {
+            for (var entity : entities) if (!ativo(entity.getId())) return false;
+            for (var entity : entities) gravar(entity.getId(), entity, versao(entity.getId()) + 1);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<T> buscarPorId(
+            int id
+    ) {
+        lock.readLock().lock();
+        try {
+            return ativo(id) ? Optional.of(materializar(id)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<T> listar() {
+        lock.readLock().lock();
+        try {
+            var entidades = new ArrayList<T>(quantidade);
+            for (var id = 1; id < proximoId; id++)
+                if (ativo(id)) entidades.add(materializar(id));
+            return entidades;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<T> listarApos(
+            int aposId,
+            int limite
+    ) {
+        lock.readLock().lock();
+        try {
+            var pagina = new ArrayList<T>(Math.max(0, Math.min(limite, 1024)));
+            for (var id = Math.max(aposId, 0) + 1; id < proximoId && pagina.size() < limite; id++)
+                if (ativo(id)) pagina.add(materializar(id));
+            return pagina;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void paraCada(
+            Consumer<? super T> acao
+    ) {
+        lock.readLock().lock();
+        try {
+            for (var id = 1; id < proximoId; id++)
+                if (ativo(id)) acao.accept(materializar(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cada entidade é materializada apenas quando alcançada pelo stream.
+     */
+    @Override
+    public Stream<T> stream() {
+        int limite;
+        lock.readLock().lock();
+        try {
+            limite = proximoId;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return IntStream.range(1, limite).mapToObj(this::buscarPorId).flatMap(Optional::stream);
+    }
+
+    @Override
+    public boolean remover(
+            int id
+    ) {
+        lock.writeLock().lock();
+        try {
+            if (!ativo(id)) return false;
+
+            slots.put(posicao(id), REMOVIDO);
+            quantidade--;
+            gravarCabecalho();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<T> retirar(
+            int id
+    ) {
+        lock.writeLock().lock();
+        try {
+            if (!ativo(id)) return Optional.empty();
+
+            var removida = materializar(id);
+            slots.put(posicao(id), REMOVIDO);
+            quantidade--;
+            gravarCabecalho();
+            return Optional.of(removida);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<T> retirarTodos(
+            List<Integer> ids
+    ) {
+        lock.writeLock().lock();
+        try {
+            var removidas = new ArrayList<T>(ids.size());
+            for (var id : ids) {
+                if (!ativo(id)) continue;
+                removidas.add(materializar(id));
+                slots.put(posicao(id), REMOVIDO);
+            }
+
+            quantidade -= removidas.size();
+            gravarCabecalho();
+            return removidas;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        lock.writeLock().lock();
+        try {
+            var removidos = 0;
+            for (var id : ids) {
+                if (!ativo(id)) continue;
+                slots.put(posicao(id), REMOVIDO);
+                removidos++;
+            }
+
+            quantidade -= removidos;
+            gravarCabecalho();
+            return removidos;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int tamanho() {
+        lock.readLock().lock();
+        try {
+            return quantidade;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Força a gravação das páginas alteradas em disco.
+     */
+    public void sincronizar() {
+        lock.writeLock().lock();
+        try {
+            slots.force();
+            textos.sincronizar();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            slots.force();
+            textos.close();
+            canal.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean ativo(
+            int id
+    ) {
+        return id >= 1 && id < proximoId && slots.get(posicao(id)) == ATIVO;
+    }
+
+    private int versao(
+            int id
+    ) {
+        return slots.getInt(posicao(id) + 1);
+    }
+
+    private void gravar(
+            int id,
+            T entity,
+            int versao
+    ) throws IOException {
+        var posicao = posicao(id);
+        layout.escrever(entity, slots, posicao + DADOS, textos);
+        slots.putInt(posicao + 1, versao);
+        slots.put(posicao, ATIVO);
+        entity.setVersao(versao);
+    }
+
+    private T materializar(
+            int id
+    ) {
+        var posicao = posicao(id);
+        var entity = layout.ler(slots, posicao + DADOS, textos);
+        entity.setId(id);
+        entity.setVersao(slots.getInt(posicao + 1));
+        return entity;
+    }
+
+    private int posicao(
+            int id
+    ) {
+        return CABECALHO + (id - 1) * tamanhoSlot;
+    }
+
+    private void gravarCabecalho() {
+        slots.putInt(12, proximoId);
+        slots.putInt(16, quantidade);
+    }
+
+    private void crescer(
+            int id
+    ) throws IOException {
+        var maximo = (Integer.MAX_VALUE - CABECALHO) / tamanhoSlot;
+        if (id > maximo) throw new IllegalStateException("Capacidade máxima do arquivo mapeado atingida");
+        mapear((int) Math.min(maximo, Math.max((long) capacidade * 2, id)));
+    }
+
+    private static int tamanhoSlot(
+            int cabecalhoSlot,
+            int tamanhoLayout
+    ) {
+        return (cabecalhoSlot + tamanhoLayout + 7) & ~7;
+    }
+
+    /**
+     * Converte um arquivo da versão 1 do formato, cujos slots têm apenas o estado
+     * antes dos campos, acrescentando a versão 1 a cada entidade ativa. Arquivos
+     * ausentes ou de outra versão não são alterados.
+     */
+    private static void converterVersao1(
+            Path arquivo,
+            int tamanhoLayout
+    ) throws IOException {
+        if (!Files.exists(arquivo)) return;
+
+        var temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (var antigo = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            var slotAntigo = tamanhoSlot(1, tamanhoLayout);
+            if (antigo.size() < CABECALHO) return;
+
+            var origem = antigo.map(FileChannel.MapMode.READ_ONLY, 0, antigo.size());
+            if (origem.getInt(0) != MAGIC || origem.getInt(4) != 1 || origem.getInt(8) != slotAntigo) return;
+
+            var slotNovo = tamanhoSlot(DADOS, tamanhoLayout);
+            var capacidade = (int) ((antigo.size() - CABECALHO) / slotAntigo);
+            try (var novo = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                var destino = novo.map(FileChannel.MapMode.READ_WRITE, 0, CABECALHO + (long) capacidade * slotNovo);
+                destino.put(0, origem, 0, CABECALHO);
+                destino.putInt(4, VERSAO);
+                destino.putInt(8, slotNovo);
+
+                for (var i = 0; i < capacidade; i++) {
+                    var de = CABECALHO + i * slotAntigo;
+                    var para = CABECALHO + i * slotNovo;
+                    var estado = origem.get(de);
+                    destino.put(para, estado);
+                    if (estado == ATIVO) destino.putInt(para + 1, 1);
+                    destino.put(para + DADOS, origem, de + 1, tamanhoLayout);
+                }
+                destino.force();
+            }
+        }
+
+        Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void mapear(
+            int slotsMapeados
+    ) throws IOException {
+        capacidade = slotsMapeados;
+        slots = canal.map(FileChannel.MapMode.READ_WRITE, 0, CABECALHO + (long) capacidade * tamanhoSlot);
+    }
+}
@@ -0,0 +1,52 @@
+package xq.yiesko.petshop.repository.mapped;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Formato de largura fixa dos campos de uma entidade dentro de um slot.
+ * <p>
+ * O identificador não é gravado: ele é a própria posição do slot no arquivo.
+ * Textos ficam na {@link StringArena} e o slot guarda apenas a referência.
+ *
+ * @param <T> tipo da entidade
+ */
+interface RecordLayout<T> {
+
+    /**
+     * Obtém a quantidade de bytes ocupada pelos campos.
+     *
+     * @return tamanho dos campos em bytes
+     */
+    int tamanho();
+
+    /**
+     * Grava os campos da entidade a partir da posição informada.
+     *
+     * @param entity  entidade gravada
+     * @param buffer  região mapeada dos slots
+     * @param posicao início dos campos
+     * @param textos  arena dos textos
+     * @throws IOException se a arena não puder crescer
+     */
+    void escrever(
+            T entity,
+            ByteBuffer buffer,
+            int posicao,
+            StringArena textos
+    ) throws IOException;
+
+    /**
+     * Materializa a entidade gravada a partir da posição informada.
+     *
+     * @param buffer  região mapeada dos slots
+     * @param posicao início dos campos
+     * @param textos  arena dos textos
+     * @return entidade, ainda sem identificador
+     */
+    T ler(
+            ByteBuffer buffer,
+            int posicao,
+            StringArena textos
+    );
+}
@@ -0,0 +1,138 @@
+package xq.yiesko.petshop.repository.mapped;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.function.IntFunction;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Cachorro;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Gato;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Formatos de slot das entidades armazenadas no {@link MappedRepository}.
+ */
+final class RecordLayouts {
+
+    private static final byte CACHORRO = 1;
+    private static final byte GATO = 2;
+    private static final long SEM_DATA = Long.MIN_VALUE;
+
+    private RecordLayouts() {}
+
+    /**
+     * Slot de animal: {@code [tipo:1][idade:4][proprietário:4][nome:8][espécie:8]}.
+     *
+     * @param proprietarios resolve um proprietário pelo identificador
+     * @return formato do slot
+     */
+    static RecordLayout<Animal> animal(
+            IntFunction<Proprietario> proprietarios
+    ) {
+        return new RecordLayout<>() {
+            @Override
+            public int tamanho() {
+                return 1 + Integer.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES;
+            }
+
+            @Override
+            public void escrever(
+                    Animal animal,
+                    ByteBuffer buffer,
+                    int posicao,
+                    StringArena textos
+            ) throws IOException {
+                buffer.put(posicao, animal instanceof Gato ? GATO : CACHORRO);
+                buffer.putInt(posicao + 1, animal.getIdade());
+                buffer.putInt(posicao + 5, idDe(animal.getProprietario()));
+                buffer.putLong(posicao + 9, textos.gravar(animal.getNome()));
+                buffer.putLong(posicao + 17, textos.gravar(animal.getEspecie()));
+            }
+
+            @Override
+            public Animal ler(
+                    ByteBuffer buffer,
+                    int posicao,
+                    StringArena textos
+            ) {
+                var idade = buffer.getInt(posicao + 1);
+                var proprietario = resolver(proprietarios, buffer.getInt(posicao + 5));
+                var nome = textos.ler(buffer.getLong(posicao + 9));
+                var especie = textos.ler(buffer.getLong(posicao + 17));
+
+                return buffer.get(posicao) == GATO
+                    ? new Gato(nome, idade, especie, proprietario)
+                    : new Cachorro(nome, idade, especie, proprietario);
+            }
+        };
+    }
+
+    /**
+     * Slot de consulta: {@code [dia:8][animal:4][veterinário:4][observações:8][horário:4]}.
+     * <p>
+     * O horário é gravado como segundos do dia mais um, para que o zero de um slot
+     * gravado antes da existência do campo signifique "sem horário".
+     *
+     * @param animais      resolve um animal pelo identificador
+     * @param veterinarios resolve um veterinário pelo identificador
+     * @return formato do slot
+     */
+    static RecordLayout<Consulta> consulta(
+            IntFunction<Animal> animais,
+            IntFunction<Veterinario> veterinarios
+    ) {
+        return new RecordLayout<>() {
+            @Override
+            public int tamanho() {
+                return Long.BYTES + Integer.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+            }
+
+            @Override
+            public void escrever(
+                    Consulta consulta,
+                    ByteBuffer buffer,
+                    int posicao,
+                    StringArena textos
+            ) throws IOException {
+                buffer.putLong(posicao, consulta.getData() != null ? consulta.getData().toEpochDay() : SEM_DATA);
+                buffer.putInt(posicao + 8, idDe(consulta.getAnimal()));
+                buffer.putInt(posicao + 12, idDe(consulta.getVeterinario()));
+                buffer.putLong(posicao + 16, textos.gravar(consulta.getObservacoes()));
+                buffer.putInt(posicao + 24, consulta.getHorario() != null ? consulta.getHorario().toSecondOfDay() + 1 : 0);
+            }
+
+            @Override
+            public Consulta ler(
+                    ByteBuffer buffer,
+                    int posicao,
+                    StringArena textos
+            ) {
+                var dia = buffer.getLong(posicao);
+                var horario = buffer.getInt(posicao + 24);
+                return new Consulta(
+                    dia != SEM_DATA ? LocalDate.ofEpochDay(dia) : null,
+                    horario != 0 ? LocalTime.ofSecondOfDay(horario - 1) : null,
+                    resolver(animais, buffer.getInt(posicao + 8)),
+                    resolver(veterinarios, buffer.getInt(posicao + 12)),
+                    textos.ler(buffer.getLong(posicao + 16)));
+            }
+        };
+    }
+
+    private static int idDe(
+            Identificavel entity
+    ) {
+        return entity != null ? entity.getId() : 0;
+    }
+
+    private static <R> R resolver(
+            IntFunction<R> resolvedor,
+            int id
+    ) {
+        return id != 0 ? resolvedor.apply(id) : null;
+    }
+}
@@ -0,0 +1,125 @@
+package xq.yiesko.petshop.repository.mapped;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arena de textos UTF-8 em um arquivo mapeado em memória, somente de acréscimo.
+ * <p>
+ * Cada texto é gravado como {@code [tamanho][bytes]} e referenciado pela sua
+ * posição no arquivo; a referência {@code 0} representa {@code null}. O arquivo é
+ * mapeado em blocos de {@value #BLOCO} bytes e um texto nunca atravessa dois blocos.
+ * Textos substituídos não são reaproveitados.
+ * <p>
+ * Não é segura para uso concorrente; o {@link MappedRepository} serializa o acesso.
+ */
+final class StringArena implements Closeable {
+
+    private static final int BLOCO = 64 * 1024 * 1024;
+    private static final int MAGIC = 0x50415754;
+    private static final int CABECALHO = 16;
+
+    private final FileChannel canal;
+    private final List<MappedByteBuffer> blocos = new ArrayList<>();
+    private long fim;
+
+    /**
+     * Abre ou cria a arena.
+     *
+     * @param arquivo arquivo da arena
+     * @throws IOException se o arquivo não puder ser mapeado
+     */
+    StringArena(
+            Path arquivo
+    ) throws IOException {
+        canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var nova = canal.size() == 0;
+        mapear(0);
+
+        var cabecalho = blocos.get(0);
+        if (nova) {
+            cabecalho.putInt(0, MAGIC);
+            cabecalho.putLong(8, CABECALHO);
+        } else if (cabecalho.getInt(0) != MAGIC) {
+            throw new IOException("Arena de textos inválida: " + arquivo);
+        }
+
+        fim = cabecalho.getLong(8);
+        while (blocos.size() * (long) BLOCO < fim) mapear(blocos.size());
+    }
+
+    /**
+     * Grava um texto e devolve sua referência.
+     *
+     * @param texto texto gravado, possivelmente nulo
+     * @return referência do texto
+     * @throws IOException se a arena não puder crescer
+     */
+    long gravar(
+            String texto
+    ) throws IOException {
+        if (texto == null) return 0;
+
+        var bytes = texto.getBytes(StandardCharsets.UTF_8);
+        var necessario = Integer.BYTES + bytes.length;
+        if (necessario > BLOCO) throw new IllegalArgumentException("Texto excede o tamanho máximo da arena");
+
+        if (fim % BLOCO + necessario > BLOCO) fim += BLOCO - fim % BLOCO;
+        var bloco = (int) (fim / BLOCO);
+        if (bloco >= blocos.size()) mapear(bloco);
+
+        var posicao = fim;
+        var buffer = blocos.get(bloco);
+        var deslocamento = (int) (posicao % BLOCO);
+        buffer.putInt(deslocamento, bytes.length);
+        buffer.put(deslocamento + Integer.BYTES, bytes);
+
+        fim += necessario;
+        blocos.get(0).putLong(8, fim);
+        return posicao;
+    }
+
+    /**
+     * Lê o texto de uma referência.
+     *
+     * @param referencia referência devolvida por {@link #gravar(String)}
+     * @return texto, ou {@code null} se a referência for nula
+     */
+    String ler(
+            long referencia
+    ) {
+        if (referencia == 0) return null;
+
+        var buffer = blocos.get((int) (referencia / BLOCO));
+        var deslocamento = (int) (referencia % BLOCO);
+        var bytes = new byte[buffer.getInt(deslocamento)];
+        buffer.get(deslocamento + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Força a gravação das páginas alteradas em disco.
+     */
+    void sincronizar() {
+        for (var bloco : blocos) bloco.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        sincronizar();
+        canal.close();
+    }
+
+    private void mapear(
+            int bloco
+    ) throws IOException {
+        blocos.add(canal.map(FileChannel.MapMode.READ_WRITE, (long) bloco * BLOCO, BLOCO));
+    }
+}
@@ -0,0 +1,227 @@
+package xq.yiesko.petshop.repository.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.function.IntFunction;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Cachorro;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Gato;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Codecs binários das entidades do domínio.
+ */
+public final class Codecs {
+
+    private static final byte CACHORRO = 1;
+    private static final byte GATO = 2;
+
+    private Codecs() {}
+
+    /**
+     * Codec de proprietários.
+     *
+     * @return codec
+     */
+    public static EntityCodec<Proprietario> proprietario() {
+        return new EntityCodec<>() {
+            @Override
+            public void escrever(
+                    Proprietario proprietario,
+                    DataOutput out
+            ) throws IOException {
+                out.writeInt(proprietario.getId());
+                escreverTexto(out, proprietario.getNome());
+                escreverTexto(out, proprietario.getTelefone());
+            }
+
+            @Override
+            public Proprietario ler(
+                    DataInput in
+            ) throws IOException {
+                var id = in.readInt();
+                var proprietario = new Proprietario(lerTexto(in), lerTexto(in));
+                proprietario.setId(id);
+                return proprietario;
+            }
+        };
+    }
+
+    /**
+     * Codec de veterinários.
+     *
+     * @return codec
+     */
+    public static EntityCodec<Veterinario> veterinario() {
+        return new EntityCodec<>() {
+            @Override
+            public void escrever(
+                    Veterinario veterinario,
+                    DataOutput out
+            ) throws IOException {
+                out.writeInt(veterinario.getId());
+                escreverTexto(out, veterinario.getNome());
+                escreverTexto(out, veterinario.getTelefone());
+                escreverTexto(out, veterinario.getEspecialidade());
+            }
+
+            @Override
+            public Veterinario ler(
+                    DataInput in
+            ) throws IOException {
+                var id = in.readInt();
+                var veterinario = new Veterinario(lerTexto(in), lerTexto(in), lerTexto(in));
+                veterinario.setId(id);
+                return veterinario;
+            }
+        };
+    }
+
+    /**
+     * Codec de animais, que grava o proprietário pelo identificador.
+     *
+     * @param proprietarios resolve um proprietário pelo identificador
+     * @return codec
+     */
+    public static EntityCodec<Animal> animal(
+            IntFunction<Proprietario> proprietarios
+    ) {
+        return new EntityCodec<>() {
+            @Override
+            public void escrever(
+                    Animal animal,
+                    DataOutput out
+            ) throws IOException {
+                out.writeByte(animal instanceof Gato ? GATO : CACHORRO);
+                out.writeInt(animal.getId());
+                escreverTexto(out, animal.getNome());
+                out.writeInt(animal.getIdade());
+                escreverTexto(out, animal.getEspecie());
+                out.writeInt(idDe(animal.getProprietario()));
+            }
+
+            @Override
+            public Animal ler(
+                    DataInput in
+            ) throws IOException {
+                var tipo = in.readByte();
+                var id = in.readInt();
+                var nome = lerTexto(in);
+                var idade = in.readInt();
+                var especie = lerTexto(in);
+                var proprietario = resolver(proprietarios, in.readInt());
+
+                Animal animal = switch (tipo) {
+                    case CACHORRO -> new Cachorro(nome, idade, especie, proprietario);
+                    case GATO -> new Gato(nome, idade, especie, proprietario);
+                    default -> throw new IOException("Tipo de animal desconhecido: " + tipo);
+                };
+                animal.setId(id);
+                return animal;
+            }
+        };
+    }
+
+    /**
+     * Codec de consultas, que grava animal e veterinário pelo identificador.
+     *
+     * @param animais      resolve um animal pelo identificador
+     * @param veterinarios resolve um veterinário pelo identificador
+     * @return codec
+     */
+    public static EntityCodec<Consulta> consulta(
+            IntFunction<Animal> animais,
+            IntFunction<Veterinario> veterinarios
+    ) {
+        return new EntityCodec<>() {
+            @Override
+            public void escrever(
+                    Consulta consulta,
+                    DataOutput out
+            ) throws IOException {
+                out.writeInt(consulta.getId());
+                out.writeLong(consulta.getData() != null ? consulta.getData().toEpochDay() : Long.MIN_VALUE);
+                out.writeInt(consulta.getHorario() != null ? consulta.getHorario().toSecondOfDay() : -1);
+                out.writeInt(idDe(consulta.getAnimal()));
+                out.writeInt(idDe(consulta.getVeterinario()));
+                escreverTexto(out, consulta.getObservacoes());
+            }
+
+            @Override
+            public Consulta ler(
+                    DataInput in
+            ) throws IOException {
+                var id = in.readInt();
+                var dia = in.readLong();
+                var segundos = in.readInt();
+                var animal = resolver(animais, in.readInt());
+                var veterinario = resolver(veterinarios, in.readInt());
+                var consulta = new Consulta(
+                    dia != Long.MIN_VALUE ? LocalDate.ofEpochDay(dia) : null,
+                    segundos >= 0 ? LocalTime.ofSecondOfDay(segundos) : null,
+                    animal, veterinario, lerTexto(in));
+                consulta.setId(id);
+                return consulta;
+            }
+        };
+    }
+
+    /**
+     * Grava um texto opcional em UTF-8, sem o limite de tamanho de {@link DataOutput#writeUTF(String)}.
+     *
+     * @param out   destino
+     * @param texto texto gravado, possivelmente nulo
+     * @throws IOException se a escrita falhar
+     */
+    static void escreverTexto(
+            DataOutput out,
+            String texto
+    ) throws IOException {
+        if (texto == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        var bytes = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Lê um texto gravado por {@link #escreverTexto(DataOutput, String)}.
+     *
+     * @param in origem
+     * @return texto lido, possivelmente nulo
+     * @throws IOException se a leitura falhar
+     */
+    static String lerTexto(
+            DataInput in
+    ) throws IOException {
+        var tamanho = in.readInt();
+        if (tamanho < 0) return null;
+
+        var bytes = new byte[tamanho];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int idDe(
+            Identificavel entity
+    ) {
+        return entity != null ? entity.getId() : 0;
+    }
+
+    private static <R> R resolver(
+            IntFunction<R> resolvedor,
+            int id
+    ) {
+        return id != 0 ? resolvedor.apply(id) : null;
+    }
+}
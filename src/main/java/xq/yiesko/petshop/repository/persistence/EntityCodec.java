@@ -0,0 +1,39 @@
+package xq.yiesko.petshop.repository.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converte uma entidade para o formato binário usado no log e nos snapshots.
+ * <p>
+ * Referências a outras entidades são gravadas apenas pelo identificador e
+ * resolvidas na leitura.
+ *
+ * @param <T> tipo da entidade
+ */
+public interface EntityCodec<T> {
+
+    /**
+     * Grava o estado completo da entidade, incluindo o identificador.
+     *
+     * @param entity entidade gravada
+     * @param out    destino dos bytes
+     * @throws IOException se a escrita falhar
+     */
+    void escrever(
+            T entity,
+            DataOutput out
+    ) throws IOException;
+
+    /**
+     * Lê uma entidade gravada por {@link #escrever(Object, DataOutput)}.
+     *
+     * @param in origem dos bytes
+     * @return entidade reconstruída, com identificador
+     * @throws IOException se a leitura falhar
+     */
+    T ler(
+            DataInput in
+    ) throws IOException;
+}
@@ -0,0 +1,443 @@
+package xq.yiesko.petshop.repository.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Log de operações somente de acréscimo, dividido em segmentos numerados.
+ * <p>
+ * Cada registro tem o formato {@code [tamanho][operação][id][dados][crc32]}.
+ * As escritas usam <i>group commit</i>: quem registra uma operação acumula seus
+ * bytes em um buffer e, se ninguém estiver gravando, assume a gravação de todo o
+ * buffer com um único {@code fsync}; os demais aguardam até que seus registros
+ * estejam duráveis. Assim o custo do {@code fsync} é dividido entre as escritas
+ * concorrentes. Acumular e aguardar são passos separados, para que quem precisa
+ * registrar em ordem acumule dentro da sua seção ordenada e espere fora dela.
+ * <p>
+ * Uma falha de gravação fica registrada e recusa as esperas seguintes até que o
+ * log seja {@linkplain #rotacionar() rotacionado} e {@linkplain #retomar() retomado}
+ * por quem tornou duráveis de outra forma, como por um snapshot, os registros
+ * descartados.
+ */
+final class OperationLog implements Closeable {
+
+    static final byte ADICIONAR = 1;
+    static final byte ATUALIZAR = 2;
+    static final byte REMOVER = 3;
+
+    private static final int CABECALHO = Integer.BYTES + 1 + Integer.BYTES;
+
+    private final Path diretorio;
+    private final String nome;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition descarregado = lock.newCondition();
+    private final ByteArrayOutputStream pendente = new ByteArrayOutputStream();
+
+    private FileChannel canal;
+    private long segmento;
+    private long tamanhoSegmento;
+    private long escritos;
+    private long duraveis;
+    private boolean descarregando;
+    private boolean fechado;
+    private IOException falha;
+    private IOException falhaDescartada;
+    private long descartados;
+
+    /**
+     * Abre o log criando um novo segmento.
+     *
+     * @param diretorio diretório dos segmentos
+     * @param nome      prefixo dos arquivos
+     * @param segmento  número do primeiro segmento a criar
+     * @throws IOException se o segmento não puder ser criado
+     */
+    OperationLog(
+            Path diretorio,
+            String nome,
+            long segmento
+    ) throws IOException {
+        this.diretorio = diretorio;
+        this.nome = nome;
+        this.segmento = segmento;
+        this.canal = abrirSegmento(segmento);
+    }
+
+    /**
+     * Acumula uma operação depois das já registradas, sem esperar o disco.
+     *
+     * @param operacao código da operação
+     * @param id       identificador da entidade
+     * @param dados    estado serializado, vazio na remoção
+     * @return ticket a passar para {@link #aguardar(long)}
+     * @throws IOException se o log estiver fechado
+     */
+    long registrar(
+            byte operacao,
+            int id,
+            byte[] dados
+    ) throws IOException {
+        return anexar(codificar(operacao, id, dados));
+    }
+
+    /**
+     * Acumula uma mesma operação sobre várias entidades, sem esperar o disco; o lote
+     * inteiro fica durável com um único {@code fsync}.
+     *
+     * @param operacao código da operação
+     * @param ids      identificadores das entidades
+     * @param dados    estado serializado de cada entidade, na ordem dos identificadores
+     * @return ticket a passar para {@link #aguardar(long)}
+     * @throws IOException se o log estiver fechado
+     */
+    long registrarTodos(
+            byte operacao,
+            int[] ids,
+            List<byte[]> dados
+    ) throws IOException {
+        var registros = new ByteArrayOutputStream();
+        for (var i = 0; i < ids.length; i++) registros.writeBytes(codificar(operacao, ids[i], dados.get(i)));
+        return anexar(registros.toByteArray());
+    }
+
+    /**
+     * Aguarda até que os registros acumulados até o ticket estejam gravados em disco,
+     * assumindo a gravação se ninguém estiver gravando.
+     *
+     * @param ticket ticket devolvido ao registrar
+     * @throws IOException se a gravação falhou e o log ainda não foi retomado
+     */
+    void aguardar(
+            long ticket
+    ) throws IOException {
+        lock.lock();
+        try {
+            while (duraveis < ticket) {
+                if (falha != null) throw new IOException("Falha ao gravar o log de operações", falha);
+                if (fechado) throw new IOException("Log de operações fechado");
+                if (descarregando) {
+                    descarregado.awaitUninterruptibly();
+                    continue;
+                }
+                descarregarComoLider();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Indica se uma gravação falhou desde a última retomada.
+     *
+     * @return true se as esperas estão sendo recusadas
+     */
+    boolean falhou() {
+        lock.lock();
+        try {
+            return falha != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Volta a aceitar esperas depois de uma falha, considerando duráveis os registros
+     * descartados pela última rotação. Só deve ser chamado depois que o estado desses
+     * registros foi gravado de outra forma; uma falha posterior à rotação continua
+     * registrada.
+     */
+    void retomar() {
+        lock.lock();
+        try {
+            if (falhaDescartada == null) return;
+            if (falha == falhaDescartada) falha = null;
+            duraveis = Math.max(duraveis, descartados);
+            falhaDescartada = null;
+            descarregado.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long anexar(
+            byte[] registro
+    ) throws IOException {
+        lock.lock();
+        try {
+            if (fechado) throw new IOException("Log de operações fechado");
+            pendente.write(registro, 0, registro.length);
+            return ++escritos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtém o tamanho em bytes do segmento atual.
+     *
+     * @return bytes gravados no segmento atual
+     */
+    long tamanhoSegmento() {
+        lock.lock();
+        try {
+            return tamanhoSegmento;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fecha o segmento atual e passa a gravar em um novo.
+     * <p>
+     * Todo registro acumulado antes da chamada fica no segmento fechado. Depois de
+     * uma falha, os registros ainda não duráveis são descartados e o segmento fechado
+     * é truncado no último registro durável, para que a sua cauda não fique corrompida
+     * no meio do log; cabe a quem rotaciona gravá-los de outra forma e chamar
+     * {@link #retomar()}.
+     *
+     * @return número do segmento fechado
+     * @throws IOException se a troca de segmento falhar
+     */
+    long rotacionar() throws IOException {
+        lock.lock();
+        try {
+            while (descarregando) descarregado.awaitUninterruptibly();
+            if (fechado) throw new IOException("Log de operações fechado");
+
+            if (falha == null) {
+                descarregarPendentes();
+            } else {
+                pendente.reset();
+                descartados = escritos;
+                falhaDescartada = falha;
+                canal.truncate(tamanhoSegmento);
+                canal.force(true);
+            }
+            canal.close();
+
+            var fechadoAgora = segmento++;
+            canal = abrirSegmento(segmento);
+            tamanhoSegmento = 0;
+            return fechadoAgora;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            while (descarregando) descarregado.awaitUninterruptibly();
+            if (fechado) return;
+
+            fechado = true;
+            descarregarPendentes();
+            canal.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lista os números dos segmentos existentes, em ordem crescente.
+     *
+     * @param diretorio diretório dos segmentos
+     * @param nome      prefixo dos arquivos
+     * @return números dos segmentos
+     * @throws IOException se o diretório não puder ser lido
+     */
+    static List<Long> segmentos(
+            Path diretorio,
+            String nome
+    ) throws IOException {
+        var padrao = Pattern.compile(Pattern.quote(nome) + "-(\\d+)\\.log");
+        var numeros = new ArrayList<Long>();
+
+        try (var arquivos = Files.list(diretorio)) {
+            for (var arquivo : (Iterable<Path>) arquivos::iterator) {
+                var matcher = padrao.matcher(arquivo.getFileName().toString());
+                if (matcher.matches()) numeros.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+
+        numeros.sort(null);
+        return numeros;
+    }
+
+    /**
+     * Obtém o caminho de um segmento.
+     *
+     * @param diretorio diretório dos segmentos
+     * @param nome      prefixo dos arquivos
+     * @param segmento  número do segmento
+     * @return caminho do arquivo
+     */
+    static Path caminho(
+            Path diretorio,
+            String nome,
+            long segmento
+    ) {
+        return diretorio.resolve(String.format("%s-%012d.log", nome, segmento));
+    }
+
+    /**
+     * Lê os registros íntegros de um segmento.
+     * <p>
+     * No último segmento, a leitura para no primeiro registro incompleto ou com CRC
+     * inválido, que só pode ser a cauda de uma gravação interrompida, e o arquivo é
+     * truncado nesse ponto. Nos demais segmentos, que foram fechados por completo,
+     * um registro assim é corrupção no meio do log: descartá-lo perderia alterações
+     * e aplicaria as seguintes sobre um estado errado, então a leitura falha.
+     *
+     * @param arquivo segmento lido
+     * @param ultimo  se é o último segmento do log
+     * @param leitor  recebe cada registro
+     * @throws IOException se o arquivo não puder ser lido ou estiver corrompido antes do fim do log
+     */
+    static void reproduzir(
+            Path arquivo,
+            boolean ultimo,
+            Leitor leitor
+    ) throws IOException {
+        var conteudo = ByteBuffer.wrap(Files.readAllBytes(arquivo));
+        var crc = new CRC32();
+
+        while (conteudo.remaining() >= CABECALHO) {
+            var inicio = conteudo.position();
+            var tamanho = conteudo.getInt();
+            if (tamanho < 1 + Integer.BYTES || tamanho + Integer.BYTES > conteudo.remaining()) {
+                conteudo.position(inicio);
+                break;
+            }
+
+            crc.reset();
+            crc.update(conteudo.array(), conteudo.position(), tamanho);
+
+            var operacao = conteudo.get();
+            var id = conteudo.getInt();
+            var dados = new byte[tamanho - 1 - Integer.BYTES];
+            conteudo.get(dados);
+
+            if (conteudo.getInt() != (int) crc.getValue()) {
+                conteudo.position(inicio);
+                break;
+            }
+            leitor.aplicar(operacao, id, dados);
+        }
+
+        if (conteudo.hasRemaining()) {
+            if (!ultimo) throw new IOException("Log de operações corrompido em " + arquivo + ", posição " + conteudo.position());
+            try (var canal = FileChannel.open(arquivo, StandardOpenOption.WRITE)) {
+                canal.truncate(conteudo.position());
+                canal.force(true);
+            }
+        }
+    }
+
+    /**
+     * Recebe os registros lidos de um segmento.
+     */
+    @FunctionalInterface
+    interface Leitor {
+
+        /**
+         * Aplica um registro lido.
+         *
+         * @param operacao código da operação
+         * @param id       identificador da entidade
+         * @param dados    estado serializado
+         * @throws IOException se os dados forem inválidos
+         */
+        void aplicar(
+                byte operacao,
+                int id,
+                byte[] dados
+        ) throws IOException;
+    }
+
+    private void descarregarComoLider() {
+        descarregando = true;
+        var lote = pendente.toByteArray();
+        var ate = escritos;
+        var destino = canal;
+        pendente.reset();
+
+        lock.unlock();
+        IOException erro = null;
+        try {
+            gravar(destino, lote);
+        } catch (IOException e) {
+            erro = e;
+        } finally {
+            lock.lock();
+        }
+
+        descarregando = false;
+        if (erro != null) falha = erro;
+        else {
+            duraveis = ate;
+            tamanhoSegmento += lote.length;
+        }
+        descarregado.signalAll();
+    }
+
+    private void descarregarPendentes() throws IOException {
+        try {
+            if (pendente.size() > 0) {
+                var lote = pendente.toByteArray();
+                pendente.reset();
+                gravar(canal, lote);
+                tamanhoSegmento += lote.length;
+            }
+            duraveis = escritos;
+        } catch (IOException e) {
+            falha = e;
+            throw e;
+        } finally {
+            descarregado.signalAll();
+        }
+    }
+
+    private FileChannel abrirSegmento(
+            long numero
+    ) throws IOException {
+        return FileChannel.open(caminho(diretorio, nome, numero), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private static void gravar(
+            FileChannel destino,
+            byte[] lote
+    ) throws IOException {
+        var buffer = ByteBuffer.wrap(lote);
+        while (buffer.hasRemaining()) destino.write(buffer);
+        destino.force(false);
+    }
+
+    private static byte[] codificar(
+            byte operacao,
+            int id,
+            byte[] dados
+    ) {
+        var tamanho = 1 + Integer.BYTES + dados.length;
+        var buffer = ByteBuffer.allocate(Integer.BYTES + tamanho + Integer.BYTES);
+        buffer.putInt(tamanho).put(operacao).putInt(id).put(dados);
+
+        var crc = new CRC32();
+        crc.update(buffer.array(), Integer.BYTES, tamanho);
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+}
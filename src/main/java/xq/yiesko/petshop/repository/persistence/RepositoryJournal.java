@@ -0,0 +1,404 @@
+package xq.yiesko.petshop.repository.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import xq.yiesko.petshop.model.impl.Identificavel;
+import xq.yiesko.petshop.repository.RestorableRepository;
+import xq.yiesko.petshop.repository.RepositoryListener;
+
+/**
+ * Persistência durável de um {@link RestorableRepository} por log de operações e snapshots.
+ * <p>
+ * Cada alteração do repositório é gravada no {@link OperationLog} antes de a escrita
+ * retornar, então uma operação confirmada sobrevive a uma queda do processo. Os
+ * registros são acumulados no log na ordem em que o repositório notifica, que é a
+ * ordem das alterações, e a espera pelo {@code fsync} fica na confirmação, fora
+ * dessa ordem. A alteração já está visível no repositório enquanto o registro é
+ * gravado; só a escrita que a fez aguarda o disco.
+ * <p>
+ * Quando o segmento atual do log passa de {@value #LIMITE_SEGMENTO} bytes, um
+ * snapshot binário do repositório é gravado em segundo plano e os segmentos cobertos
+ * por ele são apagados. Se uma gravação do log falhar, a escrita que a aguardava
+ * grava um snapshot na hora: as alterações cujos registros se perderam já estão no
+ * repositório, então o snapshot as torna duráveis e o log volta a aceitar escritas
+ * em um segmento novo. A escrita só falha se também o snapshot falhar.
+ * <p>
+ * Na abertura, o snapshot é carregado e a cauda do log é reaplicada em ordem; como
+ * cada registro carrega o estado completo da entidade, incluindo a sua versão,
+ * reaplicar operações já presentes no snapshot não altera o resultado. Como os
+ * identificadores nunca são reutilizados, inclusões e atualizações de um
+ * identificador cuja remoção já foi reaplicada são ignoradas, mesmo que um log
+ * antigo as tenha registrado fora de ordem.
+ *
+ * @param <T> tipo da entidade persistida
+ */
+public final class RepositoryJournal<T extends Identificavel> implements RepositoryListener<T>, Closeable {
+
+    private static final Logger LOG = Logger.getLogger(RepositoryJournal.class.getName());
+    private static final long LIMITE_SEGMENTO = 64L * 1024 * 1024;
+    private static final int MAGIC = 0x50415753;
+    private static final int VERSAO = 1;
+
+    private final Path diretorio;
+    private final String nome;
+    private final RestorableRepository<T> repository;
+    private final EntityCodec<T> codec;
+    private final OperationLog log;
+    private final ExecutorService compactador;
+    private final AtomicBoolean compactacaoAgendada = new AtomicBoolean();
+    private final Object compactacao = new Object();
+
+    private RepositoryJournal(
+            Path diretorio,
+            String nome,
+            RestorableRepository<T> repository,
+            EntityCodec<T> codec,
+            OperationLog log
+    ) {
+        this.diretorio = diretorio;
+        this.nome = nome;
+        this.repository = repository;
+        this.codec = codec;
+        this.log = log;
+        this.compactador = Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, "compactacao-" + nome);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Recupera o repositório a partir do disco e passa a registrar suas alterações.
+     *
+     * @param diretorio  diretório dos arquivos de dados
+     * @param nome       prefixo dos arquivos desta entidade
+     * @param repository repositório recuperado, normalmente vazio
+     * @param codec      codec da entidade
+     * @param <T>        tipo da entidade
+     * @return journal associado ao repositório
+     * @throws IOException se os dados não puderem ser lidos
+     */
+    public static <T extends Identificavel> RepositoryJournal<T> abrir(
+            Path diretorio,
+            String nome,
+            RestorableRepository<T> repository,
+            EntityCodec<T> codec
+    ) throws IOException {
+        Files.createDirectories(diretorio);
+
+        var base = carregarSnapshot(diretorio, nome, repository, codec);
+        var ultimo = base;
+        var cauda = new ArrayList<Long>();
+        for (var segmento : OperationLog.segmentos(diretorio, nome)) {
+            if (segmento <= base) Files.deleteIfExists(OperationLog.caminho(diretorio, nome, segmento));
+            else cauda.add(segmento);
+        }
+
+        var removidos = new BitSet();
+        for (var segmento : cauda) {
+            var arquivo = OperationLog.caminho(diretorio, nome, segmento);
+            OperationLog.reproduzir(arquivo, segmento.equals(cauda.getLast()), (operacao, id, dados) -> {
+                if (operacao == OperationLog.REMOVER) {
+                    repository.descartar(id);
+                    removidos.set(id);
+                } else if (!removidos.get(id)) {
+                    repository.restaurar(ler(codec, new DataInputStream(new ByteArrayInputStream(dados))));
+                }
+            });
+            ultimo = segmento;
+        }
+
+        var journal = new RepositoryJournal<>(diretorio, nome, repository, codec, new OperationLog(diretorio, nome, ultimo + 1));
+        repository.adicionarListener(journal);
+        return journal;
+    }
+
+    @Override
+    public Confirmacao aoAdicionar(
+            T entity
+    ) {
+        return registrar(OperationLog.ADICIONAR, entity.getId(), codificar(entity));
+    }
+
+    /**
+     * Grava o lote inteiro com um único {@code fsync}.
+     */
+    @Override
+    public Confirmacao aoAdicionarTodos(
+            List<T> entities
+    ) {
+        return registrarTodos(OperationLog.ADICIONAR, entities);
+    }
+
+    @Override
+    public Confirmacao aoAtualizar(
+            T entity
+    ) {
+        return registrar(OperationLog.ATUALIZAR, entity.getId(), codificar(entity));
+    }
+
+    /**
+     * Grava o lote inteiro com um único {@code fsync}.
+     */
+    @Override
+    public Confirmacao aoAtualizarTodos(
+            List<T> entities
+    ) {
+        return registrarTodos(OperationLog.ATUALIZAR, entities);
+    }
+
+    @Override
+    public Confirmacao aoRemover(
+            int id
+    ) {
+        return registrar(OperationLog.REMOVER, id, new byte[0]);
+    }
+
+    /**
+     * Grava o lote inteiro com um único {@code fsync}.
+     */
+    @Override
+    public Confirmacao aoRemoverTodos(
+            List<Integer> ids
+    ) {
+        var vetor = new int[ids.size()];
+        var dados = new ArrayList<byte[]>(ids.size());
+        for (var i = 0; i < vetor.length; i++) {
+            vetor[i] = ids.get(i);
+            dados.add(new byte[0]);
+        }
+        return registrarTodos(OperationLog.REMOVER, vetor, dados);
+    }
+
+    /**
+     * Grava um snapshot do repositório e apaga os segmentos do log cobertos por ele.
+     * <p>
+     * Se o log estava em falha, os registros perdidos ficam cobertos pelo snapshot e
+     * o log é retomado.
+     *
+     * @throws IOException se o snapshot não puder ser gravado
+     */
+    public void compactar() throws IOException {
+        synchronized (compactacao) {
+            var base = log.rotacionar();
+            var entidades = repository.listar();
+            gravarSnapshot(base, repository.proximoId(), entidades);
+            log.retomar();
+
+            for (var segmento : OperationLog.segmentos(diretorio, nome))
+                if (segmento <= base) Files.deleteIfExists(OperationLog.caminho(diretorio, nome, segmento));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactador.shutdown();
+        try {
+            compactador.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    private Confirmacao registrar(
+            int operacao,
+            int id,
+            byte[] dados
+    ) {
+        try {
+            var ticket = log.registrar((byte) operacao, id, dados);
+            return () -> confirmar(ticket);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Confirmacao registrarTodos(
+            int operacao,
+            List<T> entities
+    ) {
+        var ids = new int[entities.size()];
+        var dados = new ArrayList<byte[]>(entities.size());
+        for (var i = 0; i < ids.length; i++) {
+            ids[i] = entities.get(i).getId();
+            dados.add(codificar(entities.get(i)));
+        }
+        return registrarTodos(operacao, ids, dados);
+    }
+
+    private Confirmacao registrarTodos(
+            int operacao,
+            int[] ids,
+            List<byte[]> dados
+    ) {
+        try {
+            var ticket = log.registrarTodos((byte) operacao, ids, dados);
+            return () -> confirmar(ticket);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void confirmar(
+            long ticket
+    ) {
+        try {
+            log.aguardar(ticket);
+        } catch (IOException falha) {
+            recuperar(ticket, falha);
+        }
+        agendarCompactacao();
+    }
+
+    /**
+     * Torna durável, depois de uma falha do log, uma alteração já publicada no
+     * repositório: grava um snapshot, se ninguém o fez desde a falha, e volta a
+     * aguardar o ticket, que a retomada do log dá por durável.
+     */
+    private void recuperar(
+            long ticket,
+            IOException falha
+    ) {
+        try {
+            synchronized (compactacao) {
+                if (log.falhou()) compactar();
+            }
+            log.aguardar(ticket);
+        } catch (IOException e) {
+            e.addSuppressed(falha);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void agendarCompactacao() {
+        if (log.tamanhoSegmento() > LIMITE_SEGMENTO && compactacaoAgendada.compareAndSet(false, true))
+            compactador.execute(() -> {
+                try {
+                    compactar();
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Falha ao compactar " + nome, e);
+                } finally {
+                    compactacaoAgendada.set(false);
+                }
+            });
+    }
+
+    private byte[] codificar(
+            T entity
+    ) {
+        var bytes = new ByteArrayOutputStream();
+        try {
+            escrever(entity, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void gravarSnapshot(
+            long base,
+            int proximoId,
+            List<T> entidades
+    ) throws IOException {
+        var temporario = diretorio.resolve(nome + ".snapshot.tmp");
+
+        try (var canal = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var bruto = new BufferedOutputStream(Channels.newOutputStream(canal));
+            var verificado = new CheckedOutputStream(bruto, new CRC32());
+            var out = new DataOutputStream(verificado);
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSAO);
+            out.writeLong(base);
+            out.writeInt(proximoId);
+            out.writeInt(entidades.size());
+            for (var entity : entidades) escrever(entity, out);
+            out.flush();
+
+            new DataOutputStream(bruto).writeLong(verificado.getChecksum().getValue());
+            bruto.flush();
+            canal.force(true);
+        }
+
+        Files.move(temporario, caminhoSnapshot(diretorio, nome), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static <T extends Identificavel> long carregarSnapshot(
+            Path diretorio,
+            String nome,
+            RestorableRepository<T> repository,
+            EntityCodec<T> codec
+    ) throws IOException {
+        var arquivo = caminhoSnapshot(diretorio, nome);
+        if (!Files.exists(arquivo)) return 0;
+
+        try (var bruto = new BufferedInputStream(Files.newInputStream(arquivo))) {
+            var verificado = new CheckedInputStream(bruto, new CRC32());
+            var in = new DataInputStream(verificado);
+
+            if (in.readInt() != MAGIC) throw new IOException("Snapshot inválido: " + arquivo);
+            if (in.readInt() != VERSAO) throw new IOException("Snapshot inválido: " + arquivo);
+            var base = in.readLong();
+            var proximoId = in.readInt();
+            var quantidade = in.readInt();
+            for (var i = 0; i < quantidade; i++) repository.restaurar(ler(codec, in));
+
+            var esperado = verificado.getChecksum().getValue();
+            if (new DataInputStream(bruto).readLong() != esperado) throw new IOException("Snapshot corrompido: " + arquivo);
+
+            repository.avancarSequencia(proximoId);
+            return base;
+        }
+    }
+
+    private void escrever(
+            T entity,
+            DataOutputStream out
+    ) throws IOException {
+        out.writeInt(entity.getVersao());
+        codec.escrever(entity, out);
+    }
+
+    private static <T extends Identificavel> T ler(
+            EntityCodec<T> codec,
+            DataInputStream in
+    ) throws IOException {
+        var versao = in.readInt();
+        var entity = codec.ler(in);
+        entity.setVersao(versao);
+        return entity;
+    }
+
+    private static Path caminhoSnapshot(
+            Path diretorio,
+            String nome
+    ) {
+        return diretorio.resolve(nome + ".snapshot");
+    }
+}
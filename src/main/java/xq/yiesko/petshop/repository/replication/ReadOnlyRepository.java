@@ -0,0 +1,159 @@
+package xq.yiesko.petshop.repository.replication;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import xq.yiesko.petshop.model.impl.Identificavel;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.Retrato;
+
+/**
+ * Visão somente leitura de um repositório mantido por um {@link ReplicationFollower}.
+ * <p>
+ * As leituras são repassadas ao repositório replicado; as escritas falham com
+ * {@link IllegalStateException}, pois só o líder aceita alterações.
+ *
+ * @param <T> tipo da entidade
+ */
+public final class ReadOnlyRepository<T extends Identificavel> implements Repository<T> {
+
+    private final Repository<T> repository;
+
+    /**
+     * Cria a visão.
+     *
+     * @param repository repositório replicado
+     */
+    public ReadOnlyRepository(
+            Repository<T> repository
+    ) {
+        this.repository = repository;
+    }
+
+    @Override
+    public T adicionar(
+            T entity
+    ) {
+        throw somenteLeitura();
+    }
+
+    @Override
+    public List<T> adicionarTodos(
+            List<T> entities
+    ) {
+        throw somenteLeitura();
+    }
+
+    @Override
+    public boolean atualizar(
+            T entity
+    ) {
+        throw somenteLeitura();
+    }
+
+    @Override
+    public boolean atualizar(
+            T entity,
+            int versaoEsperada
+    ) {
+        throw somenteLeitura();
+    }
+
+    @Override
+    public boolean atualizarTodos(
+            List<T> entities
+    ) {
+        throw somenteLeitura();
+    }
+
+    @Override
+    public Optional<T> buscarPorId(
+            int id
+    ) {
+        return repository.buscarPorId(id);
+    }
+
+    @Override
+    public List<T> listar() {
+        return repository.listar();
+    }
+
+    @Override
+    public List<T> listar(
+            Predicate<? super T> filtro
+    ) {
+        return repository.listar(filtro);
+    }
+
+    @Override
+    public List<T> listar(
+            int deslocamento,
+            int limite
+    ) {
+        return repository.listar(deslocamento, limite);
+    }
+
+    @Override
+    public List<T> listarApos(
+            int aposId,
+            int limite
+    ) {
+        return repository.listarApos(aposId, limite);
+    }
+
+    @Override
+    public void paraCada(
+            Consumer<? super T> acao
+    ) {
+        repository.paraCada(acao);
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return repository.stream();
+    }
+
+    @Override
+    public Retrato<T> retrato() {
+        return repository.retrato();
+    }
+
+    @Override
+    public boolean remover(
+            int id
+    ) {
+        throw somenteLeitura();
+    }
+
+    @Override
+    public Optional<T> retirar(
+            int id
+    ) {
+        throw somenteLeitura();
+    }
+
+    @Override
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        throw somenteLeitura();
+    }
+
+    @Override
+    public List<T> retirarTodos(
+            List<Integer> ids
+    ) {
+        throw somenteLeitura();
+    }
+
+    @Override
+    public int tamanho() {
+        return repository.tamanho();
+    }
+
+    private static IllegalStateException somenteLeitura() {
+        return new IllegalStateException("Réplica somente leitura: as alterações são aceitas apenas no líder");
+    }
+}
@@ -0,0 +1,412 @@
+package xq.yiesko.petshop.repository.replication;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import xq.yiesko.petshop.model.impl.Identificavel;
+import xq.yiesko.petshop.repository.Alteracao;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.RestorableRepository;
+import xq.yiesko.petshop.repository.persistence.EntityCodec;
+
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.ALTERACOES;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.CONFIRMACAO;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.INICIO;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.OLA;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.RETRATO_FIM;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.RETRATO_INICIO;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.RETRATO_LOTE;
+
+/**
+ * Seguidor da replicação: mantém cópias dos repositórios de um {@link ReplicationLeader}
+ * e as expõe somente para leitura.
+ * <p>
+ * Uma virtual thread conecta ao líder, informa a última sequência aplicada de cada
+ * repositório e aplica, na ordem em que chegam, os retratos e os lotes de
+ * alterações recebidos, com {@link RestorableRepository#restaurar(Identificavel)} e
+ * {@link RestorableRepository#descartar(int)}. Cada lote aplicado é confirmado ao
+ * líder. Se a conexão cair, o seguidor se reconecta e continua de onde parou; se o
+ * líder não tiver mais as alterações desde então, ou tiver sido reiniciado, ele
+ * envia um retrato. Um repositório cujo retrato foi interrompido é marcado para
+ * receber um retrato completo na próxima conexão.
+ * <p>
+ * Como {@code restaurar} e {@code descartar} não notificam os observadores do
+ * repositório, quem mantém índices sobre uma cópia se registra com
+ * {@link #observar(String, IntConsumer)} e recebe o identificador de cada entidade
+ * restaurada ou descartada, inclusive as de um retrato.
+ * <p>
+ * Como os codecs resolvem referências pelos repositórios locais, os repositórios
+ * referenciados também devem ser replicados pelo mesmo seguidor.
+ */
+public final class ReplicationFollower implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ReplicationFollower.class.getName());
+    private static final long ESPERA_RECONEXAO_MILLIS = 1000;
+    private static final Alteracao.Tipo[] TIPOS = Alteracao.Tipo.values();
+
+    private final InetSocketAddress lider;
+    private final List<Replica<?>> replicas = new ArrayList<>();
+    private final Object aplicacoes = new Object();
+    private long epoca;
+    private volatile boolean conectado;
+    private volatile boolean ativo;
+    private Thread thread;
+
+    /**
+     * Cria o seguidor, ainda sem conectar.
+     *
+     * @param lider endereço do líder
+     */
+    public ReplicationFollower(
+            InetSocketAddress lider
+    ) {
+        this.lider = lider;
+    }
+
+    /**
+     * Cópia local de um repositório e a última sequência do líder aplicada a ela.
+     */
+    private static final class Replica<T extends Identificavel> {
+
+        private final String nome;
+        private final RestorableRepository<T> repository;
+        private final EntityCodec<T> codec;
+        private final List<IntConsumer> observadores = new ArrayList<>();
+        private volatile long aplicada = -1;
+        private long retrato;
+        private BitSet presentes;
+
+        Replica(
+                String nome,
+                RestorableRepository<T> repository,
+                EntityCodec<T> codec
+        ) {
+            this.nome = nome;
+            this.repository = repository;
+            this.codec = codec;
+        }
+
+        void iniciarRetrato(
+                long sequencia
+        ) {
+            aplicada = -1;
+            retrato = sequencia;
+            presentes = new BitSet();
+        }
+
+        /**
+         * Aplica um lote do retrato. Uma entidade local com versão maior que a do
+         * retrato veio de outra execução do líder e é substituída.
+         */
+        void aplicarRetrato(
+                DataInputStream in
+        ) throws IOException {
+            if (presentes == null) throw new IOException("Lote de retrato fora de um retrato em " + nome);
+
+            while (in.available() > 0) {
+                var entity = ReplicationProtocol.ler(codec, in);
+                var atual = repository.buscarPorId(entity.getId());
+                if (atual.isPresent() && atual.get().getVersao() > entity.getVersao()) repository.descartar(entity.getId());
+                repository.restaurar(entity);
+                presentes.set(entity.getId());
+                notificar(entity.getId());
+            }
+        }
+
+        /**
+         * Descarta as entidades locais ausentes do retrato e passa a seguir o feed a
+         * partir da sequência dele.
+         */
+        long concluirRetrato() throws IOException {
+            if (presentes == null) throw new IOException("Fim de retrato fora de um retrato em " + nome);
+
+            var ausentes = new ArrayList<Integer>();
+            repository.paraCada(entity -> {
+                if (!presentes.get(entity.getId())) ausentes.add(entity.getId());
+            });
+            for (var id : ausentes) {
+                repository.descartar(id);
+                notificar(id);
+            }
+
+            presentes = null;
+            aplicada = retrato;
+            return aplicada;
+        }
+
+        long aplicarAlteracoes(
+                DataInputStream in
+        ) throws IOException {
+            var sequencia = in.readLong();
+            if (aplicada < 0 || sequencia != aplicada + 1)
+                throw new IOException("Alterações de " + nome + " fora de ordem: esperada " + (aplicada + 1) + ", recebida " + sequencia);
+
+            while (in.available() > 0) {
+                var id = aplicar(TIPOS[in.readUnsignedByte()], in);
+                aplicada = sequencia++;
+                notificar(id);
+            }
+            return aplicada;
+        }
+
+        private int aplicar(
+                Alteracao.Tipo tipo,
+                DataInputStream in
+        ) throws IOException {
+            if (tipo == Alteracao.Tipo.REMOCAO) {
+                var id = in.readInt();
+                repository.descartar(id);
+                return id;
+            }
+
+            var entity = ReplicationProtocol.ler(codec, in);
+            repository.restaurar(entity);
+            return entity.getId();
+        }
+
+        /**
+         * Avisa os observadores de uma entidade restaurada ou descartada. A falha de um
+         * observador é registrada e não interrompe a replicação.
+         */
+        private void notificar(
+                int id
+        ) {
+            for (var observador : observadores) {
+                try {
+                    observador.accept(id);
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "Observador de " + nome + " falhou ao receber a entidade " + id, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registra um repositório a replicar. Deve ser chamado antes de {@link #iniciar()},
+     * e o repositório não deve receber escritas de outra origem.
+     *
+     * @param nome       nome do repositório no líder
+     * @param repository cópia local, normalmente vazia
+     * @param codec      codec da entidade
+     * @param <T>        tipo da entidade
+     * @return visão somente leitura da cópia local
+     */
+    public <T extends Identificavel> Repository<T> replicar(
+            String nome,
+            RestorableRepository<T> repository,
+            EntityCodec<T> codec
+    ) {
+        if (thread != null) throw new IllegalStateException("Repositórios devem ser registrados antes de iniciar o seguidor");
+        for (var replica : replicas)
+            if (replica.nome.equals(nome)) throw new IllegalArgumentException("Repositório já registrado: " + nome);
+
+        replicas.add(new Replica<>(nome, repository, codec));
+        return new ReadOnlyRepository<>(repository);
+    }
+
+    /**
+     * Registra um observador das entidades restauradas ou descartadas na cópia de um
+     * repositório. Deve ser chamado antes de {@link #iniciar()}; o observador é
+     * chamado pela thread do seguidor, depois de cada entidade aplicada.
+     *
+     * @param nome       nome do repositório
+     * @param observador recebe o identificador de cada entidade aplicada
+     */
+    public void observar(
+            String nome,
+            IntConsumer observador
+    ) {
+        if (thread != null) throw new IllegalStateException("Observadores devem ser registrados antes de iniciar o seguidor");
+        replica(nome).observadores.add(observador);
+    }
+
+    /**
+     * Passa a seguir o líder em segundo plano.
+     *
+     * @return este seguidor
+     */
+    public ReplicationFollower iniciar() {
+        if (thread != null) throw new IllegalStateException("Seguidor já iniciado");
+
+        ativo = true;
+        thread = Thread.ofVirtual().name("replicacao-seguidor").start(this::executar);
+        return this;
+    }
+
+    /**
+     * Indica se o seguidor está conectado ao líder.
+     *
+     * @return true se a conexão atual já foi aceita pelo líder
+     */
+    public boolean conectado() {
+        return conectado;
+    }
+
+    /**
+     * Obtém a última sequência do líder aplicada a um repositório.
+     *
+     * @param nome nome do repositório
+     * @return sequência aplicada, ou -1 enquanto a cópia não estiver completa
+     */
+    public long aplicada(
+            String nome
+    ) {
+        return replica(nome).aplicada;
+    }
+
+    /**
+     * Aguarda até a cópia de um repositório alcançar a sequência informada, para ler
+     * no seguidor uma escrita feita no líder.
+     *
+     * @param nome      nome do repositório
+     * @param sequencia sequência esperada
+     * @param prazo     tempo máximo de espera
+     * @return true se a sequência foi aplicada dentro do prazo
+     * @throws InterruptedException se a espera for interrompida
+     */
+    public boolean aguardar(
+            String nome,
+            long sequencia,
+            Duration prazo
+    ) throws InterruptedException {
+        var replica = replica(nome);
+        var limite = System.nanoTime() + prazo.toNanos();
+
+        synchronized (aplicacoes) {
+            while (replica.aplicada < sequencia) {
+                var restante = limite - System.nanoTime();
+                if (restante <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(aplicacoes, restante);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Encerra a conexão com o líder; as cópias locais continuam legíveis.
+     */
+    @Override
+    public void close() throws IOException {
+        ativo = false;
+        var atual = thread;
+        if (atual == null) return;
+
+        atual.interrupt();
+        try {
+            atual.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Replica<?> replica(
+            String nome
+    ) {
+        for (var replica : replicas) if (replica.nome.equals(nome)) return replica;
+        throw new IllegalArgumentException("Repositório não replicado: " + nome);
+    }
+
+    private void executar() {
+        while (ativo) {
+            try (var canal = SocketChannel.open()) {
+                canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                canal.connect(lider);
+                sincronizar(canal);
+            } catch (IOException e) {
+                if (ativo) LOG.log(Level.INFO, "Conexão com o líder " + lider + " perdida; nova tentativa em "
+                    + ESPERA_RECONEXAO_MILLIS + " ms", e);
+            } finally {
+                conectado = false;
+            }
+
+            try {
+                if (ativo) Thread.sleep(ESPERA_RECONEXAO_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pede ao líder as alterações desde a última sequência aplicada de cada
+     * repositório e aplica os quadros recebidos até a conexão cair.
+     */
+    private void sincronizar(
+            SocketChannel canal
+    ) throws IOException {
+        var saida = new ReplicationProtocol.Saida();
+        var ola = saida.iniciar(OLA);
+        ola.writeLong(epoca);
+        ola.writeInt(replicas.size());
+        for (var replica : replicas) {
+            ola.writeUTF(replica.nome);
+            ola.writeLong(replica.aplicada);
+        }
+        saida.concluir();
+        saida.enviar(canal);
+
+        var cabecalho = ByteBuffer.allocate(Integer.BYTES);
+        while (true) {
+            var quadro = ReplicationProtocol.receber(canal, cabecalho);
+            var in = quadro.corpo();
+
+            switch (quadro.tipo()) {
+                case INICIO -> {
+                    var epocaLider = in.readLong();
+                    if (epocaLider != epoca) {
+                        for (var replica : replicas) replica.aplicada = -1;
+                        epoca = epocaLider;
+                    }
+                    conectado = true;
+                }
+                case RETRATO_INICIO -> replica(in.readInt()).iniciarRetrato(in.readLong());
+                case RETRATO_LOTE -> replica(in.readInt()).aplicarRetrato(in);
+                case RETRATO_FIM -> {
+                    var posicao = in.readInt();
+                    confirmar(canal, saida, posicao, replica(posicao).concluirRetrato());
+                }
+                case ALTERACOES -> {
+                    var posicao = in.readInt();
+                    confirmar(canal, saida, posicao, replica(posicao).aplicarAlteracoes(in));
+                }
+                default -> throw new IOException("Quadro inesperado do líder: " + quadro.tipo());
+            }
+        }
+    }
+
+    private Replica<?> replica(
+            int posicao
+    ) throws IOException {
+        if (posicao < 0 || posicao >= replicas.size()) throw new IOException("Repositório inválido: " + posicao);
+        return replicas.get(posicao);
+    }
+
+    private void confirmar(
+            SocketChannel canal,
+            ReplicationProtocol.Saida saida,
+            int posicao,
+            long sequencia
+    ) throws IOException {
+        synchronized (aplicacoes) {
+            aplicacoes.notifyAll();
+        }
+
+        var out = saida.iniciar(CONFIRMACAO);
+        out.writeInt(posicao);
+        out.writeLong(sequencia);
+        saida.concluir();
+        saida.enviar(canal);
+    }
+}
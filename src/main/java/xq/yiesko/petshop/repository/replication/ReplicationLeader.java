@@ -0,0 +1,561 @@
+package xq.yiesko.petshop.repository.replication;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import xq.yiesko.petshop.model.impl.Identificavel;
+import xq.yiesko.petshop.repository.Alteracao;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.repository.Retrato;
+import xq.yiesko.petshop.repository.persistence.EntityCodec;
+
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.ALTERACOES;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.CONFIRMACAO;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.INICIO;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.OLA;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.RETRATO_FIM;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.RETRATO_INICIO;
+import static xq.yiesko.petshop.repository.replication.ReplicationProtocol.RETRATO_LOTE;
+
+/**
+ * Líder da replicação: envia as alterações de repositórios em memória aos
+ * {@link ReplicationFollower}s conectados por TCP.
+ * <p>
+ * Cada seguidor tem uma conexão e uma virtual thread de envio, que assina o
+ * {@link InMemoryRepository#alteracoes() feed} de cada repositório a partir da
+ * última sequência que o seguidor informou ter aplicado. Se essa sequência já saiu
+ * do feed, ou se o seguidor acompanhava outra execução do líder (outra época), o
+ * envio começa por um {@link Retrato} e continua do feed a partir da sequência do
+ * retrato, sem lacunas nem repetições. As alterações disponíveis são agrupadas em
+ * lotes e os quadros acumulados são enviados com uma única escrita. Sem alterações
+ * a enviar, a thread de envio fica estacionada até a assinatura do feed entregar a
+ * próxima alteração publicada, ou até a conexão ser encerrada; ela não consulta os
+ * feeds periodicamente.
+ * <p>
+ * Os repositórios são enviados na ordem em que foram registrados, que deve ser a
+ * das referências entre eles (proprietários e veterinários antes de animais, e
+ * animais antes de consultas): a cada rodada, a última sequência de cada feed é
+ * lida na ordem inversa e as alterações até ela são enviadas na ordem direta, então
+ * uma entidade nunca chega ao seguidor antes das que ela referenciava ao ser
+ * gravada. Os retratos são obtidos na mesma ordem inversa pelo mesmo motivo.
+ * <p>
+ * As escritas não esperam pelos seguidores. Quem precisa de uma cópia confirmada
+ * antes de responder usa {@link #aguardarConfirmacao(String, long, Duration)}. Um
+ * seguidor que fica mais de {@link InMemoryRepository#CAPACIDADE_ALTERACOES}
+ * alterações para trás é desconectado e recebe um retrato ao se reconectar.
+ */
+public final class ReplicationLeader implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ReplicationLeader.class.getName());
+    private static final int DEMANDA = 1024;
+    private static final int LOTE = 512;
+    private static final int BYTES_LOTE = 256 * 1024;
+
+    private final List<Canal<?>> canais = new ArrayList<>();
+    private final Set<Seguidor> seguidores = ConcurrentHashMap.newKeySet();
+    private final long epoca = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final Object confirmacoes = new Object();
+    private volatile ServerSocketChannel servidor;
+    private volatile InetSocketAddress endereco;
+
+    /**
+     * Repositório replicado, com o nome pelo qual os seguidores o pedem.
+     */
+    private record Canal<T extends Identificavel>(
+            String nome,
+            InMemoryRepository<T> repository,
+            EntityCodec<T> codec
+    ) {
+    }
+
+    /**
+     * Registra um repositório a replicar. Deve ser chamado antes de {@link #iniciar(InetSocketAddress)},
+     * na ordem das referências entre os repositórios.
+     *
+     * @param nome       nome pelo qual os seguidores pedem o repositório
+     * @param repository repositório replicado
+     * @param codec      codec da entidade
+     * @param <T>        tipo da entidade
+     * @return este líder
+     */
+    public <T extends Identificavel> ReplicationLeader replicar(
+            String nome,
+            InMemoryRepository<T> repository,
+            EntityCodec<T> codec
+    ) {
+        if (servidor != null) throw new IllegalStateException("Repositórios devem ser registrados antes de iniciar o líder");
+        for (var canal : canais)
+            if (canal.nome().equals(nome)) throw new IllegalArgumentException("Repositório já registrado: " + nome);
+
+        canais.add(new Canal<>(nome, repository, codec));
+        return this;
+    }
+
+    /**
+     * Passa a aceitar seguidores.
+     *
+     * @param endereco endereço de escuta; a porta 0 escolhe uma porta livre
+     * @return este líder
+     * @throws IOException se a porta não puder ser aberta
+     */
+    public ReplicationLeader iniciar(
+            InetSocketAddress endereco
+    ) throws IOException {
+        if (servidor != null) throw new IllegalStateException("Líder já iniciado");
+
+        var aberto = ServerSocketChannel.open().bind(endereco);
+        this.endereco = (InetSocketAddress) aberto.getLocalAddress();
+        servidor = aberto;
+        Thread.ofVirtual().name("replicacao-lider").start(this::aceitar);
+        return this;
+    }
+
+    /**
+     * Obtém o endereço em que o líder aceita seguidores.
+     *
+     * @return endereço de escuta, com a porta efetivamente aberta
+     */
+    public InetSocketAddress endereco() {
+        return endereco;
+    }
+
+    /**
+     * Obtém a quantidade de seguidores conectados.
+     *
+     * @return seguidores conectados
+     */
+    public int seguidores() {
+        return seguidores.size();
+    }
+
+    /**
+     * Obtém a maior sequência de um repositório já aplicada por algum seguidor conectado.
+     *
+     * @param nome nome do repositório
+     * @return sequência confirmada, ou 0 se nenhum seguidor confirmou alterações
+     */
+    public long confirmada(
+            String nome
+    ) {
+        return confirmada(indice(nome));
+    }
+
+    /**
+     * Aguarda até algum seguidor confirmar ter aplicado a sequência informada.
+     *
+     * @param nome      nome do repositório
+     * @param sequencia sequência esperada, normalmente a de uma escrita recém-feita
+     * @param prazo     tempo máximo de espera
+     * @return true se a sequência foi confirmada dentro do prazo
+     * @throws InterruptedException se a espera for interrompida
+     */
+    public boolean aguardarConfirmacao(
+            String nome,
+            long sequencia,
+            Duration prazo
+    ) throws InterruptedException {
+        var indice = indice(nome);
+        var limite = System.nanoTime() + prazo.toNanos();
+
+        synchronized (confirmacoes) {
+            while (confirmada(indice) < sequencia) {
+                var restante = limite - System.nanoTime();
+                if (restante <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(confirmacoes, restante);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Deixa de aceitar seguidores e encerra as conexões abertas.
+     */
+    @Override
+    public void close() throws IOException {
+        var aberto = servidor;
+        if (aberto == null) return;
+
+        aberto.close();
+        for (var seguidor : seguidores) seguidor.encerrar();
+    }
+
+    private long confirmada(
+            int indice
+    ) {
+        var maior = 0L;
+        for (var seguidor : seguidores) maior = Math.max(maior, seguidor.confirmadas.get(indice));
+        return maior;
+    }
+
+    private int indice(
+            String nome
+    ) {
+        for (var i = 0; i < canais.size(); i++) if (canais.get(i).nome().equals(nome)) return i;
+        throw new IllegalArgumentException("Repositório não replicado: " + nome);
+    }
+
+    private void aceitar() {
+        while (servidor.isOpen()) {
+            try {
+                var canal = servidor.accept();
+                canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                var seguidor = new Seguidor(canal);
+                seguidores.add(seguidor);
+                Thread.ofVirtual().name("replicacao-envio").start(seguidor::executar);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Falha ao aceitar seguidor", e);
+            }
+        }
+    }
+
+    /**
+     * Conexão com um seguidor: a virtual thread de envio e a de confirmações.
+     */
+    private final class Seguidor {
+
+        private final SocketChannel canal;
+        private final AtomicLongArray confirmadas = new AtomicLongArray(canais.size());
+        private final List<Fluxo<?>> fluxos = new CopyOnWriteArrayList<>();
+        private int[] indices;
+
+        Seguidor(
+                SocketChannel canal
+        ) {
+            this.canal = canal;
+        }
+
+        private void executar() {
+            try {
+                var ola = ReplicationProtocol.receber(canal, ByteBuffer.allocate(Integer.BYTES));
+                if (ola.tipo() != OLA) throw new IOException("Quadro inesperado na abertura: " + ola.tipo());
+
+                var saida = new ReplicationProtocol.Saida();
+                iniciar(ola.corpo(), saida);
+                Thread.ofVirtual().name("replicacao-confirmacoes").start(this::receberConfirmacoes);
+                for (var fluxo : fluxos) fluxo.enviarRetrato(saida, canal);
+                transmitir(saida);
+            } catch (IOException e) {
+                if (canal.isOpen()) LOG.log(Level.INFO, "Seguidor desconectado", e);
+            } finally {
+                encerrar();
+            }
+        }
+
+        /**
+         * Lê o pedido do seguidor, decide de onde cada repositório continua e assina
+         * os feeds. Os retratos necessários são obtidos do último repositório para o
+         * primeiro.
+         */
+        private void iniciar(
+                DataInputStream ola,
+                ReplicationProtocol.Saida saida
+        ) throws IOException {
+            var epocaSeguidor = ola.readLong();
+            var quantidade = ola.readInt();
+            indices = new int[quantidade];
+
+            for (var posicao = 0; posicao < quantidade; posicao++) {
+                var nome = ola.readUTF();
+                var aplicada = ola.readLong();
+                try {
+                    indices[posicao] = indice(nome);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                for (var fluxo : fluxos)
+                    if (fluxo.indice == indices[posicao]) throw new IOException("Repositório pedido duas vezes: " + nome);
+                fluxos.add(criarFluxo(posicao, indices[posicao], aplicada));
+            }
+            fluxos.sort(Comparator.comparingInt(fluxo -> fluxo.indice));
+
+            for (var i = fluxos.size() - 1; i >= 0; i--) fluxos.get(i).preparar(epocaSeguidor == epoca);
+            for (var fluxo : fluxos) fluxo.assinar();
+
+            saida.iniciar(INICIO).writeLong(epoca);
+            saida.concluir();
+        }
+
+        private Fluxo<?> criarFluxo(
+                int posicao,
+                int indice,
+                long aplicada
+        ) {
+            return new Fluxo<>(posicao, indice, canais.get(indice), aplicada, Thread.currentThread());
+        }
+
+        /**
+         * Envia as alterações enquanto a conexão estiver aberta. As últimas sequências
+         * são lidas do último repositório para o primeiro e enviadas do primeiro para o
+         * último, preservando a ordem das referências entre eles.
+         */
+        private void transmitir(
+                ReplicationProtocol.Saida saida
+        ) throws IOException {
+            var marcas = new long[fluxos.size()];
+
+            while (canal.isOpen()) {
+                for (var i = fluxos.size() - 1; i >= 0; i--) marcas[i] = fluxos.get(i).ultimaSequencia();
+
+                var enviou = false;
+                for (var i = 0; i < fluxos.size(); i++) enviou |= fluxos.get(i).transmitir(marcas[i], saida, canal);
+                if (saida.size() > 0) saida.enviar(canal);
+                if (!enviou && !pendentes()) LockSupport.park(this);
+            }
+        }
+
+        /**
+         * Indica se alguma assinatura já entregou alterações ainda não enviadas,
+         * publicadas depois da leitura das marcas.
+         */
+        private boolean pendentes() {
+            for (var fluxo : fluxos) if (fluxo.pendente()) return true;
+            return false;
+        }
+
+        private void receberConfirmacoes() {
+            var cabecalho = ByteBuffer.allocate(Integer.BYTES);
+            try {
+                while (true) {
+                    var quadro = ReplicationProtocol.receber(canal, cabecalho);
+                    if (quadro.tipo() != CONFIRMACAO) throw new IOException("Quadro inesperado do seguidor: " + quadro.tipo());
+
+                    var posicao = quadro.corpo().readInt();
+                    var sequencia = quadro.corpo().readLong();
+                    if (posicao < 0 || posicao >= indices.length) throw new IOException("Repositório inválido: " + posicao);
+                    confirmadas.accumulateAndGet(indices[posicao], sequencia, Math::max);
+                    synchronized (confirmacoes) {
+                        confirmacoes.notifyAll();
+                    }
+                }
+            } catch (IOException e) {
+                if (canal.isOpen()) LOG.log(Level.INFO, "Seguidor desconectado", e);
+            } finally {
+                encerrar();
+            }
+        }
+
+        /**
+         * Fecha a conexão e cancela as assinaturas; pode ser chamado por qualquer das
+         * threads e mais de uma vez.
+         */
+        private void encerrar() {
+            seguidores.remove(this);
+            try {
+                canal.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Falha ao fechar conexão do seguidor", e);
+            }
+            for (var fluxo : fluxos) fluxo.cancelar();
+            synchronized (confirmacoes) {
+                confirmacoes.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Alterações de um repositório a caminho de um seguidor: recebe do feed na
+     * thread da assinatura e entrega à thread de envio, com demanda limitada a
+     * {@value #DEMANDA} alterações pendentes. Cada alteração recebida, erro ou
+     * cancelamento acorda a thread de envio.
+     */
+    private static final class Fluxo<T extends Identificavel> implements Flow.Subscriber<Alteracao<T>> {
+
+        private final int posicao;
+        private final int indice;
+        private final Canal<T> canal;
+        private final Thread remetente;
+        private final ConcurrentLinkedQueue<Alteracao<T>> fila = new ConcurrentLinkedQueue<>();
+        private volatile Flow.Subscription assinatura;
+        private volatile Throwable erro;
+        private volatile boolean cancelado;
+        private long enviada;
+        private Retrato<T> retrato;
+        private int consumidas;
+
+        Fluxo(
+                int posicao,
+                int indice,
+                Canal<T> canal,
+                long aplicada,
+                Thread remetente
+        ) {
+            this.posicao = posicao;
+            this.indice = indice;
+            this.canal = canal;
+            this.enviada = aplicada;
+            this.remetente = remetente;
+        }
+
+        /**
+         * Mantém a sequência aplicada pelo seguidor se o feed ainda a alcança, ou
+         * obtém um retrato para recomeçar dele.
+         */
+        void preparar(
+                boolean mesmaEpoca
+        ) {
+            var feed = canal.repository().alteracoes();
+            if (mesmaEpoca && enviada >= feed.primeiraDisponivel() - 1 && enviada <= feed.ultimaSequencia()) return;
+
+            retrato = canal.repository().retrato();
+            enviada = retrato.sequencia();
+        }
+
+        void assinar() {
+            canal.repository().alteracoes().assinar(enviada + 1, this);
+        }
+
+        long ultimaSequencia() {
+            return canal.repository().alteracoes().ultimaSequencia();
+        }
+
+        void enviarRetrato(
+                ReplicationProtocol.Saida saida,
+                SocketChannel destino
+        ) throws IOException {
+            if (retrato == null) return;
+
+            var out = saida.iniciar(RETRATO_INICIO);
+            out.writeInt(posicao);
+            out.writeLong(retrato.sequencia());
+            saida.concluir();
+
+            var entidades = retrato.stream().iterator();
+            while (entidades.hasNext()) {
+                out = saida.iniciar(RETRATO_LOTE);
+                out.writeInt(posicao);
+                for (var n = 0; n < LOTE && entidades.hasNext() && saida.quadro() < BYTES_LOTE; n++)
+                    ReplicationProtocol.escrever(canal.codec(), entidades.next(), out);
+                saida.concluir();
+                if (saida.size() >= BYTES_LOTE) saida.enviar(destino);
+            }
+
+            saida.iniciar(RETRATO_FIM).writeInt(posicao);
+            saida.concluir();
+            retrato = null;
+        }
+
+        /**
+         * Acrescenta à saída as alterações até a marca, em quadros de até
+         * {@value #LOTE} alterações.
+         *
+         * @return true se alguma alteração foi acrescentada
+         */
+        boolean transmitir(
+                long marca,
+                ReplicationProtocol.Saida saida,
+                SocketChannel destino
+        ) throws IOException {
+            if (enviada >= marca) return false;
+
+            while (enviada < marca) {
+                var out = saida.iniciar(ALTERACOES);
+                out.writeInt(posicao);
+                out.writeLong(enviada + 1);
+                for (var n = 0; n < LOTE && enviada < marca && saida.quadro() < BYTES_LOTE; n++) {
+                    var alteracao = proxima(destino);
+                    escrever(alteracao, out);
+                    enviada = alteracao.sequencia();
+                }
+                saida.concluir();
+                if (saida.size() >= BYTES_LOTE) saida.enviar(destino);
+            }
+            return true;
+        }
+
+        private void escrever(
+                Alteracao<T> alteracao,
+                DataOutputStream out
+        ) throws IOException {
+            out.writeByte(alteracao.tipo().ordinal());
+            if (alteracao.tipo() == Alteracao.Tipo.REMOCAO) out.writeInt(alteracao.id());
+            else ReplicationProtocol.escrever(canal.codec(), alteracao.depois(), out);
+        }
+
+        /**
+         * Obtém a próxima alteração, aguardando a assinatura entregá-la: toda sequência
+         * até a última publicada chega ao feed logo depois da publicação.
+         */
+        private Alteracao<T> proxima(
+                SocketChannel destino
+        ) throws IOException {
+            while (true) {
+                var alteracao = fila.poll();
+                if (alteracao != null) {
+                    if (++consumidas == DEMANDA / 2) {
+                        consumidas = 0;
+                        assinatura.request(DEMANDA / 2);
+                    }
+                    return alteracao;
+                }
+                if (erro != null) throw new IOException("Seguidor ficou para trás em " + canal.nome(), erro);
+                if (!destino.isOpen()) throw new ClosedChannelException();
+                LockSupport.park(this);
+            }
+        }
+
+        boolean pendente() {
+            return !fila.isEmpty() || erro != null;
+        }
+
+        void cancelar() {
+            cancelado = true;
+            var atual = assinatura;
+            if (atual != null) atual.cancel();
+            LockSupport.unpark(remetente);
+        }
+
+        @Override
+        public void onSubscribe(
+                Flow.Subscription subscription
+        ) {
+            assinatura = subscription;
+            if (cancelado) subscription.cancel();
+            else subscription.request(DEMANDA);
+        }
+
+        @Override
+        public void onNext(
+                Alteracao<T> alteracao
+        ) {
+            fila.add(alteracao);
+            LockSupport.unpark(remetente);
+        }
+
+        @Override
+        public void onError(
+                Throwable throwable
+        ) {
+            erro = throwable;
+            LockSupport.unpark(remetente);
+        }
+
+        @Override
+        public void onComplete() {
+            // o feed de um repositório não termina
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package xq.yiesko.petshop.repository.replication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import xq.yiesko.petshop.model.impl.Identificavel;
+import xq.yiesko.petshop.repository.persistence.EntityCodec;
+
+/**
+ * Quadros trocados entre o {@link ReplicationLeader} e os {@link ReplicationFollower}s.
+ * <p>
+ * Cada quadro é o tamanho do corpo em quatro bytes, seguido do tipo e do restante
+ * do corpo. O seguidor abre a conexão com {@link #OLA}, informando a época e a
+ * última sequência aplicada de cada repositório; o líder responde com
+ * {@link #INICIO}, envia um retrato dos repositórios que não podem continuar do
+ * ponto informado ({@link #RETRATO_INICIO}, {@link #RETRATO_LOTE} e
+ * {@link #RETRATO_FIM}) e passa a enviar as alterações em lotes
+ * ({@link #ALTERACOES}). O seguidor responde a cada lote aplicado com
+ * {@link #CONFIRMACAO}.
+ * <p>
+ * Os repositórios são identificados nos quadros pela posição em que o seguidor os
+ * listou no {@link #OLA}. As entidades são gravadas com a versão seguida dos bytes
+ * do {@link EntityCodec}.
+ */
+final class ReplicationProtocol {
+
+    /**
+     * Seguidor → líder: época conhecida, quantidade de repositórios e, para cada um,
+     * o nome e a última sequência aplicada ({@code -1} se o estado não é confiável).
+     */
+    static final byte OLA = 1;
+
+    /**
+     * Líder → seguidor: época do líder.
+     */
+    static final byte INICIO = 2;
+
+    /**
+     * Líder → seguidor: repositório e sequência do retrato que começa.
+     */
+    static final byte RETRATO_INICIO = 3;
+
+    /**
+     * Líder → seguidor: repositório e entidades do retrato, até o fim do quadro.
+     */
+    static final byte RETRATO_LOTE = 4;
+
+    /**
+     * Líder → seguidor: repositório cujo retrato terminou.
+     */
+    static final byte RETRATO_FIM = 5;
+
+    /**
+     * Líder → seguidor: repositório, sequência da primeira alteração e, até o fim do
+     * quadro, alterações de sequências consecutivas: o tipo seguido do identificador,
+     * em remoções, ou da entidade.
+     */
+    static final byte ALTERACOES = 6;
+
+    /**
+     * Seguidor → líder: repositório e última sequência aplicada.
+     */
+    static final byte CONFIRMACAO = 7;
+
+    /**
+     * Tamanho máximo do corpo de um quadro.
+     */
+    static final int LIMITE_QUADRO = 16 * 1024 * 1024;
+
+    private ReplicationProtocol() {
+    }
+
+    /**
+     * Quadro recebido: o tipo e o corpo já lido por inteiro.
+     *
+     * @param tipo  tipo do quadro
+     * @param corpo bytes seguintes ao tipo
+     */
+    record Quadro(
+            byte tipo,
+            DataInputStream corpo
+    ) {
+    }
+
+    /**
+     * Acumula quadros em memória para enviá-los com uma única escrita no canal.
+     */
+    static final class Saida extends ByteArrayOutputStream {
+
+        private final DataOutputStream dados = new DataOutputStream(this);
+        private int inicio = -1;
+
+        Saida() {
+            super(64 * 1024);
+        }
+
+        /**
+         * Começa um novo quadro depois dos já acumulados.
+         *
+         * @param tipo tipo do quadro
+         * @return destino do corpo do quadro
+         * @throws IOException se a escrita falhar
+         */
+        DataOutputStream iniciar(
+                byte tipo
+        ) throws IOException {
+            if (inicio >= 0) throw new IllegalStateException("Quadro anterior não foi concluído");
+
+            inicio = count;
+            dados.writeInt(0);
+            dados.writeByte(tipo);
+            return dados;
+        }
+
+        /**
+         * Obtém o tamanho do quadro em construção.
+         *
+         * @return bytes do corpo gravados até agora
+         */
+        int quadro() {
+            return inicio < 0 ? 0 : count - inicio - Integer.BYTES;
+        }
+
+        /**
+         * Grava o tamanho do quadro em construção no seu cabeçalho.
+         *
+         * @throws IOException se o quadro passar de {@link #LIMITE_QUADRO}
+         */
+        void concluir() throws IOException {
+            var tamanho = quadro();
+            if (tamanho > LIMITE_QUADRO) throw new IOException("Quadro grande demais: " + tamanho + " bytes");
+
+            buf[inicio] = (byte) (tamanho >>> 24);
+            buf[inicio + 1] = (byte) (tamanho >>> 16);
+            buf[inicio + 2] = (byte) (tamanho >>> 8);
+            buf[inicio + 3] = (byte) tamanho;
+            inicio = -1;
+        }
+
+        /**
+         * Envia os quadros concluídos e esvazia o buffer.
+         *
+         * @param canal canal de destino
+         * @throws IOException se a escrita falhar
+         */
+        void enviar(
+                SocketChannel canal
+        ) throws IOException {
+            if (inicio >= 0) throw new IllegalStateException("Quadro em construção não foi concluído");
+
+            var bytes = ByteBuffer.wrap(buf, 0, count);
+            while (bytes.hasRemaining()) canal.write(bytes);
+            reset();
+        }
+    }
+
+    /**
+     * Lê o próximo quadro do canal, bloqueando até ele chegar por inteiro.
+     *
+     * @param canal     canal de origem
+     * @param cabecalho buffer de quatro bytes reutilizado entre as leituras
+     * @return quadro recebido
+     * @throws IOException se a conexão for encerrada ou o quadro for inválido
+     */
+    static Quadro receber(
+            SocketChannel canal,
+            ByteBuffer cabecalho
+    ) throws IOException {
+        cabecalho.clear();
+        lerTudo(canal, cabecalho);
+        var tamanho = cabecalho.getInt(0);
+        if (tamanho < 1 || tamanho > LIMITE_QUADRO) throw new IOException("Quadro inválido: " + tamanho + " bytes");
+
+        var corpo = ByteBuffer.allocate(tamanho);
+        lerTudo(canal, corpo);
+        return new Quadro(corpo.get(0), new DataInputStream(new ByteArrayInputStream(corpo.array(), 1, tamanho - 1)));
+    }
+
+    /**
+     * Grava uma entidade com a sua versão.
+     *
+     * @param codec  codec da entidade
+     * @param entity entidade gravada
+     * @param out    destino dos bytes
+     * @param <T>    tipo da entidade
+     * @throws IOException se a escrita falhar
+     */
+    static <T extends Identificavel> void escrever(
+            EntityCodec<T> codec,
+            T entity,
+            DataOutput out
+    ) throws IOException {
+        out.writeInt(entity.getVersao());
+        codec.escrever(entity, out);
+    }
+
+    /**
+     * Lê uma entidade gravada por {@link #escrever(EntityCodec, Identificavel, DataOutput)}.
+     *
+     * @param codec codec da entidade
+     * @param in    origem dos bytes
+     * @param <T>   tipo da entidade
+     * @return entidade com identificador e versão
+     * @throws IOException se a leitura falhar
+     */
+    static <T extends Identificavel> T ler(
+            EntityCodec<T> codec,
+            DataInput in
+    ) throws IOException {
+        var versao = in.readInt();
+        var entity = codec.ler(in);
+        entity.setVersao(versao);
+        return entity;
+    }
+
+    private static void lerTudo(
+            SocketChannel canal,
+            ByteBuffer buffer
+    ) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer) < 0) throw new EOFException("Conexão encerrada");
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package xq.yiesko.petshop.repository.tiered;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Registros de tamanho variável gravados em sequência em arquivos de segmento.
+ * <p>
+ * Cada registro é o identificador da entidade, o tamanho e os bytes, e nunca é
+ * alterado: gravar uma nova versão acrescenta um registro e torna o anterior lixo.
+ * Quando o segmento ativo não comporta o próximo registro, ele é selado e outro é
+ * aberto. Um segmento selado em que o lixo passa da metade é indicado por
+ * {@link #paraCompactar()}; quem controla o índice copia os registros ainda
+ * válidos com {@link #gravar(int, byte[])} e o descarta com {@link #apagar(int)}.
+ * <p>
+ * A posição de um registro é um {@code long} com o segmento, o deslocamento e o
+ * tamanho, então ler um registro é uma única leitura posicional. A classe não é
+ * thread-safe; o acesso é serializado pelo {@link TieredRepository}. A exceção é
+ * {@link Local#ler()}: como os registros nunca mudam, um registro localizado com o
+ * acesso serializado pode ser lido fora dele, e a leitura só falha, com
+ * {@link ClosedChannelException}, se o segmento tiver sido apagado nesse intervalo.
+ */
+final class SegmentStore implements Closeable {
+
+    /**
+     * Tamanho máximo dos dados de um registro.
+     */
+    static final int TAMANHO_MAXIMO = (1 << 22) - 1;
+
+    private static final int BITS_TAMANHO = 22;
+    private static final int BITS_DESLOCAMENTO = 26;
+    private static final long TAMANHO_SEGMENTO = 1L << BITS_DESLOCAMENTO;
+    private static final int SEGMENTOS = 1 << 16;
+    private static final int CABECALHO = 2 * Integer.BYTES;
+
+    private final Path diretorio;
+    private final String nome;
+    private final TreeMap<Integer, Segmento> segmentos = new TreeMap<>();
+    private Segmento ativo;
+    private int proximoSegmento;
+
+    /**
+     * Segmento aberto: o canal, os bytes gravados e quantos deles já são lixo.
+     */
+    private static final class Segmento {
+
+        final int numero;
+        final FileChannel canal;
+        long tamanho;
+        long lixo;
+
+        Segmento(
+                int numero,
+                FileChannel canal
+        ) {
+            this.numero = numero;
+            this.canal = canal;
+        }
+    }
+
+    /**
+     * Registro localizado, que pode ser lido sem o acesso serializado.
+     *
+     * @param canal   canal do segmento do registro
+     * @param inicio  deslocamento dos bytes do registro no segmento
+     * @param tamanho quantidade de bytes do registro
+     */
+    record Local(
+            FileChannel canal,
+            long inicio,
+            int tamanho
+    ) {
+
+        /**
+         * Lê os bytes do registro por uma leitura posicional, que pode ocorrer ao
+         * mesmo tempo que gravações e outras leituras.
+         *
+         * @return bytes do registro
+         * @throws ClosedChannelException se o segmento foi apagado depois de localizado
+         * @throws IOException            se a leitura falhar
+         */
+        byte[] ler() throws IOException {
+            var dados = ByteBuffer.allocate(tamanho);
+            while (dados.hasRemaining()) {
+                if (canal.read(dados, inicio + dados.position()) < 0) throw new IOException("Registro truncado");
+            }
+            return dados.array();
+        }
+    }
+
+    /**
+     * Recebe cada registro de um segmento percorrido.
+     */
+    @FunctionalInterface
+    interface Registro {
+
+        /**
+         * Processa um registro.
+         *
+         * @param id      identificador da entidade
+         * @param posicao posição do registro
+         * @param dados   bytes do registro
+         * @throws IOException se o processamento gravar e a escrita falhar
+         */
+        void aceitar(
+                int id,
+                long posicao,
+                byte[] dados
+        ) throws IOException;
+    }
+
+    /**
+     * Cria o armazenamento, descartando segmentos de uma execução anterior.
+     *
+     * @param diretorio diretório dos segmentos
+     * @param nome      prefixo dos arquivos
+     * @throws IOException se o diretório não puder ser preparado
+     */
+    SegmentStore(
+            Path diretorio,
+            String nome
+    ) throws IOException {
+        this.diretorio = diretorio;
+        this.nome = nome;
+        Files.createDirectories(diretorio);
+        try (var antigos = Files.newDirectoryStream(diretorio, nome + "-*.seg")) {
+            for (var antigo : antigos) Files.delete(antigo);
+        }
+    }
+
+    /**
+     * Acrescenta um registro ao segmento ativo.
+     *
+     * @param id    identificador da entidade
+     * @param dados bytes do registro
+     * @return posição do registro
+     * @throws IOException se a escrita falhar
+     */
+    long gravar(
+            int id,
+            byte[] dados
+    ) throws IOException {
+        if (dados.length > TAMANHO_MAXIMO) throw new IllegalArgumentException("Registro grande demais: " + dados.length + " bytes");
+
+        var necessario = CABECALHO + dados.length;
+        if (ativo == null || ativo.tamanho + necessario > TAMANHO_SEGMENTO) ativo = abrir();
+
+        var buffer = ByteBuffer.allocate(necessario).putInt(id).putInt(dados.length).put(dados).flip();
+        var deslocamento = ativo.tamanho;
+        while (buffer.hasRemaining()) ativo.canal.write(buffer, deslocamento + buffer.position());
+        ativo.tamanho += necessario;
+        return (long) ativo.numero << (BITS_DESLOCAMENTO + BITS_TAMANHO) | deslocamento << BITS_TAMANHO | dados.length;
+    }
+
+    /**
+     * Lê os bytes de um registro.
+     *
+     * @param posicao posição devolvida por {@link #gravar(int, byte[])}
+     * @return bytes do registro
+     * @throws IOException se a leitura falhar
+     */
+    byte[] ler(
+            long posicao
+    ) throws IOException {
+        return localizar(posicao).ler();
+    }
+
+    /**
+     * Localiza um registro para lê-lo depois, fora do acesso serializado.
+     *
+     * @param posicao posição devolvida por {@link #gravar(int, byte[])}
+     * @return registro localizado
+     */
+    Local localizar(
+            long posicao
+    ) {
+        return new Local(segmentos.get(segmento(posicao)).canal, deslocamento(posicao) + CABECALHO, tamanho(posicao));
+    }
+
+    /**
+     * Marca um registro como lixo.
+     *
+     * @param posicao posição de um registro substituído ou removido
+     */
+    void liberar(
+            long posicao
+    ) {
+        segmentos.get(segmento(posicao)).lixo += CABECALHO + tamanho(posicao);
+    }
+
+    /**
+     * Lista os segmentos selados em que mais da metade dos bytes é lixo.
+     *
+     * @return números dos segmentos a compactar
+     */
+    List<Integer> paraCompactar() {
+        var numeros = new ArrayList<Integer>();
+        for (var segmento : segmentos.values())
+            if (segmento != ativo && segmento.lixo * 2 > segmento.tamanho) numeros.add(segmento.numero);
+        return numeros;
+    }
+
+    /**
+     * Percorre todos os registros de um segmento, válidos ou não.
+     *
+     * @param numero   segmento percorrido
+     * @param registro recebe cada registro
+     * @throws IOException se a leitura falhar
+     */
+    void percorrer(
+            int numero,
+            Registro registro
+    ) throws IOException {
+        var segmento = segmentos.get(numero);
+        var conteudo = ByteBuffer.allocate((int) segmento.tamanho);
+        while (conteudo.hasRemaining()) {
+            if (segmento.canal.read(conteudo, conteudo.position()) < 0)
+                throw new IOException("Segmento " + numero + " truncado");
+        }
+        conteudo.flip();
+
+        while (conteudo.hasRemaining()) {
+            var deslocamento = (long) conteudo.position();
+            var id = conteudo.getInt();
+            var dados = new byte[conteudo.getInt()];
+            conteudo.get(dados);
+            registro.aceitar(id, (long) numero << (BITS_DESLOCAMENTO + BITS_TAMANHO) | deslocamento << BITS_TAMANHO | dados.length, dados);
+        }
+    }
+
+    /**
+     * Fecha e apaga um segmento selado.
+     *
+     * @param numero segmento descartado
+     * @throws IOException se o arquivo não puder ser apagado
+     */
+    void apagar(
+            int numero
+    ) throws IOException {
+        var segmento = segmentos.remove(numero);
+        segmento.canal.close();
+        Files.deleteIfExists(caminho(numero));
+    }
+
+    /**
+     * Obtém o espaço ocupado em disco, incluindo o lixo ainda não compactado.
+     *
+     * @return bytes gravados nos segmentos abertos
+     */
+    long bytes() {
+        var total = 0L;
+        for (var segmento : segmentos.values()) total += segmento.tamanho;
+        return total;
+    }
+
+    /**
+     * Fecha e apaga todos os segmentos: o conteúdo só vale enquanto o repositório
+     * estiver aberto.
+     */
+    @Override
+    public void close() throws IOException {
+        for (var numero : new ArrayList<>(segmentos.keySet())) apagar(numero);
+        ativo = null;
+    }
+
+    private Segmento abrir() throws IOException {
+        if (segmentos.size() == SEGMENTOS) throw new IOException("Limite de segmentos atingido para " + nome);
+        while (segmentos.containsKey(proximoSegmento)) proximoSegmento = (proximoSegmento + 1) % SEGMENTOS;
+
+        var numero = proximoSegmento;
+        proximoSegmento = (proximoSegmento + 1) % SEGMENTOS;
+        var canal = FileChannel.open(caminho(numero), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var segmento = new Segmento(numero, canal);
+        segmentos.put(numero, segmento);
+        return segmento;
+    }
+
+    private Path caminho(
+            int numero
+    ) {
+        return diretorio.resolve("%s-%05d.seg".formatted(nome, numero));
+    }
+
+    private static int segmento(
+            long posicao
+    ) {
+        return (int) (posicao >>> (BITS_DESLOCAMENTO + BITS_TAMANHO));
+    }
+
+    private static long deslocamento(
+            long posicao
+    ) {
+        return posicao >>> BITS_TAMANHO & (TAMANHO_SEGMENTO - 1);
+    }
+
+    private static int tamanho(
+            long posicao
+    ) {
+        return (int) (posicao & TAMANHO_MAXIMO);
+    }
+}
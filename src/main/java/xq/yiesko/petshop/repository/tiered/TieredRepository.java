@@ -0,0 +1,916 @@
+package xq.yiesko.petshop.repository.tiered;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import xq.yiesko.petshop.model.impl.Identificavel;
+import xq.yiesko.petshop.repository.RepositoryListener;
+import xq.yiesko.petshop.repository.RestorableRepository;
+import xq.yiesko.petshop.repository.persistence.EntityCodec;
+
+/**
+ * Repositório com um conjunto quente de entidades no heap, limitado por um
+ * orçamento em bytes, e todas as demais em segmentos em disco.
+ * <p>
+ * Cada escrita é gravada imediatamente no {@link SegmentStore}, então o disco tem
+ * sempre a versão atual de todas as entidades e tirar uma entidade do heap é apenas
+ * esquecer a referência. No heap ficam só as entidades quentes e, por identificador,
+ * a versão e a posição do registro em disco: doze bytes por entidade, qualquer que
+ * seja o tamanho dela. {@link #buscarPorId(int)} de uma entidade fria lê o registro,
+ * reconstrói a entidade e a traz para o conjunto quente.
+ * <p>
+ * O conjunto quente é um LRU segmentado, com os dois segmentos em ordem de uso:
+ * entidades novas ou trazidas do disco entram no segmento de experiência, e só
+ * passam para o segmento protegido, com {@value #FRACAO_PROTEGIDA}% do orçamento,
+ * quando são lidas de novo. Ao estourar o orçamento sai primeiro a menos recente
+ * do segmento de experiência, então uma varredura de registros antigos não expulsa
+ * as entidades usadas com frequência. O peso de cada entidade é o tamanho do seu
+ * registro mais uma estimativa fixa dos cabeçalhos de objeto.
+ * <p>
+ * Listagens e streams leem as entidades frias sem trazê-las para o conjunto quente;
+ * {@link #retrato()} e {@link #listar()} materializam todas as entidades, então
+ * relatórios sobre a coleção inteira ocupam o heap enquanto durarem.
+ * <p>
+ * O orçamento limita só o conjunto quente. O heap do repositório é o orçamento mais
+ * doze bytes por identificador já atribuído, e as entidades lidas continuam vivas
+ * enquanto quem as leu as referenciar. Índices mantidos fora do repositório contam
+ * à parte: com os índices do {@code ConsultaService}, que guardam só identificadores,
+ * cada consulta ocupa da ordem de 600 bytes de heap, dentro ou fora do conjunto
+ * quente.
+ * <p>
+ * O lock protege o índice e o conjunto quente, e o disco é lido fora dele: buscas,
+ * listagens e retiradas capturam a posição do registro sob o lock e o leem, e o
+ * decodificam, depois de liberá-lo. Como um registro nunca muda, a leitura só é
+ * refeita se o segmento dele for compactado nesse intervalo. Se a entidade mudar
+ * durante a leitura, a busca é refeita, e a retirada lê sob o lock o estado removido.
+ * <p>
+ * Os observadores são notificados ainda sob o lock da escrita, e portanto na ordem
+ * das escritas; as confirmações deles são aguardadas depois de liberar o lock.
+ * <p>
+ * Os segmentos não são duráveis: são apagados na abertura e no {@link #close()}. A
+ * durabilidade continua sendo do {@code RepositoryJournal}, que recupera o
+ * repositório por {@link #restaurar(Identificavel)}.
+ *
+ * @param <T> tipo da entidade persistida
+ */
+public final class TieredRepository<T extends Identificavel> implements RestorableRepository<T>, Closeable {
+
+    private static final int FRACAO_PROTEGIDA = 80;
+    private static final int SOBRECARGA = 96;
+    private static final int CAPACIDADE_INICIAL = 1024;
+
+    private final SegmentStore disco;
+    private final EntityCodec<T> codec;
+    private final long orcamento;
+    private final long limiteProtegido;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<RepositoryListener<T>> listeners = new CopyOnWriteArrayList<>();
+
+    private final LinkedHashMap<Integer, Quente<T>> experiencia = new LinkedHashMap<>();
+    private final LinkedHashMap<Integer, Quente<T>> protegido = new LinkedHashMap<>();
+    private long pesoExperiencia;
+    private long pesoProtegido;
+
+    private long[] posicoes = new long[CAPACIDADE_INICIAL];
+    private int[] versoes = new int[CAPACIDADE_INICIAL];
+    private int proximoId = 1;
+    private int quantidade;
+    private long faltas;
+
+    /**
+     * Entidade no conjunto quente e o seu peso no orçamento.
+     */
+    private record Quente<T>(
+            T entity,
+            int peso
+    ) {
+    }
+
+    /**
+     * Entidade capturada sob o lock para ser lida depois de liberá-lo: a instância
+     * quente, ou o registro frio localizado no disco, com a posição que o identifica.
+     */
+    private record Pendente<T>(
+            int id,
+            long posicao,
+            T entity,
+            SegmentStore.Local local
+    ) {
+    }
+
+    /**
+     * Cria um repositório vazio.
+     *
+     * @param diretorio diretório dos segmentos
+     * @param nome      prefixo dos arquivos desta entidade
+     * @param codec     codec da entidade
+     * @param orcamento bytes que as entidades quentes podem ocupar no heap
+     * @throws IOException se o diretório não puder ser preparado
+     */
+    public TieredRepository(
+            Path diretorio,
+            String nome,
+            EntityCodec<T> codec,
+            long orcamento
+    ) throws IOException {
+        if (orcamento <= 0) throw new IllegalArgumentException("Orçamento deve ser positivo");
+
+        this.disco = new SegmentStore(diretorio, nome);
+        this.codec = codec;
+        this.orcamento = orcamento;
+        this.limiteProtegido = orcamento * FRACAO_PROTEGIDA / 100;
+    }
+
+    @Override
+    public void adicionarListener(
+            RepositoryListener<T> listener
+    ) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public T adicionar(
+            T entity
+    ) {
+        List<RepositoryListener.Confirmacao> confirmacoes;
+        lock.lock();
+        try {
+            var id = proximoId;
+            entity.setId(id);
+            gravar(entity, 1);
+            proximoId++;
+            quantidade++;
+            confirmacoes = notificar(listener -> listener.aoAdicionar(entity));
+        } finally {
+            lock.unlock();
+        }
+        aguardar(confirmacoes);
+        return entity;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * O lote é gravado sob uma única aquisição do lock.
+     */
+    @Override
+    public List<T> adicionarTodos(
+            List<T> entities
+    ) {
+        if (entities.isEmpty()) return entities;
+
+        List<RepositoryListener.Confirmacao> confirmacoes;
+        lock.lock();
+        try {
+            for (var entity : entities) {
+                entity.setId(proximoId);
+                gravar(entity, 1);
+                proximoId++;
+                quantidade++;
+            }
+            confirmacoes = notificar(listener -> listener.aoAdicionarTodos(entities));
+        } finally {
+            lock.unlock();
+        }
+        aguardar(confirmacoes);
+        return entities;
+    }
+
+    @Override
+    public boolean atualizar(
+            T entity
+    ) {
+        List<RepositoryListener.Confirmacao> confirmacoes;
+        lock.lock();
+        try {
+            var id = entity.getId();
+            if (!ativo(id)) return false;
+            gravar(entity, versoes[id] + 1);
+            confirmacoes = notificar(listener -> listener.aoAtualizar(entity));
+        } finally {
+            lock.unlock();
+        }
+        aguardar(confirmacoes);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A versão armazenada fica no índice em memória, então a verificação não lê o
+     * disco mesmo para entidades frias.
+     */
+    @Override
+    public boolean atualizar(
+            T entity,
+            int versaoEsperada
+    ) {
+        List<RepositoryListener.Confirmacao> confirmacoes;
+        lock.lock();
+        try {
+            var id = entity.getId();
+            if (!ativo(id) || versoes[id] != versaoEsperada) return false;
+            gravar(entity, versaoEsperada + 1);
+            confirmacoes = notificar(listener -> listener.aoAtualizar(entity));
+        } finally {
+            lock.unlock();
+        }
+        aguardar(confirmacoes);
+        return true;
+    }
+
+    @Override
+    public boolean atualizarTodos(
+            List<T> entities
+    ) {
+        List<RepositoryListener.Confirmacao> confirmacoes;
+        lock.lock();
+        try {
+            for (var entity : entities) if (!ativo(entity.getId())) return false;
+            for (var entity : entities) gravar(entity, versoes[entity.getId()] + 1);
+            confirmacoes = notificar(listener -> listener.aoAtualizarTodos(entities));
+        } finally {
+            lock.unlock();
+        }
+        aguardar(confirmacoes);
+        return true;
+    }
+
+    /**
+     * Reinsere uma entidade que já possui identificador, sem notificar os observadores.
+     * <p>
+     * Um estado com versão menor que a da entidade já restaurada é ignorado.
+     *
+     * @param entity entidade com identificador atribuído
+     */
+    @Override
+    public void restaurar(
+            T entity
+    ) {
+        lock.lock();
+        try {
+            var id = entity.getId();
+            proximoId = Math.max(proximoId, id + 1);
+            if (ativo(id) && versoes[id] > entity.getVersao()) return;
+            if (!ativo(id)) quantidade++;
+            gravar(entity, entity.getVersao());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void descartar(
+            int id
+    ) {
+        lock.lock();
+        try {
+            apagar(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int proximoId() {
+        lock.lock();
+        try {
+            return proximoId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void avancarSequencia(
+            int proximoId
+    ) {
+        lock.lock();
+        try {
+            this.proximoId = Math.max(this.proximoId, proximoId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Uma entidade fria é lida do disco e entra no conjunto quente; uma quente que é
+     * lida de novo passa para o segmento protegido. A leitura do disco é feita sem o
+     * lock e repetida se o registro mudar nesse meio tempo.
+     */
+    @Override
+    public Optional<T> buscarPorId(
+            int id
+    ) {
+        while (true) {
+            Pendente<T> pendente;
+            lock.lock();
+            try {
+                if (!ativo(id)) return Optional.empty();
+
+                var quente = protegido.remove(id);
+                if (quente != null) {
+                    protegido.put(id, quente);
+                    return Optional.of(quente.entity());
+                }
+
+                quente = experiencia.remove(id);
+                if (quente != null) {
+                    pesoExperiencia -= quente.peso();
+                    proteger(id, quente);
+                    return Optional.of(quente.entity());
+                }
+                pendente = pendente(id);
+            } finally {
+                lock.unlock();
+            }
+
+            var dados = lerDoDisco(pendente.local());
+            if (dados == null) continue;
+            T entity;
+            try {
+                entity = decodificar(dados);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            lock.lock();
+            try {
+                if (!ativo(id) || posicoes[id] != pendente.posicao() || quente(id)) continue;
+                faltas++;
+                admitir(id, new Quente<>(entity, peso(dados)));
+                return Optional.of(entity);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As posições são lidas sob o lock, e os registros frios, depois de liberá-lo.
+     */
+    @Override
+    public List<T> listar() {
+        var pendentes = new ArrayList<Pendente<T>>();
+        lock.lock();
+        try {
+            pendentes.ensureCapacity(quantidade);
+            for (var id = 1; id < proximoId; id++)
+                if (ativo(id)) pendentes.add(pendente(id));
+        } finally {
+            lock.unlock();
+        }
+        return materializar(pendentes);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As entidades puladas não são lidas; só as da página são materializadas.
+     */
+    @Override
+    public List<T> listar(
+            int deslocamento,
+            int limite
+    ) {
+        var pagina = new ArrayList<Pendente<T>>(Math.max(0, Math.min(limite, 1024)));
+        lock.lock();
+        try {
+            var pular = deslocamento;
+            for (var id = 1; id < proximoId && pagina.size() < limite; id++) {
+                if (!ativo(id)) continue;
+                if (pular > 0) pular--;
+                else pagina.add(pendente(id));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return materializar(pagina);
+    }
+
+    @Override
+    public List<T> listarApos(
+            int aposId,
+            int limite
+    ) {
+        var pagina = new ArrayList<Pendente<T>>(Math.max(0, Math.min(limite, 1024)));
+        lock.lock();
+        try {
+            for (var id = Math.max(aposId, 0) + 1; id < proximoId && pagina.size() < limite; id++)
+                if (ativo(id)) pagina.add(pendente(id));
+        } finally {
+            lock.unlock();
+        }
+        return materializar(pagina);
+    }
+
+    @Override
+    public void paraCada(
+            Consumer<? super T> acao
+    ) {
+        stream().forEach(acao);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cada entidade é materializada apenas quando alcançada pelo stream, sem entrar
+     * no conjunto quente.
+     */
+    @Override
+    public Stream<T> stream() {
+        return IntStream.range(1, proximoId()).mapToObj(this::lerSeAtivo).flatMap(Optional::stream);
+    }
+
+    @Override
+    public boolean remover(
+            int id
+    ) {
+        List<RepositoryListener.Confirmacao> confirmacoes;
+        lock.lock();
+        try {
+            if (!apagar(id)) return false;
+            confirmacoes = notificar(listener -> listener.aoRemover(id));
+        } finally {
+            lock.unlock();
+        }
+        aguardar(confirmacoes);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Uma entidade fria é lida do disco sem o lock, antes de o seu registro ser
+     * liberado; se ela mudar durante a leitura, o estado atual é lido sob o lock.
+     */
+    @Override
+    public Optional<T> retirar(
+            int id
+    ) {
+        Pendente<T> pendente;
+        lock.lock();
+        try {
+            if (!ativo(id)) return Optional.empty();
+            pendente = pendente(id);
+        } finally {
+            lock.unlock();
+        }
+        var lida = pendente.entity() != null ? pendente.entity() : lerSemLock(pendente);
+
+        T removida;
+        List<RepositoryListener.Confirmacao> confirmacoes;
+        lock.lock();
+        try {
+            if (!ativo(id)) return Optional.empty();
+            removida = lida != null && posicoes[id] == pendente.posicao() ? lida : ler(id);
+            apagar(id);
+            confirmacoes = notificar(listener -> listener.aoRemover(id));
+        } finally {
+            lock.unlock();
+        }
+        aguardar(confirmacoes);
+        return Optional.of(removida);
+    }
+
+    @Override
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        var removidos = new ArrayList<Integer>(ids.size());
+        List<RepositoryListener.Confirmacao> confirmacoes = List.of();
+        lock.lock();
+        try {
+            for (var id : ids) if (apagar(id)) removidos.add(id);
+            if (!removidos.isEmpty()) confirmacoes = notificar(listener -> listener.aoRemoverTodos(removidos));
+        } finally {
+            lock.unlock();
+        }
+        aguardar(confirmacoes);
+        return removidos.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Como em {@link #retirar(int)}, as entidades frias são lidas sem o lock, e só
+     * as que mudarem durante a leitura são lidas de novo sob ele.
+     */
+    @Override
+    public List<T> retirarTodos(
+            List<Integer> ids
+    ) {
+        var pendentes = new ArrayList<Pendente<T>>(ids.size());
+        lock.lock();
+        try {
+            for (var id : ids) if (ativo(id)) pendentes.add(pendente(id));
+        } finally {
+            lock.unlock();
+        }
+        var lidas = new ArrayList<T>(pendentes.size());
+        for (var pendente : pendentes) lidas.add(pendente.entity() != null ? pendente.entity() : lerSemLock(pendente));
+
+        var removidos = new ArrayList<Integer>(pendentes.size());
+        var removidas = new ArrayList<T>(pendentes.size());
+        List<RepositoryListener.Confirmacao> confirmacoes = List.of();
+        lock.lock();
+        try {
+            for (var i = 0; i < pendentes.size(); i++) {
+                var id = pendentes.get(i).id();
+                if (!ativo(id)) continue;
+                var lida = lidas.get(i);
+                removidas.add(lida != null && posicoes[id] == pendentes.get(i).posicao() ? lida : ler(id));
+                apagar(id);
+                removidos.add(id);
+            }
+            if (!removidos.isEmpty()) confirmacoes = notificar(listener -> listener.aoRemoverTodos(removidos));
+        } finally {
+            lock.unlock();
+        }
+        aguardar(confirmacoes);
+        return removidas;
+    }
+
+    /**
+     * Passa uma alteração aos observadores; chamado com o lock da escrita, para que
+     * recebam as alterações na ordem em que foram aplicadas.
+     */
+    private List<RepositoryListener.Confirmacao> notificar(
+            Function<RepositoryListener<T>, RepositoryListener.Confirmacao> aviso
+    ) {
+        var confirmacoes = new ArrayList<RepositoryListener.Confirmacao>(listeners.size());
+        for (var listener : listeners) confirmacoes.add(aviso.apply(listener));
+        return confirmacoes;
+    }
+
+    private static void aguardar(
+            List<RepositoryListener.Confirmacao> confirmacoes
+    ) {
+        for (var confirmacao : confirmacoes) confirmacao.aguardar();
+    }
+
+    @Override
+    public int tamanho() {
+        lock.lock();
+        try {
+            return quantidade;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtém os bytes estimados das entidades no conjunto quente.
+     *
+     * @return peso do conjunto quente
+     */
+    public long bytesEmMemoria() {
+        lock.lock();
+        try {
+            return pesoExperiencia + pesoProtegido;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtém o espaço ocupado pelos segmentos em disco, incluindo registros
+     * substituídos ainda não compactados.
+     *
+     * @return bytes em disco
+     */
+    public long bytesEmDisco() {
+        lock.lock();
+        try {
+            return disco.bytes();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtém quantas buscas por identificador precisaram ler o disco.
+     *
+     * @return quantidade de leituras de entidades frias
+     */
+    public long faltas() {
+        lock.lock();
+        try {
+            return faltas;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fecha e apaga os segmentos em disco.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            experiencia.clear();
+            protegido.clear();
+            disco.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean ativo(
+            int id
+    ) {
+        return id > 0 && id < versoes.length && versoes[id] > 0;
+    }
+
+    /**
+     * Grava a entidade no disco na versão informada e a coloca no conjunto quente,
+     * no lugar da versão anterior.
+     */
+    private void gravar(
+            T entity,
+            int versao
+    ) {
+        var id = entity.getId();
+        if (id >= versoes.length) crescer(id + 1);
+
+        entity.setVersao(versao);
+        try {
+            var dados = codificar(entity);
+            var anterior = posicoes[id];
+            posicoes[id] = disco.gravar(id, dados);
+            versoes[id] = versao;
+
+            var quente = new Quente<>(entity, peso(dados));
+            if (esquecer(id) == protegido) proteger(id, quente);
+            else admitir(id, quente);
+
+            if (anterior != 0) liberar(anterior);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean apagar(
+            int id
+    ) {
+        if (!ativo(id)) return false;
+
+        esquecer(id);
+        var posicao = posicoes[id];
+        posicoes[id] = 0;
+        versoes[id] = 0;
+        quantidade--;
+        try {
+            liberar(posicao);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Marca o registro como lixo e compacta os segmentos selados que ficaram com
+     * mais lixo que dados, copiando os registros ainda válidos para o segmento ativo.
+     */
+    private void liberar(
+            long posicao
+    ) throws IOException {
+        disco.liberar(posicao);
+        for (var segmento : disco.paraCompactar()) {
+            disco.percorrer(segmento, (id, antiga, dados) -> {
+                if (ativo(id) && posicoes[id] == antiga) posicoes[id] = disco.gravar(id, dados);
+            });
+            disco.apagar(segmento);
+        }
+    }
+
+    /**
+     * Retira a entidade do conjunto quente.
+     *
+     * @return segmento em que ela estava, ou {@code null} se estava fria
+     */
+    private LinkedHashMap<Integer, Quente<T>> esquecer(
+            int id
+    ) {
+        var quente = experiencia.remove(id);
+        if (quente != null) {
+            pesoExperiencia -= quente.peso();
+            return experiencia;
+        }
+        quente = protegido.remove(id);
+        if (quente != null) {
+            pesoProtegido -= quente.peso();
+            return protegido;
+        }
+        return null;
+    }
+
+    private void admitir(
+            int id,
+            Quente<T> quente
+    ) {
+        experiencia.put(id, quente);
+        pesoExperiencia += quente.peso();
+        despejar();
+    }
+
+    /**
+     * Coloca a entidade no segmento protegido, rebaixando as menos recentes dele
+     * para o segmento de experiência enquanto ele passar do limite.
+     */
+    private void proteger(
+            int id,
+            Quente<T> quente
+    ) {
+        protegido.put(id, quente);
+        pesoProtegido += quente.peso();
+        while (pesoProtegido > limiteProtegido && protegido.size() > 1) {
+            var maisAntiga = protegido.entrySet().iterator().next();
+            protegido.remove(maisAntiga.getKey());
+            pesoProtegido -= maisAntiga.getValue().peso();
+            experiencia.put(maisAntiga.getKey(), maisAntiga.getValue());
+            pesoExperiencia += maisAntiga.getValue().peso();
+        }
+        despejar();
+    }
+
+    /**
+     * Esquece as entidades menos recentes até o conjunto quente caber no orçamento.
+     * Elas já estão no disco, então nada é gravado.
+     */
+    private void despejar() {
+        while (pesoExperiencia + pesoProtegido > orcamento) {
+            var segmento = experiencia.isEmpty() ? protegido : experiencia;
+            if (segmento.isEmpty()) return;
+
+            var maisAntiga = segmento.entrySet().iterator().next();
+            segmento.remove(maisAntiga.getKey());
+            if (segmento == experiencia) pesoExperiencia -= maisAntiga.getValue().peso();
+            else pesoProtegido -= maisAntiga.getValue().peso();
+        }
+    }
+
+    /**
+     * Obtém a entidade, do conjunto quente se estiver lá ou do disco, sem alterar o
+     * conjunto quente.
+     */
+    private T ler(
+            int id
+    ) {
+        var quente = experiencia.get(id);
+        if (quente == null) quente = protegido.get(id);
+        if (quente != null) return quente.entity();
+
+        try {
+            return decodificar(disco.ler(posicoes[id]));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Obtém a entidade sem alterar o conjunto quente, lendo o disco sem o lock; se o
+     * segmento do registro for compactado durante a leitura, a posição é lida de novo.
+     */
+    private Optional<T> lerSeAtivo(
+            int id
+    ) {
+        while (true) {
+            Pendente<T> pendente;
+            lock.lock();
+            try {
+                if (!ativo(id)) return Optional.empty();
+                pendente = pendente(id);
+            } finally {
+                lock.unlock();
+            }
+
+            var entity = pendente.entity() != null ? pendente.entity() : lerSemLock(pendente);
+            if (entity != null) return Optional.of(entity);
+        }
+    }
+
+    /**
+     * Captura, sob o lock, a instância quente da entidade ou a posição do seu
+     * registro, para que o disco seja lido depois de liberá-lo.
+     */
+    private Pendente<T> pendente(
+            int id
+    ) {
+        var quente = experiencia.get(id);
+        if (quente == null) quente = protegido.get(id);
+        var posicao = posicoes[id];
+        return quente != null ? new Pendente<>(id, posicao, quente.entity(), null) : new Pendente<>(id, posicao, null, disco.localizar(posicao));
+    }
+
+    /**
+     * Resolve as entidades capturadas por {@link #pendente(int)}, em ordem; uma
+     * entidade cujo segmento foi compactado durante a leitura é lida de novo, e uma
+     * removida nesse meio tempo fica de fora.
+     */
+    private List<T> materializar(
+            List<Pendente<T>> pendentes
+    ) {
+        var entidades = new ArrayList<T>(pendentes.size());
+        for (var pendente : pendentes) {
+            var entity = pendente.entity() != null ? pendente.entity() : lerSemLock(pendente);
+            if (entity != null) entidades.add(entity);
+            else lerSeAtivo(pendente.id()).ifPresent(entidades::add);
+        }
+        return entidades;
+    }
+
+    private T lerSemLock(
+            Pendente<T> pendente
+    ) {
+        var dados = lerDoDisco(pendente.local());
+        if (dados == null) return null;
+        try {
+            return decodificar(dados);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lê um registro fora do lock.
+     *
+     * @return bytes do registro, ou {@code null} se o segmento foi apagado depois de localizado
+     */
+    private static byte[] lerDoDisco(
+            SegmentStore.Local local
+    ) {
+        try {
+            return local.ler();
+        } catch (ClosedByInterruptException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClosedChannelException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean quente(
+            int id
+    ) {
+        return experiencia.containsKey(id) || protegido.containsKey(id);
+    }
+
+    private void crescer(
+            int minimo
+    ) {
+        var capacidade = Math.max(minimo, versoes.length * 2);
+        posicoes = Arrays.copyOf(posicoes, capacidade);
+        versoes = Arrays.copyOf(versoes, capacidade);
+    }
+
+    private byte[] codificar(
+            T entity
+    ) throws IOException {
+        var bytes = new ByteArrayOutputStream(128);
+        var out = new DataOutputStream(bytes);
+        out.writeInt(entity.getVersao());
+        codec.escrever(entity, out);
+        return bytes.toByteArray();
+    }
+
+    private T decodificar(
+            byte[] dados
+    ) throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(dados));
+        var versao = in.readInt();
+        var entity = codec.ler(in);
+        entity.setVersao(versao);
+        return entity;
+    }
+
+    private static int peso(
+            byte[] dados
+    ) {
+        return dados.length + SOBRECARGA;
+    }
+}
@@ -0,0 +1,255 @@
+package xq.yiesko.petshop.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import xq.yiesko.petshop.model.impl.Identificavel;
+
+/**
+ * Índice invertido incremental para busca por texto e por prefixo.
+ * <p>
+ * Os campos de cada entidade são quebrados em termos pelo {@link Tokenizer} e cada
+ * termo aponta para a lista ordenada dos identificadores que o contêm. Os termos
+ * ficam em um mapa ordenado, então todos os termos com um prefixo formam um
+ * intervalo contíguo e a busca custa O(log n + k), onde k é o número de
+ * identificadores examinados até preencher o limite pedido. A indexação localiza
+ * cada termo exato por um mapa de hash, evitando percorrer o mapa ordenado.
+ * <p>
+ * As listas de identificadores são lidas sem bloqueio: cada alteração publica uma
+ * nova {@link Fatia} e os cadastros, que chegam com identificadores crescentes,
+ * apenas acrescentam ao final do vetor existente. Termos que ficam sem
+ * identificadores permanecem no mapa, vazios, para que um cadastro concorrente
+ * nunca perca a lista em que está escrevendo.
+ *
+ * @param <T> tipo da entidade indexada
+ */
+public final class SearchIndex<T extends Identificavel> {
+
+    private final Function<T, List<String>> campos;
+    private final ConcurrentNavigableMap<String, Postagens> termos = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Postagens> dicionario = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Postagens[]> documentos = new ConcurrentHashMap<>();
+
+    /**
+     * Cria um índice vazio.
+     *
+     * @param campos extrai os textos pesquisáveis de uma entidade; valores nulos são ignorados
+     */
+    public SearchIndex(
+            Function<T, List<String>> campos
+    ) {
+        this.campos = campos;
+    }
+
+    /**
+     * Indexa uma entidade nova ou reindexa uma entidade já conhecida, alterando
+     * apenas os termos que mudaram.
+     *
+     * @param entidade entidade persistida
+     */
+    public void indexar(
+            T entidade
+    ) {
+        var novos = termosDe(entidade);
+        documentos.compute(entidade.getId(), (id, anteriores) -> {
+            var postagens = new Postagens[novos.size()];
+            var i = 0;
+            for (var termo : novos) {
+                var lista = dicionario.computeIfAbsent(termo, this::novoTermo);
+                if (anteriores == null || !contem(anteriores, lista)) lista.adicionar(id);
+                postagens[i++] = lista;
+            }
+
+            if (anteriores != null)
+                for (var lista : anteriores)
+                    if (!contem(postagens, lista)) lista.remover(id);
+            return postagens;
+        });
+    }
+
+    /**
+     * Remove uma entidade do índice.
+     *
+     * @param id identificador da entidade
+     */
+    public void desindexar(
+            int id
+    ) {
+        documentos.computeIfPresent(id, (k, anteriores) -> {
+            for (var lista : anteriores) lista.remover(k);
+            return null;
+        });
+    }
+
+    /**
+     * Busca as entidades que contêm todos os termos da consulta, cada um como
+     * prefixo de algum termo indexado, como em um campo de autocompletar.
+     * <p>
+     * Os resultados vêm primeiro pelos termos que coincidem exatamente e depois
+     * pelos mais longos, e dentro de cada termo pela ordem de cadastro.
+     *
+     * @param consulta texto digitado
+     * @param limite   quantidade máxima de resultados
+     * @return identificadores encontrados, sem repetições
+     */
+    public int[] buscar(
+            String consulta,
+            int limite
+    ) {
+        if (limite <= 0) throw new IllegalArgumentException("Limite deve ser positivo");
+
+        var prefixos = new ArrayList<>(new LinkedHashSet<>(Tokenizer.termos(consulta)));
+        if (prefixos.isEmpty()) return new int[0];
+
+        // O prefixo mais longo tende a ser o mais seletivo; os demais são verificados por documento.
+        var guia = prefixos.getFirst();
+        for (var prefixo : prefixos) if (prefixo.length() > guia.length()) guia = prefixo;
+        prefixos.remove(guia);
+
+        var resultado = new int[Math.min(limite, 64)];
+        var encontrados = 0;
+        var vistos = new HashSet<Integer>();
+        for (var lista : comPrefixo(guia)) {
+            var fatia = lista.fatia;
+            for (var i = 0; i < fatia.tamanho(); i++) {
+                var id = fatia.ids()[i];
+                if (!atende(id, prefixos) || !vistos.add(id)) continue;
+
+                if (encontrados == resultado.length) resultado = Arrays.copyOf(resultado, Math.min(limite, encontrados * 2));
+                resultado[encontrados++] = id;
+                if (encontrados == limite) return resultado;
+            }
+        }
+        return Arrays.copyOf(resultado, encontrados);
+    }
+
+    /**
+     * Obtém a quantidade de entidades indexadas.
+     *
+     * @return quantidade de entidades
+     */
+    public int tamanho() {
+        return documentos.size();
+    }
+
+    private Postagens novoTermo(
+            String termo
+    ) {
+        var lista = new Postagens(termo);
+        termos.put(termo, lista);
+        return lista;
+    }
+
+    private Iterable<Postagens> comPrefixo(
+            String prefixo
+    ) {
+        return termos.subMap(prefixo, true, prefixo + Character.MAX_VALUE, false).values();
+    }
+
+    private boolean atende(
+            int id,
+            List<String> prefixos
+    ) {
+        if (prefixos.isEmpty()) return true;
+
+        var postagens = documentos.get(id);
+        if (postagens == null) return false;
+
+        for (var prefixo : prefixos) {
+            var algum = false;
+            for (var lista : postagens) algum |= lista.termo.startsWith(prefixo);
+            if (!algum) return false;
+        }
+        return true;
+    }
+
+    private List<String> termosDe(
+            T entidade
+    ) {
+        var termosDaEntidade = new ArrayList<String>();
+        for (var campo : campos.apply(entidade)) Tokenizer.adicionarTermos(campo, termosDaEntidade);
+        return termosDaEntidade.stream().distinct().toList();
+    }
+
+    private static boolean contem(
+            Postagens[] postagens,
+            Postagens lista
+    ) {
+        for (var outra : postagens) if (outra == lista) return true;
+        return false;
+    }
+
+    /**
+     * Estado publicado de uma lista de identificadores: as posições abaixo de
+     * {@code tamanho} nunca mudam depois de publicadas.
+     */
+    private record Fatia(
+            int[] ids,
+            int tamanho
+    ) {}
+
+    /**
+     * Identificadores que contêm um termo, em ordem crescente.
+     */
+    private static final class Postagens {
+
+        private static final Fatia VAZIA = new Fatia(new int[0], 0);
+
+        final String termo;
+        volatile Fatia fatia = VAZIA;
+
+        Postagens(
+                String termo
+        ) {
+            this.termo = termo;
+        }
+
+        synchronized void adicionar(
+                int id
+        ) {
+            var atual = fatia;
+            var ids = atual.ids();
+            var tamanho = atual.tamanho();
+
+            if (tamanho == 0 || ids[tamanho - 1] < id) {
+                if (tamanho == ids.length) ids = Arrays.copyOf(ids, Math.max(4, tamanho * 2));
+                ids[tamanho] = id;
+                fatia = new Fatia(ids, tamanho + 1);
+                return;
+            }
+
+            var posicao = Arrays.binarySearch(ids, 0, tamanho, id);
+            if (posicao >= 0) return;
+
+            posicao = -posicao - 1;
+            var novos = new int[Math.max(ids.length, tamanho + 1)];
+            System.arraycopy(ids, 0, novos, 0, posicao);
+            novos[posicao] = id;
+            System.arraycopy(ids, posicao, novos, posicao + 1, tamanho - posicao);
+            fatia = new Fatia(novos, tamanho + 1);
+        }
+
+        synchronized void remover(
+                int id
+        ) {
+            var atual = fatia;
+            var ids = atual.ids();
+            var tamanho = atual.tamanho();
+
+            var posicao = Arrays.binarySearch(ids, 0, tamanho, id);
+            if (posicao < 0) return;
+
+            var novos = new int[tamanho - 1 > ids.length / 4 ? ids.length : Math.max(4, tamanho)];
+            System.arraycopy(ids, 0, novos, 0, posicao);
+            System.arraycopy(ids, posicao + 1, novos, posicao, tamanho - posicao - 1);
+            fatia = new Fatia(novos, tamanho - 1);
+        }
+    }
+}
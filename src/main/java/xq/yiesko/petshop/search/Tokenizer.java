@@ -0,0 +1,97 @@
+package xq.yiesko.petshop.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Quebra textos em termos de busca.
+ * <p>
+ * Os termos são sequências de letras e dígitos sem acentos e em minúsculas, de
+ * modo que "João", "JOAO" e "joão" produzem o mesmo termo {@code joao}.
+ */
+public final class Tokenizer {
+
+    private Tokenizer() {}
+
+    /**
+     * Remove acentos e converte para minúsculas.
+     *
+     * @param texto texto original
+     * @return texto normalizado
+     */
+    public static String normalizar(
+            String texto
+    ) {
+        if (texto == null) return "";
+
+        var ascii = true;
+        for (var i = 0; i < texto.length() && ascii; i++) ascii = texto.charAt(i) < 0x80;
+        if (ascii) return texto.toLowerCase(Locale.ROOT);
+
+        var decomposto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        var resultado = new StringBuilder(decomposto.length());
+        for (var i = 0; i < decomposto.length(); i++) {
+            var c = decomposto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) resultado.append(c);
+        }
+        return resultado.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Extrai os termos de um texto.
+     *
+     * @param texto texto original, possivelmente nulo
+     * @return termos na ordem em que aparecem, com repetições
+     */
+    public static List<String> termos(
+            String texto
+    ) {
+        var termos = new ArrayList<String>();
+        adicionarTermos(texto, termos);
+        return termos;
+    }
+
+    /**
+     * Acrescenta os termos de um texto a uma lista.
+     *
+     * @param texto  texto original, possivelmente nulo
+     * @param termos lista que recebe os termos
+     */
+    public static void adicionarTermos(
+            String texto,
+            List<String> termos
+    ) {
+        var normalizado = normalizar(texto);
+        var inicio = -1;
+        for (var i = 0; i <= normalizado.length(); i++) {
+            var letraOuDigito = i < normalizado.length() && Character.isLetterOrDigit(normalizado.charAt(i));
+            if (letraOuDigito && inicio < 0) inicio = i;
+            else if (!letraOuDigito && inicio >= 0) {
+                termos.add(normalizado.substring(inicio, i));
+                inicio = -1;
+            }
+        }
+    }
+
+    /**
+     * Mantém apenas os dígitos, para que telefones sejam encontrados por qualquer
+     * prefixo independentemente da formatação.
+     *
+     * @param texto texto original, possivelmente nulo
+     * @return dígitos do texto, possivelmente vazio
+     */
+    public static String digitos(
+            String texto
+    ) {
+        if (texto == null) return "";
+
+        var digitos = new StringBuilder(texto.length());
+        for (var i = 0; i < texto.length(); i++) {
+            var c = texto.charAt(i);
+            if (c >= '0' && c <= '9') digitos.append(c);
+        }
+        return digitos.toString();
+    }
+}
@@ -0,0 +1,158 @@
+package xq.yiesko.petshop.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mapa de ocupação dos horários de cada veterinário.
+ * <p>
+ * O dia de atendimento é dividido em {@value #HORARIOS_POR_DIA} horários de
+ * {@value #DURACAO_MINUTOS} minutos a partir da abertura, e a ocupação de um
+ * veterinário em um dia é um bitset em um único {@link AtomicLong}. Reservar e
+ * liberar um horário são operações de compare-and-set nesse bitset, então duas
+ * tentativas simultâneas para o mesmo horário são resolvidas sem lock global:
+ * exatamente uma delas vence. Encontrar horários livres custa uma consulta ao
+ * mapa por dia percorrido, independentemente do histórico acumulado.
+ */
+final class AgendaVeterinarios {
+
+    static final LocalTime ABERTURA = LocalTime.of(8, 0);
+    static final int DURACAO_MINUTOS = 30;
+    static final int HORARIOS_POR_DIA = 20;
+
+    private static final long DIA_LIVRE = (1L << HORARIOS_POR_DIA) - 1;
+
+    private final ConcurrentMap<Long, AtomicLong> ocupacao = new ConcurrentHashMap<>();
+
+    /**
+     * Converte um horário para a sua posição no dia.
+     *
+     * @param horario horário de início
+     * @return posição do horário, de 0 a {@code HORARIOS_POR_DIA - 1}
+     * @throws IllegalArgumentException se o horário estiver fora da grade
+     */
+    static int posicao(
+            LocalTime horario
+    ) {
+        var minutos = (horario.toSecondOfDay() - ABERTURA.toSecondOfDay()) / 60;
+        if (horario.getSecond() != 0 || horario.getNano() != 0 || minutos < 0
+                || minutos % DURACAO_MINUTOS != 0 || minutos / DURACAO_MINUTOS >= HORARIOS_POR_DIA)
+            throw new IllegalArgumentException("Horário deve estar entre " + ABERTURA + " e "
+                + horarioDe(HORARIOS_POR_DIA - 1) + ", em intervalos de " + DURACAO_MINUTOS + " minutos");
+        return minutos / DURACAO_MINUTOS;
+    }
+
+    /**
+     * Reserva um horário.
+     *
+     * @param veterinarioId veterinário
+     * @param data          dia
+     * @param horario       horário de início
+     * @return true se o horário estava livre e foi reservado
+     */
+    boolean reservar(
+            int veterinarioId,
+            LocalDate data,
+            LocalTime horario
+    ) {
+        var bit = 1L << posicao(horario);
+        var dia = ocupacao.computeIfAbsent(chave(veterinarioId, data), k -> new AtomicLong());
+
+        while (true) {
+            var atual = dia.get();
+            if ((atual & bit) != 0) return false;
+            if (dia.compareAndSet(atual, atual | bit)) return true;
+        }
+    }
+
+    /**
+     * Libera um horário reservado.
+     *
+     * @param veterinarioId veterinário
+     * @param data          dia
+     * @param horario       horário de início
+     */
+    void liberar(
+            int veterinarioId,
+            LocalDate data,
+            LocalTime horario
+    ) {
+        var dia = ocupacao.get(chave(veterinarioId, data));
+        if (dia != null) dia.getAndUpdate(atual -> atual & ~(1L << posicao(horario)));
+    }
+
+    /**
+     * Conta os horários reservados de um veterinário em um dia.
+     *
+     * @param veterinarioId veterinário
+     * @param data          dia
+     * @return quantidade de horários ocupados, de 0 a {@value #HORARIOS_POR_DIA}
+     */
+    int ocupados(
+            int veterinarioId,
+            LocalDate data
+    ) {
+        var dia = ocupacao.get(chave(veterinarioId, data));
+        return dia != null ? Long.bitCount(dia.get()) : 0;
+    }
+
+    /**
+     * Encontra os próximos horários livres de um veterinário.
+     *
+     * @param veterinarioId veterinário
+     * @param aPartirDe     instante a partir do qual procurar, inclusive
+     * @param quantidade    quantidade de horários desejada
+     * @return horários livres em ordem cronológica
+     */
+    List<LocalDateTime> proximosLivres(
+            int veterinarioId,
+            LocalDateTime aPartirDe,
+            int quantidade
+    ) {
+        var livres = new ArrayList<LocalDateTime>(quantidade);
+        var data = aPartirDe.toLocalDate();
+        var primeiro = primeiraPosicaoApos(aPartirDe.toLocalTime());
+
+        while (livres.size() < quantidade) {
+            var dia = ocupacao.get(chave(veterinarioId, data));
+            var disponiveis = ~(dia != null ? dia.get() : 0) & DIA_LIVRE & (DIA_LIVRE << primeiro);
+
+            while (disponiveis != 0 && livres.size() < quantidade) {
+                var posicao = Long.numberOfTrailingZeros(disponiveis);
+                livres.add(LocalDateTime.of(data, horarioDe(posicao)));
+                disponiveis &= disponiveis - 1;
+            }
+
+            data = data.plusDays(1);
+            primeiro = 0;
+        }
+        return livres;
+    }
+
+    private static int primeiraPosicaoApos(
+            LocalTime horario
+    ) {
+        var minutos = (horario.toSecondOfDay() - ABERTURA.toSecondOfDay() + 59) / 60;
+        if (minutos <= 0) return 0;
+        return Math.min(HORARIOS_POR_DIA, (minutos + DURACAO_MINUTOS - 1) / DURACAO_MINUTOS);
+    }
+
+    private static LocalTime horarioDe(
+            int posicao
+    ) {
+        return ABERTURA.plusMinutes((long) posicao * DURACAO_MINUTOS);
+    }
+
+    private static long chave(
+            int veterinarioId,
+            LocalDate data
+    ) {
+        return (long) veterinarioId << 32 | (data.toEpochDay() & 0xFFFFFFFFL);
+    }
+}
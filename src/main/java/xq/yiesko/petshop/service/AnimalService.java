@@ -1,30 +1,56 @@
 package xq.yiesko.petshop.service;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import xq.yiesko.petshop.model.Animal;
 import xq.yiesko.petshop.model.Cachorro;
 import xq.yiesko.petshop.model.Gato;
 import xq.yiesko.petshop.model.Proprietario;
-import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.Retrato;
+import xq.yiesko.petshop.search.SearchIndex;
 import xq.yiesko.petshop.util.ValidationUtils;
 
 /**
  * Regras de negócio para animais.
+ * <p>
+ * Mantém o índice reverso do proprietário para os seus animais e impede a remoção
+ * de animais que ainda possuem consultas, a menos que seja feita em cascata. Um
+ * animal removido é antes bloqueado no {@link ConsultaService}, e um proprietário
+ * removido é antes bloqueado aqui, para que nenhuma referência criada ao mesmo
+ * tempo aponte para o registro removido.
  */
 public class AnimalService {
 
-    private final InMemoryRepository<Animal> repository;
+    private static final int TRAVAS_INDICE = 64;
+
+    private final Repository<Animal> repository;
+    private final ConsultaService consultaService;
+    private final Referencias porProprietario = new Referencias();
+    private final SearchIndex<Animal> busca = new SearchIndex<>(animal -> List.of(animal.getNome(), animal.getEspecie()));
+    private final Object[] travasIndice = new Object[TRAVAS_INDICE];
+    private final ReentrantReadWriteLock bloqueio = new ReentrantReadWriteLock();
+    private final BitSet proprietariosBloqueados = new BitSet();
 
     /**
      * Cria o serviço utilizando o repositório informado.
      *
-     * @param repository repositório responsável pelo armazenamento
+     * @param repository      repositório responsável pelo armazenamento
+     * @param consultaService serviço de consultas, usado para verificar e remover as consultas de um animal
      */
     public AnimalService(
-            InMemoryRepository<Animal> repository
+            Repository<Animal> repository,
+            ConsultaService consultaService
     ) {
         this.repository = repository;
+        this.consultaService = consultaService;
+        for (var i = 0; i < travasIndice.length; i++) travasIndice[i] = new Object();
+        repository.paraCada(this::indexar);
     }
 
     /**
@@ -63,10 +89,199 @@ public class AnimalService {
         return cadastrarAnimal(new Gato(validarNome(nome), validarIdade(idade), validarEspecie(especie), validarProprietario(proprietario)));
     }
 
+    /**
+     * Cadastra um lote de cães e gatos com uma única inclusão no repositório.
+     * <p>
+     * O lote é tudo ou nada: todos são validados antes de qualquer inclusão.
+     *
+     * @param animais animais a cadastrar, ainda sem identificador
+     * @return animais persistidos, na mesma ordem
+     * @throws IllegalArgumentException se algum animal for inválido
+     */
+    public List<Animal> cadastrarTodos(
+            List<Animal> animais
+    ) {
+        validarTodos(animais);
+        return semBloqueio(() -> {
+            for (var animal : animais) validarCadastro(animal.getProprietario());
+            repository.adicionarTodos(animais);
+            for (var animal : animais) reindexar(animal.getId());
+            return animais;
+        });
+    }
+
+    /**
+     * Atualiza um lote de animais com uma única substituição no repositório.
+     * <p>
+     * O lote é tudo ou nada: todos são validados antes, e se algum não existir
+     * nenhum é alterado no repositório.
+     *
+     * @param animais animais com os novos dados
+     * @return true se todos existiam e foram atualizados
+     * @throws IllegalArgumentException se algum animal for inválido
+     */
+    public boolean atualizarTodos(
+            List<Animal> animais
+    ) {
+        validarTodos(animais);
+        return semBloqueio(() -> {
+            for (var animal : animais) validarCadastro(animal.getProprietario());
+            if (!repository.atualizarTodos(animais)) return false;
+
+            for (var animal : animais) reindexar(animal.getId());
+            return true;
+        });
+    }
+
+    /**
+     * Remove um lote de animais com uma única remoção no repositório.
+     *
+     * @param ids identificadores dos animais
+     * @return quantidade de animais removidos
+     * @throws IllegalArgumentException se algum animal possuir consultas agendadas ou arquivadas; nesse caso nenhum é removido
+     */
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        return RemocaoBloqueada.aplicar(repository, ids, consultaService::bloquearAnimais, consultaService::desbloquearAnimais, () -> {
+            var removidos = repository.removerTodos(ids);
+            for (var id : ids) reindexar(id);
+            return removidos;
+        });
+    }
+
+    /**
+     * Passa a recusar animais dos proprietários informados, que vão ser removidos.
+     * <p>
+     * A verificação e o bloqueio são feitos sem cadastros ou atualizações de animais
+     * em andamento, então um animal gravado ao mesmo tempo ou termina antes e impede
+     * o bloqueio, ou começa depois e é recusado. O bloqueio só é desfeito, por
+     * {@link #desbloquearProprietarios(List)}, se a remoção falhar.
+     *
+     * @param proprietarioIds identificadores de proprietários cadastrados
+     * @throws IllegalArgumentException se algum proprietário possuir animais cadastrados; nesse caso nenhum é bloqueado
+     */
+    public void bloquearProprietarios(
+            List<Integer> proprietarioIds
+    ) {
+        var trava = bloqueio.writeLock();
+        trava.lock();
+        try {
+            for (var id : proprietarioIds)
+                if (porProprietario.possui(id)) throw new IllegalArgumentException("Proprietário " + id + " possui animais cadastrados");
+            synchronized (proprietariosBloqueados) {
+                for (var id : proprietarioIds) proprietariosBloqueados.set(id);
+            }
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Volta a aceitar animais de proprietários cuja remoção falhou.
+     *
+     * @param proprietarioIds identificadores dos proprietários que continuam cadastrados
+     */
+    public void desbloquearProprietarios(
+            List<Integer> proprietarioIds
+    ) {
+        synchronized (proprietariosBloqueados) {
+            for (var id : proprietarioIds) proprietariosBloqueados.clear(id);
+        }
+    }
+
+    /**
+     * Executa uma gravação de animais sem que um proprietário seja bloqueado no meio
+     * dela, da verificação do proprietário até a indexação.
+     */
+    private <R> R semBloqueio(
+            Supplier<R> escrita
+    ) {
+        var trava = bloqueio.readLock();
+        trava.lock();
+        try {
+            return escrita.get();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    private void validarCadastro(
+            Proprietario proprietario
+    ) {
+        synchronized (proprietariosBloqueados) {
+            if (proprietario.getId() >= 0 && proprietariosBloqueados.get(proprietario.getId()))
+                throw new IllegalArgumentException("Proprietário não está mais cadastrado");
+        }
+    }
+
+    private void validarTodos(
+            List<Animal> animais
+    ) {
+        for (var animal : animais) {
+            validarNome(animal.getNome());
+            validarIdade(animal.getIdade());
+            validarEspecie(animal.getEspecie());
+            validarProprietario(animal.getProprietario());
+        }
+        for (var animal : animais) {
+            animal.setNome(animal.getNome().trim());
+            animal.setEspecie(animal.getEspecie().trim());
+        }
+    }
+
+    private void indexar(
+            Animal animal
+    ) {
+        busca.indexar(animal);
+        porProprietario.definir(animal.getId(), proprietarioId(animal));
+    }
+
+    private void desindexar(
+            int id
+    ) {
+        busca.desindexar(id);
+        porProprietario.definir(id, 0);
+    }
+
+    /**
+     * Atualiza o índice de busca e o índice do proprietário depois de uma alteração feita diretamente no
+     * repositório, sem passar pelo serviço, como as que a replicação aplica à cópia
+     * de um seguidor.
+     *
+     * @param id identificador de um animal incluído, alterado ou removido
+     */
+    public void sincronizar(
+            int id
+    ) {
+        reindexar(id);
+    }
+
+    /**
+     * Leva o índice de busca e o índice do proprietário ao estado de um animal no
+     * repositório, depois de uma escrita. As chamadas para um mesmo identificador são
+     * serializadas e sempre releem o repositório, então a última delas vê o estado
+     * final: uma atualização que termina depois de uma remoção concorrente não volta
+     * a indexar um animal removido nem deixa no índice um nome ou um proprietário
+     * antigo.
+     */
+    private void reindexar(
+            int id
+    ) {
+        synchronized (travasIndice[id & (TRAVAS_INDICE - 1)]) {
+            repository.buscarPorId(id).ifPresentOrElse(this::indexar, () -> desindexar(id));
+        }
+    }
+
     private Animal cadastrarAnimal(
             Animal animal
     ) {
-        return repository.adicionar(animal);
+        return semBloqueio(() -> {
+            validarCadastro(animal.getProprietario());
+            var novo = repository.adicionar(animal);
+            reindexar(novo.getId());
+            return novo;
+        });
     }
 
     private String validarNome(
@@ -98,7 +313,7 @@ public class AnimalService {
     }
 
     /**
-     * Atualiza os dados de um animal.
+     * Atualiza os dados de um animal sobre o seu estado mais recente.
      *
      * @param id          identificador do animal
      * @param nome        novo nome
@@ -114,15 +329,61 @@ public class AnimalService {
             String especie,
             Proprietario proprietario
     ) {
-        var animalOpt = repository.buscarPorId(id);
-        if (animalOpt.isEmpty()) return false;
+        return atualizarVersao(id, nome, idade, especie, proprietario, AtualizacaoOtimista.QUALQUER_VERSAO);
+    }
 
-        var animal = animalOpt.get();
-        animal.setNome(validarNome(nome));
-        animal.setIdade(validarIdade(idade));
-        animal.setEspecie(validarEspecie(especie));
-        animal.setProprietario(validarProprietario(proprietario));
-        return repository.atualizar(animal);
+    /**
+     * Atualiza os dados de um animal somente se ele ainda estiver na versão lida.
+     *
+     * @param id             identificador do animal
+     * @param nome           novo nome
+     * @param idade          nova idade
+     * @param especie        nova espécie
+     * @param proprietario   novo proprietário
+     * @param versaoEsperada versão lida antes da edição
+     * @return true se houve atualização
+     * @throws IllegalStateException se o animal foi alterado depois da leitura
+     */
+    public boolean atualizarAnimal(
+            int id,
+            String nome,
+            int idade,
+            String especie,
+            Proprietario proprietario,
+            int versaoEsperada
+    ) {
+        ValidationUtils.requirePositive(versaoEsperada, "Versão deve ser positiva");
+        return atualizarVersao(id, nome, idade, especie, proprietario, versaoEsperada);
+    }
+
+    private boolean atualizarVersao(
+            int id,
+            String nome,
+            int idade,
+            String especie,
+            Proprietario proprietario,
+            int versaoEsperada
+    ) {
+        var novoNome = validarNome(nome);
+        var novaIdade = validarIdade(idade);
+        var novaEspecie = validarEspecie(especie);
+        var novoProprietario = validarProprietario(proprietario);
+
+        return semBloqueio(() -> {
+            validarCadastro(novoProprietario);
+            var animal = AtualizacaoOtimista.aplicar(repository, id, versaoEsperada, atual -> {
+                var copia = atual.copiar();
+                copia.setNome(novoNome);
+                copia.setIdade(novaIdade);
+                copia.setEspecie(novaEspecie);
+                copia.setProprietario(novoProprietario);
+                return copia;
+            });
+            if (animal == null) return false;
+
+            reindexar(id);
+            return true;
+        });
     }
 
     /**
@@ -130,11 +391,87 @@ public class AnimalService {
      *
      * @param id identificador buscado
      * @return true se o registro foi removido
+     * @throws IllegalArgumentException se o animal possuir consultas agendadas ou arquivadas
      */
     public boolean removerAnimal(
             int id
     ) {
-        return repository.remover(id);
+        return RemocaoBloqueada.aplicar(repository, List.of(id), consultaService::bloquearAnimais, consultaService::desbloquearAnimais, () -> {
+            if (!repository.remover(id)) return false;
+
+            reindexar(id);
+            return true;
+        });
+    }
+
+    /**
+     * Remove um animal e cancela todas as suas consultas.
+     *
+     * @param id identificador buscado
+     * @return true se o registro foi removido
+     * @throws IllegalArgumentException se o animal possuir consultas arquivadas, que não
+     *                                  podem ser canceladas; nesse caso nada é cancelado
+     */
+    public boolean removerAnimalEmCascata(
+            int id
+    ) {
+        if (consultaService.possuiConsultasArquivadasDoAnimal(id))
+            throw new IllegalArgumentException("Animal possui consultas arquivadas");
+
+        consultaService.cancelarDoAnimal(id);
+        return removerAnimal(id);
+    }
+
+    /**
+     * Remove todos os animais de um proprietário, com as suas consultas.
+     *
+     * @param proprietarioId identificador do proprietário
+     * @return quantidade de animais removidos
+     * @throws IllegalArgumentException se algum animal possuir consultas arquivadas; nesse
+     *                                  caso nada é cancelado nem removido
+     */
+    public int removerDoProprietario(
+            int proprietarioId
+    ) {
+        var ids = porProprietario.de(proprietarioId);
+        for (var id : ids)
+            if (consultaService.possuiConsultasArquivadasDoAnimal(id))
+                throw new IllegalArgumentException("Animal " + id + " possui consultas arquivadas");
+
+        for (var id : ids) consultaService.cancelarDoAnimal(id);
+        return removerTodos(ids);
+    }
+
+    /**
+     * Verifica em tempo constante se um proprietário possui animais cadastrados.
+     *
+     * @param proprietarioId identificador do proprietário
+     * @return true se algum animal referencia o proprietário
+     */
+    public boolean possuiAnimais(
+            int proprietarioId
+    ) {
+        return porProprietario.possui(proprietarioId);
+    }
+
+    /**
+     * Lista os animais de um proprietário sem percorrer o cadastro completo.
+     *
+     * @param proprietario proprietário responsável
+     * @return animais do proprietário, na ordem de cadastro
+     */
+    public List<Animal> listarPorProprietario(
+            Proprietario proprietario
+    ) {
+        var animais = new ArrayList<Animal>();
+        for (var id : porProprietario.de(validarProprietario(proprietario).getId())) repository.buscarPorId(id).ifPresent(animais::add);
+        return animais;
+    }
+
+    private static int proprietarioId(
+            Animal animal
+    ) {
+        return animal.getProprietario() != null ? animal.getProprietario().getId() : 0;
     }
 
     /**
@@ -146,6 +483,83 @@ public class AnimalService {
         return repository.listar();
     }
 
+    /**
+     * Lista uma página de animais, na ordem de cadastro.
+     *
+     * @param deslocamento quantidade de registros a pular
+     * @param limite       tamanho máximo da página
+     * @return página de animais
+     */
+    public List<Animal> listarAnimais(
+            int deslocamento,
+            int limite
+    ) {
+        ValidationUtils.requireNonNegative(deslocamento, "Deslocamento não pode ser negativo");
+        ValidationUtils.requirePositive(limite, "Limite deve ser positivo");
+        return repository.listar(deslocamento, limite);
+    }
+
+    /**
+     * Lista a página de animais seguinte ao identificador informado.
+     *
+     * @param aposId identificador do último registro da página anterior, ou 0 para a primeira página
+     * @param limite tamanho máximo da página
+     * @return página de animais
+     */
+    public List<Animal> listarAnimaisApos(
+            int aposId,
+            int limite
+    ) {
+        ValidationUtils.requirePositive(limite, "Limite deve ser positivo");
+        return repository.listarApos(aposId, limite);
+    }
+
+    /**
+     * Percorre os animais sem copiar a coleção.
+     *
+     * @return stream de animais, na ordem de cadastro
+     */
+    public Stream<Animal> streamAnimais() {
+        return repository.stream();
+    }
+
+    /**
+     * Obtém um retrato imutável de todos os animais no instante da chamada.
+     *
+     * @return retrato dos animais
+     */
+    public Retrato<Animal> retratoAnimais() {
+        return repository.retrato();
+    }
+
+    /**
+     * Obtém a quantidade de animais cadastrados.
+     *
+     * @return quantidade de registros
+     */
+    public int quantidadeAnimais() {
+        return repository.tamanho();
+    }
+
+    /**
+     * Busca animais por prefixos do nome ou da espécie, como em um campo de
+     * autocompletar.
+     *
+     * @param termo  texto digitado, sem distinção de maiúsculas ou acentos
+     * @param limite quantidade máxima de resultados
+     * @return animais encontrados
+     */
+    public List<Animal> buscarAnimais(
+            String termo,
+            int limite
+    ) {
+        ValidationUtils.requirePositive(limite, "Limite deve ser positivo");
+
+        var encontrados = new ArrayList<Animal>();
+        for (var id : busca.buscar(termo, limite)) repository.buscarPorId(id).ifPresent(encontrados::add);
+        return encontrados;
+    }
+
     /**
      * Busca um animal pelo identificador.
      *
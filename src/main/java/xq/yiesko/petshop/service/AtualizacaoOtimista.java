@@ -0,0 +1,66 @@
+package xq.yiesko.petshop.service;
+
+import java.util.function.UnaryOperator;
+import xq.yiesko.petshop.model.impl.Identificavel;
+import xq.yiesko.petshop.repository.Repository;
+
+/**
+ * Atualização otimista de entidades.
+ * <p>
+ * O estado atual é lido e copiado, a cópia é alterada fora do repositório e só
+ * substitui o original se a versão não tiver mudado nesse meio tempo. A instância
+ * guardada no repositório nunca é alterada, então leitores concorrentes não veem
+ * campos pela metade e duas edições simultâneas não se misturam.
+ */
+final class AtualizacaoOtimista {
+
+    /**
+     * Versão esperada que aceita qualquer versão armazenada: a alteração é
+     * reaplicada sobre o estado mais recente e a última escrita vence.
+     */
+    static final int QUALQUER_VERSAO = -1;
+
+    private AtualizacaoOtimista() {}
+
+    /**
+     * Aplica uma alteração a uma cópia da entidade e a grava por compare-and-set.
+     *
+     * @param repository     repositório da entidade
+     * @param id             identificador da entidade
+     * @param versaoEsperada versão lida pelo chamador, ou {@link #QUALQUER_VERSAO}
+     * @param alteracao      cria a cópia alterada a partir do estado atual, sem modificá-lo
+     * @param <T>            tipo da entidade
+     * @return novo estado gravado, ou {@code null} se a entidade não existir
+     * @throws IllegalStateException se a entidade não estiver mais na versão esperada
+     */
+    static <T extends Identificavel> T aplicar(
+            Repository<T> repository,
+            int id,
+            int versaoEsperada,
+            UnaryOperator<T> alteracao
+    ) {
+        while (true) {
+            var atual = repository.buscarPorId(id).orElse(null);
+            if (atual == null) return null;
+            verificar(atual, versaoEsperada);
+
+            var novo = alteracao.apply(atual);
+            if (repository.atualizar(novo, atual.getVersao())) return novo;
+        }
+    }
+
+    /**
+     * Confere a versão lida pelo chamador com a versão atual da entidade.
+     *
+     * @param atual          estado atual
+     * @param versaoEsperada versão lida pelo chamador, ou {@link #QUALQUER_VERSAO}
+     * @throws IllegalStateException se as versões forem diferentes
+     */
+    static void verificar(
+            Identificavel atual,
+            int versaoEsperada
+    ) {
+        if (versaoEsperada != QUALQUER_VERSAO && atual.getVersao() != versaoEsperada)
+            throw new IllegalStateException("Registro alterado por outra operação; consulte-o novamente");
+    }
+}
@@ -0,0 +1,267 @@
+package xq.yiesko.petshop.service;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.texto.Dicionario;
+
+/**
+ * Cópia em colunas dos campos de consulta usados nas análises: dia, veterinário,
+ * animal e código da espécie, cada um em um {@code int[]} indexado pelo
+ * identificador da consulta.
+ * <p>
+ * Percorrer objetos {@link Consulta} salta de referência em referência até a data,
+ * o veterinário e o animal, e cada salto pode ser uma falta de cache. Nas colunas,
+ * uma contagem lê só os arrays dos campos que filtra ou agrupa, em sequência, e o
+ * laço é simples o bastante para o compilador desenrolar: contar um ano de
+ * consultas por veterinário custa a leitura de dois arrays contíguos.
+ * <p>
+ * As escritas são serializadas por um {@link StampedLock}. As varreduras começam
+ * sem lock, em leitura otimista, e só são refeitas com o lock de leitura se uma
+ * escrita tiver acontecido no meio delas. Consultas canceladas ficam com o dia
+ * {@link #AUSENTE}, que nenhum período inclui; consultas arquivadas mantêm a sua
+ * linha. Como em {@link ContadoresConsulta}, a espécie é a da versão do animal
+ * referenciada pela consulta.
+ */
+final class ColunasConsulta {
+
+    private static final int AUSENTE = Integer.MIN_VALUE;
+    private static final int CAPACIDADE_INICIAL = 1024;
+
+    private final StampedLock trava = new StampedLock();
+    private int[] dias = ausentes(CAPACIDADE_INICIAL);
+    private int[] veterinarios = new int[CAPACIDADE_INICIAL];
+    private int[] animais = new int[CAPACIDADE_INICIAL];
+    private int[] especies = new int[CAPACIDADE_INICIAL];
+    private int linhas;
+    private int maiorVeterinario;
+    private int maiorAnimal;
+
+    /**
+     * Grava ou regrava a linha de uma consulta.
+     *
+     * @param consulta consulta persistida
+     */
+    void gravar(
+            Consulta consulta
+    ) {
+        gravar(consulta.getId(), consulta.getData(), consulta.getVeterinario().getId(), consulta.getAnimal().getId(),
+            consulta.getAnimal().getCodigoEspecie());
+    }
+
+    /**
+     * Grava a linha de uma consulta a partir dos seus campos, para consultas lidas
+     * do arquivo sem resolver animal e veterinário.
+     *
+     * @param id          identificador da consulta
+     * @param data        data da consulta
+     * @param veterinario identificador do veterinário
+     * @param animal      identificador do animal
+     * @param especie     código da espécie no {@link Dicionario#ESPECIES}
+     */
+    void gravar(
+            int id,
+            LocalDate data,
+            int veterinario,
+            int animal,
+            int especie
+    ) {
+        var dia = (int) data.toEpochDay();
+
+        var stamp = trava.writeLock();
+        try {
+            if (id >= dias.length) crescer(id + 1);
+            dias[id] = dia;
+            veterinarios[id] = veterinario;
+            animais[id] = animal;
+            especies[id] = especie;
+            linhas = Math.max(linhas, id + 1);
+            maiorVeterinario = Math.max(maiorVeterinario, veterinario);
+            maiorAnimal = Math.max(maiorAnimal, animal);
+        } finally {
+            trava.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Retira a linha de uma consulta cancelada.
+     *
+     * @param id identificador da consulta
+     */
+    void apagar(
+            int id
+    ) {
+        var stamp = trava.writeLock();
+        try {
+            if (id < linhas) dias[id] = AUSENTE;
+        } finally {
+            trava.unlockWrite(stamp);
+        }
+    }
+
+    private void crescer(
+            int minimo
+    ) {
+        var capacidade = Math.max(minimo, dias.length * 2);
+        var anteriores = dias.length;
+        dias = Arrays.copyOf(dias, capacidade);
+        Arrays.fill(dias, anteriores, capacidade, AUSENTE);
+        veterinarios = Arrays.copyOf(veterinarios, capacidade);
+        animais = Arrays.copyOf(animais, capacidade);
+        especies = Arrays.copyOf(especies, capacidade);
+    }
+
+    int contar(
+            FiltroConsultas filtro
+    ) {
+        return ler(colunas -> {
+            var criterio = Criterio.de(filtro);
+            var total = 0;
+            for (var i = 0; i < colunas.linhas(); i++) if (criterio.aceita(colunas, i)) total++;
+            return total;
+        });
+    }
+
+    Map<Integer, Integer> porVeterinario(
+            FiltroConsultas filtro
+    ) {
+        return ler(colunas -> agrupar(colunas, Criterio.de(filtro), colunas.veterinarios(), colunas.maiorVeterinario()));
+    }
+
+    Map<Integer, Integer> porAnimal(
+            FiltroConsultas filtro
+    ) {
+        return ler(colunas -> agrupar(colunas, Criterio.de(filtro), colunas.animais(), colunas.maiorAnimal()));
+    }
+
+    Map<String, Integer> porEspecie(
+            FiltroConsultas filtro
+    ) {
+        var porCodigo = ler(colunas -> agrupar(colunas, Criterio.de(filtro), colunas.especies(), Dicionario.ESPECIES.tamanho()));
+        var resultado = new HashMap<String, Integer>();
+        porCodigo.forEach((codigo, quantidade) -> {
+            var especie = Dicionario.ESPECIES.decodificar(codigo);
+            resultado.merge(especie != null ? especie : "", quantidade, Integer::sum);
+        });
+        return resultado;
+    }
+
+    private static Map<Integer, Integer> agrupar(
+            Colunas colunas,
+            Criterio criterio,
+            int[] chaves,
+            int maiorChave
+    ) {
+        var contagens = new int[maiorChave + 1];
+        for (var i = 0; i < colunas.linhas(); i++) {
+            if (!criterio.aceita(colunas, i)) continue;
+            var chave = chaves[i];
+            if (chave < contagens.length) contagens[chave]++;
+        }
+
+        var resultado = new HashMap<Integer, Integer>();
+        for (var chave = 0; chave < contagens.length; chave++)
+            if (contagens[chave] > 0) resultado.put(chave, contagens[chave]);
+        return resultado;
+    }
+
+    /**
+     * Executa uma varredura primeiro em leitura otimista e, se alguma escrita a
+     * invalidar, de novo com o lock de leitura.
+     * <p>
+     * Na leitura otimista as colunas podem estar sendo trocadas por versões maiores;
+     * a quantidade de linhas é limitada ao menor dos arrays lidos, e qualquer
+     * resultado dessa leitura é descartado se o carimbo não for mais válido.
+     */
+    private <R> R ler(
+            Function<Colunas, R> varredura
+    ) {
+        var stamp = trava.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                var resultado = varredura.apply(colunas());
+                if (trava.validate(stamp)) return resultado;
+            } catch (RuntimeException e) {
+                if (trava.validate(stamp)) throw e;
+            }
+        }
+
+        stamp = trava.readLock();
+        try {
+            return varredura.apply(colunas());
+        } finally {
+            trava.unlockRead(stamp);
+        }
+    }
+
+    private Colunas colunas() {
+        var dias = this.dias;
+        var veterinarios = this.veterinarios;
+        var animais = this.animais;
+        var especies = this.especies;
+        var linhas = Math.min(this.linhas, Math.min(Math.min(dias.length, veterinarios.length), Math.min(animais.length, especies.length)));
+        return new Colunas(dias, veterinarios, animais, especies, linhas, maiorVeterinario, maiorAnimal);
+    }
+
+    private static int[] ausentes(
+            int capacidade
+    ) {
+        var dias = new int[capacidade];
+        Arrays.fill(dias, AUSENTE);
+        return dias;
+    }
+
+    private record Colunas(
+            int[] dias,
+            int[] veterinarios,
+            int[] animais,
+            int[] especies,
+            int linhas,
+            int maiorVeterinario,
+            int maiorAnimal
+    ) {
+    }
+
+    /**
+     * Filtro traduzido para valores das colunas. Uma espécie que nunca foi
+     * registrada no dicionário não aceita nenhuma linha.
+     */
+    private record Criterio(
+            int inicio,
+            int fim,
+            int veterinario,
+            int animal,
+            int especie
+    ) {
+
+        private static final int QUALQUER = -1;
+        private static final int NENHUMA = -2;
+
+        static Criterio de(
+                FiltroConsultas filtro
+        ) {
+            var especie = filtro.especie() == null ? QUALQUER : Dicionario.ESPECIES.procurar(filtro.especie());
+            return new Criterio(
+                (int) filtro.inicio().toEpochDay(),
+                (int) filtro.fim().toEpochDay(),
+                filtro.veterinarioId(),
+                filtro.animalId(),
+                especie == QUALQUER && filtro.especie() != null ? NENHUMA : especie);
+        }
+
+        boolean aceita(
+                Colunas colunas,
+                int i
+        ) {
+            var dia = colunas.dias()[i];
+            return dia >= inicio && dia <= fim
+                && (veterinario == 0 || colunas.veterinarios()[i] == veterinario)
+                && (animal == 0 || colunas.animais()[i] == animal)
+                && (especie == QUALQUER || colunas.especies()[i] == especie);
+        }
+    }
+}
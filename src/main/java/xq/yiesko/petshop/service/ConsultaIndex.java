@@ -0,0 +1,208 @@
+package xq.yiesko.petshop.service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import xq.yiesko.petshop.model.Consulta;
+
+/**
+ * Índices secundários das consultas por data, por veterinário e por animal.
+ * <p>
+ * Cada índice é uma agenda ordenada por data, o que permite responder consultas
+ * de intervalo em O(log n + k). A chave usada na última indexação de cada consulta
+ * é guardada para que reindexar uma consulta alterada em memória remova as
+ * entradas antigas sem depender dos valores anteriores.
+ * <p>
+ * Cada agenda conta as suas consultas, o que permite saber em tempo constante se
+ * um animal ou veterinário ainda é referenciado por alguma consulta.
+ * <p>
+ * As agendas guardam só a posição de cada consulta, que já contém o identificador,
+ * e nunca a instância: quem consulta o índice resolve os identificadores no
+ * repositório. Assim o índice não prende as consultas, nem os animais e
+ * veterinários delas, no heap de um repositório que as guarda em disco.
+ */
+final class ConsultaIndex {
+
+    private final Agenda geral = new Agenda();
+    private final ConcurrentMap<Integer, Agenda> porVeterinario = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Agenda> porAnimal = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Chave> indexadas = new ConcurrentHashMap<>();
+
+    /**
+     * Indexa uma consulta nova ou reindexa uma consulta já conhecida.
+     *
+     * @param consulta consulta persistida
+     */
+    void indexar(
+            Consulta consulta
+    ) {
+        indexadas.compute(consulta.getId(), (id, anterior) -> {
+            if (anterior != null) remover(id, anterior);
+
+            var chave = new Chave(consulta.getData(), consulta.getHorario(), consulta.getVeterinario().getId(), consulta.getAnimal().getId());
+            geral.adicionar(chave, id);
+            porVeterinario.computeIfAbsent(chave.veterinarioId(), k -> new Agenda()).adicionar(chave, id);
+            porAnimal.computeIfAbsent(chave.animalId(), k -> new Agenda()).adicionar(chave, id);
+            return chave;
+        });
+    }
+
+    /**
+     * Remove uma consulta de todos os índices.
+     *
+     * @param id identificador da consulta
+     */
+    void desindexar(
+            int id
+    ) {
+        indexadas.computeIfPresent(id, (k, anterior) -> {
+            remover(k, anterior);
+            return null;
+        });
+    }
+
+    /**
+     * Obtém a chave usada na última indexação de uma consulta, que reflete os
+     * valores persistidos mesmo que a instância já tenha sido alterada em memória.
+     *
+     * @param id identificador da consulta
+     * @return chave indexada ou {@code null} se a consulta não estiver indexada
+     */
+    Chave chave(
+            int id
+    ) {
+        return indexadas.get(id);
+    }
+
+    List<Integer> porPeriodo(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        return geral.entre(inicio, fim);
+    }
+
+    /**
+     * Obtém o dia da consulta indexada mais antiga.
+     *
+     * @return primeiro dia com consultas, ou {@code null} se não houver nenhuma
+     */
+    LocalDate primeiroDia() {
+        return geral.primeiroDia();
+    }
+
+    List<Integer> porVeterinario(
+            int veterinarioId,
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        var agenda = porVeterinario.get(veterinarioId);
+        return agenda == null ? List.of() : agenda.entre(inicio, fim);
+    }
+
+    List<Integer> porAnimal(
+            int animalId,
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        var agenda = porAnimal.get(animalId);
+        return agenda == null ? List.of() : agenda.entre(inicio, fim);
+    }
+
+    boolean possuiDoVeterinario(
+            int veterinarioId
+    ) {
+        var agenda = porVeterinario.get(veterinarioId);
+        return agenda != null && agenda.quantidade() > 0;
+    }
+
+    boolean possuiDoAnimal(
+            int animalId
+    ) {
+        var agenda = porAnimal.get(animalId);
+        return agenda != null && agenda.quantidade() > 0;
+    }
+
+    private void remover(
+            int id,
+            Chave chave
+    ) {
+        geral.remover(chave, id);
+
+        var veterinario = porVeterinario.get(chave.veterinarioId());
+        if (veterinario != null) veterinario.remover(chave, id);
+
+        var animal = porAnimal.get(chave.animalId());
+        if (animal != null) animal.remover(chave, id);
+    }
+
+    record Chave(
+            LocalDate data,
+            LocalTime horario,
+            int veterinarioId,
+            int animalId
+    ) {
+
+        /**
+         * Posição da consulta dentro do dia: o horário nos bits altos e o
+         * identificador nos baixos, de modo que consultas sem horário vêm
+         * primeiro e empates são desfeitos pela ordem de agendamento.
+         */
+        long posicaoNoDia(
+                int id
+        ) {
+            long segundos = horario != null ? horario.toSecondOfDay() + 1 : 0;
+            return segundos << 32 | (id & 0xFFFFFFFFL);
+        }
+    }
+
+    /**
+     * Identificadores de consultas agrupados por dia e, dentro do dia, pelo horário.
+     */
+    private static final class Agenda {
+
+        private final ConcurrentNavigableMap<LocalDate, ConcurrentSkipListSet<Long>> dias = new ConcurrentSkipListMap<>();
+        private final AtomicInteger quantidade = new AtomicInteger();
+
+        void adicionar(
+                Chave chave,
+                int id
+        ) {
+            if (dias.computeIfAbsent(chave.data(), d -> new ConcurrentSkipListSet<>()).add(chave.posicaoNoDia(id)))
+                quantidade.incrementAndGet();
+        }
+
+        void remover(
+                Chave chave,
+                int id
+        ) {
+            var dia = dias.get(chave.data());
+            if (dia != null && dia.remove(chave.posicaoNoDia(id))) quantidade.decrementAndGet();
+        }
+
+        int quantidade() {
+            return quantidade.get();
+        }
+
+        LocalDate primeiroDia() {
+            for (var dia : dias.entrySet()) if (!dia.getValue().isEmpty()) return dia.getKey();
+            return null;
+        }
+
+        List<Integer> entre(
+                LocalDate inicio,
+                LocalDate fim
+        ) {
+            var resultado = new ArrayList<Integer>();
+            for (var dia : dias.subMap(inicio, true, fim, true).values())
+                for (var posicao : dia) resultado.add(posicao.intValue());
+            return resultado;
+        }
+    }
+}
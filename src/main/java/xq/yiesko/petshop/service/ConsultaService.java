@@ -1,19 +1,80 @@
 package xq.yiesko.petshop.service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import xq.yiesko.petshop.model.Animal;
 import xq.yiesko.petshop.model.Consulta;
 import xq.yiesko.petshop.model.Veterinario;
-import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.model.texto.Dicionario;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.Retrato;
+import xq.yiesko.petshop.repository.archive.ConsultaArchive;
+import xq.yiesko.petshop.util.ValidationUtils;
 
 /**
  * Regras de negócio para consultas.
+ * <p>
+ * Cada consulta ocupa um horário da agenda do veterinário, e dois agendamentos
+ * para o mesmo veterinário, dia e horário nunca são aceitos, mesmo quando feitos
+ * ao mesmo tempo.
+ * <p>
+ * Os relatórios por dia, veterinário, especialidade e espécie vêm de contagens
+ * mantidas a cada alteração e custam uma soma por dia do período. Contagens com
+ * filtros combinados de veterinário, animal e espécie percorrem uma cópia em
+ * colunas das consultas, e agrupamentos livres percorrem em paralelo um retrato.
+ * Nenhum desses índices guarda as consultas: as listagens resolvem no repositório
+ * os identificadores encontrados, então um repositório que guarda as consultas em
+ * disco não as tem presas no heap pelo serviço.
+ * <p>
+ * Com um {@link ConsultaArchive}, as consultas de meses encerrados podem ser
+ * arquivadas com {@link #arquivar(YearMonth)}: saem do repositório e dos índices e
+ * passam a ser lidas dos segmentos do arquivo. As listagens por período, o
+ * {@link #historico(LocalDate, LocalDate)}, as contagens e os agrupamentos incluem
+ * as consultas arquivadas; as demais listagens, a busca por identificador e os
+ * cancelamentos veem apenas as consultas ativas, e meses arquivados não aceitam
+ * novos agendamentos. Animais e veterinários referenciados por consultas arquivadas
+ * continuam contando como referenciados, para que não sejam removidos enquanto o
+ * histórico depender deles.
+ * <p>
+ * A remoção de animais e veterinários passa antes por {@link #bloquearAnimais(List)}
+ * e {@link #bloquearVeterinarios(List)}, que verificam as referências sem
+ * agendamentos em andamento e recusam os seguintes, mesmo os feitos com uma
+ * instância lida antes da remoção.
  */
 public class ConsultaService {
 
-    private final InMemoryRepository<Consulta> repository;
+    private static final int TRAVAS_INDICE = 64;
+
+    private final Repository<Consulta> repository;
+    private final ConsultaIndex indice = new ConsultaIndex();
+    private final AgendaVeterinarios agenda = new AgendaVeterinarios();
+    private final ContadoresConsulta contadores = new ContadoresConsulta();
+    private final ColunasConsulta colunas = new ColunasConsulta();
+    private final ConsultaArchive arquivo;
+    private final ReentrantReadWriteLock arquivamento = new ReentrantReadWriteLock();
+    private final Object[] travasIndice = new Object[TRAVAS_INDICE];
+    private final BitSet animaisArquivados = new BitSet();
+    private final BitSet veterinariosArquivados = new BitSet();
+    private final BitSet animaisBloqueados = new BitSet();
+    private final BitSet veterinariosBloqueados = new BitSet();
 
     /**
      * Cria o serviço utilizando o repositório informado.
@@ -21,28 +82,241 @@ public class ConsultaService {
      * @param repository repositório responsável pelo armazenamento
      */
     public ConsultaService(
-            InMemoryRepository<Consulta> repository
+            Repository<Consulta> repository
+    ) {
+        this(repository, null);
+    }
+
+    /**
+     * Cria o serviço com um arquivo para as consultas de meses encerrados.
+     * <p>
+     * Consultas do repositório em meses já arquivados sobraram de um arquivamento
+     * interrompido depois de selado o mês, e são removidas. As consultas arquivadas
+     * são lidas uma vez para refazer as contagens e marcar os animais e veterinários
+     * que elas referenciam.
+     *
+     * @param repository repositório responsável pelo armazenamento
+     * @param arquivo    arquivo das consultas antigas, ou {@code null}
+     */
+    public ConsultaService(
+            Repository<Consulta> repository,
+            ConsultaArchive arquivo
     ) {
         this.repository = repository;
+        this.arquivo = arquivo;
+        for (var i = 0; i < travasIndice.length; i++) travasIndice[i] = new Object();
+
+        var sobras = new ArrayList<Integer>();
+        repository.paraCada(consulta -> {
+            if (arquivo != null && arquivo.arquivado(consulta.getData())) {
+                sobras.add(consulta.getId());
+                return;
+            }
+
+            indexar(consulta);
+            if (consulta.getHorario() != null && consulta.getVeterinario() != null)
+                agenda.reservar(consulta.getVeterinario().getId(), consulta.getData(), consulta.getHorario());
+        });
+        if (!sobras.isEmpty()) repository.removerTodos(sobras);
+
+        if (arquivo != null) {
+            try (var arquivadas = arquivo.registros(LocalDate.MIN, LocalDate.MAX)) {
+                arquivadas.forEach(consulta -> {
+                    contadores.contarArquivada(consulta.data(), consulta.veterinarioId(), consulta.especialidade(), consulta.especie());
+                    colunas.gravar(consulta.id(), consulta.data(), consulta.veterinarioId(), consulta.animalId(),
+                        Dicionario.ESPECIES.codificar(consulta.especie()));
+                    marcarArquivada(consulta.animalId(), consulta.veterinarioId());
+                });
+            }
+        }
     }
 
     /**
-     * Agenda uma consulta.
+     * Agenda uma consulta em um horário livre do veterinário.
      *
      * @param data         data da consulta
+     * @param horario      horário de início, alinhado à grade de atendimento
      * @param animal       animal atendido
      * @param veterinario  veterinário responsável
      * @param observacoes  observações adicionais
      * @return consulta persistida
+     * @throws IllegalArgumentException se algum dado for inválido ou o horário já estiver ocupado
      */
     public Consulta agendar(
             LocalDate data,
+            LocalTime horario,
             Animal animal,
             Veterinario veterinario,
             String observacoes
     ) {
-        var consulta = new Consulta(validarData(data), validarAnimal(animal), validarVeterinario(veterinario), observacoes);
-        return repository.adicionar(consulta);
+        return semArquivamento(() -> {
+            var nova = new Consulta(validarData(data), validarHorario(horario), validarAnimal(animal), validarVeterinario(veterinario), observacoes);
+            validarCadastros(animal, veterinario);
+            reservar(veterinario, data, horario);
+
+            try {
+                var consulta = repository.adicionar(nova);
+                reindexar(consulta.getId());
+                return consulta;
+            } catch (RuntimeException e) {
+                agenda.liberar(veterinario.getId(), data, horario);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Agenda um lote de consultas com uma única inclusão no repositório.
+     * <p>
+     * O lote é tudo ou nada: se alguma consulta for inválida ou cair em um horário
+     * ocupado, inclusive por outra consulta do próprio lote, nenhuma é agendada.
+     *
+     * @param consultas consultas a agendar, ainda sem identificador
+     * @return consultas persistidas, na mesma ordem
+     * @throws IllegalArgumentException se alguma consulta for inválida ou o horário já estiver ocupado
+     */
+    public List<Consulta> agendarTodos(
+            List<Consulta> consultas
+    ) {
+        return semArquivamento(() -> {
+            for (var consulta : consultas) {
+                validarData(consulta.getData());
+                validarHorario(consulta.getHorario());
+                validarAnimal(consulta.getAnimal());
+                validarVeterinario(consulta.getVeterinario());
+                validarCadastros(consulta.getAnimal(), consulta.getVeterinario());
+            }
+
+            var reservadas = 0;
+            try {
+                for (var consulta : consultas) {
+                    reservar(consulta.getVeterinario(), consulta.getData(), consulta.getHorario());
+                    reservadas++;
+                }
+
+                repository.adicionarTodos(consultas);
+            } catch (RuntimeException e) {
+                for (var i = 0; i < reservadas; i++) {
+                    var consulta = consultas.get(i);
+                    agenda.liberar(consulta.getVeterinario().getId(), consulta.getData(), consulta.getHorario());
+                }
+                throw e;
+            }
+
+            for (var consulta : consultas) reindexar(consulta.getId());
+            return consultas;
+        });
+    }
+
+    /**
+     * Encontra os próximos horários livres de um veterinário.
+     *
+     * @param veterinario veterinário procurado
+     * @param aPartirDe   instante a partir do qual procurar
+     * @param quantidade  quantidade de horários desejada
+     * @return horários livres em ordem cronológica
+     */
+    public List<LocalDateTime> proximosHorariosLivres(
+            Veterinario veterinario,
+            LocalDateTime aPartirDe,
+            int quantidade
+    ) {
+        if (aPartirDe == null) throw new IllegalArgumentException("Data é obrigatória");
+        ValidationUtils.requirePositive(quantidade, "Quantidade deve ser positiva");
+        return agenda.proximosLivres(validarVeterinario(veterinario).getId(), aPartirDe, quantidade);
+    }
+
+    private void indexar(
+            Consulta consulta
+    ) {
+        indice.indexar(consulta);
+        contadores.contar(consulta);
+        colunas.gravar(consulta);
+    }
+
+    private void desindexar(
+            int id
+    ) {
+        indice.desindexar(id);
+        contadores.descontar(id);
+        colunas.apagar(id);
+    }
+
+    /**
+     * Atualiza os índices, as contagens e a agenda depois de uma alteração feita
+     * diretamente no repositório, sem passar pelo serviço, como as que a replicação
+     * aplica à cópia de um seguidor. O horário anterior da consulta só é liberado se
+     * nenhuma outra consulta indexada o ocupar, pois um retrato pode restaurar uma
+     * consulta no horário de outra que só será descartada no fim dele.
+     *
+     * @param id identificador da consulta incluída, alterada ou removida
+     */
+    public void sincronizar(
+            int id
+    ) {
+        synchronized (travasIndice[id & (TRAVAS_INDICE - 1)]) {
+            var anterior = indice.chave(id);
+            var atual = repository.buscarPorId(id);
+            atual.ifPresentOrElse(this::indexar, () -> desindexar(id));
+
+            if (anterior != null && anterior.horario() != null && !ocupado(anterior))
+                agenda.liberar(anterior.veterinarioId(), anterior.data(), anterior.horario());
+            atual.filter(consulta -> consulta.getHorario() != null)
+                .ifPresent(consulta -> agenda.reservar(consulta.getVeterinario().getId(), consulta.getData(), consulta.getHorario()));
+        }
+    }
+
+    private boolean ocupado(
+            ConsultaIndex.Chave chave
+    ) {
+        for (var id : indice.porVeterinario(chave.veterinarioId(), chave.data(), chave.data())) {
+            var outra = indice.chave(id);
+            if (outra != null && chave.horario().equals(outra.horario())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Leva os índices de uma consulta ao estado dela no repositório, depois de uma
+     * escrita. As chamadas para um mesmo identificador são serializadas e sempre
+     * releem o repositório, então a última delas vê o estado final: escritas
+     * concorrentes que terminam fora de ordem, como uma atualização que indexa
+     * depois de um cancelamento, não deixam entradas de consultas que não existem.
+     */
+    private void reindexar(
+            int id
+    ) {
+        synchronized (travasIndice[id & (TRAVAS_INDICE - 1)]) {
+            repository.buscarPorId(id).ifPresentOrElse(this::indexar, () -> desindexar(id));
+        }
+    }
+
+    private void reservar(
+            Veterinario veterinario,
+            LocalDate data,
+            LocalTime horario
+    ) {
+        if (arquivo != null && arquivo.arquivado(data)) throw new IllegalArgumentException("Data pertence a um mês arquivado");
+        if (!agenda.reservar(veterinario.getId(), data, horario))
+            throw new IllegalArgumentException("Veterinário já possui consulta neste horário");
+    }
+
+    /**
+     * Executa uma escrita sem que um mês seja arquivado ou um animal ou veterinário
+     * seja bloqueado no meio dela: o {@link #arquivar(YearMonth)} e os bloqueios
+     * esperam as escritas em andamento, e as novas esperam o mês em arquivamento ou
+     * o bloqueio.
+     */
+    private <R> R semArquivamento(
+            Supplier<R> escrita
+    ) {
+        var trava = arquivamento.readLock();
+        trava.lock();
+        try {
+            return escrita.get();
+        } finally {
+            trava.unlock();
+        }
     }
 
     private LocalDate validarData(
@@ -52,6 +326,14 @@ public class ConsultaService {
         return data;
     }
 
+    private LocalTime validarHorario(
+            LocalTime horario
+    ) {
+        if (horario == null) throw new IllegalArgumentException("Horário é obrigatório");
+        AgendaVeterinarios.posicao(horario);
+        return horario;
+    }
+
     private Animal validarAnimal(
             Animal animal
     ) {
@@ -67,35 +349,199 @@ public class ConsultaService {
     }
 
     /**
-     * Atualiza uma consulta existente.
+     * Recusa uma consulta de um animal ou veterinário já bloqueado para remoção,
+     * mesmo que a instância tenha sido lida antes da remoção. Só é chamado dentro de
+     * {@link #semArquivamento(Supplier)}, para que nenhum bloqueio ocorra entre esta
+     * verificação e a indexação da consulta.
+     */
+    private void validarCadastros(
+            Animal animal,
+            Veterinario veterinario
+    ) {
+        if (bloqueado(animaisBloqueados, animal.getId())) throw new IllegalArgumentException("Pet não está mais cadastrado");
+        if (bloqueado(veterinariosBloqueados, veterinario.getId()))
+            throw new IllegalArgumentException("Veterinário não está mais cadastrado");
+    }
+
+    /**
+     * Atualiza uma consulta existente sobre o seu estado mais recente.
+     * <p>
+     * Se o veterinário, a data ou o horário mudarem, o novo horário é reservado
+     * antes da alteração e o antigo só é liberado depois dela.
      *
      * @param id          identificador da consulta
      * @param data        nova data
+     * @param horario     novo horário
      * @param animal      novo animal
      * @param veterinario novo veterinário
      * @param observacoes novas observações
      * @return true se houve atualização
+     * @throws IllegalArgumentException se algum dado for inválido ou o novo horário já estiver ocupado
      */
     public boolean atualizar(
             int id,
             LocalDate data,
+            LocalTime horario,
             Animal animal,
             Veterinario veterinario,
             String observacoes
     ) {
-        var consultaOpt = repository.buscarPorId(id);
-        if (consultaOpt.isEmpty()) return false;
+        return atualizarVersao(id, data, horario, animal, veterinario, observacoes, AtualizacaoOtimista.QUALQUER_VERSAO);
+    }
+
+    /**
+     * Atualiza uma consulta somente se ela ainda estiver na versão lida.
+     *
+     * @param id             identificador da consulta
+     * @param data           nova data
+     * @param horario        novo horário
+     * @param animal         novo animal
+     * @param veterinario    novo veterinário
+     * @param observacoes    novas observações
+     * @param versaoEsperada versão lida antes da edição
+     * @return true se houve atualização
+     * @throws IllegalArgumentException se algum dado for inválido ou o novo horário já estiver ocupado
+     * @throws IllegalStateException    se a consulta foi alterada depois da leitura
+     */
+    public boolean atualizar(
+            int id,
+            LocalDate data,
+            LocalTime horario,
+            Animal animal,
+            Veterinario veterinario,
+            String observacoes,
+            int versaoEsperada
+    ) {
+        ValidationUtils.requirePositive(versaoEsperada, "Versão deve ser positiva");
+        return atualizarVersao(id, data, horario, animal, veterinario, observacoes, versaoEsperada);
+    }
+
+    /**
+     * Grava uma cópia alterada da consulta por compare-and-set. O horário novo é
+     * reservado antes de cada tentativa e devolvido se ela perder para outra escrita.
+     */
+    private boolean atualizarVersao(
+            int id,
+            LocalDate data,
+            LocalTime horario,
+            Animal animal,
+            Veterinario veterinario,
+            String observacoes,
+            int versaoEsperada
+    ) {
+        return semArquivamento(() -> {
+            validarData(data);
+            validarHorario(horario);
+            validarAnimal(animal);
+            validarVeterinario(veterinario);
+            validarCadastros(animal, veterinario);
+
+            while (true) {
+                var atual = repository.buscarPorId(id).orElse(null);
+                if (atual == null) return false;
+                AtualizacaoOtimista.verificar(atual, versaoEsperada);
+
+                var veterinarioAnterior = atual.getVeterinario();
+                var mesmoHorario = veterinarioAnterior != null && veterinarioAnterior.getId() == veterinario.getId()
+                    && data.equals(atual.getData()) && horario.equals(atual.getHorario());
+                if (!mesmoHorario) reservar(veterinario, data, horario);
+
+                var consulta = atual.copiar();
+                consulta.setData(data);
+                consulta.setHorario(horario);
+                consulta.setAnimal(animal);
+                consulta.setVeterinario(veterinario);
+                consulta.setObservacoes(observacoes);
+                if (!repository.atualizar(consulta, atual.getVersao())) {
+                    if (!mesmoHorario) agenda.liberar(veterinario.getId(), data, horario);
+                    continue;
+                }
+
+                reindexar(id);
+                if (!mesmoHorario && veterinarioAnterior != null && atual.getHorario() != null)
+                    agenda.liberar(veterinarioAnterior.getId(), atual.getData(), atual.getHorario());
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Atualiza um lote de consultas com uma única substituição no repositório.
+     * <p>
+     * O lote é tudo ou nada: todas são validadas e os novos horários reservados
+     * antes da substituição, e os horários antigos só são liberados depois dela.
+     * Por isso um lote não pode trocar os horários de duas consultas entre si.
+     *
+     * @param consultas consultas com os novos dados
+     * @return true se todas existiam e foram atualizadas
+     * @throws IllegalArgumentException se alguma consulta for inválida ou o novo horário já estiver ocupado
+     */
+    public boolean atualizarTodos(
+            List<Consulta> consultas
+    ) {
+        return semArquivamento(() -> {
+            var anteriores = new ArrayList<ConsultaIndex.Chave>(consultas.size());
+            for (var consulta : consultas) {
+                validarData(consulta.getData());
+                validarHorario(consulta.getHorario());
+                validarAnimal(consulta.getAnimal());
+                validarVeterinario(consulta.getVeterinario());
+                validarCadastros(consulta.getAnimal(), consulta.getVeterinario());
+
+                var anterior = indice.chave(consulta.getId());
+                if (anterior == null) return false;
+                anteriores.add(anterior);
+            }
+
+            var reservadas = new ArrayList<Consulta>();
+            try {
+                for (var i = 0; i < consultas.size(); i++) {
+                    var consulta = consultas.get(i);
+                    if (mesmoHorario(anteriores.get(i), consulta)) continue;
+                    reservar(consulta.getVeterinario(), consulta.getData(), consulta.getHorario());
+                    reservadas.add(consulta);
+                }
+
+                if (!repository.atualizarTodos(consultas)) {
+                    liberar(reservadas);
+                    return false;
+                }
+            } catch (RuntimeException e) {
+                liberar(reservadas);
+                throw e;
+            }
+
+            for (var i = 0; i < consultas.size(); i++) {
+                var consulta = consultas.get(i);
+                var anterior = anteriores.get(i);
+                reindexar(consulta.getId());
+                if (!mesmoHorario(anterior, consulta) && anterior.horario() != null)
+                    agenda.liberar(anterior.veterinarioId(), anterior.data(), anterior.horario());
+            }
+            return true;
+        });
+    }
+
+    private static boolean mesmoHorario(
+            ConsultaIndex.Chave anterior,
+            Consulta consulta
+    ) {
+        return anterior.veterinarioId() == consulta.getVeterinario().getId()
+            && consulta.getData().equals(anterior.data()) && consulta.getHorario().equals(anterior.horario());
+    }
 
-        var consulta = consultaOpt.get();
-        consulta.setData(validarData(data));
-        consulta.setAnimal(validarAnimal(animal));
-        consulta.setVeterinario(validarVeterinario(veterinario));
-        consulta.setObservacoes(observacoes);
-        return repository.atualizar(consulta);
+    private void liberar(
+            List<Consulta> consultas
+    ) {
+        for (var consulta : consultas) agenda.liberar(consulta.getVeterinario().getId(), consulta.getData(), consulta.getHorario());
     }
 
     /**
-     * Cancela uma consulta.
+     * Cancela uma consulta e libera o seu horário.
+     * <p>
+     * O horário liberado é o do estado que o repositório efetivamente removeu, e não
+     * o de uma leitura anterior: se uma atualização concorrente mudar o horário logo
+     * antes, é o horário novo que volta a ficar livre.
      *
      * @param id identificador buscado
      * @return true se o registro foi removido
@@ -103,7 +549,41 @@ public class ConsultaService {
     public boolean cancelar(
             int id
     ) {
-        return repository.remover(id);
+        return semArquivamento(() -> {
+            var removida = repository.retirar(id);
+            if (removida.isEmpty()) return false;
+
+            reindexar(id);
+            liberarHorario(removida.get());
+            return true;
+        });
+    }
+
+    /**
+     * Cancela um lote de consultas com uma única remoção no repositório e libera
+     * os seus horários.
+     *
+     * @param ids identificadores das consultas
+     * @return quantidade de consultas canceladas
+     */
+    public int cancelarTodos(
+            List<Integer> ids
+    ) {
+        return semArquivamento(() -> {
+            var removidas = repository.retirarTodos(ids);
+            for (var consulta : removidas) {
+                reindexar(consulta.getId());
+                liberarHorario(consulta);
+            }
+            return removidas.size();
+        });
+    }
+
+    private void liberarHorario(
+            Consulta consulta
+    ) {
+        if (consulta.getVeterinario() != null && consulta.getHorario() != null)
+            agenda.liberar(consulta.getVeterinario().getId(), consulta.getData(), consulta.getHorario());
     }
 
     /**
@@ -115,6 +595,615 @@ public class ConsultaService {
         return repository.listar();
     }
 
+    /**
+     * Lista as consultas de um dia.
+     *
+     * @param data dia procurado
+     * @return consultas do dia
+     */
+    public List<Consulta> listarPorData(
+            LocalDate data
+    ) {
+        var dia = validarData(data);
+        return porPeriodo(dia, dia);
+    }
+
+    /**
+     * Lista as consultas de um período, ordenadas por data.
+     *
+     * @param inicio primeiro dia do período
+     * @param fim    último dia do período
+     * @return consultas do período
+     */
+    public List<Consulta> listarPorPeriodo(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        validarPeriodo(inicio, fim);
+        return porPeriodo(inicio, fim);
+    }
+
+    /**
+     * Percorre as consultas de um período, arquivadas e ativas, ordenadas por data.
+     * <p>
+     * As consultas arquivadas são lidas sob demanda, um mês de cada vez, então um
+     * histórico de anos pode ser percorrido sem carregá-lo inteiro; só os meses do
+     * período são lidos. Cada consulta arquivada é uma instância nova.
+     *
+     * @param inicio primeiro dia do período
+     * @param fim    último dia do período
+     * @return consultas do período
+     */
+    public Stream<Consulta> historico(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        validarPeriodo(inicio, fim);
+        var ativas = StreamSupport.stream(() -> indice.porPeriodo(inicio, fim).spliterator(), Spliterator.ORDERED, false)
+            .flatMap(id -> repository.buscarPorId(id).stream());
+        if (arquivo == null || !arquivo.arquivado(inicio)) return ativas;
+        return Stream.concat(arquivo.consultas(inicio, fim), ativas);
+    }
+
+    /**
+     * Junta as consultas arquivadas e ativas de um período. A leitura do arquivo é
+     * feita sem arquivamento em andamento, para que um mês não apareça nas duas
+     * partes nem em nenhuma.
+     */
+    private List<Consulta> porPeriodo(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        if (arquivo == null || !arquivo.arquivado(inicio)) return resolver(indice.porPeriodo(inicio, fim));
+
+        return semArquivamento(() -> {
+            var consultas = new ArrayList<Consulta>();
+            try (var arquivadas = arquivo.consultas(inicio, fim)) {
+                arquivadas.forEach(consultas::add);
+            }
+            consultas.addAll(resolver(indice.porPeriodo(inicio, fim)));
+            return consultas;
+        });
+    }
+
+    /**
+     * Lista todas as consultas de um veterinário, ordenadas por data.
+     *
+     * @param veterinario veterinário responsável
+     * @return consultas do veterinário
+     */
+    public List<Consulta> listarPorVeterinario(
+            Veterinario veterinario
+    ) {
+        return resolver(indice.porVeterinario(validarVeterinario(veterinario).getId(), LocalDate.MIN, LocalDate.MAX));
+    }
+
+    /**
+     * Lista a agenda de um veterinário em um período.
+     *
+     * @param veterinario veterinário responsável
+     * @param inicio      primeiro dia do período
+     * @param fim         último dia do período
+     * @return consultas do veterinário no período
+     */
+    public List<Consulta> listarPorVeterinario(
+            Veterinario veterinario,
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        validarPeriodo(inicio, fim);
+        return resolver(indice.porVeterinario(validarVeterinario(veterinario).getId(), inicio, fim));
+    }
+
+    /**
+     * Lista o histórico de consultas de um animal, ordenado por data.
+     *
+     * @param animal animal atendido
+     * @return consultas do animal
+     */
+    public List<Consulta> listarPorAnimal(
+            Animal animal
+    ) {
+        return resolver(indice.porAnimal(validarAnimal(animal).getId(), LocalDate.MIN, LocalDate.MAX));
+    }
+
+    /**
+     * Verifica em tempo constante se um animal possui consultas agendadas ou
+     * arquivadas.
+     *
+     * @param animalId identificador do animal
+     * @return true se alguma consulta, ativa ou arquivada, referencia o animal
+     */
+    public boolean possuiConsultasDoAnimal(
+            int animalId
+    ) {
+        return indice.possuiDoAnimal(animalId) || possuiConsultasArquivadasDoAnimal(animalId);
+    }
+
+    /**
+     * Verifica em tempo constante se um veterinário possui consultas agendadas ou
+     * arquivadas.
+     *
+     * @param veterinarioId identificador do veterinário
+     * @return true se alguma consulta, ativa ou arquivada, referencia o veterinário
+     */
+    public boolean possuiConsultasDoVeterinario(
+            int veterinarioId
+    ) {
+        return indice.possuiDoVeterinario(veterinarioId) || possuiConsultasArquivadasDoVeterinario(veterinarioId);
+    }
+
+    /**
+     * Verifica em tempo constante se um animal é referenciado por consultas
+     * arquivadas, que não podem ser canceladas.
+     *
+     * @param animalId identificador do animal
+     * @return true se alguma consulta arquivada referencia o animal
+     */
+    public boolean possuiConsultasArquivadasDoAnimal(
+            int animalId
+    ) {
+        synchronized (animaisArquivados) {
+            return animalId >= 0 && animaisArquivados.get(animalId);
+        }
+    }
+
+    /**
+     * Verifica em tempo constante se um veterinário é referenciado por consultas
+     * arquivadas, que não podem ser canceladas.
+     *
+     * @param veterinarioId identificador do veterinário
+     * @return true se alguma consulta arquivada referencia o veterinário
+     */
+    public boolean possuiConsultasArquivadasDoVeterinario(
+            int veterinarioId
+    ) {
+        synchronized (veterinariosArquivados) {
+            return veterinarioId >= 0 && veterinariosArquivados.get(veterinarioId);
+        }
+    }
+
+    /**
+     * Passa a recusar consultas dos animais informados, que vão ser removidos.
+     * <p>
+     * A verificação e o bloqueio são feitos sem escritas de consultas em andamento,
+     * então uma consulta agendada ao mesmo tempo ou termina antes e impede o
+     * bloqueio, ou começa depois e é recusada, mesmo com uma instância do animal lida
+     * antes da remoção. Como os identificadores nunca são reutilizados, o bloqueio só
+     * é desfeito, por {@link #desbloquearAnimais(List)}, se a remoção falhar.
+     *
+     * @param animalIds identificadores de animais cadastrados
+     * @throws IllegalArgumentException se algum animal possuir consultas agendadas ou arquivadas; nesse caso nenhum é bloqueado
+     */
+    public void bloquearAnimais(
+            List<Integer> animalIds
+    ) {
+        bloquear(animalIds, animaisBloqueados, this::possuiConsultasDoAnimal, "Animal");
+    }
+
+    /**
+     * Volta a aceitar consultas de animais cuja remoção falhou.
+     *
+     * @param animalIds identificadores dos animais que continuam cadastrados
+     */
+    public void desbloquearAnimais(
+            List<Integer> animalIds
+    ) {
+        desbloquear(animalIds, animaisBloqueados);
+    }
+
+    /**
+     * Passa a recusar consultas dos veterinários informados, que vão ser removidos,
+     * como em {@link #bloquearAnimais(List)}.
+     *
+     * @param veterinarioIds identificadores de veterinários cadastrados
+     * @throws IllegalArgumentException se algum veterinário possuir consultas agendadas ou arquivadas; nesse caso nenhum é bloqueado
+     */
+    public void bloquearVeterinarios(
+            List<Integer> veterinarioIds
+    ) {
+        bloquear(veterinarioIds, veterinariosBloqueados, this::possuiConsultasDoVeterinario, "Veterinário");
+    }
+
+    /**
+     * Volta a aceitar consultas de veterinários cuja remoção falhou.
+     *
+     * @param veterinarioIds identificadores dos veterinários que continuam cadastrados
+     */
+    public void desbloquearVeterinarios(
+            List<Integer> veterinarioIds
+    ) {
+        desbloquear(veterinarioIds, veterinariosBloqueados);
+    }
+
+    private void bloquear(
+            List<Integer> ids,
+            BitSet bloqueados,
+            IntPredicate referenciado,
+            String entidade
+    ) {
+        var trava = arquivamento.writeLock();
+        trava.lock();
+        try {
+            for (var id : ids)
+                if (referenciado.test(id)) throw new IllegalArgumentException(entidade + " " + id + " possui consultas agendadas ou arquivadas");
+            synchronized (bloqueados) {
+                for (var id : ids) bloqueados.set(id);
+            }
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    private static void desbloquear(
+            List<Integer> ids,
+            BitSet bloqueados
+    ) {
+        synchronized (bloqueados) {
+            for (var id : ids) bloqueados.clear(id);
+        }
+    }
+
+    private static boolean bloqueado(
+            BitSet bloqueados,
+            int id
+    ) {
+        synchronized (bloqueados) {
+            return id >= 0 && bloqueados.get(id);
+        }
+    }
+
+    private void marcarArquivada(
+            int animalId,
+            int veterinarioId
+    ) {
+        if (animalId > 0) {
+            synchronized (animaisArquivados) {
+                animaisArquivados.set(animalId);
+            }
+        }
+        if (veterinarioId > 0) {
+            synchronized (veterinariosArquivados) {
+                veterinariosArquivados.set(veterinarioId);
+            }
+        }
+    }
+
+    /**
+     * Cancela todas as consultas de um animal.
+     *
+     * @param animalId identificador do animal
+     * @return quantidade de consultas canceladas
+     */
+    public int cancelarDoAnimal(
+            int animalId
+    ) {
+        return cancelarTodos(indice.porAnimal(animalId, LocalDate.MIN, LocalDate.MAX));
+    }
+
+    /**
+     * Cancela todas as consultas de um veterinário.
+     *
+     * @param veterinarioId identificador do veterinário
+     * @return quantidade de consultas canceladas
+     */
+    public int cancelarDoVeterinario(
+            int veterinarioId
+    ) {
+        return cancelarTodos(indice.porVeterinario(veterinarioId, LocalDate.MIN, LocalDate.MAX));
+    }
+
+    /**
+     * Resolve no repositório os identificadores devolvidos pelo índice, na mesma
+     * ordem; uma consulta cancelada depois da leitura do índice é omitida.
+     */
+    private List<Consulta> resolver(
+            List<Integer> ids
+    ) {
+        var consultas = new ArrayList<Consulta>(ids.size());
+        for (var id : ids) repository.buscarPorId(id).ifPresent(consultas::add);
+        return consultas;
+    }
+
+    private void validarPeriodo(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        validarData(inicio);
+        validarData(fim);
+        if (fim.isBefore(inicio)) throw new IllegalArgumentException("Data final anterior à data inicial");
+    }
+
+    private void validarFiltro(
+            FiltroConsultas filtro
+    ) {
+        if (filtro == null) throw new IllegalArgumentException("Filtro é obrigatório");
+        validarPeriodo(filtro.inicio(), filtro.fim());
+        ValidationUtils.requireNonNegative(filtro.veterinarioId(), "Veterinário inválido");
+        ValidationUtils.requireNonNegative(filtro.animalId(), "Animal inválido");
+    }
+
+    /**
+     * Lista uma página de consultas, na ordem de cadastro.
+     *
+     * @param deslocamento quantidade de registros a pular
+     * @param limite       tamanho máximo da página
+     * @return página de consultas
+     */
+    public List<Consulta> listar(
+            int deslocamento,
+            int limite
+    ) {
+        ValidationUtils.requireNonNegative(deslocamento, "Deslocamento não pode ser negativo");
+        ValidationUtils.requirePositive(limite, "Limite deve ser positivo");
+        return repository.listar(deslocamento, limite);
+    }
+
+    /**
+     * Lista a página de consultas seguinte ao identificador informado.
+     *
+     * @param aposId identificador do último registro da página anterior, ou 0 para a primeira página
+     * @param limite tamanho máximo da página
+     * @return página de consultas
+     */
+    public List<Consulta> listarApos(
+            int aposId,
+            int limite
+    ) {
+        ValidationUtils.requirePositive(limite, "Limite deve ser positivo");
+        return repository.listarApos(aposId, limite);
+    }
+
+    /**
+     * Percorre as consultas sem copiar a coleção.
+     *
+     * @return stream de consultas, na ordem de cadastro
+     */
+    public Stream<Consulta> stream() {
+        return repository.stream();
+    }
+
+    /**
+     * Obtém um retrato imutável de todas as consultas no instante da chamada.
+     * <p>
+     * Relatórios longos devem percorrer o retrato em vez de {@link #stream()}: ele
+     * não muda enquanto é lido e não atrasa os agendamentos.
+     *
+     * @return retrato das consultas
+     */
+    public Retrato<Consulta> retrato() {
+        return repository.retrato();
+    }
+
+    /**
+     * Conta as consultas de cada dia de um período.
+     *
+     * @param inicio primeiro dia do período
+     * @param fim    último dia do período
+     * @return quantidade de consultas por dia, apenas dos dias com consultas
+     */
+    public SortedMap<LocalDate, Integer> contarPorDia(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        validarPeriodo(inicio, fim);
+        return contadores.porDia(inicio, fim);
+    }
+
+    /**
+     * Conta as consultas de cada veterinário em um período.
+     *
+     * @param inicio primeiro dia do período
+     * @param fim    último dia do período
+     * @return quantidade de consultas por identificador do veterinário
+     */
+    public Map<Integer, Integer> contarPorVeterinario(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        validarPeriodo(inicio, fim);
+        return contadores.porVeterinario(inicio, fim);
+    }
+
+    /**
+     * Conta as consultas de cada especialidade em um período.
+     *
+     * @param inicio primeiro dia do período
+     * @param fim    último dia do período
+     * @return quantidade de consultas por especialidade do veterinário
+     */
+    public Map<String, Integer> contarPorEspecialidade(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        validarPeriodo(inicio, fim);
+        return contadores.porEspecialidade(inicio, fim);
+    }
+
+    /**
+     * Conta as consultas de cada espécie em um período.
+     *
+     * @param inicio primeiro dia do período
+     * @param fim    último dia do período
+     * @return quantidade de consultas por espécie do animal
+     */
+    public Map<String, Integer> contarPorEspecie(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        validarPeriodo(inicio, fim);
+        return contadores.porEspecie(inicio, fim);
+    }
+
+    /**
+     * Conta as consultas que atendem a um filtro.
+     *
+     * @param filtro período e critérios das consultas
+     * @return quantidade de consultas
+     */
+    public int contar(
+            FiltroConsultas filtro
+    ) {
+        validarFiltro(filtro);
+        return colunas.contar(filtro);
+    }
+
+    /**
+     * Conta por veterinário as consultas que atendem a um filtro.
+     *
+     * @param filtro período e critérios das consultas
+     * @return quantidade de consultas por identificador do veterinário
+     */
+    public Map<Integer, Integer> contarPorVeterinario(
+            FiltroConsultas filtro
+    ) {
+        validarFiltro(filtro);
+        return colunas.porVeterinario(filtro);
+    }
+
+    /**
+     * Conta por animal as consultas que atendem a um filtro.
+     *
+     * @param filtro período e critérios das consultas
+     * @return quantidade de consultas por identificador do animal
+     */
+    public Map<Integer, Integer> contarPorAnimal(
+            FiltroConsultas filtro
+    ) {
+        validarFiltro(filtro);
+        return colunas.porAnimal(filtro);
+    }
+
+    /**
+     * Conta por espécie as consultas que atendem a um filtro.
+     *
+     * @param filtro período e critérios das consultas
+     * @return quantidade de consultas por espécie do animal
+     */
+    public Map<String, Integer> contarPorEspecie(
+            FiltroConsultas filtro
+    ) {
+        validarFiltro(filtro);
+        return colunas.porEspecie(filtro);
+    }
+
+    /**
+     * Calcula a ocupação da agenda de um veterinário em um período, a partir do
+     * mapa de horários reservados, com custo de uma consulta por dia.
+     *
+     * @param veterinario veterinário responsável
+     * @param inicio      primeiro dia do período
+     * @param fim         último dia do período
+     * @return horários ocupados e disponíveis no período
+     */
+    public Ocupacao ocupacao(
+            Veterinario veterinario,
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        validarPeriodo(inicio, fim);
+        var id = validarVeterinario(veterinario).getId();
+
+        var ocupados = 0;
+        var dias = 0;
+        for (var dia = inicio; !dia.isAfter(fim); dia = dia.plusDays(1), dias++) ocupados += agenda.ocupados(id, dia);
+        return new Ocupacao(ocupados, dias * AgendaVeterinarios.HORARIOS_POR_DIA);
+    }
+
+    /**
+     * Agrupa e conta as consultas de um período por um critério qualquer.
+     * <p>
+     * O agrupamento percorre em paralelo um {@link #retrato()} das consultas, então
+     * o resultado é consistente mesmo com agendamentos simultâneos e não os atrasa.
+     * As referências a animal e veterinário são as versões usadas no agendamento;
+     * nas consultas arquivadas, são as atuais.
+     *
+     * @param inicio primeiro dia do período
+     * @param fim    último dia do período
+     * @param chave  critério de agrupamento; não pode devolver {@code null}
+     * @param <K>    tipo da chave
+     * @return quantidade de consultas por chave
+     */
+    public <K> Map<K, Long> agrupar(
+            LocalDate inicio,
+            LocalDate fim,
+            Function<? super Consulta, ? extends K> chave
+    ) {
+        validarPeriodo(inicio, fim);
+        var ativas = repository.retrato().stream()
+            .parallel()
+            .filter(consulta -> !consulta.getData().isBefore(inicio) && !consulta.getData().isAfter(fim));
+        if (arquivo != null && arquivo.arquivado(inicio)) ativas = Stream.concat(arquivo.consultas(inicio, fim), ativas).parallel();
+        return ativas.collect(Collectors.groupingBy(chave, Collectors.counting()));
+    }
+
+    /**
+     * Arquiva as consultas dos meses anteriores ao limite informado.
+     * <p>
+     * Cada mês é selado em um segmento do arquivo e só então removido do
+     * repositório, dos índices e da agenda; as contagens continuam incluindo as
+     * consultas arquivadas. As escritas esperam apenas o mês em arquivamento, e não
+     * o arquivamento inteiro. Depois da chamada, datas anteriores ao limite não
+     * aceitam agendamentos.
+     *
+     * @param limite primeiro mês que permanece ativo, no máximo o mês atual
+     * @return quantidade de consultas arquivadas
+     * @throws IllegalArgumentException se o limite for posterior ao mês atual
+     * @throws IllegalStateException    se o serviço não tiver arquivo
+     */
+    public int arquivar(
+            YearMonth limite
+    ) {
+        if (arquivo == null) throw new IllegalStateException("Arquivo de consultas não configurado");
+        if (limite == null) throw new IllegalArgumentException("Mês é obrigatório");
+        if (limite.isAfter(YearMonth.now())) throw new IllegalArgumentException("Só meses encerrados podem ser arquivados");
+
+        var arquivadas = 0;
+        var trava = arquivamento.writeLock();
+        while (true) {
+            trava.lock();
+            try {
+                var primeiro = indice.primeiroDia();
+                if (primeiro == null || !YearMonth.from(primeiro).isBefore(limite)) {
+                    arquivo.avancar(limite);
+                    return arquivadas;
+                }
+                arquivadas += arquivarMes(YearMonth.from(primeiro));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                trava.unlock();
+            }
+        }
+    }
+
+    private int arquivarMes(
+            YearMonth mes
+    ) throws IOException {
+        var consultas = resolver(indice.porPeriodo(mes.atDay(1), mes.atEndOfMonth()));
+        for (var consulta : consultas)
+            marcarArquivada(consulta.getAnimal().getId(), consulta.getVeterinario().getId());
+        arquivo.selar(mes, consultas);
+        repository.removerTodos(consultas.stream().map(Consulta::getId).toList());
+
+        for (var consulta : consultas) {
+            indice.desindexar(consulta.getId());
+            contadores.esquecer(consulta.getId());
+            if (consulta.getHorario() != null)
+                agenda.liberar(consulta.getVeterinario().getId(), consulta.getData(), consulta.getHorario());
+        }
+        return consultas.size();
+    }
+
+    /**
+     * Obtém a quantidade de consultas agendadas.
+     *
+     * @return quantidade de registros
+     */
+    public int quantidade() {
+        return repository.tamanho();
+    }
+
     /**
      * Busca uma consulta pelo identificador.
      *
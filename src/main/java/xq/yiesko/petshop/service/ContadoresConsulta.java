@@ -0,0 +1,189 @@
+package xq.yiesko.petshop.service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import xq.yiesko.petshop.model.Consulta;
+
+/**
+ * Contagens de consultas por dia, mantidas a cada agendamento, atualização e
+ * cancelamento.
+ * <p>
+ * Cada dia guarda o total e as contagens por veterinário, por especialidade do
+ * veterinário e por espécie do animal, então um relatório de qualquer período soma
+ * no máximo um registro por dia, sem percorrer as consultas: dez anos de histórico
+ * são cerca de 3.650 somas. A especialidade e a espécie contadas são as das versões
+ * do veterinário e do animal referenciadas pela consulta, como em um relatório
+ * feito sobre um {@link xq.yiesko.petshop.repository.Retrato} das consultas.
+ * <p>
+ * Como em {@link ConsultaIndex}, a marca da última contagem de cada consulta é
+ * guardada para que recontar uma consulta alterada desconte os valores anteriores.
+ * Consultas arquivadas continuam contadas, mas sem marca, pois não mudam mais.
+ */
+final class ContadoresConsulta {
+
+    private final ConcurrentNavigableMap<LocalDate, Dia> dias = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Integer, Marca> contadas = new ConcurrentHashMap<>();
+
+    /**
+     * Conta uma consulta nova ou reconta uma consulta já contada.
+     *
+     * @param consulta consulta persistida
+     */
+    void contar(
+            Consulta consulta
+    ) {
+        contadas.compute(consulta.getId(), (id, anterior) -> {
+            if (anterior != null) aplicar(anterior, -1);
+
+            var marca = Marca.de(consulta);
+            aplicar(marca, 1);
+            return marca;
+        });
+    }
+
+    /**
+     * Desconta uma consulta cancelada.
+     *
+     * @param id identificador da consulta
+     */
+    void descontar(
+            int id
+    ) {
+        contadas.computeIfPresent(id, (k, anterior) -> {
+            aplicar(anterior, -1);
+            return null;
+        });
+    }
+
+    /**
+     * Deixa de acompanhar uma consulta arquivada, mantendo-a nas contagens.
+     *
+     * @param id identificador da consulta
+     */
+    void esquecer(
+            int id
+    ) {
+        contadas.remove(id);
+    }
+
+    /**
+     * Conta uma consulta lida do arquivo, que não muda mais e por isso não é
+     * acompanhada.
+     *
+     * @param data          data da consulta
+     * @param veterinarioId identificador do veterinário
+     * @param especialidade especialidade do veterinário, ou {@code null}
+     * @param especie       espécie do animal, ou {@code null}
+     */
+    void contarArquivada(
+            LocalDate data,
+            int veterinarioId,
+            String especialidade,
+            String especie
+    ) {
+        aplicar(new Marca(data, veterinarioId, Objects.requireNonNullElse(especialidade, ""), Objects.requireNonNullElse(especie, "")), 1);
+    }
+
+    SortedMap<LocalDate, Integer> porDia(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        var resultado = new TreeMap<LocalDate, Integer>();
+        for (var dia : dias.subMap(inicio, true, fim, true).entrySet()) {
+            var total = dia.getValue().total.get();
+            if (total > 0) resultado.put(dia.getKey(), total);
+        }
+        return resultado;
+    }
+
+    Map<Integer, Integer> porVeterinario(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        return somar(inicio, fim, dia -> dia.porVeterinario);
+    }
+
+    Map<String, Integer> porEspecialidade(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        return somar(inicio, fim, dia -> dia.porEspecialidade);
+    }
+
+    Map<String, Integer> porEspecie(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        return somar(inicio, fim, dia -> dia.porEspecie);
+    }
+
+    private <K> Map<K, Integer> somar(
+            LocalDate inicio,
+            LocalDate fim,
+            Function<Dia, ConcurrentMap<K, Integer>> grupo
+    ) {
+        var resultado = new HashMap<K, Integer>();
+        for (var dia : dias.subMap(inicio, true, fim, true).values())
+            grupo.apply(dia).forEach((chave, quantidade) -> resultado.merge(chave, quantidade, Integer::sum));
+        return resultado;
+    }
+
+    private void aplicar(
+            Marca marca,
+            int delta
+    ) {
+        var dia = dias.computeIfAbsent(marca.data(), d -> new Dia());
+        dia.total.addAndGet(delta);
+        somar(dia.porVeterinario, marca.veterinarioId(), delta);
+        somar(dia.porEspecialidade, marca.especialidade(), delta);
+        somar(dia.porEspecie, marca.especie(), delta);
+    }
+
+    private static <K> void somar(
+            ConcurrentMap<K, Integer> contagens,
+            K chave,
+            int delta
+    ) {
+        contagens.merge(chave, delta, (atual, d) -> atual + d == 0 ? null : atual + d);
+    }
+
+    /**
+     * Valores de uma consulta que entram nas contagens; especialidade e espécie
+     * ausentes são contadas como texto vazio.
+     */
+    private record Marca(
+            LocalDate data,
+            int veterinarioId,
+            String especialidade,
+            String especie
+    ) {
+
+        static Marca de(
+                Consulta consulta
+        ) {
+            return new Marca(
+                consulta.getData(),
+                consulta.getVeterinario().getId(),
+                Objects.requireNonNullElse(consulta.getVeterinario().getEspecialidade(), ""),
+                Objects.requireNonNullElse(consulta.getAnimal().getEspecie(), ""));
+        }
+    }
+
+    private static final class Dia {
+
+        final AtomicInteger total = new AtomicInteger();
+        final ConcurrentMap<Integer, Integer> porVeterinario = new ConcurrentHashMap<>();
+        final ConcurrentMap<String, Integer> porEspecialidade = new ConcurrentHashMap<>();
+        final ConcurrentMap<String, Integer> porEspecie = new ConcurrentHashMap<>();
+    }
+}
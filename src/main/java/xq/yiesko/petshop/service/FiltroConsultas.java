@@ -0,0 +1,75 @@
+package xq.yiesko.petshop.service;
+
+import java.time.LocalDate;
+
+/**
+ * Filtro das consultas de um período, usado nas contagens feitas sobre as colunas
+ * de consultas.
+ * <p>
+ * Os critérios se somam; um identificador 0 ou uma espécie {@code null} não
+ * restringem nada.
+ *
+ * @param inicio        primeiro dia do período
+ * @param fim           último dia do período
+ * @param veterinarioId veterinário responsável, ou 0 para qualquer um
+ * @param animalId      animal atendido, ou 0 para qualquer um
+ * @param especie       espécie do animal, ou {@code null} para qualquer uma
+ */
+public record FiltroConsultas(
+        LocalDate inicio,
+        LocalDate fim,
+        int veterinarioId,
+        int animalId,
+        String especie
+) {
+
+    /**
+     * Cria um filtro com todas as consultas de um período.
+     *
+     * @param inicio primeiro dia do período
+     * @param fim    último dia do período
+     * @return filtro apenas por período
+     */
+    public static FiltroConsultas periodo(
+            LocalDate inicio,
+            LocalDate fim
+    ) {
+        return new FiltroConsultas(inicio, fim, 0, 0, null);
+    }
+
+    /**
+     * Restringe o filtro às consultas de um veterinário.
+     *
+     * @param id identificador do veterinário
+     * @return novo filtro
+     */
+    public FiltroConsultas doVeterinario(
+            int id
+    ) {
+        return new FiltroConsultas(inicio, fim, id, animalId, especie);
+    }
+
+    /**
+     * Restringe o filtro às consultas de um animal.
+     *
+     * @param id identificador do animal
+     * @return novo filtro
+     */
+    public FiltroConsultas doAnimal(
+            int id
+    ) {
+        return new FiltroConsultas(inicio, fim, veterinarioId, id, especie);
+    }
+
+    /**
+     * Restringe o filtro às consultas de animais de uma espécie.
+     *
+     * @param especie espécie ou raça
+     * @return novo filtro
+     */
+    public FiltroConsultas daEspecie(
+            String especie
+    ) {
+        return new FiltroConsultas(inicio, fim, veterinarioId, animalId, especie);
+    }
+}
@@ -0,0 +1,22 @@
+package xq.yiesko.petshop.service;
+
+/**
+ * Ocupação da agenda de um veterinário em um período.
+ *
+ * @param ocupados quantidade de horários com consulta
+ * @param horarios quantidade de horários de atendimento no período
+ */
+public record Ocupacao(
+        int ocupados,
+        int horarios
+) {
+
+    /**
+     * Calcula a fração ocupada da agenda.
+     *
+     * @return percentual de 0 a 100
+     */
+    public double percentual() {
+        return horarios == 0 ? 0 : 100.0 * ocupados / horarios;
+    }
+}
@@ -1,27 +1,45 @@
 package xq.yiesko.petshop.service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import xq.yiesko.petshop.model.Proprietario;
-import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.Retrato;
+import xq.yiesko.petshop.search.SearchIndex;
+import xq.yiesko.petshop.search.Tokenizer;
 import xq.yiesko.petshop.util.ValidationUtils;
 
 /**
  * Regras de negócio para proprietários.
+ * <p>
+ * Proprietários com animais cadastrados só podem ser removidos em cascata.
  */
 public class ProprietarioService {
 
-    private final InMemoryRepository<Proprietario> repository;
+    private static final int TRAVAS_INDICE = 64;
+
+    private final Repository<Proprietario> repository;
+    private final AnimalService animalService;
+    private final SearchIndex<Proprietario> busca = new SearchIndex<>(proprietario -> List.of(
+        proprietario.getNome(), proprietario.getTelefone(), Tokenizer.digitos(proprietario.getTelefone())));
+    private final Object[] travasIndice = new Object[TRAVAS_INDICE];
 
     /**
      * Cria o serviço utilizando o repositório informado.
      *
-     * @param repository repositório responsável pelo armazenamento
+     * @param repository    repositório responsável pelo armazenamento
+     * @param animalService serviço de animais, usado para verificar e remover os animais de um proprietário
      */
     public ProprietarioService(
-            InMemoryRepository<Proprietario> repository
+            Repository<Proprietario> repository,
+            AnimalService animalService
     ) {
         this.repository = repository;
+        this.animalService = animalService;
+        for (var i = 0; i < travasIndice.length; i++) travasIndice[i] = new Object();
+        repository.paraCada(busca::indexar);
     }
 
     /**
@@ -37,12 +55,109 @@ public class ProprietarioService {
     ) {
         ValidationUtils.requireNonBlank(nome, "Nome não pode ser vazio");
         ValidationUtils.requireNonBlank(telefone, "Telefone não pode ser vazio");
-        var novo = new Proprietario(nome.trim(), telefone.trim());
-        return repository.adicionar(novo);
+        var novo = repository.adicionar(new Proprietario(nome.trim(), telefone.trim()));
+        reindexar(novo.getId());
+        return novo;
+    }
+
+    /**
+     * Cadastra um lote de proprietários com uma única inclusão no repositório.
+     * <p>
+     * O lote é tudo ou nada: todos são validados antes de qualquer inclusão.
+     *
+     * @param proprietarios proprietários a cadastrar, ainda sem identificador
+     * @return proprietários persistidos, na mesma ordem
+     * @throws IllegalArgumentException se algum proprietário for inválido
+     */
+    public List<Proprietario> cadastrarTodos(
+            List<Proprietario> proprietarios
+    ) {
+        validarTodos(proprietarios);
+        repository.adicionarTodos(proprietarios);
+        for (var proprietario : proprietarios) reindexar(proprietario.getId());
+        return proprietarios;
+    }
+
+    /**
+     * Atualiza um lote de proprietários com uma única substituição no repositório.
+     * <p>
+     * O lote é tudo ou nada: todos são validados antes, e se algum não existir
+     * nenhum é alterado no repositório.
+     *
+     * @param proprietarios proprietários com os novos dados
+     * @return true se todos existiam e foram atualizados
+     * @throws IllegalArgumentException se algum proprietário for inválido
+     */
+    public boolean atualizarTodos(
+            List<Proprietario> proprietarios
+    ) {
+        validarTodos(proprietarios);
+        if (!repository.atualizarTodos(proprietarios)) return false;
+
+        for (var proprietario : proprietarios) reindexar(proprietario.getId());
+        return true;
+    }
+
+    /**
+     * Remove um lote de proprietários com uma única remoção no repositório.
+     *
+     * @param ids identificadores dos proprietários
+     * @return quantidade de proprietários removidos
+     * @throws IllegalArgumentException se algum proprietário possuir animais cadastrados; nesse caso nenhum é removido
+     */
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        return RemocaoBloqueada.aplicar(repository, ids, animalService::bloquearProprietarios, animalService::desbloquearProprietarios, () -> {
+            var removidos = repository.removerTodos(ids);
+            for (var id : ids) reindexar(id);
+            return removidos;
+        });
+    }
+
+    /**
+     * Atualiza o índice de busca depois de uma alteração feita diretamente no
+     * repositório, sem passar pelo serviço, como as que a replicação aplica à cópia
+     * de um seguidor.
+     *
+     * @param id identificador de um proprietário incluído, alterado ou removido
+     */
+    public void sincronizar(
+            int id
+    ) {
+        reindexar(id);
+    }
+
+    /**
+     * Leva o índice de busca ao estado de um proprietário no repositório, depois de uma
+     * escrita. As chamadas para um mesmo identificador são serializadas e sempre
+     * releem o repositório, então a última delas vê o estado final: uma atualização
+     * que termina depois de uma remoção concorrente não volta a indexar um proprietário
+     * removido nem deixa no índice um nome antigo.
+     */
+    private void reindexar(
+            int id
+    ) {
+        synchronized (travasIndice[id & (TRAVAS_INDICE - 1)]) {
+            repository.buscarPorId(id).ifPresentOrElse(busca::indexar, () -> busca.desindexar(id));
+        }
+    }
+
+    private void validarTodos(
+            List<Proprietario> proprietarios
+    ) {
+        for (var proprietario : proprietarios) {
+            ValidationUtils.requireNonBlank(proprietario.getNome(), "Nome não pode ser vazio");
+            ValidationUtils.requireNonBlank(proprietario.getTelefone(), "Telefone não pode ser vazio");
+        }
+        for (var proprietario : proprietarios) {
+            proprietario.setNome(proprietario.getNome().trim());
+            proprietario.setTelefone(proprietario.getTelefone().trim());
+        }
     }
 
     /**
-     * Atualiza um proprietário existente.
+     * Atualiza um proprietário existente sobre o seu estado mais recente.
      *
      * @param id       identificador do proprietário
      * @param nome     novo nome
@@ -53,17 +168,49 @@ public class ProprietarioService {
             int id,
             String nome,
             String telefone
+    ) {
+        return atualizarVersao(id, nome, telefone, AtualizacaoOtimista.QUALQUER_VERSAO);
+    }
+
+    /**
+     * Atualiza um proprietário somente se ele ainda estiver na versão lida.
+     *
+     * @param id             identificador do proprietário
+     * @param nome           novo nome
+     * @param telefone       novo telefone
+     * @param versaoEsperada versão lida antes da edição
+     * @return true se houve atualização
+     * @throws IllegalStateException se o proprietário foi alterado depois da leitura
+     */
+    public boolean atualizar(
+            int id,
+            String nome,
+            String telefone,
+            int versaoEsperada
+    ) {
+        ValidationUtils.requirePositive(versaoEsperada, "Versão deve ser positiva");
+        return atualizarVersao(id, nome, telefone, versaoEsperada);
+    }
+
+    private boolean atualizarVersao(
+            int id,
+            String nome,
+            String telefone,
+            int versaoEsperada
     ) {
         ValidationUtils.requireNonBlank(nome, "Nome não pode ser vazio");
         ValidationUtils.requireNonBlank(telefone, "Telefone não pode ser vazio");
 
-        var proprietarioOpt = repository.buscarPorId(id);
-        if (proprietarioOpt.isEmpty()) return false;
+        var proprietario = AtualizacaoOtimista.aplicar(repository, id, versaoEsperada, atual -> {
+            var copia = atual.copiar();
+            copia.setNome(nome.trim());
+            copia.setTelefone(telefone.trim());
+            return copia;
+        });
+        if (proprietario == null) return false;
 
-        var proprietario = proprietarioOpt.get();
-        proprietario.setNome(nome.trim());
-        proprietario.setTelefone(telefone.trim());
-        return repository.atualizar(proprietario);
+        reindexar(id);
+        return true;
     }
 
     /**
@@ -71,11 +218,30 @@ public class ProprietarioService {
      *
      * @param id identificador buscado
      * @return true se o registro foi removido
+     * @throws IllegalArgumentException se o proprietário possuir animais cadastrados
      */
     public boolean remover(
             int id
     ) {
-        return repository.remover(id);
+        return RemocaoBloqueada.aplicar(repository, List.of(id), animalService::bloquearProprietarios, animalService::desbloquearProprietarios, () -> {
+            if (!repository.remover(id)) return false;
+
+            reindexar(id);
+            return true;
+        });
+    }
+
+    /**
+     * Remove um proprietário junto com os seus animais e as consultas deles.
+     *
+     * @param id identificador buscado
+     * @return true se o registro foi removido
+     */
+    public boolean removerEmCascata(
+            int id
+    ) {
+        animalService.removerDoProprietario(id);
+        return remover(id);
     }
 
     /**
@@ -87,6 +253,83 @@ public class ProprietarioService {
         return repository.listar();
     }
 
+    /**
+     * Lista uma página de proprietários, na ordem de cadastro.
+     *
+     * @param deslocamento quantidade de registros a pular
+     * @param limite       tamanho máximo da página
+     * @return página de proprietários
+     */
+    public List<Proprietario> listar(
+            int deslocamento,
+            int limite
+    ) {
+        ValidationUtils.requireNonNegative(deslocamento, "Deslocamento não pode ser negativo");
+        ValidationUtils.requirePositive(limite, "Limite deve ser positivo");
+        return repository.listar(deslocamento, limite);
+    }
+
+    /**
+     * Lista a página de proprietários seguinte ao identificador informado.
+     *
+     * @param aposId identificador do último registro da página anterior, ou 0 para a primeira página
+     * @param limite tamanho máximo da página
+     * @return página de proprietários
+     */
+    public List<Proprietario> listarApos(
+            int aposId,
+            int limite
+    ) {
+        ValidationUtils.requirePositive(limite, "Limite deve ser positivo");
+        return repository.listarApos(aposId, limite);
+    }
+
+    /**
+     * Percorre os proprietários sem copiar a coleção.
+     *
+     * @return stream de proprietários, na ordem de cadastro
+     */
+    public Stream<Proprietario> stream() {
+        return repository.stream();
+    }
+
+    /**
+     * Obtém um retrato imutável de todos os proprietários no instante da chamada.
+     *
+     * @return retrato dos proprietários
+     */
+    public Retrato<Proprietario> retrato() {
+        return repository.retrato();
+    }
+
+    /**
+     * Obtém a quantidade de proprietários cadastrados.
+     *
+     * @return quantidade de registros
+     */
+    public int quantidade() {
+        return repository.tamanho();
+    }
+
+    /**
+     * Busca proprietários por prefixos do nome ou do telefone, como em um campo de
+     * autocompletar. Telefones também são encontrados só pelos dígitos.
+     *
+     * @param termo  texto digitado, sem distinção de maiúsculas ou acentos
+     * @param limite quantidade máxima de resultados
+     * @return proprietários encontrados
+     */
+    public List<Proprietario> buscar(
+            String termo,
+            int limite
+    ) {
+        ValidationUtils.requirePositive(limite, "Limite deve ser positivo");
+
+        var encontrados = new ArrayList<Proprietario>();
+        for (var id : busca.buscar(termo, limite)) repository.buscarPorId(id).ifPresent(encontrados::add);
+        return encontrados;
+    }
+
     /**
      * Busca um proprietário pelo identificador.
      *
@@ -0,0 +1,87 @@
+package xq.yiesko.petshop.service;
+
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Índice reverso de uma referência entre entidades, como do proprietário para os
+ * seus animais.
+ * <p>
+ * Cada alvo guarda o conjunto ordenado dos identificadores que o referenciam. O
+ * conjunto é removido assim que fica vazio, de modo que saber se um alvo ainda é
+ * referenciado custa uma consulta ao mapa. As alterações de um mesmo alvo são
+ * feitas dentro do {@code compute}, que as serializa.
+ * <p>
+ * O alvo atual de cada identificador também é guardado, de modo que mudar a
+ * referência não depende de o chamador conhecer o valor anterior, que pode já ter
+ * sido sobrescrito na instância em memória.
+ */
+final class Referencias {
+
+    private final ConcurrentMap<Integer, NavigableSet<Integer>> porAlvo = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Integer> alvoDe = new ConcurrentHashMap<>();
+
+    /**
+     * Define o alvo referenciado por um identificador, movendo a referência
+     * anterior, se houver.
+     *
+     * @param id   identificador que referencia o alvo
+     * @param alvo novo alvo, ou 0 para remover a referência
+     */
+    void definir(
+            int id,
+            int alvo
+    ) {
+        alvoDe.compute(id, (k, anterior) -> {
+            var atual = anterior != null ? anterior : 0;
+            if (atual != alvo) {
+                if (alvo != 0) adicionar(alvo, id);
+                if (atual != 0) remover(atual, id);
+            }
+            return alvo != 0 ? alvo : null;
+        });
+    }
+
+    private void adicionar(
+            int alvo,
+            int id
+    ) {
+        porAlvo.compute(alvo, (k, ids) -> {
+            if (ids == null) ids = new ConcurrentSkipListSet<>();
+            ids.add(id);
+            return ids;
+        });
+    }
+
+    private void remover(
+            int alvo,
+            int id
+    ) {
+        porAlvo.computeIfPresent(alvo, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    boolean possui(
+            int alvo
+    ) {
+        return porAlvo.containsKey(alvo);
+    }
+
+    /**
+     * Obtém os identificadores que referenciam um alvo.
+     *
+     * @param alvo identificador do alvo
+     * @return identificadores em ordem crescente
+     */
+    List<Integer> de(
+            int alvo
+    ) {
+        var ids = porAlvo.get(alvo);
+        return ids == null ? List.of() : List.copyOf(ids);
+    }
+}
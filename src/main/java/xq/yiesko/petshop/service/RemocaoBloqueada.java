@@ -0,0 +1,61 @@
+package xq.yiesko.petshop.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import xq.yiesko.petshop.repository.Repository;
+
+/**
+ * Remoção de entidades que outras podem referenciar.
+ * <p>
+ * Verificar que ninguém referencia uma entidade e só depois removê-la deixa uma
+ * janela em que uma nova referência aponta para a entidade removida. Por isso as
+ * entidades são antes bloqueadas pelo serviço que cria as referências, que verifica
+ * e bloqueia sem criações em andamento e recusa as seguintes. Só as entidades
+ * cadastradas são bloqueadas, para que um identificador ainda não atribuído não
+ * fique bloqueado para o cadastro que o receber.
+ */
+final class RemocaoBloqueada {
+
+    private RemocaoBloqueada() {}
+
+    /**
+     * Bloqueia as entidades cadastradas e executa a remoção. Se a remoção falhar, as
+     * que continuarem cadastradas são desbloqueadas.
+     *
+     * @param repository  repositório das entidades removidas
+     * @param ids         identificadores a remover
+     * @param bloquear    bloqueia as entidades, ou falha se alguma for referenciada
+     * @param desbloquear desfaz o bloqueio das entidades que não foram removidas
+     * @param remocao     remoção propriamente dita
+     * @param <R>         resultado da remoção
+     * @return resultado da remoção
+     * @throws IllegalArgumentException se alguma entidade for referenciada; nesse caso nenhuma é removida
+     */
+    static <R> R aplicar(
+            Repository<?> repository,
+            List<Integer> ids,
+            Consumer<List<Integer>> bloquear,
+            Consumer<List<Integer>> desbloquear,
+            Supplier<R> remocao
+    ) {
+        var bloqueados = cadastrados(repository, ids);
+        bloquear.accept(bloqueados);
+        try {
+            return remocao.get();
+        } catch (RuntimeException e) {
+            desbloquear.accept(cadastrados(repository, bloqueados));
+            throw e;
+        }
+    }
+
+    private static List<Integer> cadastrados(
+            Repository<?> repository,
+            List<Integer> ids
+    ) {
+        var cadastrados = new ArrayList<Integer>(ids.size());
+        for (var id : ids) if (repository.buscarPorId(id).isPresent()) cadastrados.add(id);
+        return cadastrados;
+    }
+}
@@ -1,27 +1,44 @@
 package xq.yiesko.petshop.service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import xq.yiesko.petshop.model.Veterinario;
-import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.Retrato;
+import xq.yiesko.petshop.search.SearchIndex;
 import xq.yiesko.petshop.util.ValidationUtils;
 
 /**
  * Regras de negócio para veterinários.
+ * <p>
+ * Veterinários com consultas agendadas só podem ser removidos em cascata.
  */
 public class VeterinarioService {
 
-    private final InMemoryRepository<Veterinario> repository;
+    private static final int TRAVAS_INDICE = 64;
+
+    private final Repository<Veterinario> repository;
+    private final ConsultaService consultaService;
+    private final SearchIndex<Veterinario> busca = new SearchIndex<>(veterinario -> List.of(
+        veterinario.getNome(), veterinario.getEspecialidade()));
+    private final Object[] travasIndice = new Object[TRAVAS_INDICE];
 
     /**
      * Cria o serviço utilizando o repositório informado.
      *
-     * @param repository repositório responsável pelo armazenamento
+     * @param repository      repositório responsável pelo armazenamento
+     * @param consultaService serviço de consultas, usado para verificar e cancelar as consultas de um veterinário
      */
     public VeterinarioService(
-            InMemoryRepository<Veterinario> repository
+            Repository<Veterinario> repository,
+            ConsultaService consultaService
     ) {
         this.repository = repository;
+        this.consultaService = consultaService;
+        for (var i = 0; i < travasIndice.length; i++) travasIndice[i] = new Object();
+        repository.paraCada(busca::indexar);
     }
 
     /**
@@ -40,12 +57,111 @@ public class VeterinarioService {
         ValidationUtils.requireNonBlank(nome, "Nome não pode ser vazio");
         ValidationUtils.requireNonBlank(telefone, "Telefone não pode ser vazio");
         ValidationUtils.requireNonBlank(especialidade, "Especialidade não pode ser vazia");
-        var novo = new Veterinario(nome.trim(), telefone.trim(), especialidade.trim());
-        return repository.adicionar(novo);
+        var novo = repository.adicionar(new Veterinario(nome.trim(), telefone.trim(), especialidade.trim()));
+        reindexar(novo.getId());
+        return novo;
+    }
+
+    /**
+     * Cadastra um lote de veterinários com uma única inclusão no repositório.
+     * <p>
+     * O lote é tudo ou nada: todos são validados antes de qualquer inclusão.
+     *
+     * @param veterinarios veterinários a cadastrar, ainda sem identificador
+     * @return veterinários persistidos, na mesma ordem
+     * @throws IllegalArgumentException se algum veterinário for inválido
+     */
+    public List<Veterinario> cadastrarTodos(
+            List<Veterinario> veterinarios
+    ) {
+        validarTodos(veterinarios);
+        repository.adicionarTodos(veterinarios);
+        for (var veterinario : veterinarios) reindexar(veterinario.getId());
+        return veterinarios;
     }
 
     /**
-     * Atualiza um veterinário existente.
+     * Atualiza um lote de veterinários com uma única substituição no repositório.
+     * <p>
+     * O lote é tudo ou nada: todos são validados antes, e se algum não existir
+     * nenhum é alterado no repositório.
+     *
+     * @param veterinarios veterinários com os novos dados
+     * @return true se todos existiam e foram atualizados
+     * @throws IllegalArgumentException se algum veterinário for inválido
+     */
+    public boolean atualizarTodos(
+            List<Veterinario> veterinarios
+    ) {
+        validarTodos(veterinarios);
+        if (!repository.atualizarTodos(veterinarios)) return false;
+
+        for (var veterinario : veterinarios) reindexar(veterinario.getId());
+        return true;
+    }
+
+    /**
+     * Remove um lote de veterinários com uma única remoção no repositório.
+     *
+     * @param ids identificadores dos veterinários
+     * @return quantidade de veterinários removidos
+     * @throws IllegalArgumentException se algum veterinário possuir consultas agendadas ou arquivadas; nesse caso nenhum é removido
+     */
+    public int removerTodos(
+            List<Integer> ids
+    ) {
+        return RemocaoBloqueada.aplicar(repository, ids, consultaService::bloquearVeterinarios, consultaService::desbloquearVeterinarios, () -> {
+            var removidos = repository.removerTodos(ids);
+            for (var id : ids) reindexar(id);
+            return removidos;
+        });
+    }
+
+    /**
+     * Atualiza o índice de busca depois de uma alteração feita diretamente no
+     * repositório, sem passar pelo serviço, como as que a replicação aplica à cópia
+     * de um seguidor.
+     *
+     * @param id identificador de um veterinário incluído, alterado ou removido
+     */
+    public void sincronizar(
+            int id
+    ) {
+        reindexar(id);
+    }
+
+    /**
+     * Leva o índice de busca ao estado de um veterinário no repositório, depois de uma
+     * escrita. As chamadas para um mesmo identificador são serializadas e sempre
+     * releem o repositório, então a última delas vê o estado final: uma atualização
+     * que termina depois de uma remoção concorrente não volta a indexar um veterinário
+     * removido nem deixa no índice um nome antigo.
+     */
+    private void reindexar(
+            int id
+    ) {
+        synchronized (travasIndice[id & (TRAVAS_INDICE - 1)]) {
+            repository.buscarPorId(id).ifPresentOrElse(busca::indexar, () -> busca.desindexar(id));
+        }
+    }
+
+    private void validarTodos(
+            List<Veterinario> veterinarios
+    ) {
+        for (var veterinario : veterinarios) {
+            ValidationUtils.requireNonBlank(veterinario.getNome(), "Nome não pode ser vazio");
+            ValidationUtils.requireNonBlank(veterinario.getTelefone(), "Telefone não pode ser vazio");
+            ValidationUtils.requireNonBlank(veterinario.getEspecialidade(), "Especialidade não pode ser vazia");
+        }
+        for (var veterinario : veterinarios) {
+            veterinario.setNome(veterinario.getNome().trim());
+            veterinario.setTelefone(veterinario.getTelefone().trim());
+            veterinario.setEspecialidade(veterinario.getEspecialidade().trim());
+        }
+    }
+
+    /**
+     * Atualiza um veterinário existente sobre o seu estado mais recente.
      *
      * @param id            identificador
      * @param nome          novo nome
@@ -58,19 +174,54 @@ public class VeterinarioService {
             String nome,
             String telefone,
             String especialidade
+    ) {
+        return atualizarVersao(id, nome, telefone, especialidade, AtualizacaoOtimista.QUALQUER_VERSAO);
+    }
+
+    /**
+     * Atualiza um veterinário somente se ele ainda estiver na versão lida.
+     *
+     * @param id             identificador
+     * @param nome           novo nome
+     * @param telefone       novo telefone
+     * @param especialidade  nova especialidade
+     * @param versaoEsperada versão lida antes da edição
+     * @return true se houve atualização
+     * @throws IllegalStateException se o veterinário foi alterado depois da leitura
+     */
+    public boolean atualizar(
+            int id,
+            String nome,
+            String telefone,
+            String especialidade,
+            int versaoEsperada
+    ) {
+        ValidationUtils.requirePositive(versaoEsperada, "Versão deve ser positiva");
+        return atualizarVersao(id, nome, telefone, especialidade, versaoEsperada);
+    }
+
+    private boolean atualizarVersao(
+            int id,
+            String nome,
+            String telefone,
+            String especialidade,
+            int versaoEsperada
     ) {
         ValidationUtils.requireNonBlank(nome, "Nome não pode ser vazio");
         ValidationUtils.requireNonBlank(telefone, "Telefone não pode ser vazio");
         ValidationUtils.requireNonBlank(especialidade, "Especialidade não pode ser vazia");
 
-        var veterinarioOpt = repository.buscarPorId(id);
-        if (veterinarioOpt.isEmpty()) return false;
+        var veterinario = AtualizacaoOtimista.aplicar(repository, id, versaoEsperada, atual -> {
+            var copia = atual.copiar();
+            copia.setNome(nome.trim());
+            copia.setTelefone(telefone.trim());
+            copia.setEspecialidade(especialidade.trim());
+            return copia;
+        });
+        if (veterinario == null) return false;
 
-        var veterinario = veterinarioOpt.get();
-        veterinario.setNome(nome.trim());
-        veterinario.setTelefone(telefone.trim());
-        veterinario.setEspecialidade(especialidade.trim());
-        return repository.atualizar(veterinario);
+        reindexar(id);
+        return true;
     }
 
     /**
@@ -78,11 +229,35 @@ public class VeterinarioService {
      *
      * @param id identificador buscado
      * @return true se o registro foi removido
+     * @throws IllegalArgumentException se o veterinário possuir consultas agendadas ou arquivadas
      */
     public boolean remover(
             int id
     ) {
-        return repository.remover(id);
+        return RemocaoBloqueada.aplicar(repository, List.of(id), consultaService::bloquearVeterinarios, consultaService::desbloquearVeterinarios, () -> {
+            if (!repository.remover(id)) return false;
+
+            reindexar(id);
+            return true;
+        });
+    }
+
+    /**
+     * Remove um veterinário e cancela todas as suas consultas.
+     *
+     * @param id identificador buscado
+     * @return true se o registro foi removido
+     * @throws IllegalArgumentException se o veterinário possuir consultas arquivadas, que
+     *                                  não podem ser canceladas; nesse caso nada é cancelado
+     */
+    public boolean removerEmCascata(
+            int id
+    ) {
+        if (consultaService.possuiConsultasArquivadasDoVeterinario(id))
+            throw new IllegalArgumentException("Veterinário possui consultas arquivadas");
+
+        consultaService.cancelarDoVeterinario(id);
+        return remover(id);
     }
 
     /**
@@ -94,6 +269,83 @@ public class VeterinarioService {
         return repository.listar();
     }
 
+    /**
+     * Lista uma página de veterinários, na ordem de cadastro.
+     *
+     * @param deslocamento quantidade de registros a pular
+     * @param limite       tamanho máximo da página
+     * @return página de veterinários
+     */
+    public List<Veterinario> listar(
+            int deslocamento,
+            int limite
+    ) {
+        ValidationUtils.requireNonNegative(deslocamento, "Deslocamento não pode ser negativo");
+        ValidationUtils.requirePositive(limite, "Limite deve ser positivo");
+        return repository.listar(deslocamento, limite);
+    }
+
+    /**
+     * Lista a página de veterinários seguinte ao identificador informado.
+     *
+     * @param aposId identificador do último registro da página anterior, ou 0 para a primeira página
+     * @param limite tamanho máximo da página
+     * @return página de veterinários
+     */
+    public List<Veterinario> listarApos(
+            int aposId,
+            int limite
+    ) {
+        ValidationUtils.requirePositive(limite, "Limite deve ser positivo");
+        return repository.listarApos(aposId, limite);
+    }
+
+    /**
+     * Percorre os veterinários sem copiar a coleção.
+     *
+     * @return stream de veterinários, na ordem de cadastro
+     */
+    public Stream<Veterinario> stream() {
+        return repository.stream();
+    }
+
+    /**
+     * Obtém um retrato imutável de todos os veterinários no instante da chamada.
+     *
+     * @return retrato dos veterinários
+     */
+    public Retrato<Veterinario> retrato() {
+        return repository.retrato();
+    }
+
+    /**
+     * Obtém a quantidade de veterinários cadastrados.
+     *
+     * @return quantidade de registros
+     */
+    public int quantidade() {
+        return repository.tamanho();
+    }
+
+    /**
+     * Busca veterinários por prefixos do nome ou da especialidade, como em um
+     * campo de autocompletar.
+     *
+     * @param termo  texto digitado, sem distinção de maiúsculas ou acentos
+     * @param limite quantidade máxima de resultados
+     * @return veterinários encontrados
+     */
+    public List<Veterinario> buscar(
+            String termo,
+            int limite
+    ) {
+        ValidationUtils.requirePositive(limite, "Limite deve ser positivo");
+
+        var encontrados = new ArrayList<Veterinario>();
+        for (var id : busca.buscar(termo, limite)) repository.buscarPorId(id).ifPresent(encontrados::add);
+        return encontrados;
+    }
+
     /**
      * Busca um veterinário pelo identificador.
      *
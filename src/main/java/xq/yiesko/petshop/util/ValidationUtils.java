@@ -32,4 +32,17 @@ public final class ValidationUtils {
     ) {
         if (value < 0) throw new IllegalArgumentException(message);
     }
+
+    /**
+     * Garante que um número seja positivo.
+     *
+     * @param value   valor avaliado
+     * @param message mensagem de erro
+     */
+    public static void requirePositive(
+            int value,
+            String message
+    ) {
+        if (value <= 0) throw new IllegalArgumentException(message);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package xq.yiesko.petshop.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import xq.yiesko.petshop.model.Proprietario;
+
+class InMemoryRepositoryTest {
+
+    private static final int RODADAS = 20_000;
+
+    @Test
+    void atualizacaoEmLoteComIdInexistenteNaoAlteraVersoes() {
+        var repository = new InMemoryRepository<Proprietario>();
+        var existente = repository.adicionar(new Proprietario("Ana", "1111")).copiar();
+        var inexistente = new Proprietario("Bia", "2222");
+        inexistente.setId(99);
+        var versao = existente.getVersao();
+
+        assertFalse(repository.atualizarTodos(List.of(existente, inexistente)));
+
+        assertEquals(versao, existente.getVersao());
+        assertEquals(versao, repository.buscarPorId(existente.getId()).orElseThrow().getVersao());
+    }
+
+    @Test
+    void atualizacaoEmLoteDaInstanciaArmazenadaIncrementaUmaVersaoPorChamada() throws Exception {
+        var repository = new InMemoryRepository<Proprietario>();
+        var armazenado = repository.adicionar(new Proprietario("Ana", "1111"));
+        var outro = repository.adicionar(new Proprietario("Bia", "2222"));
+        var versao = armazenado.getVersao();
+
+        var concorrente = Thread.ofPlatform().start(() -> {
+            for (var i = 0; i < RODADAS; i++) repository.atualizar(outro.copiar());
+        });
+        for (var i = 0; i < RODADAS; i++) assertTrue(repository.atualizarTodos(List.of(armazenado)));
+        concorrente.join();
+
+        assertEquals(versao + RODADAS, armazenado.getVersao());
+        assertEquals(versao + RODADAS, repository.buscarPorId(outro.getId()).orElseThrow().getVersao());
+    }
+}
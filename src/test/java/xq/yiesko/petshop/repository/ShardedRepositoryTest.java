@@ -0,0 +1,49 @@
+package xq.yiesko.petshop.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.concurrent.CyclicBarrier;
+import org.junit.jupiter.api.Test;
+import xq.yiesko.petshop.model.Proprietario;
+
+class ShardedRepositoryTest {
+
+    private static final int PARTICOES = 4;
+    private static final int RODADAS = 2_000;
+
+    @Test
+    void atualizacaoEmLoteConcorrenteComRemocaoETudoOuNada() throws Exception {
+        var repository = new ShardedRepository<Proprietario>(PARTICOES);
+        var barreira = new CyclicBarrier(2);
+
+        for (var rodada = 0; rodada < RODADAS; rodada++) {
+            var lote = new ArrayList<Proprietario>();
+            for (var i = 0; i < PARTICOES; i++) lote.add(repository.adicionar(new Proprietario("Antes", "1111")).copiar());
+            for (var proprietario : lote) proprietario.setNome("Depois");
+            var removido = lote.get(PARTICOES - 1).getId();
+
+            var remocao = Thread.ofPlatform().start(() -> {
+                aguardar(barreira);
+                repository.remover(removido);
+            });
+            aguardar(barreira);
+            var atualizado = repository.atualizarTodos(lote);
+            remocao.join();
+
+            var esperado = atualizado ? "Depois" : "Antes";
+            for (var i = 0; i < PARTICOES - 1; i++)
+                assertEquals(esperado, repository.buscarPorId(lote.get(i).getId()).orElseThrow().getNome());
+        }
+    }
+
+    private static void aguardar(
+            CyclicBarrier barreira
+    ) {
+        try {
+            barreira.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
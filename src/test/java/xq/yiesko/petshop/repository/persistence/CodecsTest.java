@@ -0,0 +1,40 @@
+package xq.yiesko.petshop.repository.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+import xq.yiesko.petshop.model.Consulta;
+
+class CodecsTest {
+
+    @Test
+    void consultaLidaPreservaAsObservacoes() throws Exception {
+        for (var observacoes : new String[] {"Retorno em 15 dias", "", null}) {
+            var consulta = new Consulta(LocalDate.of(2026, 3, 2), LocalTime.of(9, 0), null, null, observacoes);
+            consulta.setId(7);
+
+            var lida = releitura(consulta);
+
+            assertEquals(7, lida.getId());
+            assertEquals(consulta.getData(), lida.getData());
+            assertEquals(consulta.getHorario(), lida.getHorario());
+            assertEquals(observacoes, lida.getObservacoes());
+        }
+    }
+
+    private static Consulta releitura(
+            Consulta consulta
+    ) throws IOException {
+        var codec = Codecs.consulta(id -> null, id -> null);
+        var saida = new ByteArrayOutputStream();
+        codec.escrever(consulta, new DataOutputStream(saida));
+        return codec.ler(new DataInputStream(new ByteArrayInputStream(saida.toByteArray())));
+    }
+}
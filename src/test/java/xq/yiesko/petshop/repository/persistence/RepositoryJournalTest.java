@@ -0,0 +1,144 @@
+package xq.yiesko.petshop.repository.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+
+class RepositoryJournalTest {
+
+    private static final String NOME = "proprietarios";
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void escritasConcorrentesSaoReaplicadasNoEstadoFinal() throws Exception {
+        var repository = new InMemoryRepository<Proprietario>();
+        var ids = new ArrayList<Integer>();
+        var journal = RepositoryJournal.abrir(diretorio, NOME, repository, Codecs.proprietario());
+        try {
+            for (var i = 0; i < 200; i++) ids.add(repository.adicionar(new Proprietario("P" + i, "0")).getId());
+
+            var threads = new ArrayList<Thread>();
+            for (var t = 0; t < 8; t++) {
+                threads.add(Thread.ofPlatform().start(() -> {
+                    var aleatorio = ThreadLocalRandom.current();
+                    for (var i = 0; i < 2_000; i++) {
+                        var id = ids.get(aleatorio.nextInt(ids.size()));
+                        var atual = repository.buscarPorId(id);
+                        if (atual.isEmpty()) continue;
+                        if (aleatorio.nextInt(50) == 0) {
+                            repository.remover(id);
+                        } else {
+                            var copia = atual.get().copiar();
+                            copia.setNome("P" + id + "-" + i);
+                            repository.atualizar(copia, copia.getVersao());
+                        }
+                    }
+                }));
+            }
+            for (var thread : threads) thread.join();
+        } finally {
+            journal.close();
+        }
+
+        var recuperado = new InMemoryRepository<Proprietario>();
+        RepositoryJournal.abrir(diretorio, NOME, recuperado, Codecs.proprietario()).close();
+
+        assertEquals(estado(repository), estado(recuperado));
+    }
+
+    @Test
+    void reaplicacaoIgnoraAtualizacaoDeIdJaRemovido() throws IOException {
+        try (var log = new OperationLog(diretorio, NOME, 1)) {
+            log.aguardar(log.registrar(OperationLog.ADICIONAR, 1, dados(1, 1, "Ana")));
+            log.aguardar(log.registrar(OperationLog.ADICIONAR, 2, dados(2, 1, "Bia")));
+            log.aguardar(log.registrar(OperationLog.REMOVER, 1, new byte[0]));
+            log.aguardar(log.registrar(OperationLog.ATUALIZAR, 1, dados(1, 2, "Ana")));
+        }
+
+        var repository = new InMemoryRepository<Proprietario>();
+        RepositoryJournal.abrir(diretorio, NOME, repository, Codecs.proprietario()).close();
+
+        assertTrue(repository.buscarPorId(1).isEmpty());
+        assertEquals("Bia", repository.buscarPorId(2).orElseThrow().getNome());
+        assertEquals(3, repository.proximoId());
+    }
+
+    @Test
+    void caudaCorrompidaDoUltimoSegmentoETruncada() throws IOException {
+        try (var log = new OperationLog(diretorio, NOME, 1)) {
+            log.aguardar(log.registrar(OperationLog.ADICIONAR, 1, dados(1, 1, "Ana")));
+            log.aguardar(log.registrar(OperationLog.ADICIONAR, 2, dados(2, 1, "Bia")));
+        }
+        var arquivo = OperationLog.caminho(diretorio, NOME, 1);
+        corromperUltimoByte(arquivo);
+
+        var repository = new InMemoryRepository<Proprietario>();
+        RepositoryJournal.abrir(diretorio, NOME, repository, Codecs.proprietario()).close();
+
+        assertEquals(1, repository.tamanho());
+        assertEquals("Ana", repository.buscarPorId(1).orElseThrow().getNome());
+    }
+
+    @Test
+    void corrupcaoNoMeioDoLogImpedeAAbertura() throws IOException {
+        try (var log = new OperationLog(diretorio, NOME, 1)) {
+            log.aguardar(log.registrar(OperationLog.ADICIONAR, 1, dados(1, 1, "Ana")));
+            log.rotacionar();
+            log.aguardar(log.registrar(OperationLog.ADICIONAR, 2, dados(2, 1, "Bia")));
+        }
+        var primeiro = OperationLog.caminho(diretorio, NOME, 1);
+        var tamanho = Files.size(primeiro);
+        corromperUltimoByte(primeiro);
+
+        assertThrows(IOException.class, () -> RepositoryJournal.abrir(diretorio, NOME, new InMemoryRepository<>(), Codecs.proprietario()));
+        assertEquals(tamanho, Files.size(primeiro));
+    }
+
+    private static Map<Integer, String> estado(
+            InMemoryRepository<Proprietario> repository
+    ) {
+        var estado = new HashMap<Integer, String>();
+        for (var proprietario : repository.listar())
+            estado.put(proprietario.getId(), proprietario.getVersao() + ":" + proprietario.getNome());
+        return estado;
+    }
+
+    private static byte[] dados(
+            int id,
+            int versao,
+            String nome
+    ) throws IOException {
+        var proprietario = new Proprietario(nome, "0");
+        proprietario.setId(id);
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        out.writeInt(versao);
+        Codecs.proprietario().escrever(proprietario, out);
+        return bytes.toByteArray();
+    }
+
+    private static void corromperUltimoByte(
+            Path arquivo
+    ) throws IOException {
+        var conteudo = Files.readAllBytes(arquivo);
+        conteudo[conteudo.length - 1] ^= 0x5A;
+        Files.write(arquivo, conteudo);
+    }
+}
@@ -0,0 +1,336 @@
+package xq.yiesko.petshop.repository.replication;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import xq.yiesko.petshop.api.ApiServer;
+import xq.yiesko.petshop.metricas.Metricas;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.repository.Repository;
+import xq.yiesko.petshop.repository.persistence.Codecs;
+import xq.yiesko.petshop.repository.persistence.EntityCodec;
+import xq.yiesko.petshop.service.AnimalService;
+import xq.yiesko.petshop.service.ConsultaService;
+import xq.yiesko.petshop.service.ProprietarioService;
+import xq.yiesko.petshop.service.VeterinarioService;
+
+class ReplicationTest {
+
+    private static final String NOME = "proprietarios";
+    private static final Duration PRAZO = Duration.ofSeconds(10);
+
+    @Test
+    void seguidorRecebeRetratoAlteracoesEContinuaDepoisDeReconectar() throws Exception {
+        var origem = new InMemoryRepository<Proprietario>();
+        for (var i = 0; i < 3; i++) origem.adicionar(new Proprietario("Inicial " + i, "1111"));
+
+        var lider = new ReplicationLeader().replicar(NOME, origem, Codecs.proprietario()).iniciar(local());
+        try (var rede = new Rede(lider.endereco());
+             var seguidor = new ReplicationFollower(rede.endereco())) {
+            var copia = seguidor.replicar(NOME, new InMemoryRepository<>(), Codecs.proprietario());
+            seguidor.iniciar();
+
+            aguardar(seguidor, origem);
+            assertEquals(estado(origem), estado(copia));
+
+            var atualizado = origem.buscarPorId(1).orElseThrow().copiar();
+            atualizado.setNome("Atualizado");
+            origem.atualizar(atualizado);
+            origem.remover(2);
+            origem.adicionar(new Proprietario("Novo", "2222"));
+            aguardar(seguidor, origem);
+            assertEquals(estado(origem), estado(copia));
+            assertTrue(lider.aguardarConfirmacao(NOME, origem.alteracoes().ultimaSequencia(), PRAZO));
+
+            rede.derrubar();
+            origem.remover(1);
+            origem.adicionar(new Proprietario("Durante a queda", "3333"));
+            aguardar(seguidor, origem);
+            assertEquals(estado(origem), estado(copia));
+        } finally {
+            lider.close();
+        }
+    }
+
+    @Test
+    void seguidorRecebeRetratoDeUmLiderReiniciado() throws Exception {
+        var primeira = new InMemoryRepository<Proprietario>();
+        for (var i = 0; i < 5; i++) primeira.adicionar(new Proprietario("Primeira " + i, "1111"));
+        var segunda = new InMemoryRepository<Proprietario>();
+        for (var i = 0; i < 2; i++) segunda.adicionar(new Proprietario("Segunda " + i, "2222"));
+
+        var lider = new ReplicationLeader().replicar(NOME, primeira, Codecs.proprietario()).iniciar(local());
+        try (var rede = new Rede(lider.endereco());
+             var seguidor = new ReplicationFollower(rede.endereco())) {
+            var copia = seguidor.replicar(NOME, new InMemoryRepository<>(), Codecs.proprietario());
+            seguidor.iniciar();
+            aguardar(seguidor, primeira);
+
+            lider.close();
+            lider = new ReplicationLeader().replicar(NOME, segunda, Codecs.proprietario()).iniciar(local());
+            rede.redirecionar(lider.endereco());
+            rede.derrubar();
+
+            var sequencia = segunda.alteracoes().ultimaSequencia();
+            assertTrue(esperar(() -> seguidor.conectado() && seguidor.aplicada(NOME) >= sequencia && estado(segunda).equals(estado(copia))));
+        } finally {
+            lider.close();
+        }
+    }
+
+    @Test
+    void seguidorAtendeConsultasPorDataEBuscasPelosIndicesReplicados() throws Exception {
+        var origem = new Clinica(null);
+        var dono = origem.proprietarios.cadastrar("Ana", "1111");
+        var veterinario = origem.veterinarios.cadastrar("Dra. Lia", "2222", "Clínica geral");
+        var animal = origem.animais.cadastrarCachorro("Rex", 3, "Labrador", dono);
+        var dia = LocalDate.now().plusDays(1);
+        var consulta = origem.consultas.agendar(dia, LocalTime.of(8, 0), animal, veterinario, null);
+
+        var lider = origem.replicar(new ReplicationLeader()).iniciar(local());
+        try (var seguidor = new ReplicationFollower(lider.endereco());
+             var metricas = new Metricas()) {
+            var copia = new Clinica(seguidor);
+            seguidor.iniciar();
+            origem.aguardar(seguidor);
+
+            try (var api = ApiServer.iniciar(local(), copia.proprietarios, copia.veterinarios, copia.animais, copia.consultas, metricas)) {
+                assertTrue(ler(api, "/consultas?data=" + dia).contains("\"id\":" + consulta.getId()));
+                assertTrue(ler(api, "/animais?busca=Rex").contains("Rex"));
+                assertEquals(List.of(dia.atTime(8, 30)), copia.consultas.proximosHorariosLivres(veterinario, dia.atTime(8, 0), 1));
+
+                origem.animais.atualizarAnimal(animal.getId(), "Bolt", 3, "Labrador", dono);
+                origem.consultas.cancelar(consulta.getId());
+                origem.aguardar(seguidor);
+
+                assertFalse(ler(api, "/consultas?data=" + dia).contains("\"id\":" + consulta.getId()));
+                assertFalse(ler(api, "/animais?busca=Rex").contains("Rex"));
+                assertTrue(ler(api, "/animais?busca=Bolt").contains("Bolt"));
+                assertEquals(List.of(dia.atTime(8, 0)), copia.consultas.proximosHorariosLivres(veterinario, dia.atTime(8, 0), 1));
+            }
+        } finally {
+            lider.close();
+        }
+    }
+
+    private static String ler(
+            ApiServer api,
+            String caminho
+    ) throws IOException, InterruptedException {
+        try (var cliente = HttpClient.newHttpClient()) {
+            var endereco = api.endereco();
+            var requisicao = HttpRequest.newBuilder(URI.create("http://" + endereco.getHostString() + ":" + endereco.getPort() + caminho)).build();
+            var resposta = cliente.send(requisicao, HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, resposta.statusCode());
+            return resposta.body();
+        }
+    }
+
+    private static InetSocketAddress local() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+    }
+
+    private static void aguardar(
+            ReplicationFollower seguidor,
+            InMemoryRepository<Proprietario> origem
+    ) throws InterruptedException {
+        assertTrue(seguidor.aguardar(NOME, origem.alteracoes().ultimaSequencia(), PRAZO));
+    }
+
+    private static boolean esperar(
+            Condicao condicao
+    ) throws InterruptedException {
+        var limite = System.nanoTime() + PRAZO.toNanos();
+        while (System.nanoTime() < limite) {
+            if (condicao.verdadeira()) return true;
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private static Map<Integer, String> estado(
+            Repository<Proprietario> repository
+    ) {
+        var estado = new TreeMap<Integer, String>();
+        for (var proprietario : repository.listar())
+            estado.put(proprietario.getId(), proprietario.getNome() + "@" + proprietario.getVersao());
+        return estado;
+    }
+
+    /**
+     * Repositórios e serviços de uma clínica. Com um seguidor, os repositórios são
+     * cópias replicadas e os serviços acompanham as alterações aplicadas a elas.
+     */
+    private static final class Clinica {
+
+        private final InMemoryRepository<Proprietario> proprietarioRepository = new InMemoryRepository<>();
+        private final InMemoryRepository<Veterinario> veterinarioRepository = new InMemoryRepository<>();
+        private final InMemoryRepository<Animal> animalRepository = new InMemoryRepository<>();
+        private final InMemoryRepository<Consulta> consultaRepository = new InMemoryRepository<>();
+        private final ConsultaService consultas;
+        private final AnimalService animais;
+        private final ProprietarioService proprietarios;
+        private final VeterinarioService veterinarios;
+
+        Clinica(
+                ReplicationFollower seguidor
+        ) {
+            Repository<Proprietario> proprietarioCopia = proprietarioRepository;
+            Repository<Veterinario> veterinarioCopia = veterinarioRepository;
+            Repository<Animal> animalCopia = animalRepository;
+            Repository<Consulta> consultaCopia = consultaRepository;
+            if (seguidor != null) {
+                proprietarioCopia = seguidor.replicar("proprietarios", proprietarioRepository, Codecs.proprietario());
+                veterinarioCopia = seguidor.replicar("veterinarios", veterinarioRepository, Codecs.veterinario());
+                animalCopia = seguidor.replicar("animais", animalRepository, codecAnimal());
+                consultaCopia = seguidor.replicar("consultas", consultaRepository, codecConsulta());
+            }
+
+            consultas = new ConsultaService(consultaCopia);
+            animais = new AnimalService(animalCopia, consultas);
+            proprietarios = new ProprietarioService(proprietarioCopia, animais);
+            veterinarios = new VeterinarioService(veterinarioCopia, consultas);
+
+            if (seguidor != null) {
+                seguidor.observar("proprietarios", proprietarios::sincronizar);
+                seguidor.observar("veterinarios", veterinarios::sincronizar);
+                seguidor.observar("animais", animais::sincronizar);
+                seguidor.observar("consultas", consultas::sincronizar);
+            }
+        }
+
+        ReplicationLeader replicar(
+                ReplicationLeader lider
+        ) {
+            return lider
+                .replicar("proprietarios", proprietarioRepository, Codecs.proprietario())
+                .replicar("veterinarios", veterinarioRepository, Codecs.veterinario())
+                .replicar("animais", animalRepository, codecAnimal())
+                .replicar("consultas", consultaRepository, codecConsulta());
+        }
+
+        void aguardar(
+                ReplicationFollower seguidor
+        ) throws InterruptedException {
+            assertTrue(seguidor.aguardar("proprietarios", proprietarioRepository.alteracoes().ultimaSequencia(), PRAZO));
+            assertTrue(seguidor.aguardar("veterinarios", veterinarioRepository.alteracoes().ultimaSequencia(), PRAZO));
+            assertTrue(seguidor.aguardar("animais", animalRepository.alteracoes().ultimaSequencia(), PRAZO));
+            assertTrue(seguidor.aguardar("consultas", consultaRepository.alteracoes().ultimaSequencia(), PRAZO));
+        }
+
+        private EntityCodec<Animal> codecAnimal() {
+            return Codecs.animal(id -> proprietarioRepository.buscarPorId(id).orElse(null));
+        }
+
+        private EntityCodec<Consulta> codecConsulta() {
+            return Codecs.consulta(id -> animalRepository.buscarPorId(id).orElse(null),
+                id -> veterinarioRepository.buscarPorId(id).orElse(null));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Condicao {
+
+        boolean verdadeira();
+    }
+
+    /**
+     * Encaminha as conexões do seguidor ao líder e permite derrubá-las, como uma
+     * queda de rede que não reinicia o líder.
+     */
+    private static final class Rede implements AutoCloseable {
+
+        private final ServerSocketChannel servidor;
+        private final List<SocketChannel> conexoes = new CopyOnWriteArrayList<>();
+        private volatile InetSocketAddress destino;
+
+        Rede(
+                InetSocketAddress destino
+        ) throws IOException {
+            this.destino = destino;
+            this.servidor = ServerSocketChannel.open().bind(local());
+            Thread.ofVirtual().start(this::aceitar);
+        }
+
+        InetSocketAddress endereco() throws IOException {
+            return (InetSocketAddress) servidor.getLocalAddress();
+        }
+
+        void redirecionar(
+                InetSocketAddress destino
+        ) {
+            this.destino = destino;
+        }
+
+        void derrubar() throws IOException {
+            for (var conexao : conexoes) conexao.close();
+            conexoes.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            servidor.close();
+            derrubar();
+        }
+
+        private void aceitar() {
+            try {
+                while (true) {
+                    var entrada = servidor.accept();
+                    var saida = SocketChannel.open(destino);
+                    conexoes.add(entrada);
+                    conexoes.add(saida);
+                    Thread.ofVirtual().start(() -> copiar(entrada, saida));
+                    Thread.ofVirtual().start(() -> copiar(saida, entrada));
+                }
+            } catch (IOException e) {
+                // servidor fechado
+            }
+        }
+
+        private static void copiar(
+                SocketChannel de,
+                SocketChannel para
+        ) {
+            var buffer = ByteBuffer.allocate(64 * 1024);
+            try {
+                while (de.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) para.write(buffer);
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                // conexão derrubada
+            }
+            try {
+                de.close();
+                para.close();
+            } catch (IOException e) {
+                // já fechadas
+            }
+        }
+    }
+}
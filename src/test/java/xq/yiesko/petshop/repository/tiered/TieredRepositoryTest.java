@@ -0,0 +1,128 @@
+package xq.yiesko.petshop.repository.tiered;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.repository.persistence.Codecs;
+import xq.yiesko.petshop.repository.persistence.EntityCodec;
+
+class TieredRepositoryTest {
+
+    private static final long ORCAMENTO = 16 * 1024;
+    private static final int CONSULTAS = 2_000;
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void faltasRespeitamOOrcamento() throws IOException {
+        try (var repository = new TieredRepository<>(diretorio, "consultas", Codecs.consulta(id -> null, id -> null), ORCAMENTO)) {
+            var inicio = LocalDate.of(2026, 1, 5);
+            for (var i = 0; i < CONSULTAS; i++)
+                repository.adicionar(new Consulta(inicio.plusDays(i % 300), LocalTime.of(8, 0), null, null, "Observação " + i));
+
+            for (var rodada = 0; rodada < 3; rodada++)
+                for (var id = 1; id <= CONSULTAS; id++)
+                    assertEquals("Observação " + (id - 1), repository.buscarPorId(id).orElseThrow().getObservacoes());
+
+            assertTrue(repository.faltas() >= 2L * CONSULTAS);
+            assertTrue(repository.bytesEmMemoria() <= ORCAMENTO);
+        }
+    }
+
+    @Test
+    void buscaDeEntidadeFriaNaoSeguraOLockDuranteALeitura() throws Exception {
+        lerSemBloquearEscritas(repository -> repository.buscarPorId(1));
+    }
+
+    @Test
+    void listagemNaoSeguraOLockDuranteALeitura() throws Exception {
+        lerSemBloquearEscritas(TieredRepository::listar);
+    }
+
+    @Test
+    void retiradaDeEntidadeFriaNaoSeguraOLockDuranteALeitura() throws Exception {
+        lerSemBloquearEscritas(repository -> assertEquals("Ana", repository.retirar(1).orElseThrow().getNome()));
+    }
+
+    /**
+     * Executa a leitura com a decodificação do primeiro registro frio pausada e
+     * verifica que um cadastro termina enquanto ela está pausada.
+     */
+    private void lerSemBloquearEscritas(
+            Consumer<TieredRepository<Proprietario>> leitura
+    ) throws Exception {
+        var codec = new CodecPausado();
+        try (var repository = new TieredRepository<>(diretorio, "proprietarios", codec, 1)) {
+            repository.adicionar(new Proprietario("Ana", "1111"));
+            repository.adicionar(new Proprietario("Bia", "2222"));
+
+            codec.pausar();
+            var leitor = Thread.ofPlatform().start(() -> leitura.accept(repository));
+            assertTrue(codec.pausado.await(5, TimeUnit.SECONDS));
+
+            var escritor = Thread.ofPlatform().start(() -> repository.adicionar(new Proprietario("Caio", "3333")));
+            escritor.join(TimeUnit.SECONDS.toMillis(5));
+            var terminou = !escritor.isAlive();
+
+            codec.liberar.countDown();
+            leitor.join();
+            escritor.join();
+            assertTrue(terminou, "O cadastro esperou a leitura do disco");
+            assertFalse(leitor.isAlive());
+        }
+    }
+
+    /**
+     * Codec que, depois de {@link #pausar()}, para na primeira leitura até ser liberado.
+     */
+    private static final class CodecPausado implements EntityCodec<Proprietario> {
+
+        private final EntityCodec<Proprietario> codec = Codecs.proprietario();
+        private final CountDownLatch pausado = new CountDownLatch(1);
+        private final CountDownLatch liberar = new CountDownLatch(1);
+        private volatile boolean pausar;
+
+        void pausar() {
+            pausar = true;
+        }
+
+        @Override
+        public void escrever(
+                Proprietario proprietario,
+                DataOutput out
+        ) throws IOException {
+            codec.escrever(proprietario, out);
+        }
+
+        @Override
+        public Proprietario ler(
+                DataInput in
+        ) throws IOException {
+            if (pausar) {
+                pausar = false;
+                pausado.countDown();
+                try {
+                    liberar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return codec.ler(in);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package xq.yiesko.petshop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.repository.replication.ReadOnlyRepository;
+
+class AnimalServiceTest {
+
+    @Test
+    void atualizacaoQueIndexaDepoisDeOutraNaoDeixaONomeAntigoNaBusca() {
+        var repository = new AnimaisComPausa();
+        var service = new AnimalService(repository, new ConsultaService(new InMemoryRepository<Consulta>()));
+        var proprietario = proprietario(1);
+        var id = service.cadastrarCachorro("Rex", 3, "Labrador", proprietario).getId();
+
+        repository.pausar(() -> service.atualizarAnimal(id, "Bolt", 3, "Labrador", proprietario));
+        service.atualizarAnimal(id, "Thor", 3, "Labrador", proprietario);
+
+        assertEquals("Bolt", service.buscarPorId(id).orElseThrow().getNome());
+        assertTrue(service.buscarAnimais("Thor", 10).isEmpty());
+        assertEquals(1, service.buscarAnimais("Bolt", 10).size());
+    }
+
+    @Test
+    void remocaoDuranteATrocaDeProprietarioNaoDeixaReferenciaAoNovoProprietario() {
+        var repository = new AnimaisComPausa();
+        var service = new AnimalService(repository, new ConsultaService(new InMemoryRepository<Consulta>()));
+        var id = service.cadastrarGato("Mia", 2, "Siamês", proprietario(1)).getId();
+
+        repository.pausar(() -> service.removerAnimal(id));
+        service.atualizarAnimal(id, "Mia", 2, "Siamês", proprietario(2));
+
+        assertTrue(service.buscarPorId(id).isEmpty());
+        assertFalse(service.possuiAnimais(1));
+        assertFalse(service.possuiAnimais(2));
+        assertTrue(service.buscarAnimais("Mia", 10).isEmpty());
+    }
+
+    @Test
+    void consultaComAnimalLidoAntesDaRemocaoERecusada() {
+        var consultas = new ConsultaService(new InMemoryRepository<Consulta>());
+        var service = new AnimalService(new InMemoryRepository<>(), consultas);
+        var lido = service.cadastrarCachorro("Rex", 3, "Labrador", proprietario(1));
+
+        assertTrue(service.removerAnimal(lido.getId()));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> consultas.agendar(LocalDate.now().plusDays(1), LocalTime.of(8, 0), lido, veterinario(), null));
+        assertFalse(consultas.possuiConsultasDoAnimal(lido.getId()));
+    }
+
+    @Test
+    void animalComProprietarioLidoAntesDaRemocaoERecusado() {
+        var animais = new AnimalService(new InMemoryRepository<>(), new ConsultaService(new InMemoryRepository<Consulta>()));
+        var proprietarios = new ProprietarioService(new InMemoryRepository<>(), animais);
+        var lido = proprietarios.cadastrar("Ana", "11 98888-0000");
+
+        assertTrue(proprietarios.remover(lido.getId()));
+
+        assertThrows(IllegalArgumentException.class, () -> animais.cadastrarGato("Mia", 2, "Siamês", lido));
+        assertFalse(animais.possuiAnimais(lido.getId()));
+    }
+
+    @Test
+    void remocaoQueFalhaVoltaAAceitarConsultasDoAnimal() {
+        var animais = new InMemoryRepository<Animal>();
+        var consultas = new ConsultaService(new InMemoryRepository<Consulta>());
+        var animal = new AnimalService(animais, consultas).cadastrarCachorro("Rex", 3, "Labrador", proprietario(1));
+        var somenteLeitura = new AnimalService(new ReadOnlyRepository<>(animais), consultas);
+
+        assertThrows(IllegalStateException.class, () -> somenteLeitura.removerAnimal(animal.getId()));
+
+        consultas.agendar(LocalDate.now().plusDays(1), LocalTime.of(8, 0), animal, veterinario(), null);
+        assertTrue(consultas.possuiConsultasDoAnimal(animal.getId()));
+    }
+
+    /**
+     * Repositório que executa uma escrita logo depois da próxima atualização feita
+     * pela thread atual, antes de ela voltar ao serviço, como se outra thread
+     * escrevesse naquele instante.
+     */
+    private static final class AnimaisComPausa extends InMemoryRepository<Animal> {
+
+        private Thread pausada;
+        private Runnable escrita;
+
+        void pausar(
+                Runnable escrita
+        ) {
+            this.pausada = Thread.currentThread();
+            this.escrita = escrita;
+        }
+
+        @Override
+        public boolean atualizar(
+                Animal entity,
+                int versaoEsperada
+        ) {
+            var atualizado = super.atualizar(entity, versaoEsperada);
+            if (Thread.currentThread() == pausada) {
+                pausada = null;
+                escrita.run();
+            }
+            return atualizado;
+        }
+    }
+
+    private static Veterinario veterinario() {
+        var veterinario = new Veterinario("Dra. Lia", "11 99999-0000", "Clínica geral");
+        veterinario.setId(1);
+        return veterinario;
+    }
+
+    private static Proprietario proprietario(
+            int id
+    ) {
+        var proprietario = new Proprietario("Ana " + id, "11 98888-000" + id);
+        proprietario.setId(id);
+        return proprietario;
+    }
+}
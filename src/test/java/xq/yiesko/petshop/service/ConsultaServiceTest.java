@@ -0,0 +1,172 @@
+package xq.yiesko.petshop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.Optional;
+import java.util.concurrent.CyclicBarrier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xq.yiesko.petshop.model.Animal;
+import xq.yiesko.petshop.model.Cachorro;
+import xq.yiesko.petshop.model.Consulta;
+import xq.yiesko.petshop.model.Proprietario;
+import xq.yiesko.petshop.model.Veterinario;
+import xq.yiesko.petshop.repository.InMemoryRepository;
+import xq.yiesko.petshop.repository.archive.ConsultaArchive;
+
+class ConsultaServiceTest {
+
+    private static final LocalDate INICIO = LocalDate.of(2026, 1, 5);
+    private static final int RODADAS = 500;
+
+    @Test
+    void atualizacaoLogoAntesDoCancelamentoNaoDeixaHorarioOcupado() {
+        var repository = new ConsultasComPausa();
+        var service = new ConsultaService(repository);
+        var veterinario = veterinario();
+        var animal = animal();
+        var id = service.agendar(INICIO, LocalTime.of(8, 0), animal, veterinario, null).getId();
+
+        repository.pausar(() -> service.atualizar(id, INICIO, LocalTime.of(8, 30), animal, veterinario, null));
+        assertTrue(service.cancelar(id));
+
+        assertEquals(0, service.ocupacao(veterinario, INICIO, INICIO).ocupados());
+        assertTrue(service.listarPorPeriodo(INICIO, INICIO).isEmpty());
+        assertFalse(service.possuiConsultasDoVeterinario(veterinario.getId()));
+    }
+
+    @Test
+    void cancelarConcorrenteComAtualizacaoLiberaOHorarioDoEstadoRemovido() throws Exception {
+        var service = new ConsultaService(new InMemoryRepository<Consulta>());
+        var veterinario = veterinario();
+        var animal = animal();
+        var barreira = new CyclicBarrier(2);
+
+        for (var i = 0; i < RODADAS; i++) {
+            var data = INICIO.plusDays(i);
+            var id = service.agendar(data, LocalTime.of(8, 0), animal, veterinario, null).getId();
+
+            var atualizacao = Thread.ofPlatform().start(() -> {
+                aguardar(barreira);
+                service.atualizar(id, data, LocalTime.of(8, 30), animal, veterinario, null);
+            });
+            aguardar(barreira);
+            assertTrue(service.cancelar(id));
+            atualizacao.join();
+        }
+
+        var fim = INICIO.plusDays(RODADAS - 1);
+        assertEquals(0, service.ocupacao(veterinario, INICIO, fim).ocupados());
+        assertEquals(0, service.quantidade());
+        assertTrue(service.listarPorVeterinario(veterinario).isEmpty());
+        assertTrue(service.listarPorPeriodo(INICIO, fim).isEmpty());
+        assertFalse(service.possuiConsultasDoVeterinario(veterinario.getId()));
+        assertFalse(service.possuiConsultasDoAnimal(animal.getId()));
+    }
+
+    @Test
+    void consultasArquivadasImpedemRemoverOAnimalEOVeterinario(
+            @TempDir Path diretorio
+    ) throws Exception {
+        var animais = new InMemoryRepository<Animal>();
+        var veterinarios = new InMemoryRepository<Veterinario>();
+        var consultas = new InMemoryRepository<Consulta>();
+        var service = new ConsultaService(consultas, abrirArquivo(diretorio, animais, veterinarios));
+        var animalService = new AnimalService(animais, service);
+        var veterinarioService = new VeterinarioService(veterinarios, service);
+
+        var proprietario = animal().getProprietario();
+        var animal = animalService.cadastrarCachorro("Rex", 3, "Labrador", proprietario);
+        var veterinario = veterinarioService.cadastrar("Dra. Lia", "11 99999-0000", "Clínica geral");
+        var mes = YearMonth.now().minusMonths(2);
+        service.agendar(mes.atDay(10), LocalTime.of(8, 0), animal, veterinario, null);
+        assertEquals(1, service.arquivar(mes.plusMonths(1)));
+
+        var ativa = service.agendar(LocalDate.now().plusDays(1), LocalTime.of(9, 0), animal, veterinario, null);
+        assertTrue(service.possuiConsultasArquivadasDoAnimal(animal.getId()));
+        assertTrue(service.possuiConsultasArquivadasDoVeterinario(veterinario.getId()));
+        assertThrows(IllegalArgumentException.class, () -> animalService.removerAnimalEmCascata(animal.getId()));
+        assertThrows(IllegalArgumentException.class, () -> animalService.removerDoProprietario(proprietario.getId()));
+        assertThrows(IllegalArgumentException.class, () -> veterinarioService.removerEmCascata(veterinario.getId()));
+        assertTrue(service.buscarPorId(ativa.getId()).isPresent());
+
+        service.cancelar(ativa.getId());
+        assertTrue(service.possuiConsultasDoAnimal(animal.getId()));
+        assertTrue(service.possuiConsultasDoVeterinario(veterinario.getId()));
+        assertThrows(IllegalArgumentException.class, () -> animalService.removerAnimal(animal.getId()));
+        assertThrows(IllegalArgumentException.class, () -> veterinarioService.remover(veterinario.getId()));
+
+        var reaberto = new ConsultaService(consultas, abrirArquivo(diretorio, animais, veterinarios));
+        assertTrue(reaberto.possuiConsultasDoAnimal(animal.getId()));
+        assertTrue(reaberto.possuiConsultasDoVeterinario(veterinario.getId()));
+        assertEquals(1, reaberto.listarPorPeriodo(mes.atDay(1), mes.atEndOfMonth()).size());
+    }
+
+    private static ConsultaArchive abrirArquivo(
+            Path diretorio,
+            InMemoryRepository<Animal> animais,
+            InMemoryRepository<Veterinario> veterinarios
+    ) throws Exception {
+        return ConsultaArchive.abrir(diretorio, id -> animais.buscarPorId(id).orElse(null), id -> veterinarios.buscarPorId(id).orElse(null));
+    }
+
+    /**
+     * Repositório que executa uma escrita dentro da próxima busca feita pela thread
+     * atual, logo depois da leitura, como se outra thread escrevesse naquele instante.
+     */
+    private static final class ConsultasComPausa extends InMemoryRepository<Consulta> {
+
+        private Thread pausada;
+        private Runnable escrita;
+
+        void pausar(
+                Runnable escrita
+        ) {
+            this.pausada = Thread.currentThread();
+            this.escrita = escrita;
+        }
+
+        @Override
+        public Optional<Consulta> buscarPorId(
+                int id
+        ) {
+            var lida = super.buscarPorId(id);
+            if (Thread.currentThread() == pausada) {
+                pausada = null;
+                escrita.run();
+            }
+            return lida;
+        }
+    }
+
+    private static Veterinario veterinario() {
+        var veterinario = new Veterinario("Dra. Lia", "11 99999-0000", "Clínica geral");
+        veterinario.setId(1);
+        return veterinario;
+    }
+
+    private static Cachorro animal() {
+        var proprietario = new Proprietario("Ana", "11 98888-0000");
+        proprietario.setId(1);
+        var animal = new Cachorro("Rex", 3, "Labrador", proprietario);
+        animal.setId(1);
+        return animal;
+    }
+
+    private static void aguardar(
+            CyclicBarrier barreira
+    ) {
+        try {
+            barreira.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}